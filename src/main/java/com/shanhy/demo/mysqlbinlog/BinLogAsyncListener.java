@@ -0,0 +1,36 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 异步监听器，返回的 CompletionStage 完成后才认为该行处理完成。
+ * 开启 checkpoint.watermark 时，checkpoint 只推进到所有监听器（包括异步监听器）都处理完成的连续事件，
+ * 异步处理未完成时宕机，重启后会从未完成的事件重新开始。通过 MySQLBinLogHandler.regListener 注册
+ *
+ * @author 单红宇
+ * @date 2026/10/18 09:40
+ */
+@FunctionalInterface
+public interface BinLogAsyncListener extends BinLogListener {
+
+    /**
+     * onEventAsync
+     *
+     * @param binLogItem binLogItem
+     * @return 处理完成（正常或者异常）时完成
+     */
+    CompletionStage<?> onEventAsync(BinLogItem binLogItem);
+
+    /**
+     * 同步调用时等待处理完成
+     *
+     * @param binLogItem binLogItem
+     */
+    @Override
+    default void onEvent(BinLogItem binLogItem) {
+        CompletionStage<?> stage = onEventAsync(binLogItem);
+        if (stage != null) {
+            stage.toCompletableFuture().join();
+        }
+    }
+}
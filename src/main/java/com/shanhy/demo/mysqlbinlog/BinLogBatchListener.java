@@ -0,0 +1,31 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.util.List;
+
+/**
+ * 批量监听器，一次接收一个行事件（或一个批量窗口）内的全部数据，便于下游批量写入。
+ * 通过 MySQLBinLogHandler.regListener 注册，与逐行的 BinLogListener 可同时使用。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 13:40
+ */
+@FunctionalInterface
+public interface BinLogBatchListener extends BinLogListener {
+
+    /**
+     * onEvents
+     *
+     * @param binLogItems 按binlog顺序排列的数据
+     */
+    void onEvents(List<BinLogItem> binLogItems);
+
+    /**
+     * 逐行调用时包装为单条批量
+     *
+     * @param binLogItem binLogItem
+     */
+    @Override
+    default void onEvent(BinLogItem binLogItem) {
+        onEvents(List.of(binLogItem));
+    }
+}
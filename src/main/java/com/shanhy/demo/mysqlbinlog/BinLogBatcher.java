@@ -0,0 +1,308 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量监听器的数据攒批：按条数或等待时间凑满一个批次后再回调 BinLogBatchListener。
+ * 未配置窗口时每个行事件直接作为一个批次回调；配置了最大条数时每批都不超过该条数，大的行事件会被拆分为多批。
+ * 超时刷新任务会被投递回数据所在的分区执行，因此批次之间以及批次与逐行监听器之间的顺序保持不变。
+ * 数据的确认（见 BinLogWatermark）随数据一起缓存，所在批次回调完成后才执行。
+ * 开启 coalesce 时回调前按 表 + 主键 合并批次内同一行的多次变更。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 13:52
+ */
+@Slf4j
+public class BinLogBatcher {
+
+    /**
+     * dispatcher
+     */
+    private final BinLogDispatcher dispatcher;
+
+    /**
+     * 每批最大条数，小于等于0表示不按条数攒批
+     */
+    private final int maxSize;
+
+    /**
+     * 每批最长等待时间，小于等于0表示不按时间攒批
+     */
+    private final long maxWaitMillis;
+
+    /**
+     * 回调前合并同一行的多次变更
+     */
+    private final boolean coalesce;
+
+    /**
+     * 每个分区、每个监听器一个缓冲区
+     */
+    private final Map<BufferKey, Buffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * 超时刷新调度器
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * BinLogBatcher
+     *
+     * @param dispatcher dispatcher
+     * @param batch      batch
+     */
+    public BinLogBatcher(BinLogDispatcher dispatcher, BinLogProperties.Batch batch) {
+        this.dispatcher = dispatcher;
+        this.maxSize = batch.getMaxSize();
+        this.maxWaitMillis = batch.getMaxWaitMillis();
+        this.coalesce = batch.isCoalesce();
+        if (isWindowed() && maxWaitMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "binlog-batch-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, maxWaitMillis / 2);
+            this.scheduler.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 添加一批数据，需要在分区任务中调用
+     *
+     * @param partitionKey partitionKey
+     * @param listener     listener
+     * @param items        items
+     * @param ack          数据所在批次回调完成（包括监听器异常）后执行，可以为null
+     */
+    public void add(Object partitionKey, BinLogBatchListener listener, List<BinLogItem> items, Runnable ack) {
+        if (!isWindowed()) {
+            try {
+                deliver(listener, items);
+            } finally {
+                if (ack != null) {
+                    ack.run();
+                }
+            }
+            return;
+        }
+        Buffer buffer = buffers.computeIfAbsent(new BufferKey(partitionKey, listener), key -> new Buffer(listener));
+        // 凑满的每一批都回调并确认，某一批的监听器异常不影响之后的批次，全部完成后抛出第一个异常
+        RuntimeException failure = null;
+        for (Batch full : buffer.add(items, ack)) {
+            try {
+                deliver(listener, full);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 刷新所有缓冲区中的数据
+     */
+    public void flushAll() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        buffers.forEach((key, buffer) -> dispatcher.dispatch(key.partitionKey(), buffer::flush));
+    }
+
+    /**
+     * 将等待超时的缓冲区刷新任务投递到对应分区
+     */
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        buffers.forEach((key, buffer) -> {
+            if (buffer.isExpired(now)) {
+                try {
+                    dispatcher.dispatch(key.partitionKey(), () -> {
+                        if (buffer.isExpired(System.currentTimeMillis())) {
+                            buffer.flush();
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                    log.debug("批量刷新任务投递失败：{}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 回调批量监听器，合并后没有数据时不回调
+     *
+     * @param listener listener
+     * @param items    items
+     */
+    private void deliver(BinLogBatchListener listener, List<BinLogItem> items) {
+        List<BinLogItem> delivered = coalesce ? BinLogCoalescer.coalesce(items) : items;
+        if (!delivered.isEmpty()) {
+            listener.onEvents(delivered);
+        }
+    }
+
+    /**
+     * 是否启用攒批窗口
+     *
+     * @return boolean
+     */
+    private boolean isWindowed() {
+        return maxSize > 0 || maxWaitMillis > 0;
+    }
+
+    /**
+     * 缓冲区key
+     *
+     * @param partitionKey partitionKey
+     * @param listener     listener
+     */
+    private record BufferKey(Object partitionKey, BinLogBatchListener listener) {
+    }
+
+    /**
+     * 单个监听器在单个分区上的缓冲区
+     */
+    private final class Buffer {
+
+        /**
+         * listener
+         */
+        private final BinLogBatchListener listener;
+
+        /**
+         * items
+         */
+        private List<BinLogItem> items = new ArrayList<>();
+
+        /**
+         * 缓冲区中数据的确认
+         */
+        private List<Runnable> acks = new ArrayList<>();
+
+        /**
+         * 缓冲区中第一条数据的加入时间
+         */
+        private volatile long firstAddedMillis;
+
+        /**
+         * Buffer
+         *
+         * @param listener listener
+         */
+        Buffer(BinLogBatchListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * 加入数据，返回凑满的批次，每批恰好 maxSize 条；本次数据的确认跟随其最后一条数据所在的批次
+         *
+         * @param added added
+         * @param ack   ack，可以为null
+         * @return List
+         */
+        synchronized List<Batch> add(List<BinLogItem> added, Runnable ack) {
+            List<Batch> full = List.of();
+            int offset = 0;
+            while (maxSize > 0 && items.size() + added.size() - offset >= maxSize) {
+                int end = offset + maxSize - items.size();
+                items.addAll(added.subList(offset, end));
+                offset = end;
+                if (offset == added.size() && ack != null) {
+                    acks.add(ack);
+                    ack = null;
+                }
+                if (full.isEmpty()) {
+                    full = new ArrayList<>();
+                }
+                full.add(drain());
+            }
+            if (offset < added.size()) {
+                if (items.isEmpty()) {
+                    firstAddedMillis = System.currentTimeMillis();
+                }
+                items.addAll(offset == 0 ? added : added.subList(offset, added.size()));
+            }
+            if (ack != null) {
+                acks.add(ack);
+            }
+            return full;
+        }
+
+        /**
+         * 是否等待超时
+         *
+         * @param now now
+         * @return boolean
+         */
+        boolean isExpired(long now) {
+            return maxWaitMillis > 0 && firstAddedMillis > 0 && now - firstAddedMillis >= maxWaitMillis;
+        }
+
+        /**
+         * 回调缓冲区中的全部数据
+         */
+        void flush() {
+            Batch drained;
+            synchronized (this) {
+                drained = items.isEmpty() ? null : drain();
+            }
+            if (drained != null) {
+                deliver(listener, drained);
+            }
+        }
+
+        /**
+         * 取出全部数据
+         *
+         * @return Batch
+         */
+        private Batch drain() {
+            Batch drained = new Batch(items, acks);
+            items = new ArrayList<>();
+            acks = new ArrayList<>();
+            firstAddedMillis = 0;
+            return drained;
+        }
+    }
+
+    /**
+     * 从缓冲区取出的一批数据
+     *
+     * @param items items
+     * @param acks  acks
+     */
+    private record Batch(List<BinLogItem> items, List<Runnable> acks) {
+    }
+
+    /**
+     * 回调监听器后执行确认
+     *
+     * @param listener listener
+     * @param batch    batch
+     */
+    private void deliver(BinLogBatchListener listener, Batch batch) {
+        try {
+            deliver(listener, batch.items());
+        } finally {
+            batch.acks().forEach(Runnable::run);
+        }
+    }
+
+}
@@ -0,0 +1,574 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 本地checkpoint存储：基于内存映射文件保存 binlogFilename/position，以及可选的GTID集合。
+ * 高频的position更新只修改内存中的待写值，按固定间隔或在事务提交时合并写入；
+ * 文件名和position在同一把锁下一起更新，同一个文件中的position只前进不后退（多个线程保存时乱序到达的旧position被忽略）；
+ * 文件中有两个记录槽交替写入，每条记录带序号和CRC，写入过程中宕机时仍可以读到上一条完整记录。
+ * 记录超过记录槽大小（如GTID集合中的server uuid很多）时，先把最新的记录复制到第一个槽，再把记录槽扩大到能容纳记录的2的幂，
+ * 扩大前后第一个槽的起始位置不变，扩大过程中宕机时仍可以读到最新的完整记录
+ *
+ * @author 单红宇
+ * @date 2026/10/17 15:20
+ */
+@Slf4j
+public class BinLogCheckpointStore implements Closeable {
+
+    /**
+     * 单个记录槽的初始大小
+     */
+    static final int SLOT_SIZE = 4096;
+
+    /**
+     * 文件名最大字节数，filenameLength 的最高位为GTID标记
+     */
+    private static final int MAX_FILENAME_BYTES = 0x7FFF;
+
+    /**
+     * GTID集合最大字节数，gtidSetLength 为2字节
+     */
+    private static final int MAX_GTID_SET_BYTES = 0xFFFF;
+
+    /**
+     * 记录头：crc(4) + seq(8) + position(8) + filenameLength(2)，之后是文件名；
+     * filenameLength 的最高位为1时文件名之后还有 gtidSetLength(2) + GTID集合
+     */
+    private static final int HEADER_SIZE = 22;
+
+    /**
+     * filenameLength 中表示有GTID集合的标记位
+     */
+    private static final int GTID_FLAG = 0x8000;
+
+    /**
+     * 刷新方式
+     */
+    private final FlushMode flushMode;
+
+    /**
+     * fsync策略
+     */
+    private final FsyncPolicy fsyncPolicy;
+
+    /**
+     * fsync间隔（毫秒），仅 FsyncPolicy.INTERVAL 时有效
+     */
+    private final long fsyncIntervalMillis;
+
+    /**
+     * channel
+     */
+    private final FileChannel channel;
+
+    /**
+     * buffer
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * 单个记录槽大小，打开文件时按文件大小确定，记录超过时扩大
+     */
+    private int slotSize;
+
+    /**
+     * 最新记录所在记录槽的offset，下一条记录写入另一个槽；没有记录时为 slotSize（下一条写入第一个槽）
+     */
+    private int latestOffset;
+
+    /**
+     * 定时刷新
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 已写入的最新序号
+     */
+    private long sequence;
+
+    /**
+     * 待写入的文件名
+     */
+    private String pendingFilename;
+
+    /**
+     * 待写入的position
+     */
+    private long pendingPosition;
+
+    /**
+     * 待写入的GTID集合，为null表示没有
+     */
+    private String pendingGtidSet;
+
+    /**
+     * 是否有未写入的更新
+     */
+    private boolean dirty;
+
+    /**
+     * 是否有已写入但未fsync的记录
+     */
+    private boolean unsynced;
+
+    /**
+     * 上次fsync时间
+     */
+    private long lastFsyncMillis;
+
+    /**
+     * 刷新次数
+     */
+    private long flushCount;
+
+    /**
+     * 刷新累计耗时（纳秒）
+     */
+    private long flushNanosTotal;
+
+    /**
+     * 上次刷新耗时（纳秒）
+     */
+    private volatile long lastFlushNanos;
+
+    /**
+     * BinLogCheckpointStore
+     *
+     * @param checkpoint checkpoint配置
+     */
+    public BinLogCheckpointStore(BinLogProperties.Checkpoint checkpoint) {
+        this.flushMode = checkpoint.getFlushMode();
+        this.fsyncPolicy = checkpoint.getFsyncPolicy();
+        this.fsyncIntervalMillis = checkpoint.getFsyncIntervalMillis();
+        Path file = Path.of(checkpoint.getFile()).toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // 文件由两个记录槽组成，记录槽大小为文件大小的一半（grow 按2的幂扩大）
+            int slot = SLOT_SIZE;
+            while (4L * slot <= channel.size()) {
+                slot *= 2;
+            }
+            this.slotSize = slot;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开checkpoint文件失败：" + file, e);
+        }
+        Record latest = readLatest();
+        this.latestOffset = latest == null ? slotSize : latest.offset();
+        if (latest != null) {
+            this.sequence = latest.sequence();
+            this.pendingFilename = latest.filename();
+            this.pendingPosition = latest.position();
+            this.pendingGtidSet = latest.gtidSet();
+            log.info("读取checkpoint：{}/{}，gtid={}，file={}", latest.filename(), latest.position(), latest.gtidSet(), file);
+        }
+        // fsyncPolicy=INTERVAL 时也需要定时任务，空闲时把最后一次写入fsync到磁盘
+        if (flushMode == FlushMode.INTERVAL || fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "binlog-checkpoint-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, flushMode == FlushMode.INTERVAL
+                    ? checkpoint.getFlushIntervalMillis() : checkpoint.getFsyncIntervalMillis());
+            this.scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 更新position，只修改内存中的待写值
+     *
+     * @param binlogFilename binlogFilename，为null时沿用当前文件名
+     * @param position       position
+     */
+    public synchronized void update(String binlogFilename, long position) {
+        update(binlogFilename, position, null);
+    }
+
+    /**
+     * 更新position和GTID集合，只修改内存中的待写值。
+     * 同一个文件中小于当前待写值的position被忽略，文件名变化（ROTATE）时直接替换
+     *
+     * @param binlogFilename binlogFilename，为null时沿用当前文件名
+     * @param position       position
+     * @param gtidSet        position之前已完成事务的GTID集合，为null时沿用当前值
+     */
+    public synchronized void update(String binlogFilename, long position, String gtidSet) {
+        // 在调用方线程上拒绝无法写入的值，不留到刷新时失败
+        if (exceeds(binlogFilename, MAX_FILENAME_BYTES) || exceeds(gtidSet, MAX_GTID_SET_BYTES)) {
+            throw new IllegalArgumentException("binlog文件名或GTID集合过长：" + binlogFilename + "，" + gtidSet);
+        }
+        boolean sameFile = binlogFilename == null || binlogFilename.equals(pendingFilename);
+        if (sameFile && position < pendingPosition) {
+            return;
+        }
+        if (binlogFilename != null) {
+            this.pendingFilename = binlogFilename;
+        }
+        if (gtidSet != null) {
+            this.pendingGtidSet = gtidSet;
+        }
+        this.pendingPosition = position;
+        this.dirty = true;
+    }
+
+    /**
+     * 事务提交时更新position，FlushMode.COMMIT 时立即写入
+     *
+     * @param binlogFilename binlogFilename
+     * @param position       position
+     */
+    public synchronized void commit(String binlogFilename, long position) {
+        commit(binlogFilename, position, null);
+    }
+
+    /**
+     * 事务提交时更新position和GTID集合，FlushMode.COMMIT 时立即写入
+     *
+     * @param binlogFilename binlogFilename
+     * @param position       position
+     * @param gtidSet        GTID集合，为null时沿用当前值
+     */
+    public synchronized void commit(String binlogFilename, long position, String gtidSet) {
+        update(binlogFilename, position, gtidSet);
+        if (flushMode == FlushMode.COMMIT) {
+            flush();
+        }
+    }
+
+    /**
+     * 当前的文件名
+     *
+     * @return String
+     */
+    public synchronized String getBinlogFilename() {
+        return pendingFilename;
+    }
+
+    /**
+     * 读取最近一次写入的checkpoint，格式为 binlogFilename/position，没有时返回null
+     *
+     * @return String
+     */
+    public synchronized String load() {
+        Record latest = readLatest();
+        return latest == null ? null : latest.filename() + "/" + latest.position();
+    }
+
+    /**
+     * 读取最近一次写入的GTID集合，没有时返回null
+     *
+     * @return String
+     */
+    public synchronized String loadGtidSet() {
+        Record latest = readLatest();
+        return latest == null ? null : latest.gtidSet();
+    }
+
+    /**
+     * 写入待写值，没有待写值时只做到期的fsync
+     */
+    public synchronized void flush() {
+        if (!dirty || pendingFilename == null) {
+            fsyncIfDue();
+            return;
+        }
+        long start = System.nanoTime();
+        long seq = sequence + 1;
+        writeRecord(seq, pendingFilename, pendingPosition, pendingGtidSet);
+        this.sequence = seq;
+        this.dirty = false;
+        this.unsynced = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            fsync(System.currentTimeMillis());
+        } else {
+            fsyncIfDue();
+        }
+        long cost = System.nanoTime() - start;
+        this.lastFlushNanos = cost;
+        this.flushNanosTotal += cost;
+        this.flushCount++;
+        if (log.isDebugEnabled()) {
+            log.debug("checkpoint刷新：{}/{}，gtid={}，耗时{}us", pendingFilename, pendingPosition, pendingGtidSet,
+                    TimeUnit.NANOSECONDS.toMicros(cost));
+        }
+    }
+
+    /**
+     * 上次刷新耗时（纳秒）
+     *
+     * @return long
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /**
+     * 刷新次数
+     *
+     * @return long
+     */
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * 累计刷新耗时（纳秒）
+     *
+     * @return long
+     */
+    public synchronized long getFlushNanosTotal() {
+        return flushNanosTotal;
+    }
+
+    /**
+     * 平均刷新耗时（纳秒）
+     *
+     * @return long
+     */
+    public synchronized long getAverageFlushNanos() {
+        return flushCount == 0 ? 0 : flushNanosTotal / flushCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush();
+        buffer.force();
+        channel.close();
+        log.info("checkpoint已关闭，刷新{}次，平均耗时{}us", flushCount, TimeUnit.NANOSECONDS.toMicros(getAverageFlushNanos()));
+    }
+
+    /**
+     * fsyncPolicy=INTERVAL 时，有未fsync的记录且距上次fsync超过间隔则fsync
+     */
+    private void fsyncIfDue() {
+        long now = System.currentTimeMillis();
+        if (unsynced && fsyncPolicy == FsyncPolicy.INTERVAL && now - lastFsyncMillis >= fsyncIntervalMillis) {
+            fsync(now);
+        }
+    }
+
+    private void fsync(long now) {
+        buffer.force();
+        this.lastFsyncMillis = now;
+        this.unsynced = false;
+    }
+
+    /**
+     * 定时刷新和fsync
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("checkpoint刷新失败", e);
+        }
+    }
+
+    /**
+     * 超过最大字节数，UTF-8每个字符最多3个字节（代理对为2个字符4个字节）
+     *
+     * @param value    value，可以为null
+     * @param maxBytes maxBytes
+     * @return boolean
+     */
+    private static boolean exceeds(String value, int maxBytes) {
+        return value != null && value.length() > maxBytes / 3 && value.getBytes(StandardCharsets.UTF_8).length > maxBytes;
+    }
+
+    /**
+     * 写入最新记录之外的记录槽，记录超过记录槽大小时先扩大
+     *
+     * @param seq      seq
+     * @param filename filename
+     * @param position position
+     * @param gtidSet  GTID集合，可以为null
+     */
+    private void writeRecord(long seq, String filename, long position, String gtidSet) {
+        byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+        byte[] gtid = gtidSet == null ? null : gtidSet.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + name.length + (gtid == null ? 0 : 2 + gtid.length);
+        if (length > slotSize) {
+            grow(length);
+        }
+        int offset = latestOffset == 0 ? slotSize : 0;
+        buffer.putLong(offset + 4, seq);
+        buffer.putLong(offset + 12, position);
+        buffer.putShort(offset + 20, (short) (gtid == null ? name.length : name.length | GTID_FLAG));
+        buffer.put(offset + HEADER_SIZE, name);
+        if (gtid != null) {
+            buffer.putShort(offset + HEADER_SIZE + name.length, (short) gtid.length);
+            buffer.put(offset + HEADER_SIZE + name.length + 2, gtid);
+        }
+        // CRC最后写入，记录只写了一部分时校验不通过
+        buffer.putInt(offset, crc(offset, length - 4));
+        this.latestOffset = offset;
+    }
+
+    /**
+     * 扩大记录槽：最新记录在第二个槽时先复制到第一个槽并fsync，再扩大文件重新映射。
+     * 新的第一个槽包含原来的两个槽，起始位置不变，其中的最新记录在新的布局中仍然有效，下一条记录写入新的第二个槽
+     *
+     * @param length 需要容纳的记录长度
+     */
+    private void grow(int length) {
+        int size = slotSize;
+        while (size < length) {
+            size *= 2;
+        }
+        Record latest = readLatest();
+        if (latest != null && latest.offset() != 0) {
+            buffer.put(0, buffer, latest.offset(), latest.length());
+        }
+        buffer.force();
+        try {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("扩大checkpoint文件失败", e);
+        }
+        log.info("checkpoint记录槽扩大：{} -> {}字节", slotSize, size);
+        this.slotSize = size;
+        this.latestOffset = 0;
+    }
+
+    /**
+     * 读取序号最大的有效记录
+     *
+     * @return Record
+     */
+    private Record readLatest() {
+        Record first = readSlot(0);
+        Record second = readSlot(slotSize);
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.sequence() > second.sequence() ? first : second;
+    }
+
+    /**
+     * 读取记录槽，校验失败时返回null
+     *
+     * @param offset offset
+     * @return Record
+     */
+    private Record readSlot(int offset) {
+        long seq = buffer.getLong(offset + 4);
+        int nameField = buffer.getShort(offset + 20) & 0xFFFF;
+        int nameLength = nameField & ~GTID_FLAG;
+        int length = HEADER_SIZE + nameLength;
+        if (seq <= 0 || nameLength <= 0 || length > slotSize) {
+            return null;
+        }
+        int gtidLength = -1;
+        if ((nameField & GTID_FLAG) != 0) {
+            if (length + 2 > slotSize) {
+                return null;
+            }
+            gtidLength = buffer.getShort(offset + length) & 0xFFFF;
+            length += 2 + gtidLength;
+            if (length > slotSize) {
+                return null;
+            }
+        }
+        if (buffer.getInt(offset) != crc(offset, length - 4)) {
+            return null;
+        }
+        byte[] name = new byte[nameLength];
+        buffer.get(offset + HEADER_SIZE, name);
+        String gtidSet = null;
+        if (gtidLength >= 0) {
+            byte[] gtid = new byte[gtidLength];
+            buffer.get(offset + HEADER_SIZE + nameLength + 2, gtid);
+            gtidSet = new String(gtid, StandardCharsets.UTF_8);
+        }
+        return new Record(seq, new String(name, StandardCharsets.UTF_8), buffer.getLong(offset + 12), gtidSet, offset,
+                length);
+    }
+
+    /**
+     * 计算记录槽中crc字段之后length个字节的CRC
+     *
+     * @param offset offset
+     * @param length length
+     * @return int
+     */
+    private int crc(int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.slice(offset + 4, length));
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * checkpoint记录
+     *
+     * @param sequence sequence
+     * @param filename filename
+     * @param position position
+     * @param gtidSet  GTID集合，没有时为null
+     * @param offset   所在记录槽的offset
+     * @param length   记录长度
+     */
+    private record Record(long sequence, String filename, long position, String gtidSet, int offset, int length) {
+    }
+
+    /**
+     * 刷新方式
+     */
+    public enum FlushMode {
+
+        /**
+         * 按固定间隔合并写入
+         */
+        INTERVAL,
+
+        /**
+         * 每次事务提交时写入
+         */
+        COMMIT
+
+    }
+
+    /**
+     * fsync策略
+     */
+    public enum FsyncPolicy {
+
+        /**
+         * 从不主动fsync，由操作系统回写，进程崩溃不丢数据，操作系统崩溃可能丢失最近的更新
+         */
+        NEVER,
+
+        /**
+         * 每次写入后fsync
+         */
+        ALWAYS,
+
+        /**
+         * 按间隔fsync
+         */
+        INTERVAL
+
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
+import static com.github.shyiko.mysql.binlog.event.EventType.isUpdate;
+import static com.github.shyiko.mysql.binlog.event.EventType.isWrite;
+
+/**
+ * 按 表 + 主键 合并一批行变更，同一行的多次变更只保留最终结果：
+ * <ul>
+ *     <li>新增 + 修改 = 新增（最新的值）</li>
+ *     <li>修改 + 修改 = 修改（最早的变更前镜像，最新的变更后镜像，变化的列重新计算）</li>
+ *     <li>新增 + 删除 = 无变更</li>
+ *     <li>修改 + 删除 = 删除（最早的变更前镜像）</li>
+ *     <li>删除 + 新增 = 修改</li>
+ * </ul>
+ * 主键来自表结构，没有主键的表、主键值为null的行、修改了主键的行不合并；其它无法合并的组合（如重复新增）从该行重新开始合并。
+ * 合并后的行按该主键第一次出现的位置排列，位置、时间戳等取最后一次变更的值。
+ * 可见列（columnMask）：由新增得到的结果沿用新增的可见列（只按变更列可见时新增没有限制），修改 + 修改 为两次可见列的并集，
+ * 其余取最后一次变更的可见列
+ *
+ * @author 单红宇
+ * @date 2026/10/18 10:30
+ */
+public final class BinLogCoalescer {
+
+    /**
+     * 新增 + 删除 的合并结果
+     */
+    private static final BinLogItem CANCELLED = new BinLogItem(null, null, null);
+
+    private BinLogCoalescer() {
+    }
+
+    /**
+     * 合并一批行变更，没有可合并的行时返回原列表
+     *
+     * @param items 按binlog顺序排列的行变更
+     * @return List
+     */
+    public static List<BinLogItem> coalesce(List<BinLogItem> items) {
+        if (items.size() < 2) {
+            return items;
+        }
+        List<BinLogItem> result = new ArrayList<>(items.size());
+        Map<Key, Integer> slots = new HashMap<>();
+        boolean folded = false;
+        for (BinLogItem item : items) {
+            TableSchema schema = item.getSchema();
+            if (schema == null || schema.getPrimaryKeyIndexes().length == 0) {
+                result.add(item);
+                continue;
+            }
+            Key before = key(item, item.getBeforeRow());
+            Key after = key(item, item.getAfterRow());
+            if (isUpdate(item.getEventType()) && !Objects.equals(before, after)) {
+                // 修改了主键：原样保留，前后两个主键都从这里重新开始合并
+                slots.remove(before);
+                slots.remove(after);
+                result.add(item);
+                continue;
+            }
+            Key key = before != null ? before : after;
+            if (key == null) {
+                result.add(item);
+                continue;
+            }
+            Integer slot = slots.get(key);
+            BinLogItem merged = slot == null ? null : merge(result.get(slot), item);
+            if (merged == null) {
+                slots.put(key, result.size());
+                result.add(item);
+            } else {
+                folded = true;
+                result.set(slot, merged);
+                if (merged == CANCELLED) {
+                    slots.remove(key);
+                }
+            }
+        }
+        if (!folded) {
+            return items;
+        }
+        result.removeIf(item -> item == CANCELLED);
+        return result;
+    }
+
+    /**
+     * 合并同一行的两次变更
+     *
+     * @param previous 之前合并的结果
+     * @param current  当前变更
+     * @return 合并结果，CANCELLED 表示相互抵消，null 表示不能合并
+     */
+    private static BinLogItem merge(BinLogItem previous, BinLogItem current) {
+        EventType previousType = previous.getEventType();
+        EventType currentType = current.getEventType();
+        if (isWrite(previousType)) {
+            if (isUpdate(currentType)) {
+                return copy(current, previousType, null, overlay(previous.getAfterRow(), current), null,
+                        previous.getColumnMask());
+            }
+            return isDelete(currentType) ? CANCELLED : null;
+        }
+        if (isUpdate(previousType)) {
+            if (isUpdate(currentType)) {
+                Serializable[] afterRow = overlay(previous.getAfterRow(), current);
+                BitSet changed = new BitSet(afterRow.length);
+                if (previous.getChangedColumns() == null || current.getChangedColumns() == null) {
+                    changed.set(0, afterRow.length);
+                } else {
+                    changed.or(previous.getChangedColumns());
+                    changed.or(current.getChangedColumns());
+                }
+                return copy(current, currentType, previous.getBeforeRow(), afterRow,
+                        retainChanged(changed, previous.getBeforeRow(), afterRow),
+                        union(previous.getColumnMask(), current.getColumnMask()));
+            }
+            return isDelete(currentType)
+                    ? copy(current, currentType, previous.getBeforeRow(), null, null, current.getColumnMask()) : null;
+        }
+        if (isDelete(previousType) && isWrite(currentType)) {
+            EventType updateType = updateType(currentType);
+            if (updateType == null) {
+                return null;
+            }
+            Serializable[] beforeRow = previous.getBeforeRow();
+            Serializable[] afterRow = current.getAfterRow();
+            BitSet changed = new BitSet(afterRow.length);
+            changed.set(0, afterRow.length);
+            return copy(current, updateType, beforeRow, afterRow, retainChanged(changed, beforeRow, afterRow),
+                    current.getColumnMask());
+        }
+        return null;
+    }
+
+    /**
+     * 在之前的变更后镜像上覆盖本次修改变化的列，变更后镜像不完整（binlog_row_image非FULL）时也不丢失之前的值
+     *
+     * @param afterRow 之前的变更后镜像
+     * @param update   本次修改
+     * @return Serializable[]
+     */
+    private static Serializable[] overlay(Serializable[] afterRow, BinLogItem update) {
+        Serializable[] updated = update.getAfterRow();
+        BitSet changed = update.getChangedColumns();
+        if (changed == null) {
+            return updated;
+        }
+        Serializable[] merged = afterRow.clone();
+        for (int i = changed.nextSetBit(0); i >= 0 && i < merged.length; i = changed.nextSetBit(i + 1)) {
+            merged[i] = updated[i];
+        }
+        return merged;
+    }
+
+    /**
+     * 去掉最终没有变化的列（如改了又改回去）
+     *
+     * @param changed   changed
+     * @param beforeRow beforeRow
+     * @param afterRow  afterRow
+     * @return BitSet
+     */
+    private static BitSet retainChanged(BitSet changed, Serializable[] beforeRow, Serializable[] afterRow) {
+        for (int i = changed.nextSetBit(0); i >= 0 && i < afterRow.length; i = changed.nextSetBit(i + 1)) {
+            if (Objects.deepEquals(beforeRow[i], afterRow[i])) {
+                changed.clear(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 两次变更可见列的并集：只按变更列可见时为两次变化的列和主键，任一为null时所有列可见
+     *
+     * @param previous previous
+     * @param current  current
+     * @return BitSet
+     */
+    private static BitSet union(BitSet previous, BitSet current) {
+        if (previous == null || current == null) {
+            return null;
+        }
+        BitSet mask = (BitSet) previous.clone();
+        mask.or(current);
+        return mask;
+    }
+
+    /**
+     * 以最后一次变更的位置、时间戳创建合并结果
+     *
+     * @param latest         最后一次变更
+     * @param eventType      合并后的类型
+     * @param beforeRow      beforeRow
+     * @param afterRow       afterRow
+     * @param changedColumns changedColumns
+     * @param columnMask     可见列
+     * @return BinLogItem
+     */
+    private static BinLogItem copy(BinLogItem latest, EventType eventType, Serializable[] beforeRow,
+                                   Serializable[] afterRow, BitSet changedColumns, BitSet columnMask) {
+        BinLogItem item = new BinLogItem(latest.getDbTable(), eventType, latest.getSchema());
+        item.setTimestamp(latest.getTimestamp());
+        item.setServerId(latest.getServerId());
+        item.setPosition(latest.getPosition());
+        item.setNextPosition(latest.getNextPosition());
+        item.setBeforeRow(beforeRow);
+        item.setAfterRow(afterRow);
+        item.setChangedColumns(changedColumns);
+        item.setColumnMask(columnMask);
+        return item;
+    }
+
+    /**
+     * 与新增事件同一版本的修改事件类型
+     *
+     * @param writeType writeType
+     * @return EventType
+     */
+    private static EventType updateType(EventType writeType) {
+        return switch (writeType) {
+            case WRITE_ROWS -> EventType.UPDATE_ROWS;
+            case EXT_WRITE_ROWS -> EventType.EXT_UPDATE_ROWS;
+            case PRE_GA_WRITE_ROWS -> EventType.PRE_GA_UPDATE_ROWS;
+            default -> null;
+        };
+    }
+
+    /**
+     * 行的主键，没有该镜像或者主键值为null时返回null
+     *
+     * @param item item
+     * @param row  row
+     * @return Key
+     */
+    private static Key key(BinLogItem item, Serializable[] row) {
+        if (row == null) {
+            return null;
+        }
+        int[] primaryKeyIndexes = item.getSchema().getPrimaryKeyIndexes();
+        Serializable[] values = new Serializable[primaryKeyIndexes.length];
+        for (int i = 0; i < primaryKeyIndexes.length; i++) {
+            int index = primaryKeyIndexes[i];
+            if (index >= row.length || row[index] == null) {
+                return null;
+            }
+            values[i] = row[index];
+        }
+        return new Key(item.getDbTable(), values);
+    }
+
+    /**
+     * 表 + 主键
+     *
+     * @param dbTable dbTable
+     * @param values  主键值
+     */
+    private record Key(String dbTable, Serializable[] values) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && dbTable.equals(key.dbTable) && Arrays.deepEquals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dbTable.hashCode() + Arrays.deepHashCode(values);
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 表的分发计划：表结构、监听器数组、编译后的行过滤条件、列投影和分区键在 TABLE_MAP 时预先计算好，行事件处理时不再按字符串查找。
+ * 计划不可变，表结构刷新、DDL或者注册新的监听器后版本号变化，下一次使用时重新生成
+ *
+ * @author 单红宇
+ * @date 2026/10/17 18:20
+ */
+@Slf4j
+@Getter
+public final class BinLogDispatchPlan {
+
+    /**
+     * dbTable
+     */
+    private final String dbTable;
+
+    /**
+     * 表结构，表结构未加载时为null
+     */
+    private final TableSchema schema;
+
+    /**
+     * 监听器
+     */
+    private final BinLogListener[] listeners;
+
+    /**
+     * 监听器对应的行过滤条件，没有过滤条件时为null
+     */
+    private final BinLogRowFilter.Compiled[] filters;
+
+    /**
+     * 是否所有监听器都有过滤条件，此时不满足任何过滤条件的行不需要创建 BinLogItem
+     */
+    private final boolean allFiltered;
+
+    /**
+     * 监听器可见的列下标，为null时所有列可见
+     */
+    private final BitSet[] columnMasks;
+
+    /**
+     * 需要保留的列下标：所有监听器投影、过滤条件用到的列和主键列的并集，为null时保留全部列
+     */
+    private final BitSet projection;
+
+    /**
+     * 按主键分区时每个分区的分区键，按表分区时为null
+     */
+    private final String[] partitionKeys;
+
+    /**
+     * 生成计划时的版本号
+     */
+    private final long version;
+
+    /**
+     * BinLogDispatchPlan
+     *
+     * @param dbTable              dbTable
+     * @param schema               schema
+     * @param listeners            listeners
+     * @param rowFilters           监听器对应的行过滤条件，没有过滤条件时为null
+     * @param columns              按监听器下标的需要的列，元素为null时需要全部列
+     * @param primaryKeyPartitions 按主键分区的分区数，按表分区时为0
+     * @param version              version
+     */
+    public BinLogDispatchPlan(String dbTable, TableSchema schema, BinLogListener[] listeners, BinLogRowFilter[] rowFilters,
+                              List<Collection<String>> columns, int primaryKeyPartitions, long version) {
+        this.dbTable = dbTable;
+        this.schema = schema;
+        this.listeners = listeners;
+        this.version = version;
+        this.filters = new BinLogRowFilter.Compiled[listeners.length];
+        boolean all = listeners.length > 0;
+        for (int i = 0; i < listeners.length; i++) {
+            if (rowFilters[i] != null) {
+                this.filters[i] = rowFilters[i].compile(schema);
+            } else {
+                all = false;
+            }
+        }
+        this.allFiltered = all;
+        this.columnMasks = new BitSet[listeners.length];
+        this.projection = schema == null ? null : buildProjection(schema, columns);
+        if (primaryKeyPartitions > 1) {
+            this.partitionKeys = new String[primaryKeyPartitions];
+            for (int i = 0; i < primaryKeyPartitions; i++) {
+                this.partitionKeys[i] = dbTable + "#" + i;
+            }
+        } else {
+            this.partitionKeys = null;
+        }
+    }
+
+    /**
+     * 计算每个监听器可见的列和它们的并集，任一监听器需要全部列时不投影
+     *
+     * @param schema  schema
+     * @param columns columns
+     * @return BitSet
+     */
+    private BitSet buildProjection(TableSchema schema, List<Collection<String>> columns) {
+        BitSet union = new BitSet(schema.getColumnCount());
+        boolean all = listeners.length == 0;
+        for (int i = 0; i < listeners.length; i++) {
+            if (columns.get(i) == null) {
+                all = true;
+                continue;
+            }
+            BitSet mask = new BitSet(schema.getColumnCount());
+            for (String column : columns.get(i)) {
+                int index = schema.indexOf(column);
+                if (index < 0) {
+                    log.warn("监听的列在表结构中不存在：{}.{}", dbTable, column);
+                } else {
+                    mask.set(index);
+                }
+            }
+            for (int index : schema.getPrimaryKeyIndexes()) {
+                mask.set(index);
+            }
+            columnMasks[i] = mask;
+            union.or(mask);
+            if (filters[i] != null) {
+                union.or(filters[i].getColumnIndexes());
+            }
+        }
+        return all ? null : union;
+    }
+
+    /**
+     * 计算分区键，同一分区内的事件按binlog顺序串行处理
+     *
+     * @param binLogItem binLogItem
+     * @return Object
+     */
+    public Object getPartitionKey(BinLogItem binLogItem) {
+        if (partitionKeys == null) {
+            return dbTable;
+        }
+        return partitionKeys[Math.floorMod(BinLogUtils.getPrimaryKeyHash(binLogItem), partitionKeys.length)];
+    }
+
+    /**
+     * 是否有监听器需要该行，在原始行数组上判断，参数含义见 {@link BinLogRowFilter.Compiled#test}
+     *
+     * @param eventType      eventType
+     * @param before         before
+     * @param beforeIncluded beforeIncluded
+     * @param after          after
+     * @param afterIncluded  afterIncluded
+     * @return boolean
+     */
+    public boolean accepts(EventType eventType, Serializable[] before, BitSet beforeIncluded,
+                           Serializable[] after, BitSet afterIncluded) {
+        if (!allFiltered) {
+            return true;
+        }
+        for (BinLogRowFilter.Compiled filter : filters) {
+            if (filter.test(eventType, before, beforeIncluded, after, afterIncluded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否按表分区
+     *
+     * @return boolean
+     */
+    public boolean isTablePartitioned() {
+        return partitionKeys == null;
+    }
+
+}
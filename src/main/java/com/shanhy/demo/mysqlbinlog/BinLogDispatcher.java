@@ -0,0 +1,312 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件分发器
+ * 每个分区（表，或表+主键）拥有独立的有界队列，分区内任务严格按提交顺序串行执行，不同分区在工作线程池中并行执行。
+ * 分区队列满时提交方（binlog读取线程）阻塞，从而将背压传递到binlog连接上，且只影响该分区的提交方。
+ * 多个数据源通过 {@link #newScope(int)} 共用同一个工作线程池，每个数据源有独立的分区，且同时占用的工作线程数有上限，
+ * 一个数据源的监听器变慢时不会占满工作线程。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 10:12
+ */
+@Slf4j
+public class BinLogDispatcher {
+
+    /**
+     * 单个分区一次调度最多连续执行的任务数，避免热点分区长期占用工作线程
+     */
+    private static final int DRAIN_LIMIT = 64;
+
+    /**
+     * 工作线程池，为null时在提交线程中同步执行
+     */
+    private final ExecutorService workers;
+
+    /**
+     * 是否由当前分发器创建（关闭时关闭工作线程池）
+     */
+    private final boolean ownsWorkers;
+
+    /**
+     * 每个分区的队列容量
+     */
+    private final int queueCapacity;
+
+    /**
+     * 同时执行的分区数上限，0表示不限制
+     */
+    private final int maxActivePartitions;
+
+    /**
+     * 正在执行的分区数，仅 maxActivePartitions > 0 时使用
+     */
+    private int activePartitions;
+
+    /**
+     * 达到上限后等待执行的分区，仅 maxActivePartitions > 0 时使用
+     */
+    private final Queue<Partition> waitingPartitions = new ArrayDeque<>();
+
+    /**
+     * 分区
+     */
+    private final Map<Object, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * BinLogDispatcher
+     *
+     * @param threads       工作线程数，为0时同步执行
+     * @param queueCapacity 每个分区的队列容量
+     */
+    public BinLogDispatcher(int threads, int queueCapacity) {
+        this(threads > 0 ? Executors.newFixedThreadPool(threads, new DispatchThreadFactory()) : null, true,
+                queueCapacity, 0);
+    }
+
+    /**
+     * BinLogDispatcher
+     *
+     * @param workers             工作线程池，为null时同步执行
+     * @param ownsWorkers         关闭时是否关闭工作线程池
+     * @param queueCapacity       每个分区的队列容量
+     * @param maxActivePartitions 同时执行的分区数上限，0表示不限制
+     */
+    private BinLogDispatcher(ExecutorService workers, boolean ownsWorkers, int queueCapacity, int maxActivePartitions) {
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxActivePartitions = Math.max(0, maxActivePartitions);
+    }
+
+    /**
+     * 创建共用当前工作线程池的分发器，分区独立，关闭时只等待自己的分区执行完成，不关闭工作线程池
+     *
+     * @param maxActivePartitions 同时占用的工作线程数上限，0表示不限制
+     * @return BinLogDispatcher
+     */
+    public BinLogDispatcher newScope(int maxActivePartitions) {
+        return new BinLogDispatcher(workers, false, queueCapacity, maxActivePartitions);
+    }
+
+    /**
+     * 提交任务到指定分区，分区队列满时阻塞
+     *
+     * @param partitionKey 分区键
+     * @param task         任务
+     */
+    public void dispatch(Object partitionKey, Runnable task) {
+        if (closed) {
+            throw new IllegalStateException("BinLogDispatcher is closed");
+        }
+        if (workers == null) {
+            runQuietly(task);
+            return;
+        }
+        try {
+            partitions.computeIfAbsent(partitionKey, key -> new Partition()).submit(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("dispatch interrupted, partition=" + partitionKey, e);
+        }
+    }
+
+    /**
+     * 当前所有分区中排队的任务数
+     *
+     * @return int
+     */
+    public int getQueuedTaskCount() {
+        int count = 0;
+        for (Partition partition : partitions.values()) {
+            count += partition.queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * 停止接收任务，等待已提交的任务执行完成后关闭工作线程
+     *
+     * @param timeout 等待时间
+     * @param unit    时间单位
+     * @return 是否在等待时间内处理完成
+     * @throws InterruptedException InterruptedException
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        closed = true;
+        if (workers == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isIdle()) {
+            if (System.nanoTime() > deadline) {
+                log.warn("分发队列未在规定时间内处理完成，剩余任务数：{}", getQueuedTaskCount());
+                if (ownsWorkers) {
+                    workers.shutdownNow();
+                }
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        if (!ownsWorkers) {
+            return true;
+        }
+        workers.shutdown();
+        return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 所有分区都没有待处理的任务
+     *
+     * @return boolean
+     */
+    private boolean isIdle() {
+        for (Partition partition : partitions.values()) {
+            if (partition.scheduled.get() || !partition.queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 调度分区到工作线程池，达到同时执行的分区数上限时排队
+     *
+     * @param partition partition
+     */
+    private void execute(Partition partition) {
+        if (maxActivePartitions == 0) {
+            workers.execute(partition);
+            return;
+        }
+        synchronized (waitingPartitions) {
+            if (activePartitions >= maxActivePartitions) {
+                waitingPartitions.add(partition);
+                return;
+            }
+            activePartitions++;
+        }
+        workers.execute(partition);
+    }
+
+    /**
+     * 分区执行结束，有排队的分区时由它接替
+     */
+    private void release() {
+        if (maxActivePartitions == 0) {
+            return;
+        }
+        Partition next;
+        synchronized (waitingPartitions) {
+            next = waitingPartitions.poll();
+            if (next == null) {
+                activePartitions--;
+                return;
+            }
+        }
+        workers.execute(next);
+    }
+
+    /**
+     * 执行任务，监听器异常不能影响同分区后续任务
+     *
+     * @param task task
+     */
+    private static void runQuietly(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("BinLog监听器处理异常", e);
+        }
+    }
+
+    /**
+     * 分区：有界队列 + 调度标记，保证同一时刻最多只有一个工作线程在处理该分区
+     */
+    private final class Partition implements Runnable {
+
+        /**
+         * queue
+         */
+        private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        /**
+         * 是否已提交到工作线程池
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * 提交任务
+         *
+         * @param task task
+         * @throws InterruptedException InterruptedException
+         */
+        void submit(Runnable task) throws InterruptedException {
+            queue.put(task);
+            schedule();
+        }
+
+        /**
+         * 调度到工作线程池
+         */
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            int n = 0;
+            while (n++ < DRAIN_LIMIT && (task = queue.poll()) != null) {
+                runQuietly(task);
+            }
+            release();
+            scheduled.set(false);
+            // 释放调度标记后再检查一次，避免丢失释放前瞬间提交的任务
+            if (!queue.isEmpty() && !workers.isShutdown()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * 工作线程工厂
+     */
+    private static final class DispatchThreadFactory implements ThreadFactory {
+
+        /**
+         * threadNumber
+         */
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "binlog-dispatch-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
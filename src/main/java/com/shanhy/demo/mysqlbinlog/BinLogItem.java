@@ -3,13 +3,18 @@ package com.shanhy.demo.mysqlbinlog;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 
 import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
 import static com.github.shyiko.mysql.binlog.event.EventType.isWrite;
@@ -28,7 +33,7 @@ public class BinLogItem implements Serializable {
      * serialVersionUID
      */
     @Serial
-    private static final long serialVersionUID = 5503152746318421290L;
+    private static final long serialVersionUID = -2172683495413016927L;
 
     /**
      * dbTable
@@ -55,31 +60,52 @@ public class BinLogItem implements Serializable {
      */
     private Long nextPosition = null;
     /**
-     * 存储字段-之前的值之后的值
+     * 变更前的行数据，按列下标（ordinalPosition - 1）存放，新增时为null
      */
-    private Map<String, Serializable> before;
+    private Serializable[] beforeRow;
     /**
-     * after
+     * 变更后的行数据，按列下标（ordinalPosition - 1）存放，删除时为null
      */
-    private Map<String, Serializable> after;
+    private Serializable[] afterRow;
     /**
-     * 存储字段--类型
+     * 表结构，同一张表的所有BinLogItem共享
+     */
+    @ToString.Exclude
+    private TableSchema schema;
+    /**
+     * 更新操作中值发生变化的列下标，非更新操作为null
      */
-    private Map<String, TableColumn> columns;
+    private BitSet changedColumns;
+    /**
+     * 对外可见的列下标，为null时所有列可见
+     */
+    private BitSet columnMask;
+    /**
+     * 转换后的变更前的值，按列下标缓存，第一次取值时由 TableSchema.getConverters() 转换
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient Serializable[] convertedBeforeRow;
+    /**
+     * 转换后的变更后的值，按列下标缓存
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient Serializable[] convertedAfterRow;
 
     /**
      * BinLogItem
      *
      * @param dbTableName dbTableName
      * @param eventType   eventType
-     * @param columnMap   columMap
+     * @param schema      schema
      */
-    public BinLogItem(String dbTableName, Event event, EventType eventType, Map<String, TableColumn> columnMap) {
+    public BinLogItem(String dbTableName, Event event, EventType eventType, TableSchema schema) {
         this.eventType = eventType;
-        this.columns = columnMap;
+        this.schema = schema;
         this.dbTable = dbTableName;
-        this.before = new HashMap<>();
-        this.after = new HashMap<>();
         if (event.getHeader() instanceof EventHeaderV4) {
             EventHeaderV4 eventHeader = event.getHeader();
             this.serverId = eventHeader.getServerId();
@@ -89,37 +115,326 @@ public class BinLogItem implements Serializable {
         }
     }
 
+    /**
+     * 解码时使用，其它字段由 BinLogItemCodec 设置
+     *
+     * @param dbTableName dbTableName
+     * @param eventType   eventType
+     * @param schema      schema
+     */
+    BinLogItem(String dbTableName, EventType eventType, TableSchema schema) {
+        this.dbTable = dbTableName;
+        this.eventType = eventType;
+        this.schema = schema;
+    }
+
+    /**
+     * 投影视图，与原对象共享行数组
+     *
+     * @param source     source
+     * @param columnMask columnMask
+     */
+    private BinLogItem(BinLogItem source, BitSet columnMask) {
+        this.dbTable = source.dbTable;
+        this.eventType = source.eventType;
+        this.timestamp = source.timestamp;
+        this.serverId = source.serverId;
+        this.position = source.position;
+        this.nextPosition = source.nextPosition;
+        this.beforeRow = source.beforeRow;
+        this.afterRow = source.afterRow;
+        this.schema = source.schema;
+        this.changedColumns = source.changedColumns;
+        this.columnMask = columnMask;
+    }
+
+    /**
+     * 只包含指定列的视图，不复制行数据；已经是该投影时返回自身
+     *
+     * @param columns 可见列下标
+     * @return BinLogItem
+     */
+    public BinLogItem project(BitSet columns) {
+        if (columns == null || columns.equals(columnMask)) {
+            return this;
+        }
+        BitSet mask = columns;
+        if (columnMask != null) {
+            mask = (BitSet) columns.clone();
+            mask.and(columnMask);
+        }
+        return new BinLogItem(this, mask);
+    }
+
+    /**
+     * 存储字段-之前的值，调用时才基于行数组创建Map视图，不复制数据
+     *
+     * @return Map
+     */
+    public Map<String, Serializable> getBefore() {
+        return beforeRow == null ? Collections.emptyMap() : new RowMap(schema, beforeRow, columnMask);
+    }
+
+    /**
+     * 存储字段-之后的值，调用时才基于行数组创建Map视图，不复制数据
+     *
+     * @return Map
+     */
+    public Map<String, Serializable> getAfter() {
+        return afterRow == null ? Collections.emptyMap() : new RowMap(schema, afterRow, columnMask);
+    }
+
+    /**
+     * 按列名获取变更前的值
+     *
+     * @param columnName columnName
+     * @return Serializable
+     */
+    public Serializable getBeforeValue(String columnName) {
+        return getValue(beforeRow, columnName);
+    }
+
+    /**
+     * 按列名获取变更后的值
+     *
+     * @param columnName columnName
+     * @return Serializable
+     */
+    public Serializable getAfterValue(String columnName) {
+        return getValue(afterRow, columnName);
+    }
+
+    /**
+     * 按列名获取转换后的变更前的值（DATETIME为LocalDateTime、文本为String等，见 BinLogValueConverters），转换结果在本对象上缓存
+     *
+     * @param columnName columnName
+     * @return Serializable
+     */
+    public Serializable getConvertedBeforeValue(String columnName) {
+        int index = beforeRow == null ? -1 : schema.indexOf(columnName);
+        if (index < 0 || (columnMask != null && !columnMask.get(index))) {
+            return null;
+        }
+        if (convertedBeforeRow == null) {
+            convertedBeforeRow = new Serializable[beforeRow.length];
+        }
+        return convert(beforeRow, convertedBeforeRow, index);
+    }
+
+    /**
+     * 按列名获取转换后的变更后的值，转换结果在本对象上缓存
+     *
+     * @param columnName columnName
+     * @return Serializable
+     */
+    public Serializable getConvertedAfterValue(String columnName) {
+        int index = afterRow == null ? -1 : schema.indexOf(columnName);
+        if (index < 0 || (columnMask != null && !columnMask.get(index))) {
+            return null;
+        }
+        if (convertedAfterRow == null) {
+            convertedAfterRow = new Serializable[afterRow.length];
+        }
+        return convert(afterRow, convertedAfterRow, index);
+    }
+
+    /**
+     * 转换后的变更前的值，转换所有可见列后创建Map视图
+     *
+     * @return Map
+     */
+    public Map<String, Serializable> getConvertedBefore() {
+        if (beforeRow == null) {
+            return Collections.emptyMap();
+        }
+        if (convertedBeforeRow == null) {
+            convertedBeforeRow = new Serializable[beforeRow.length];
+        }
+        return new RowMap(schema, convertAll(beforeRow, convertedBeforeRow), columnMask);
+    }
+
+    /**
+     * 转换后的变更后的值，转换所有可见列后创建Map视图
+     *
+     * @return Map
+     */
+    public Map<String, Serializable> getConvertedAfter() {
+        if (afterRow == null) {
+            return Collections.emptyMap();
+        }
+        if (convertedAfterRow == null) {
+            convertedAfterRow = new Serializable[afterRow.length];
+        }
+        return new RowMap(schema, convertAll(afterRow, convertedAfterRow), columnMask);
+    }
+
+    /**
+     * 变更前的行数据，替换后清空转换缓存
+     *
+     * @param beforeRow beforeRow
+     */
+    public void setBeforeRow(Serializable[] beforeRow) {
+        this.beforeRow = beforeRow;
+        this.convertedBeforeRow = null;
+    }
+
+    /**
+     * 变更后的行数据，替换后清空转换缓存
+     *
+     * @param afterRow afterRow
+     */
+    public void setAfterRow(Serializable[] afterRow) {
+        this.afterRow = afterRow;
+        this.convertedAfterRow = null;
+    }
+
+    /**
+     * 列的值是否在本次更新中发生变化
+     *
+     * @param columnName columnName
+     * @return boolean
+     */
+    public boolean isChanged(String columnName) {
+        int index = changedColumns == null ? -1 : schema.indexOf(columnName);
+        return index >= 0 && changedColumns.get(index);
+    }
+
+    /**
+     * 只保留发生变化的列和主键列，getBefore()/getAfter() 只返回这些列
+     */
+    public void retainChangedColumns() {
+        if (changedColumns == null) {
+            return;
+        }
+        BitSet mask = (BitSet) changedColumns.clone();
+        for (int index : schema.getPrimaryKeyIndexes()) {
+            mask.set(index);
+        }
+        this.columnMask = mask;
+    }
+
+    /**
+     * 存储字段--类型
+     *
+     * @return Map
+     */
+    public Map<String, TableColumn> getColumns() {
+        return schema.getColumns();
+    }
+
+    /**
+     * 按列名取值
+     *
+     * @param row        row
+     * @param columnName columnName
+     * @return Serializable
+     */
+    private Serializable getValue(Serializable[] row, String columnName) {
+        int index = row == null ? -1 : schema.indexOf(columnName);
+        return index < 0 || (columnMask != null && !columnMask.get(index)) ? null : row[index];
+    }
+
+    /**
+     * 转换一列，null不转换；多个监听器线程同时转换同一列时结果相同，缓存的竞争是无害的
+     *
+     * @param row       row
+     * @param converted 转换缓存
+     * @param index     index
+     * @return Serializable
+     */
+    private Serializable convert(Serializable[] row, Serializable[] converted, int index) {
+        Serializable value = row[index];
+        if (value == null) {
+            return null;
+        }
+        Serializable result = converted[index];
+        if (result == null) {
+            BinLogValueConverters.Converter[] converters = schema.getConverters();
+            result = index < converters.length ? converters[index].convert(value) : value;
+            converted[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * 转换所有可见列
+     *
+     * @param row       row
+     * @param converted 转换缓存
+     * @return 转换缓存
+     */
+    private Serializable[] convertAll(Serializable[] row, Serializable[] converted) {
+        for (int i = 0; i < row.length; i++) {
+            if (columnMask == null || columnMask.get(i)) {
+                convert(row, converted, i);
+            }
+        }
+        return converted;
+    }
+
     /**
      * 新增或者删除操作数据格式化
      *
      * @param dbTableName dbTableName
      * @param row         row
-     * @param columnMap   columnMap
+     * @param schema      schema
      * @param event       event
      * @param eventType   eventType
      * @return BinLogItem
      */
-    public static BinLogItem itemFromInsertOrDeleted(String dbTableName, Serializable[] row, Map<String, TableColumn> columnMap,
+    public static BinLogItem itemFromInsertOrDeleted(String dbTableName, Serializable[] row, TableSchema schema,
                                                      Event event, EventType eventType) {
-        if (null == row || null == columnMap) {
+        return itemFromInsertOrDeleted(dbTableName, row, null, schema, event, eventType);
+    }
+
+    /**
+     * 新增或者删除操作数据格式化
+     *
+     * @param dbTableName     dbTableName
+     * @param row             row
+     * @param includedColumns 行数据中包含的列（binlog_row_image非FULL时只包含部分列），为null时表示全部列
+     * @param schema          schema
+     * @param event           event
+     * @param eventType       eventType
+     * @return BinLogItem
+     */
+    public static BinLogItem itemFromInsertOrDeleted(String dbTableName, Serializable[] row, BitSet includedColumns,
+                                                     TableSchema schema, Event event, EventType eventType) {
+        return itemFromInsertOrDeleted(dbTableName, row, includedColumns, null, schema, event, eventType);
+    }
+
+    /**
+     * 新增或者删除操作数据格式化，只保留投影中的列
+     *
+     * @param dbTableName     dbTableName
+     * @param row             row
+     * @param includedColumns 行数据中包含的列（binlog_row_image非FULL时只包含部分列），为null时表示全部列
+     * @param projection      需要保留的列下标，为null时保留全部列
+     * @param schema          schema
+     * @param event           event
+     * @param eventType       eventType
+     * @return BinLogItem
+     */
+    public static BinLogItem itemFromInsertOrDeleted(String dbTableName, Serializable[] row, BitSet includedColumns,
+                                                     BitSet projection, TableSchema schema, Event event,
+                                                     EventType eventType) {
+        if (null == row || null == schema) {
             return null;
         }
-        if (row.length != columnMap.size()) {
+        row = expandRow(row, includedColumns, projection, schema);
+        if (row == null) {
             return null;
         }
         // 初始化Item
-        BinLogItem item = new BinLogItem(dbTableName, event, eventType, columnMap);
-
-        Map<String, Serializable> beOrAf = new HashMap<>();
-
-        columnMap.forEach((key, tableColumn) -> beOrAf.put(key, row[tableColumn.getOrdinalPosition() - 1]));
+        BinLogItem item = new BinLogItem(dbTableName, event, eventType, schema);
+        item.columnMask = projection;
 
         // 写操作放after，删操作放before
         if (isWrite(eventType)) {
-            item.after = beOrAf;
+            item.afterRow = row;
         }
         if (isDelete(eventType)) {
-            item.before = beOrAf;
+            item.beforeRow = row;
         }
         return item;
     }
@@ -129,33 +444,122 @@ public class BinLogItem implements Serializable {
      *
      * @param dbTableName dbTableName
      * @param mapEntry    mapEntry
-     * @param columnMap   columnMap
+     * @param schema      schema
      * @param event       event
      * @param eventType   eventType
      * @return BinLogItem
      */
     public static BinLogItem itemFromUpdate(String dbTableName, Map.Entry<Serializable[], Serializable[]> mapEntry,
-                                            Map<String, TableColumn> columnMap,
+                                            TableSchema schema,
+                                            Event event,
+                                            EventType eventType) {
+        return itemFromUpdate(dbTableName, mapEntry, null, null, schema, event, eventType);
+    }
+
+    /**
+     * 更新操作数据格式化
+     *
+     * @param dbTableName    dbTableName
+     * @param mapEntry       mapEntry
+     * @param includedBefore 变更前镜像包含的列，为null时表示全部列
+     * @param includedAfter  变更后镜像包含的列，为null时表示全部列
+     * @param schema         schema
+     * @param event          event
+     * @param eventType      eventType
+     * @return BinLogItem
+     */
+    public static BinLogItem itemFromUpdate(String dbTableName, Map.Entry<Serializable[], Serializable[]> mapEntry,
+                                            BitSet includedBefore, BitSet includedAfter,
+                                            TableSchema schema,
                                             Event event,
                                             EventType eventType) {
-        if (null == mapEntry || null == columnMap) {
+        return itemFromUpdate(dbTableName, mapEntry, includedBefore, includedAfter, null, schema, event, eventType);
+    }
+
+    /**
+     * 更新操作数据格式化，只保留投影中的列，变化的列也只在投影中计算
+     *
+     * @param dbTableName    dbTableName
+     * @param mapEntry       mapEntry
+     * @param includedBefore 变更前镜像包含的列，为null时表示全部列
+     * @param includedAfter  变更后镜像包含的列，为null时表示全部列
+     * @param projection     需要保留的列下标，为null时保留全部列
+     * @param schema         schema
+     * @param event          event
+     * @param eventType      eventType
+     * @return BinLogItem
+     */
+    public static BinLogItem itemFromUpdate(String dbTableName, Map.Entry<Serializable[], Serializable[]> mapEntry,
+                                            BitSet includedBefore, BitSet includedAfter, BitSet projection,
+                                            TableSchema schema, Event event, EventType eventType) {
+        if (null == mapEntry || null == schema) {
             return null;
         }
+        Serializable[] be = expandRow(mapEntry.getKey(), includedBefore, projection, schema);
+        Serializable[] af = expandRow(mapEntry.getValue(), includedAfter, projection, schema);
+        if (be == null || af == null) {
+            return null;
+        }
+        int columnCount = schema.getColumnCount();
+        BitSet changed = new BitSet(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            if (projection != null && !projection.get(i)) {
+                continue;
+            }
+            boolean inBefore = includedBefore == null || includedBefore.get(i);
+            boolean inAfter = includedAfter == null || includedAfter.get(i);
+            if (!inAfter) {
+                // 变更后镜像不包含的列没有被修改，用变更前的值补齐（此时af已是展开后的新数组）
+                af[i] = be[i];
+            } else if (!inBefore || !Objects.deepEquals(be[i], af[i])) {
+                changed.set(i);
+            }
+        }
         // 初始化Item
-        BinLogItem item = new BinLogItem(dbTableName, event, eventType, columnMap);
-
-        Map<String, Serializable> be = new HashMap<>();
-        Map<String, Serializable> af = new HashMap<>();
-
-        columnMap.forEach((key, tableColumn) -> {
-            be.put(key, mapEntry.getKey()[tableColumn.getOrdinalPosition() - 1]);
-            af.put(key, mapEntry.getValue()[tableColumn.getOrdinalPosition() - 1]);
-        });
-
-        item.before = be;
-        item.after = af;
+        BinLogItem item = new BinLogItem(dbTableName, event, eventType, schema);
+        item.beforeRow = be;
+        item.afterRow = af;
+        item.changedColumns = changed;
+        item.columnMask = projection;
         return item;
     }
 
-}
+    /**
+     * 将只包含部分列的行数据展开为按列下标存放的完整行，缺失的列和投影外的列为null；列数与表结构不一致时返回null。
+     * 有投影时总是复制到新数组，原始行数组中投影外的大字段（TEXT/JSON等）随事件一起回收，不被 BinLogItem 持有
+     *
+     * @param row             row
+     * @param includedColumns includedColumns
+     * @param projection      projection
+     * @param schema          schema
+     * @return Serializable[]
+     */
+    private static Serializable[] expandRow(Serializable[] row, BitSet includedColumns, BitSet projection,
+                                            TableSchema schema) {
+        int columnCount = schema.getColumnCount();
+        boolean fullImage = includedColumns == null || includedColumns.cardinality() == columnCount;
+        if (fullImage ? row.length != columnCount
+                : row.length != includedColumns.cardinality() || includedColumns.length() > columnCount) {
+            return null;
+        }
+        if (fullImage && projection == null) {
+            return row;
+        }
+        Serializable[] expanded = new Serializable[columnCount];
+        if (fullImage) {
+            for (int index = projection.nextSetBit(0); index >= 0 && index < columnCount; index = projection.nextSetBit(index + 1)) {
+                expanded[index] = row[index];
+            }
+            return expanded;
+        }
+        int i = 0;
+        for (int index = includedColumns.nextSetBit(0); index >= 0; index = includedColumns.nextSetBit(index + 1)) {
+            if (projection == null || projection.get(index)) {
+                expanded[index] = row[i];
+            }
+            i++;
+        }
+        return expanded;
+    }
 
+}
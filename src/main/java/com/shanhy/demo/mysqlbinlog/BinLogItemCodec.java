@@ -0,0 +1,823 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * BinLogItem 的紧凑二进制编码，用于spool和进程间传输，比Java序列化小且快：
+ * <ul>
+ *     <li>以块为单位编码，表结构在块内第一次出现时写一次定义（列名、类型、主键），之后的行只写表结构编号</li>
+ *     <li>position、serverId 用varint，nextPosition 写与 position 的差，timestamp 写与块内上一行的差</li>
+ *     <li>行数据为 null位图 + 非null列的值，值按实际类型编码（整数zigzag varint、字符串UTF-8、decimal为scale + 非标度值等），
+ *     其它JDK值类型（java.time、java.math 中的类型和 Character）退化为Java序列化</li>
+ * </ul>
+ * 编码的数据可能来自其它进程，Java序列化只接受上述JDK值类型：编码时拒绝其它类型，解码时由 ObjectInputFilter 拒绝其它类，
+ * 不会在反序列化时实例化任意类
+ * 编码器和解码器可以重复使用，解码器按 dbTable 缓存表结构，定义相同时复用同一个 TableSchema 实例。两者都不是线程安全的
+ *
+ * @author 单红宇
+ * @date 2026/10/17 22:00
+ */
+public final class BinLogItemCodec {
+
+    /**
+     * 块内的记录类型：表结构定义
+     */
+    private static final int TAG_SCHEMA = 1;
+
+    /**
+     * 块内的记录类型：行变更
+     */
+    private static final int TAG_ITEM = 2;
+
+    private static final int FLAG_TIMESTAMP = 1;
+    private static final int FLAG_SERVER_ID = 1 << 1;
+    private static final int FLAG_POSITION = 1 << 2;
+    private static final int FLAG_NEXT_POSITION = 1 << 3;
+    private static final int FLAG_BEFORE = 1 << 4;
+    private static final int FLAG_AFTER = 1 << 5;
+    private static final int FLAG_CHANGED = 1 << 6;
+    private static final int FLAG_COLUMN_MASK = 1 << 7;
+    private static final int FLAG_DB_TABLE = 1 << 8;
+    private static final int FLAG_EVENT_TYPE_NAME = 1 << 9;
+
+    private static final int COLUMN_PRIMARY_KEY = 1;
+    private static final int COLUMN_TYPE = 1 << 1;
+    private static final int COLUMN_CHARSET = 1 << 2;
+
+    private static final int VALUE_LONG = 1;
+    private static final int VALUE_INTEGER = 2;
+    private static final int VALUE_SHORT = 3;
+    private static final int VALUE_BYTE = 4;
+    private static final int VALUE_STRING = 5;
+    private static final int VALUE_BYTES = 6;
+    private static final int VALUE_DECIMAL_LONG = 7;
+    private static final int VALUE_DECIMAL = 8;
+    private static final int VALUE_DOUBLE = 9;
+    private static final int VALUE_FLOAT = 10;
+    private static final int VALUE_TRUE = 11;
+    private static final int VALUE_FALSE = 12;
+    private static final int VALUE_BIT_SET = 13;
+    private static final int VALUE_SQL_TIMESTAMP = 14;
+    private static final int VALUE_SQL_DATE = 15;
+    private static final int VALUE_SQL_TIME = 16;
+    private static final int VALUE_DATE = 17;
+    private static final int VALUE_BIG_INTEGER = 18;
+    private static final int VALUE_JAVA = 19;
+
+    /**
+     * Java序列化的列值允许的类：JDK值类型和它们序列化时引用的类（如 java.time.Ser），限制深度和大小
+     */
+    private static final ObjectInputFilter JAVA_VALUE_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=4;maxrefs=64;maxbytes=65536;java.lang.Number;java.lang.Character;java.lang.String;java.lang.Enum;"
+                    + "java.math.*;java.time.*;!*");
+
+    /**
+     * 行事件类型的编号，其它类型按名称编码
+     */
+    private static final EventType[] ROW_EVENT_TYPES = {
+            EventType.WRITE_ROWS, EventType.EXT_WRITE_ROWS, EventType.PRE_GA_WRITE_ROWS,
+            EventType.UPDATE_ROWS, EventType.EXT_UPDATE_ROWS, EventType.PRE_GA_UPDATE_ROWS,
+            EventType.DELETE_ROWS, EventType.EXT_DELETE_ROWS, EventType.PRE_GA_DELETE_ROWS
+    };
+
+    private BinLogItemCodec() {
+    }
+
+    /**
+     * 编码为一个独立的块
+     *
+     * @param items items
+     * @return byte[]
+     */
+    public static byte[] encode(List<BinLogItem> items) {
+        Encoder encoder = new Encoder();
+        items.forEach(encoder::write);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * 解码一个块
+     *
+     * @param bytes bytes
+     * @return List
+     */
+    public static List<BinLogItem> decode(byte[] bytes) {
+        Decoder decoder = new Decoder();
+        decoder.reset(bytes, 0, bytes.length);
+        List<BinLogItem> items = new ArrayList<>();
+        while (decoder.hasRemaining()) {
+            items.add(decoder.read());
+        }
+        return items;
+    }
+
+    /**
+     * 行事件类型编号
+     *
+     * @param eventType eventType
+     * @return 编号，不是行事件时返回-1
+     */
+    private static int eventTypeCode(EventType eventType) {
+        for (int i = 0; i < ROW_EVENT_TYPES.length; i++) {
+            if (ROW_EVENT_TYPES[i] == eventType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 编码器：reset 后开始新的块
+     */
+    public static final class Encoder {
+
+        /**
+         * 块内的表结构编号
+         */
+        private final Map<TableSchema, Integer> schemaIds = new IdentityHashMap<>();
+
+        /**
+         * 块内上一行的时间戳
+         */
+        private long lastTimestamp;
+
+        /**
+         * buffer
+         */
+        private byte[] buffer = new byte[4096];
+
+        /**
+         * 已写入的字节数
+         */
+        private int size;
+
+        /**
+         * 开始新的块
+         */
+        public void reset() {
+            schemaIds.clear();
+            lastTimestamp = 0;
+            size = 0;
+        }
+
+        /**
+         * 已写入的字节数
+         *
+         * @return int
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 复制已写入的字节
+         *
+         * @return byte[]
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        /**
+         * 把已写入的字节写到 target 的指定位置，不改变 target 的position
+         *
+         * @param target target
+         * @param index  index
+         */
+        public void copyTo(ByteBuffer target, int index) {
+            target.put(index, buffer, 0, size);
+        }
+
+        /**
+         * 写入字符串，与 Decoder.readString 对应
+         *
+         * @param value value
+         */
+        public void writeString(String value) {
+            int length = value.length();
+            ensureCapacity(5 + length * 3);
+            int lengthIndex = size;
+            // 先按ASCII预留1字节长度，非ASCII或者较长时再移动
+            size++;
+            int start = size;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[size++] = (byte) c;
+                } else {
+                    size = start;
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    size = lengthIndex;
+                    writeBytes(bytes);
+                    return;
+                }
+            }
+            int written = size - start;
+            if (written < 0x80) {
+                buffer[lengthIndex] = (byte) written;
+            } else {
+                byte[] bytes = Arrays.copyOfRange(buffer, start, size);
+                size = lengthIndex;
+                writeBytes(bytes);
+            }
+        }
+
+        /**
+         * 写入一行变更
+         *
+         * @param item item
+         */
+        public void write(BinLogItem item) {
+            TableSchema schema = item.getSchema();
+            if (schema == null) {
+                throw new IllegalArgumentException("BinLogItem没有表结构：" + item.getDbTable());
+            }
+            Integer schemaId = schemaIds.get(schema);
+            if (schemaId == null) {
+                schemaId = schemaIds.size();
+                schemaIds.put(schema, schemaId);
+                writeSchema(schemaId, schema);
+            }
+            int eventTypeCode = eventTypeCode(item.getEventType());
+            int flags = 0;
+            flags |= item.getTimestamp() != null ? FLAG_TIMESTAMP : 0;
+            flags |= item.getServerId() != null ? FLAG_SERVER_ID : 0;
+            flags |= item.getPosition() != null ? FLAG_POSITION : 0;
+            flags |= item.getNextPosition() != null ? FLAG_NEXT_POSITION : 0;
+            flags |= item.getBeforeRow() != null ? FLAG_BEFORE : 0;
+            flags |= item.getAfterRow() != null ? FLAG_AFTER : 0;
+            flags |= item.getChangedColumns() != null ? FLAG_CHANGED : 0;
+            flags |= item.getColumnMask() != null ? FLAG_COLUMN_MASK : 0;
+            flags |= !schema.getDbTable().equals(item.getDbTable()) ? FLAG_DB_TABLE : 0;
+            flags |= eventTypeCode < 0 ? FLAG_EVENT_TYPE_NAME : 0;
+            writeByte(TAG_ITEM);
+            writeVarLong(schemaId);
+            writeVarLong(flags);
+            if (eventTypeCode < 0) {
+                writeString(item.getEventType() == null ? "" : item.getEventType().name());
+            } else {
+                writeByte(eventTypeCode);
+            }
+            if ((flags & FLAG_DB_TABLE) != 0) {
+                writeString(item.getDbTable());
+            }
+            if ((flags & FLAG_TIMESTAMP) != 0) {
+                writeVarLong(zigzag(item.getTimestamp() - lastTimestamp));
+                lastTimestamp = item.getTimestamp();
+            }
+            if ((flags & FLAG_SERVER_ID) != 0) {
+                writeVarLong(item.getServerId());
+            }
+            long position = 0;
+            if ((flags & FLAG_POSITION) != 0) {
+                position = item.getPosition();
+                writeVarLong(position);
+            }
+            if ((flags & FLAG_NEXT_POSITION) != 0) {
+                writeVarLong(zigzag(item.getNextPosition() - position));
+            }
+            if ((flags & FLAG_CHANGED) != 0) {
+                writeBitSet(item.getChangedColumns());
+            }
+            if ((flags & FLAG_COLUMN_MASK) != 0) {
+                writeBitSet(item.getColumnMask());
+            }
+            if ((flags & FLAG_BEFORE) != 0) {
+                writeRow(item.getBeforeRow());
+            }
+            if ((flags & FLAG_AFTER) != 0) {
+                writeRow(item.getAfterRow());
+            }
+        }
+
+        /**
+         * 表结构定义：列按下标顺序写入名称、类型、标记（是否主键、是否有完整类型和字符集）以及完整类型和字符集
+         *
+         * @param schemaId schemaId
+         * @param schema   schema
+         */
+        private void writeSchema(int schemaId, TableSchema schema) {
+            writeByte(TAG_SCHEMA);
+            writeVarLong(schemaId);
+            writeString(schema.getDbTable());
+            Map<String, TableColumn> columns = schema.getColumns();
+            writeVarLong(columns.size());
+            for (TableColumn column : columns.values()) {
+                writeVarLong(column.getOrdinalPosition());
+                writeString(column.getColumnName());
+                writeString(column.getDataType() == null ? "" : column.getDataType());
+                int columnFlags = (column.isPrimaryKey() ? COLUMN_PRIMARY_KEY : 0)
+                        | (column.getColumnType() != null ? COLUMN_TYPE : 0)
+                        | (column.getCharset() != null ? COLUMN_CHARSET : 0);
+                writeByte(columnFlags);
+                if (column.getColumnType() != null) {
+                    writeString(column.getColumnType());
+                }
+                if (column.getCharset() != null) {
+                    writeString(column.getCharset());
+                }
+            }
+        }
+
+        /**
+         * 行：长度、null位图、非null列的值
+         *
+         * @param row row
+         */
+        private void writeRow(Serializable[] row) {
+            writeVarLong(row.length);
+            int bitmapBytes = (row.length + 7) >>> 3;
+            ensureCapacity(bitmapBytes);
+            for (int i = 0; i < bitmapBytes; i++) {
+                int b = 0;
+                for (int j = 0, index = i << 3; j < 8 && index < row.length; j++, index++) {
+                    if (row[index] == null) {
+                        b |= 1 << j;
+                    }
+                }
+                buffer[size++] = (byte) b;
+            }
+            for (Serializable value : row) {
+                if (value != null) {
+                    writeValue(value);
+                }
+            }
+        }
+
+        /**
+         * 按实际类型写入值
+         *
+         * @param value value
+         */
+        private void writeValue(Serializable value) {
+            if (value instanceof Long v) {
+                writeByte(VALUE_LONG);
+                writeVarLong(zigzag(v));
+            } else if (value instanceof Integer v) {
+                writeByte(VALUE_INTEGER);
+                writeVarLong(zigzag(v));
+            } else if (value instanceof String v) {
+                writeByte(VALUE_STRING);
+                writeString(v);
+            } else if (value instanceof BigDecimal v) {
+                writeDecimal(v);
+            } else if (value instanceof byte[] v) {
+                writeByte(VALUE_BYTES);
+                writeBytes(v);
+            } else if (value instanceof java.sql.Timestamp v) {
+                writeByte(VALUE_SQL_TIMESTAMP);
+                writeVarLong(zigzag(v.getTime()));
+                writeVarLong(v.getNanos());
+            } else if (value instanceof java.sql.Date v) {
+                writeByte(VALUE_SQL_DATE);
+                writeVarLong(zigzag(v.getTime()));
+            } else if (value instanceof java.sql.Time v) {
+                writeByte(VALUE_SQL_TIME);
+                writeVarLong(zigzag(v.getTime()));
+            } else if (value.getClass() == java.util.Date.class) {
+                writeByte(VALUE_DATE);
+                writeVarLong(zigzag(((java.util.Date) value).getTime()));
+            } else if (value instanceof Short v) {
+                writeByte(VALUE_SHORT);
+                writeVarLong(zigzag(v));
+            } else if (value instanceof Byte v) {
+                writeByte(VALUE_BYTE);
+                writeByte(v);
+            } else if (value instanceof Double v) {
+                writeByte(VALUE_DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits(v), 8);
+            } else if (value instanceof Float v) {
+                writeByte(VALUE_FLOAT);
+                writeFixedLong(Float.floatToRawIntBits(v), 4);
+            } else if (value instanceof Boolean v) {
+                writeByte(v ? VALUE_TRUE : VALUE_FALSE);
+            } else if (value instanceof BitSet v) {
+                writeByte(VALUE_BIT_SET);
+                writeBitSet(v);
+            } else if (value instanceof BigInteger v) {
+                writeByte(VALUE_BIG_INTEGER);
+                writeBytes(v.toByteArray());
+            } else if (isJavaValue(value.getClass())) {
+                writeByte(VALUE_JAVA);
+                writeBytes(javaSerialize(value));
+            } else {
+                throw new IllegalArgumentException("不支持编码的列值类型：" + value.getClass().getName());
+            }
+        }
+
+        /**
+         * decimal：非标度值在long范围内时写varint，否则写字节
+         *
+         * @param value value
+         */
+        private void writeDecimal(BigDecimal value) {
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                writeByte(VALUE_DECIMAL_LONG);
+                writeVarLong(zigzag(value.scale()));
+                writeVarLong(zigzag(unscaled.longValue()));
+            } else {
+                writeByte(VALUE_DECIMAL);
+                writeVarLong(zigzag(value.scale()));
+                writeBytes(unscaled.toByteArray());
+            }
+        }
+
+        /**
+         * BitSet：字节数 + 小端字节
+         *
+         * @param bitSet bitSet
+         */
+        private void writeBitSet(BitSet bitSet) {
+            int bytes = (bitSet.length() + 7) >>> 3;
+            writeVarLong(bytes);
+            ensureCapacity(bytes);
+            for (int i = 0; i < bytes; i++) {
+                int b = 0;
+                for (int j = 0; j < 8; j++) {
+                    if (bitSet.get((i << 3) + j)) {
+                        b |= 1 << j;
+                    }
+                }
+                buffer[size++] = (byte) b;
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeFixedLong(long value, int bytes) {
+            ensureCapacity(bytes);
+            for (int i = 0; i < bytes; i++) {
+                buffer[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        /**
+         * 可以按Java序列化编码的JDK值类型，与解码时的 JAVA_VALUE_FILTER 一致
+         *
+         * @param type type
+         * @return boolean
+         */
+        private static boolean isJavaValue(Class<?> type) {
+            String packageName = type.getPackageName();
+            return type == Character.class || "java.math".equals(packageName) || "java.time".equals(packageName);
+        }
+
+        private static byte[] javaSerialize(Serializable value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                output.writeObject(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException("序列化列值失败：" + value.getClass(), e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * 解码器：reset 后解码新的块
+     */
+    public static final class Decoder {
+
+        /**
+         * 表结构缓存，key为dbTable，定义相同时跨块复用
+         */
+        private final Map<String, TableSchema> schemaCache = new HashMap<>();
+
+        /**
+         * 块内的表结构，下标为表结构编号
+         */
+        private final List<TableSchema> schemas = new ArrayList<>();
+
+        /**
+         * 块内上一行的时间戳
+         */
+        private long lastTimestamp;
+
+        private byte[] buffer;
+
+        private int index;
+
+        private int limit;
+
+        /**
+         * 开始解码新的块
+         *
+         * @param bytes  bytes
+         * @param offset offset
+         * @param length length
+         */
+        public void reset(byte[] bytes, int offset, int length) {
+            this.buffer = bytes;
+            this.index = offset;
+            this.limit = offset + length;
+            this.schemas.clear();
+            this.lastTimestamp = 0;
+        }
+
+        /**
+         * 是否还有未读取的行
+         *
+         * @return boolean
+         */
+        public boolean hasRemaining() {
+            return index < limit;
+        }
+
+        /**
+         * 读取字符串，与 Encoder.writeString 对应
+         *
+         * @return String
+         */
+        public String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buffer, index, length, StandardCharsets.UTF_8);
+            index += length;
+            return value;
+        }
+
+        /**
+         * 读取下一行变更，之前的表结构定义一并读取
+         *
+         * @return BinLogItem
+         */
+        public BinLogItem read() {
+            int tag = readByte();
+            while (tag == TAG_SCHEMA) {
+                readSchema();
+                tag = readByte();
+            }
+            if (tag != TAG_ITEM) {
+                throw new IllegalStateException("BinLogItem编码格式错误，tag=" + tag);
+            }
+            TableSchema schema = schemas.get((int) readVarLong());
+            int flags = (int) readVarLong();
+            EventType eventType;
+            if ((flags & FLAG_EVENT_TYPE_NAME) != 0) {
+                String name = readString();
+                eventType = name.isEmpty() ? null : EventType.valueOf(name);
+            } else {
+                eventType = ROW_EVENT_TYPES[readByte()];
+            }
+            String dbTable = (flags & FLAG_DB_TABLE) != 0 ? readString() : schema.getDbTable();
+            BinLogItem item = new BinLogItem(dbTable, eventType, schema);
+            if ((flags & FLAG_TIMESTAMP) != 0) {
+                lastTimestamp += unzigzag(readVarLong());
+                item.setTimestamp(lastTimestamp);
+            }
+            if ((flags & FLAG_SERVER_ID) != 0) {
+                item.setServerId(readVarLong());
+            }
+            long position = 0;
+            if ((flags & FLAG_POSITION) != 0) {
+                position = readVarLong();
+                item.setPosition(position);
+            }
+            if ((flags & FLAG_NEXT_POSITION) != 0) {
+                item.setNextPosition(position + unzigzag(readVarLong()));
+            }
+            if ((flags & FLAG_CHANGED) != 0) {
+                item.setChangedColumns(readBitSet());
+            }
+            if ((flags & FLAG_COLUMN_MASK) != 0) {
+                item.setColumnMask(readBitSet());
+            }
+            if ((flags & FLAG_BEFORE) != 0) {
+                item.setBeforeRow(readRow());
+            }
+            if ((flags & FLAG_AFTER) != 0) {
+                item.setAfterRow(readRow());
+            }
+            return item;
+        }
+
+        /**
+         * 读取表结构定义，与缓存中的定义相同时复用缓存的实例
+         */
+        private void readSchema() {
+            int schemaId = (int) readVarLong();
+            String dbTable = readString();
+            int columnCount = (int) readVarLong();
+            int[] ordinals = new int[columnCount];
+            String[] names = new String[columnCount];
+            String[] dataTypes = new String[columnCount];
+            boolean[] primaryKeys = new boolean[columnCount];
+            String[] columnTypes = new String[columnCount];
+            String[] charsets = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                ordinals[i] = (int) readVarLong();
+                names[i] = readString();
+                dataTypes[i] = readString();
+                int columnFlags = readByte();
+                primaryKeys[i] = (columnFlags & COLUMN_PRIMARY_KEY) != 0;
+                columnTypes[i] = (columnFlags & COLUMN_TYPE) != 0 ? readString() : null;
+                charsets[i] = (columnFlags & COLUMN_CHARSET) != 0 ? readString() : null;
+            }
+            TableSchema schema = schemaCache.get(dbTable);
+            if (schema == null || !sameColumns(schema, ordinals, names, dataTypes, primaryKeys, columnTypes, charsets)) {
+                int dot = dbTable.indexOf('.');
+                String db = dot < 0 ? null : dbTable.substring(0, dot);
+                String table = dbTable.substring(dot + 1);
+                Map<String, TableColumn> columns = new LinkedHashMap<>();
+                for (int i = 0; i < columnCount; i++) {
+                    TableColumn column = new TableColumn(db, table, ordinals[i], names[i], dataTypes[i], primaryKeys[i]);
+                    column.setColumnType(columnTypes[i]);
+                    column.setCharset(charsets[i]);
+                    columns.put(names[i], column);
+                }
+                schema = new TableSchema(dbTable, columns);
+                schemaCache.put(dbTable, schema);
+            }
+            while (schemas.size() <= schemaId) {
+                schemas.add(null);
+            }
+            schemas.set(schemaId, schema);
+        }
+
+        /**
+         * 缓存的表结构与定义是否一致
+         */
+        private static boolean sameColumns(TableSchema schema, int[] ordinals, String[] names, String[] dataTypes,
+                                           boolean[] primaryKeys, String[] columnTypes, String[] charsets) {
+            Map<String, TableColumn> columns = schema.getColumns();
+            if (columns.size() != names.length) {
+                return false;
+            }
+            int i = 0;
+            for (TableColumn column : columns.values()) {
+                if (column.getOrdinalPosition() != ordinals[i] || !column.getColumnName().equals(names[i])
+                        || !dataTypes[i].equals(column.getDataType() == null ? "" : column.getDataType())
+                        || column.isPrimaryKey() != primaryKeys[i]
+                        || !Objects.equals(column.getColumnType(), columnTypes[i])
+                        || !Objects.equals(column.getCharset(), charsets[i])) {
+                    return false;
+                }
+                i++;
+            }
+            return true;
+        }
+
+        private Serializable[] readRow() {
+            int length = (int) readVarLong();
+            Serializable[] row = new Serializable[length];
+            int bitmapStart = index;
+            index += (length + 7) >>> 3;
+            for (int i = 0; i < length; i++) {
+                if ((buffer[bitmapStart + (i >>> 3)] & (1 << (i & 7))) == 0) {
+                    row[i] = readValue();
+                }
+            }
+            return row;
+        }
+
+        private Serializable readValue() {
+            int type = readByte();
+            return switch (type) {
+                case VALUE_LONG -> unzigzag(readVarLong());
+                case VALUE_INTEGER -> (int) unzigzag(readVarLong());
+                case VALUE_STRING -> readString();
+                case VALUE_DECIMAL_LONG -> {
+                    int scale = (int) unzigzag(readVarLong());
+                    yield BigDecimal.valueOf(unzigzag(readVarLong()), scale);
+                }
+                case VALUE_DECIMAL -> {
+                    int scale = (int) unzigzag(readVarLong());
+                    yield new BigDecimal(new BigInteger(readBytes()), scale);
+                }
+                case VALUE_BYTES -> readBytes();
+                case VALUE_SQL_TIMESTAMP -> {
+                    java.sql.Timestamp timestamp = new java.sql.Timestamp(unzigzag(readVarLong()));
+                    timestamp.setNanos((int) readVarLong());
+                    yield timestamp;
+                }
+                case VALUE_SQL_DATE -> new java.sql.Date(unzigzag(readVarLong()));
+                case VALUE_SQL_TIME -> new java.sql.Time(unzigzag(readVarLong()));
+                case VALUE_DATE -> new java.util.Date(unzigzag(readVarLong()));
+                case VALUE_SHORT -> (short) unzigzag(readVarLong());
+                case VALUE_BYTE -> (byte) readByte();
+                case VALUE_DOUBLE -> Double.longBitsToDouble(readFixedLong(8));
+                case VALUE_FLOAT -> Float.intBitsToFloat((int) readFixedLong(4));
+                case VALUE_TRUE -> Boolean.TRUE;
+                case VALUE_FALSE -> Boolean.FALSE;
+                case VALUE_BIT_SET -> readBitSet();
+                case VALUE_BIG_INTEGER -> new BigInteger(readBytes());
+                case VALUE_JAVA -> javaDeserialize(readBytes());
+                default -> throw new IllegalStateException("BinLogItem编码格式错误，value type=" + type);
+            };
+        }
+
+        private BitSet readBitSet() {
+            int bytes = (int) readVarLong();
+            BitSet bitSet = new BitSet(bytes << 3);
+            for (int i = 0; i < bytes; i++) {
+                int b = buffer[index++] & 0xFF;
+                for (int j = 0; b != 0; j++, b >>>= 1) {
+                    if ((b & 1) != 0) {
+                        bitSet.set((i << 3) + j);
+                    }
+                }
+            }
+            return bitSet;
+        }
+
+        private byte[] readBytes() {
+            int length = (int) readVarLong();
+            byte[] bytes = Arrays.copyOfRange(buffer, index, index + length);
+            index += length;
+            return bytes;
+        }
+
+        private int readByte() {
+            if (index >= limit) {
+                throw new IllegalStateException("BinLogItem编码格式错误，数据不完整");
+            }
+            return buffer[index++] & 0xFF;
+        }
+
+        private long readFixedLong(int bytes) {
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value |= (long) (buffer[index++] & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        static Serializable javaDeserialize(byte[] bytes) {
+            try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                input.setObjectInputFilter(JAVA_VALUE_FILTER);
+                return (Serializable) input.readObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException("反序列化列值失败", e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("反序列化列值失败", e);
+            }
+        }
+    }
+
+}
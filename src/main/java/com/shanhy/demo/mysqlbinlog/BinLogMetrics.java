@@ -0,0 +1,418 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
+import static com.github.shyiko.mysql.binlog.event.EventType.isUpdate;
+
+/**
+ * binlog处理链路的 Micrometer 指标，通过 actuator 的 /actuator/metrics、/actuator/prometheus 暴露：
+ * <ul>
+ *     <li>binlog.replication.lag：最近一个事件的时间戳与处理时间的差（毫秒），收到心跳（已追上主库）时为0</li>
+ *     <li>binlog.events / binlog.rows：按表和操作类型统计的行事件数和行数</li>
+ *     <li>binlog.delivery.latency：事件时间戳到所有监听器（包括攒批的批量监听器、异步监听器）处理完成的端到端耗时，按表统计</li>
+ *     <li>binlog.listener.latency：每个监听器 onEvent/onEvents/onTransaction 的耗时直方图，同一个类中的多个lambda按注册顺序编号区分</li>
+ *     <li>binlog.deserialize.time / binlog.deserialize.bytes：行事件反序列化耗时和字节数</li>
+ *     <li>binlog.checkpoint.flush：checkpoint刷新耗时</li>
+ *     <li>binlog.dispatch.queue.size：分发队列中等待执行的任务数</li>
+ *     <li>binlog.spool.backlog / binlog.spool.segments：spool中最慢的游标落后的字节数和段数量</li>
+ *     <li>binlog.checkpoint.watermark.pending：已读取但监听器还未全部处理完成的事件数</li>
+ * </ul>
+ * 行事件计数在binlog读取线程中记录，表维度的指标按dbTable缓存，每个事件只做一次Map查找。
+ * 多数据源共用同一个 MeterRegistry，{@link #forSource(String)} 返回的指标都带有 source 标签。所有指标都在绑定到处理器时注册，
+ * 多数据源时根对象只用来创建各数据源的指标，不注册没有 source 标签的同名指标（Prometheus 中同名指标的标签必须一致）
+ *
+ * @author 单红宇
+ * @date 2026/10/17 19:10
+ */
+public class BinLogMetrics {
+
+    /**
+     * registry
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * 所有指标的公共标签
+     */
+    private final Tags tags;
+
+    /**
+     * 最近一个事件的复制延迟（毫秒）
+     */
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    /**
+     * 表维度的指标，key为dbTable
+     */
+    private final Map<String, TableMeters> tableMeters = new ConcurrentHashMap<>();
+
+    /**
+     * 监听器耗时的 listener 标签，key为监听器的类，所有数据源共用
+     */
+    private final ListenerNames listenerNames;
+
+    /**
+     * BinLogMetrics
+     *
+     * @param registry registry
+     */
+    public BinLogMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty(), new ListenerNames());
+    }
+
+    /**
+     * BinLogMetrics
+     *
+     * @param registry      registry
+     * @param tags          所有指标的公共标签
+     * @param listenerNames listenerNames
+     */
+    private BinLogMetrics(MeterRegistry registry, Tags tags, ListenerNames listenerNames) {
+        this.registry = registry;
+        this.tags = tags;
+        this.listenerNames = listenerNames;
+    }
+
+    /**
+     * 不输出任何指标
+     *
+     * @return BinLogMetrics
+     */
+    public static BinLogMetrics noop() {
+        return new BinLogMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * 同一个 MeterRegistry 上某个数据源的指标，带有 source 标签
+     *
+     * @param source 数据源名称
+     * @return BinLogMetrics
+     */
+    public BinLogMetrics forSource(String source) {
+        return new BinLogMetrics(registry, tags.and("source", source), listenerNames);
+    }
+
+    /**
+     * 绑定复制延迟，每个复制连接（处理器）一个，同一个对象上重复绑定时为同一个指标
+     */
+    public void bindReplicationLag() {
+        Gauge.builder("binlog.replication.lag", lagMillis, AtomicLong::get)
+                .description("最近一个事件的时间戳与处理时间的差")
+                .baseUnit("milliseconds")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 绑定分发队列
+     *
+     * @param dispatcher dispatcher
+     */
+    public void bindDispatcher(BinLogDispatcher dispatcher) {
+        Gauge.builder("binlog.dispatch.queue.size", dispatcher, BinLogDispatcher::getQueuedTaskCount)
+                .description("分发队列中等待执行的任务数")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 绑定行事件反序列化统计
+     *
+     * @param deserializers deserializers
+     */
+    public void bindDeserializers(FilteringRowsDeserializers deserializers) {
+        FunctionTimer.builder("binlog.deserialize.time", deserializers,
+                        FilteringRowsDeserializers::getDecodedEvents, FilteringRowsDeserializers::getDecodeNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("订阅表行事件的反序列化耗时")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("binlog.deserialize.bytes", deserializers, FilteringRowsDeserializers::getDecodedBytes)
+                .tag("result", "decoded")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("binlog.deserialize.bytes", deserializers, FilteringRowsDeserializers::getSkippedBytes)
+                .tag("result", "skipped")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 绑定checkpoint存储
+     *
+     * @param checkpointStore checkpointStore
+     */
+    public void bindCheckpointStore(BinLogCheckpointStore checkpointStore) {
+        FunctionTimer.builder("binlog.checkpoint.flush", checkpointStore,
+                        BinLogCheckpointStore::getFlushCount, BinLogCheckpointStore::getFlushNanosTotal,
+                        TimeUnit.NANOSECONDS)
+                .description("checkpoint刷新耗时")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 绑定spool
+     *
+     * @param spool spool
+     */
+    public void bindSpool(BinLogSpool spool) {
+        Gauge.builder("binlog.spool.backlog", spool, BinLogSpool::getBacklogBytes)
+                .description("spool中最慢的游标落后的字节数")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("binlog.spool.segments", spool, BinLogSpool::getSegmentCount)
+                .description("spool的段数量")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 绑定checkpoint水位
+     *
+     * @param watermark watermark
+     */
+    public void bindWatermark(BinLogWatermark watermark) {
+        Gauge.builder("binlog.checkpoint.watermark.pending", watermark, BinLogWatermark::getPendingCount)
+                .description("已读取但监听器还未全部处理完成的事件数")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 记录复制延迟：心跳表示主库没有更多事件，延迟为0；其他时间戳为0的事件（如连接时的ROTATE）不记录
+     *
+     * @param header header
+     */
+    public void recordLag(EventHeader header) {
+        long timestamp = header.getTimestamp();
+        if (header.getEventType() == EventType.HEARTBEAT) {
+            lagMillis.set(0);
+        } else if (timestamp > 0) {
+            lagMillis.set(Math.max(0, System.currentTimeMillis() - timestamp));
+        }
+    }
+
+    /**
+     * 记录一个行事件
+     *
+     * @param dbTable   dbTable
+     * @param eventType eventType
+     * @param rowCount  行数
+     */
+    public void recordRows(String dbTable, EventType eventType, int rowCount) {
+        int operation = isUpdate(eventType) ? 1 : isDelete(eventType) ? 2 : 0;
+        TableMeters meters = getTableMeters(dbTable);
+        meters.events[operation].increment();
+        meters.rows[operation].increment(rowCount);
+    }
+
+    /**
+     * 记录端到端耗时：事件时间戳到所有监听器处理完成
+     *
+     * @param dbTable   dbTable
+     * @param timestamp 事件时间戳
+     */
+    public void recordDelivery(String dbTable, Long timestamp) {
+        if (timestamp != null && timestamp > 0) {
+            getTableMeters(dbTable).delivery.record(Math.max(0, System.currentTimeMillis() - timestamp),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 包装监听器，记录每次回调的耗时，批量监听器、异步监听器包装后类型不变
+     *
+     * @param listener listener
+     * @return BinLogListener
+     */
+    public BinLogListener timed(BinLogListener listener) {
+        Timer timer = listenerTimer(listener);
+        if (listener instanceof BinLogBatchListener batchListener) {
+            return (BinLogBatchListener) items -> {
+                long start = System.nanoTime();
+                try {
+                    batchListener.onEvents(items);
+                } finally {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            };
+        }
+        if (listener instanceof BinLogAsyncListener asyncListener) {
+            // 异步监听器记录到完成为止的耗时
+            return (BinLogAsyncListener) item -> {
+                long start = System.nanoTime();
+                CompletionStage<?> stage = asyncListener.onEventAsync(item);
+                if (stage == null) {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return null;
+                }
+                return stage.whenComplete((result, e) -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+            };
+        }
+        return item -> {
+            long start = System.nanoTime();
+            try {
+                listener.onEvent(item);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * 包装事务监听器，记录每次回调的耗时
+     *
+     * @param listener listener
+     * @return BinLogTransactionListener
+     */
+    public BinLogTransactionListener timedTransaction(BinLogTransactionListener listener) {
+        Timer timer = listenerTimer(listener);
+        return transaction -> {
+            long start = System.nanoTime();
+            try {
+                listener.onTransaction(transaction);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * 监听器耗时直方图，按监听器类名区分
+     *
+     * @param listener listener
+     * @return Timer
+     */
+    private Timer listenerTimer(Object listener) {
+        return Timer.builder("binlog.listener.latency")
+                .description("监听器回调耗时")
+                .tag("listener", listenerNames.get(listener.getClass()))
+                .publishPercentileHistogram()
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 获取表维度的指标
+     *
+     * @param dbTable dbTable
+     * @return TableMeters
+     */
+    private TableMeters getTableMeters(String dbTable) {
+        TableMeters meters = tableMeters.get(dbTable);
+        return meters != null ? meters : tableMeters.computeIfAbsent(dbTable, key -> new TableMeters(registry, tags, key));
+    }
+
+    /**
+     * 监听器的标签名称：类的简单名称；lambda的类名由JVM生成，按声明所在的类和首次注册的顺序命名为 Declaring$lambda-1、Declaring$lambda-2，
+     * 同一个lambda（同一个类）多次注册时名称相同
+     */
+    private static final class ListenerNames {
+
+        /**
+         * 已命名的类
+         */
+        private final Map<Class<?>, String> names = new HashMap<>();
+
+        /**
+         * 每个声明类中已命名的lambda数量
+         */
+        private final Map<String, Integer> lambdaCounts = new HashMap<>();
+
+        /**
+         * 获取类的标签名称
+         *
+         * @param type type
+         * @return String
+         */
+        synchronized String get(Class<?> type) {
+            return names.computeIfAbsent(type, key -> {
+                String name = key.getName();
+                name = name.substring(name.lastIndexOf('.') + 1);
+                int lambda = name.indexOf("$$Lambda");
+                if (lambda < 0) {
+                    return name;
+                }
+                String declaring = name.substring(0, lambda);
+                return declaring + "$lambda-" + lambdaCounts.merge(declaring, 1, Integer::sum);
+            });
+        }
+    }
+
+    /**
+     * 表维度的指标，下标0、1、2分别为 insert、update、delete
+     */
+    private static final class TableMeters {
+
+        /**
+         * 操作类型
+         */
+        private static final List<String> OPERATIONS = List.of("insert", "update", "delete");
+
+        /**
+         * 行事件数
+         */
+        private final Counter[] events = new Counter[OPERATIONS.size()];
+
+        /**
+         * 行数
+         */
+        private final Counter[] rows = new Counter[OPERATIONS.size()];
+
+        /**
+         * 端到端耗时
+         */
+        private final Timer delivery;
+
+        /**
+         * TableMeters
+         *
+         * @param registry registry
+         * @param tags     公共标签
+         * @param dbTable  dbTable
+         */
+        TableMeters(MeterRegistry registry, Tags tags, String dbTable) {
+            for (int i = 0; i < OPERATIONS.size(); i++) {
+                events[i] = Counter.builder("binlog.events")
+                        .tag("table", dbTable)
+                        .tag("type", OPERATIONS.get(i))
+                        .tags(tags)
+                        .register(registry);
+                rows[i] = Counter.builder("binlog.rows")
+                        .tag("table", dbTable)
+                        .tag("type", OPERATIONS.get(i))
+                        .tags(tags)
+                        .register(registry);
+            }
+            this.delivery = Timer.builder("binlog.delivery.latency")
+                    .description("事件时间戳到监听器处理完成的耗时")
+                    .tag("table", dbTable)
+                    .publishPercentileHistogram()
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+}
@@ -40,6 +40,11 @@ public class BinLogProperties {
      */
     private String password;
 
+    /**
+     * 复制客户端的server id，0表示使用默认值（65535），同一台MySQL上的复制客户端不能重复
+     */
+    private long serverId;
+
     /**
      * databaseName
      */
@@ -55,4 +60,456 @@ public class BinLogProperties {
      */
     private List<String> tableList;
 
+    /**
+     * 订阅规则，格式为 库名.表名，库名和表名可以使用通配符 * 和 ?，如 orders_*.order_item_*，以 regex: 开头时为正则，如 regex:orders_\d+.order_item_[0-9]+，与 databaseName + tableList 合并生效
+     */
+    private List<String> subscriptions;
+
+    /**
+     * 更新事件只输出发生变化的列和主键列
+     */
+    private boolean updateDeltaOnly;
+
+    /**
+     * 表结构来源
+     */
+    private SchemaSource schemaSource = SchemaSource.TABLE_MAP;
+
+    /**
+     * 事件分发配置
+     */
+    private Dispatch dispatch = new Dispatch();
+
+    /**
+     * 批量监听器攒批配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 事务模式配置
+     */
+    private Transaction transaction = new Transaction();
+
+    /**
+     * checkpoint配置
+     */
+    private Checkpoint checkpoint = new Checkpoint();
+
+    /**
+     * 是否输出 Micrometer 指标
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * 离线回放配置
+     */
+    private Replay replay = new Replay();
+
+    /**
+     * 本地spool配置
+     */
+    private Spool spool = new Spool();
+
+    /**
+     * 初始快照配置
+     */
+    private Snapshot snapshot = new Snapshot();
+
+    /**
+     * 断线重连配置
+     */
+    private Reconnect reconnect = new Reconnect();
+
+    /**
+     * 多数据源，不为空时每个数据源独立复制（各自的连接、checkpoint、表结构缓存），共用分发工作线程池和指标；
+     * 数据源中未配置的项使用上面的配置
+     */
+    private List<Source> sources;
+
+    /**
+     * 事件分发配置：binlog读取线程只负责解析，监听器在工作线程池中执行
+     */
+    @Data
+    public static class Dispatch {
+
+        /**
+         * 工作线程数，为0时在binlog读取线程中同步执行监听器
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 每个分区的队列容量，队列满时阻塞binlog读取线程（背压）
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 分区方式
+         */
+        private PartitionMode partitionMode = PartitionMode.TABLE;
+
+        /**
+         * 按主键分区时每张表的分区数
+         */
+        private int primaryKeyPartitions = 4;
+
+    }
+
+    /**
+     * 批量监听器攒批配置，两项都不配置时每个行事件作为一个批次
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * 每批最大条数，小于等于0表示不按条数攒批
+         */
+        private int maxSize;
+
+        /**
+         * 每批最长等待时间（毫秒），小于等于0表示不按时间攒批
+         */
+        private long maxWaitMillis;
+
+        /**
+         * 回调前按 表 + 主键 合并批次内同一行的多次变更，只保留最终结果，见 BinLogCoalescer
+         */
+        private boolean coalesce;
+
+    }
+
+    /**
+     * 事务模式配置：按事务缓存行变更，提交时整体投递给事务监听器（表监听器按表分片接收），
+     * 事务的所有监听器处理完成后才推进position（总是使用checkpoint水位）
+     */
+    @Data
+    public static class Transaction {
+
+        /**
+         * 是否开启事务模式
+         */
+        private boolean enabled;
+
+        /**
+         * 单个事务在内存中缓存的最大行数，超过后以 BinLogItemCodec 编码溢写到磁盘，小于等于0表示不溢写
+         */
+        private int spillThreshold = 10000;
+
+        /**
+         * 溢写目录
+         */
+        private String spillDirectory = System.getProperty("java.io.tmpdir");
+
+    }
+
+    /**
+     * checkpoint配置：binlogFilename/position 保存到本地内存映射文件
+     */
+    @Data
+    public static class Checkpoint {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = true;
+
+        /**
+         * checkpoint文件
+         */
+        private String file = "./binlog-checkpoint.dat";
+
+        /**
+         * 刷新方式
+         */
+        private BinLogCheckpointStore.FlushMode flushMode = BinLogCheckpointStore.FlushMode.INTERVAL;
+
+        /**
+         * 刷新间隔（毫秒），仅 flushMode=INTERVAL 时有效
+         */
+        private long flushIntervalMillis = 1000;
+
+        /**
+         * fsync策略
+         */
+        private BinLogCheckpointStore.FsyncPolicy fsyncPolicy = BinLogCheckpointStore.FsyncPolicy.INTERVAL;
+
+        /**
+         * fsync间隔（毫秒），仅 fsyncPolicy=INTERVAL 时有效
+         */
+        private long fsyncIntervalMillis = 1000;
+
+        /**
+         * 按监听器确认推进checkpoint：position只推进到所有监听器（包括异步监听器）都处理完成的连续事件。
+         * 开启spool时总是使用，确认发生在行变更fsync到spool之后（监听器的进度保存在spool游标中）。
+         * 关闭后由监听器自己保存position，只适合 dispatch.threads=0 且没有异步、攒批监听器的同步处理，
+         * 工作线程数大于0或者开启 gtid 时仍使用水位（见 MySQLBinLogHandler.usesWatermark）
+         */
+        private boolean watermark = true;
+
+        /**
+         * 同时保存已处理事务的GTID集合（需要 gtid_mode=ON），重启和重连时按GTID集合续传，主从切换后文件名和position不同也能找到正确的位置
+         */
+        private boolean gtid = false;
+
+    }
+
+    /**
+     * 离线回放配置：开启后从本地binlog文件读取事件交给相同的监听器处理，不连接MySQL复制，也不更新checkpoint
+     */
+    @Data
+    public static class Replay {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled;
+
+        /**
+         * 按顺序回放的binlog文件路径
+         */
+        private List<String> files;
+
+        /**
+         * 第一个文件的起始position（事件边界），0表示从头开始
+         */
+        private long startPosition;
+
+        /**
+         * 最后一个文件的结束position，0表示到文件末尾
+         */
+        private long stopPosition;
+
+        /**
+         * 起始时间戳（毫秒），从第一个不早于该时间的事件开始，0表示不限制
+         */
+        private long startTimestamp;
+
+        /**
+         * 结束时间戳（毫秒），到第一个不早于该时间的事件结束，0表示不限制
+         */
+        private long stopTimestamp;
+
+        /**
+         * 并行方式
+         */
+        private ReplayParallelism parallelism = ReplayParallelism.NONE;
+
+        /**
+         * 并行回放的线程数
+         */
+        private int threads = 4;
+
+    }
+
+    /**
+     * 本地spool配置：开启后行变更先追加到本地分段日志，由独立的读取线程投递给监听器，慢的监听器不阻塞binlog连接
+     */
+    @Data
+    public static class Spool {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled;
+
+        /**
+         * spool目录
+         */
+        private String directory = "./binlog-spool";
+
+        /**
+         * 段大小（字节），所有游标都越过的段会被删除
+         */
+        private long segmentBytes = 64L * 1024 * 1024;
+
+        /**
+         * fsync策略，段写满时总是fsync；binlog的checkpoint只推进到已经fsync的记录（NEVER 时写入即推进）
+         */
+        private BinLogCheckpointStore.FsyncPolicy fsyncPolicy = BinLogCheckpointStore.FsyncPolicy.INTERVAL;
+
+        /**
+         * fsync间隔（毫秒），仅 fsyncPolicy=INTERVAL 时有效
+         */
+        private long fsyncIntervalMillis = 1000;
+
+    }
+
+    /**
+     * 初始快照配置：没有checkpoint时先读取订阅表的当前数据（作为新增事件投递给监听器），再从快照对应的binlog位置开始复制
+     */
+    @Data
+    public static class Snapshot {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled;
+
+        /**
+         * 并行读取的连接数
+         */
+        private int threads = 4;
+
+        /**
+         * 每个主键区间的最大行数
+         */
+        private int chunkSize = 10000;
+
+        /**
+         * 等待全局读锁的超时时间（秒），超时后快照失败，避免长事务期间 FLUSH TABLES WITH READ LOCK 一直阻塞写入
+         */
+        private int lockWaitTimeoutSeconds = 10;
+
+    }
+
+    /**
+     * 断线重连配置：连接断开后在同一个处理器上按退避时间重连，保留已加载的表结构和分发队列，
+     * 从最后一个完整事务之后继续（开启 checkpoint.gtid 时按GTID集合），已投递的行不重复投递
+     */
+    @Data
+    public static class Reconnect {
+
+        /**
+         * 是否开启，关闭时使用 BinaryLogClient 自带的 keepAlive 重连
+         */
+        private boolean enabled = true;
+
+        /**
+         * 第一次重连的退避时间（毫秒），之后每次翻倍，实际等待时间在 [退避时间/2, 退避时间] 之间随机
+         */
+        private long initialBackoffMillis = 500;
+
+        /**
+         * 最大退避时间（毫秒）
+         */
+        private long maxBackoffMillis = 30000;
+
+        /**
+         * 心跳间隔（毫秒），超过3个心跳间隔没有收到任何事件时认为连接已失效并重连，0表示不开启
+         */
+        private long heartbeatIntervalMillis = 10000;
+
+    }
+
+    /**
+     * 数据源：未配置的项使用 binlog.datasource 下的配置
+     */
+    @Data
+    @ToString(exclude = "password")
+    public static class Source {
+
+        /**
+         * 名称，用于日志、指标的 source 标签，以及默认的checkpoint文件名和spool目录
+         */
+        private String name;
+
+        /**
+         * host
+         */
+        private String host;
+
+        /**
+         * port
+         */
+        private Integer port;
+
+        /**
+         * username
+         */
+        private String username;
+
+        /**
+         * password
+         */
+        private String password;
+
+        /**
+         * 复制客户端的server id
+         */
+        private Long serverId;
+
+        /**
+         * databaseName
+         */
+        private String databaseName;
+
+        /**
+         * tableList
+         */
+        private List<String> tableList;
+
+        /**
+         * 订阅规则
+         */
+        private List<String> subscriptions;
+
+        /**
+         * checkpoint文件，默认在 checkpoint.file 的文件名后加上数据源名称
+         */
+        private String checkpointFile;
+
+        /**
+         * 同时占用的分发工作线程数上限，0表示 dispatch.threads 的一半（至少1个），一个数据源变慢时其它数据源仍有可用的工作线程
+         */
+        private int maxWorkers;
+
+    }
+
+    /**
+     * 回放的并行方式
+     */
+    public enum ReplayParallelism {
+
+        /**
+         * 按顺序回放所有文件
+         */
+        NONE,
+
+        /**
+         * 每个文件独立并行回放，文件之间的顺序不保证，适用于文件之间没有依赖的场景
+         */
+        FILES,
+
+        /**
+         * 每个订阅（table-list 中的表、subscriptions 中的规则）独立并行回放所有文件，同一张表内保持顺序
+         */
+        TABLES
+
+    }
+
+    /**
+     * 分区方式，同一分区内的事件严格按binlog顺序处理
+     */
+    public enum PartitionMode {
+
+        /**
+         * 按表分区
+         */
+        TABLE,
+
+        /**
+         * 按表+主键分区，同一行的变更保持有序，同一张表的不同行可并行处理；
+         * 修改和删除按变更前的主键分区，修改了主键的行排在旧主键之前的变更之后，但不与新主键之后的变更排序
+         */
+        PRIMARY_KEY
+
+    }
+
+    /**
+     * 表结构来源
+     */
+    public enum SchemaSource {
+
+        /**
+         * 优先使用 TABLE_MAP 事件中的列元数据（需要 MySQL 8.0 且 binlog_row_metadata=FULL），启动时不查询数据库，
+         * 元数据不完整的表按需从 INFORMATION_SCHEMA 加载
+         */
+        TABLE_MAP,
+
+        /**
+         * 启动时从 INFORMATION_SCHEMA 加载所有监听表的表结构，DDL后重新加载
+         */
+        JDBC
+
+    }
+
 }
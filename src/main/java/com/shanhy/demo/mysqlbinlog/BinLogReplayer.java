@@ -0,0 +1,286 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * 离线回放：从本地binlog文件读取事件交给 MySQLBinLogHandler 处理，监听器与实时复制相同，速度取决于磁盘而不是网络。
+ * 文件通过内存映射读取（超过2GB时使用缓冲流），起始position在读到 FORMAT_DESCRIPTION 事件后直接跳过，不解析中间的事件。
+ * <p>
+ * 起止条件与 mysqlbinlog 一致：从第一个文件的 startPosition（或第一个时间戳不早于 startTimestamp 的事件）开始，
+ * 到最后一个文件的 stopPosition（或第一个时间戳不早于 stopTimestamp 的事件）之前结束
+ *
+ * @author 单红宇
+ * @date 2026/10/17 20:20
+ */
+@Slf4j
+public class BinLogReplayer {
+
+    /**
+     * 缓冲流的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * 回放配置
+     */
+    private final BinLogProperties.Replay replay;
+
+    /**
+     * 按顺序回放的binlog文件
+     */
+    private final List<Path> files;
+
+    /**
+     * BinLogReplayer
+     *
+     * @param replay 回放配置
+     */
+    public BinLogReplayer(BinLogProperties.Replay replay) {
+        if (replay.getFiles() == null || replay.getFiles().isEmpty()) {
+            throw new IllegalArgumentException("回放的binlog文件不能为空");
+        }
+        this.replay = replay;
+        this.files = replay.getFiles().stream().map(Path::of).toList();
+    }
+
+    /**
+     * 回放：FILES 模式下每个文件使用独立的handler并行回放（文件之间的顺序不保证），否则使用一个handler按顺序回放所有文件
+     *
+     * @param handlerFactory 创建已注册监听器的handler
+     * @throws IOException IOException
+     */
+    public void replay(Supplier<MySQLBinLogHandler> handlerFactory) throws IOException {
+        if (replay.getParallelism() != BinLogProperties.ReplayParallelism.FILES || files.size() == 1) {
+            replay(List.of(handlerFactory));
+            return;
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            int index = i;
+            tasks.add(() -> replayFiles(handlerFactory.get(), List.of(index)));
+        }
+        runAll(tasks);
+    }
+
+    /**
+     * 回放：每个handler（通常订阅不同的表）按顺序读取所有文件，handler之间并行
+     *
+     * @param handlerFactories 创建已注册监听器的handler
+     * @throws IOException IOException
+     */
+    public void replay(List<Supplier<MySQLBinLogHandler>> handlerFactories) throws IOException {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            indexes.add(i);
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        handlerFactories.forEach(factory -> tasks.add(() -> replayFiles(factory.get(), indexes)));
+        runAll(tasks);
+    }
+
+    /**
+     * 执行回放任务，任一任务失败时抛出异常
+     *
+     * @param tasks tasks
+     * @throws IOException IOException
+     */
+    private void runAll(List<Runnable> tasks) throws IOException {
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(replay.getThreads(), tasks.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            tasks.forEach(task -> futures.add(executor.submit(task)));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("回放被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("回放失败", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 用一个handler按顺序回放文件，结束后停止handler（处理完分发队列中的事件）
+     *
+     * @param handler handler
+     * @param indexes 文件下标
+     */
+    private void replayFiles(MySQLBinLogHandler handler, List<Integer> indexes) {
+        // 按时间戳开始时，开始之后的文件不再判断起始时间
+        boolean[] started = {replay.getStartTimestamp() <= 0};
+        try {
+            for (int index : indexes) {
+                if (!replayFile(handler, index, started)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            try {
+                handler.stop();
+            } catch (IOException e) {
+                log.warn("停止回放handler失败", e);
+            }
+        }
+    }
+
+    /**
+     * 回放一个文件
+     *
+     * @param handler handler
+     * @param index   文件下标
+     * @param started 是否已经开始，按时间戳开始时在文件之间传递
+     * @return 是否继续回放后面的文件
+     * @throws IOException IOException
+     */
+    private boolean replayFile(MySQLBinLogHandler handler, int index, boolean[] started) throws IOException {
+        Path file = files.get(index);
+        long startPosition = index == 0 ? replay.getStartPosition() : 0;
+        long stopPosition = index == files.size() - 1 ? replay.getStopPosition() : 0;
+        long startTimestamp = replay.getStartTimestamp();
+        long stopTimestamp = replay.getStopTimestamp();
+        long begin = System.nanoTime();
+        long events = 0;
+        try (InputStream in = open(file);
+             BinaryLogFileReader reader = new BinaryLogFileReader(in, handler.createEventDeserializer())) {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                EventHeaderV4 header = event.getHeader();
+                EventType eventType = header.getEventType();
+                if (eventType == EventType.FORMAT_DESCRIPTION && startPosition > header.getNextPosition()) {
+                    // 格式描述事件之后直接跳到起始position，FORMAT_DESCRIPTION 决定了校验和等格式，必须先读取
+                    skipFully(in, startPosition - header.getNextPosition());
+                    continue;
+                }
+                if (stopPosition > 0 && header.getPosition() >= stopPosition) {
+                    return false;
+                }
+                if (stopTimestamp > 0 && header.getTimestamp() >= stopTimestamp) {
+                    return false;
+                }
+                if (!started[0] && header.getTimestamp() >= startTimestamp) {
+                    started[0] = true;
+                }
+                // 开始之前只处理 TABLE_MAP，保证开始后的行事件能找到表
+                if (started[0] || eventType == EventType.TABLE_MAP) {
+                    handler.onEvent(event);
+                    events++;
+                }
+            }
+        } finally {
+            log.info("回放binlog文件{}完成，事件{}个，耗时{}ms", file, events, (System.nanoTime() - begin) / 1_000_000);
+        }
+        return true;
+    }
+
+    /**
+     * 打开binlog文件，2GB以内使用内存映射
+     *
+     * @param file file
+     * @return InputStream
+     * @throws IOException IOException
+     */
+    private static InputStream open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() <= Integer.MAX_VALUE) {
+                return new MappedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        return new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+    }
+
+    /**
+     * 跳过指定字节数
+     *
+     * @param in in
+     * @param n  n
+     * @throws IOException IOException
+     */
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                throw new IOException("起始position超出文件长度");
+            }
+            n -= skipped;
+        }
+    }
+
+    /**
+     * 基于内存映射的输入流
+     */
+    private static final class MappedInputStream extends InputStream {
+
+        /**
+         * buffer
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * MappedInputStream
+         *
+         * @param buffer buffer
+         */
+        MappedInputStream(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+}
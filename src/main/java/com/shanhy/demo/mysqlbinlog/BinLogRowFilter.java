@@ -0,0 +1,524 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
+import static com.github.shyiko.mysql.binlog.event.EventType.isUpdate;
+import static com.github.shyiko.mysql.binlog.event.EventType.isWrite;
+
+/**
+ * 行过滤条件，注册监听器时指定，例如：
+ * <pre>
+ * BinLogRowFilter.create().eventTypes(EventType.UPDATE_ROWS).eq("status", "CANCELLED").changed("amount")
+ * </pre>
+ * 条件之间为“且”的关系。eq、range 对新增、修改取修改后的值，对删除取删除前的值；
+ * changed 只约束修改事件，新增、删除视为所有列都发生了变化。
+ * 过滤条件按表结构编译为列下标（{@link Compiled}），直接在binlog的原始行数组上判断，不满足的行不会创建 BinLogItem。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 18:50
+ */
+@Slf4j
+public final class BinLogRowFilter {
+
+    /**
+     * 等值条件的列
+     */
+    private final List<String> eqColumns = new ArrayList<>();
+
+    /**
+     * 等值条件的值
+     */
+    private final List<Object> eqValues = new ArrayList<>();
+
+    /**
+     * 范围条件的列
+     */
+    private final List<String> rangeColumns = new ArrayList<>();
+
+    /**
+     * 范围下限（包含），为null时不限制
+     */
+    private final List<Object> rangeMins = new ArrayList<>();
+
+    /**
+     * 范围上限（包含），为null时不限制
+     */
+    private final List<Object> rangeMaxs = new ArrayList<>();
+
+    /**
+     * 变化条件，每一组中任意一列变化即满足
+     */
+    private final List<String[]> changedColumns = new ArrayList<>();
+
+    /**
+     * 是否接收新增
+     */
+    private boolean writes = true;
+
+    /**
+     * 是否接收修改
+     */
+    private boolean updates = true;
+
+    /**
+     * 是否接收删除
+     */
+    private boolean deletes = true;
+
+    /**
+     * BinLogRowFilter
+     */
+    private BinLogRowFilter() {
+    }
+
+    /**
+     * 创建过滤条件
+     *
+     * @return BinLogRowFilter
+     */
+    public static BinLogRowFilter create() {
+        return new BinLogRowFilter();
+    }
+
+    /**
+     * 列等于指定值，值为null时匹配NULL
+     *
+     * @param column column
+     * @param value  value
+     * @return BinLogRowFilter
+     */
+    public BinLogRowFilter eq(String column, Object value) {
+        eqColumns.add(column);
+        eqValues.add(value);
+        return this;
+    }
+
+    /**
+     * 列在 [min, max] 范围内，min、max 为null时表示不限制，列为NULL时不满足
+     *
+     * @param column column
+     * @param min    min
+     * @param max    max
+     * @return BinLogRowFilter
+     */
+    public BinLogRowFilter range(String column, Object min, Object max) {
+        rangeColumns.add(column);
+        rangeMins.add(min);
+        rangeMaxs.add(max);
+        return this;
+    }
+
+    /**
+     * 修改事件中任意一列发生了变化
+     *
+     * @param columns columns
+     * @return BinLogRowFilter
+     */
+    public BinLogRowFilter changed(String... columns) {
+        changedColumns.add(columns.clone());
+        return this;
+    }
+
+    /**
+     * 只接收指定类型的事件，WRITE_ROWS、UPDATE_ROWS、DELETE_ROWS 分别包含对应的 EXT_ 类型
+     *
+     * @param eventTypes eventTypes
+     * @return BinLogRowFilter
+     */
+    public BinLogRowFilter eventTypes(EventType... eventTypes) {
+        this.writes = Arrays.stream(eventTypes).anyMatch(EventType::isWrite);
+        this.updates = Arrays.stream(eventTypes).anyMatch(EventType::isUpdate);
+        this.deletes = Arrays.stream(eventTypes).anyMatch(EventType::isDelete);
+        return this;
+    }
+
+    /**
+     * 按表结构编译
+     *
+     * @param schema 表结构，为null时不匹配任何行
+     * @return Compiled
+     */
+    public Compiled compile(TableSchema schema) {
+        return new Compiled(this, schema);
+    }
+
+    /**
+     * 编译后的过滤条件：列名已转换为列下标，期望值已按比较方式预处理
+     */
+    public static final class Compiled {
+
+        /**
+         * 类型不可比较
+         */
+        private static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+        /**
+         * 表结构缺少过滤条件中的列时不匹配任何行
+         */
+        private final boolean never;
+
+        /**
+         * 是否接收新增
+         */
+        private final boolean writes;
+
+        /**
+         * 是否接收修改
+         */
+        private final boolean updates;
+
+        /**
+         * 是否接收删除
+         */
+        private final boolean deletes;
+
+        /**
+         * 等值条件的列下标
+         */
+        private final int[] eqIndexes;
+
+        /**
+         * 等值条件的值
+         */
+        private final Object[] eqValues;
+
+        /**
+         * 范围条件的列下标
+         */
+        private final int[] rangeIndexes;
+
+        /**
+         * 范围下限
+         */
+        private final Object[] rangeMins;
+
+        /**
+         * 范围上限
+         */
+        private final Object[] rangeMaxs;
+
+        /**
+         * 变化条件的列下标
+         */
+        private final int[][] changedIndexes;
+
+        /**
+         * Compiled
+         *
+         * @param filter filter
+         * @param schema schema
+         */
+        private Compiled(BinLogRowFilter filter, TableSchema schema) {
+            this.writes = filter.writes;
+            this.updates = filter.updates;
+            this.deletes = filter.deletes;
+            boolean missing = schema == null;
+            this.eqIndexes = new int[filter.eqColumns.size()];
+            this.eqValues = new Object[eqIndexes.length];
+            for (int i = 0; i < eqIndexes.length; i++) {
+                eqIndexes[i] = schema == null ? -1 : schema.indexOf(filter.eqColumns.get(i));
+                eqValues[i] = normalize(filter.eqValues.get(i));
+                missing |= eqIndexes[i] < 0;
+            }
+            this.rangeIndexes = new int[filter.rangeColumns.size()];
+            this.rangeMins = new Object[rangeIndexes.length];
+            this.rangeMaxs = new Object[rangeIndexes.length];
+            for (int i = 0; i < rangeIndexes.length; i++) {
+                rangeIndexes[i] = schema == null ? -1 : schema.indexOf(filter.rangeColumns.get(i));
+                rangeMins[i] = normalize(filter.rangeMins.get(i));
+                rangeMaxs[i] = normalize(filter.rangeMaxs.get(i));
+                missing |= rangeIndexes[i] < 0;
+            }
+            this.changedIndexes = new int[filter.changedColumns.size()][];
+            for (int i = 0; i < changedIndexes.length; i++) {
+                String[] columns = filter.changedColumns.get(i);
+                changedIndexes[i] = new int[columns.length];
+                for (int j = 0; j < columns.length; j++) {
+                    changedIndexes[i][j] = schema == null ? -1 : schema.indexOf(columns[j]);
+                    missing |= changedIndexes[i][j] < 0;
+                }
+            }
+            this.never = missing;
+            if (missing && schema != null) {
+                log.warn("过滤条件中的列在表结构中不存在，不匹配任何行：{}", schema.getDbTable());
+            }
+        }
+
+        /**
+         * 过滤条件用到的列下标
+         *
+         * @return BitSet
+         */
+        public BitSet getColumnIndexes() {
+            BitSet columns = new BitSet();
+            for (int index : eqIndexes) {
+                setIfPresent(columns, index);
+            }
+            for (int index : rangeIndexes) {
+                setIfPresent(columns, index);
+            }
+            for (int[] group : changedIndexes) {
+                for (int index : group) {
+                    setIfPresent(columns, index);
+                }
+            }
+            return columns;
+        }
+
+        /**
+         * 判断 BinLogItem 是否满足条件
+         *
+         * @param item item
+         * @return boolean
+         */
+        public boolean test(BinLogItem item) {
+            return test(item.getEventType(), item.getBeforeRow(), null, item.getAfterRow(), null);
+        }
+
+        /**
+         * 在原始行数组上判断是否满足条件。
+         * binlog中的行只包含 included 中的列（按顺序紧凑排列），included 为null时行数组按列下标排列
+         *
+         * @param eventType      eventType
+         * @param before         修改前的行，新增时为null
+         * @param beforeIncluded before 包含的列
+         * @param after          修改后的行，删除时为null
+         * @param afterIncluded  after 包含的列
+         * @return boolean
+         */
+        public boolean test(EventType eventType, Serializable[] before, BitSet beforeIncluded,
+                            Serializable[] after, BitSet afterIncluded) {
+            if (never) {
+                return false;
+            }
+            boolean update = isUpdate(eventType);
+            if ((isWrite(eventType) && !writes) || (update && !updates) || (isDelete(eventType) && !deletes)) {
+                return false;
+            }
+            for (int i = 0; i < eqIndexes.length; i++) {
+                int index = eqIndexes[i];
+                if (!valueEquals(value(index, before, beforeIncluded, after, afterIncluded), eqValues[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < rangeIndexes.length; i++) {
+                Object value = value(rangeIndexes[i], before, beforeIncluded, after, afterIncluded);
+                if (value == null || !inRange(value, rangeMins[i], rangeMaxs[i])) {
+                    return false;
+                }
+            }
+            if (update) {
+                for (int[] indexes : changedIndexes) {
+                    if (!anyChanged(indexes, before, beforeIncluded, after, afterIncluded)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 任意一列发生变化，修改后的行不包含该列时视为未变化
+         *
+         * @param indexes        indexes
+         * @param before         before
+         * @param beforeIncluded beforeIncluded
+         * @param after          after
+         * @param afterIncluded  afterIncluded
+         * @return boolean
+         */
+        private static boolean anyChanged(int[] indexes, Serializable[] before, BitSet beforeIncluded,
+                                          Serializable[] after, BitSet afterIncluded) {
+            for (int index : indexes) {
+                int afterPosition = position(afterIncluded, index);
+                if (afterPosition < 0 || afterPosition >= after.length) {
+                    continue;
+                }
+                int beforePosition = position(beforeIncluded, index);
+                if (beforePosition < 0 || beforePosition >= before.length
+                        || !Objects.deepEquals(before[beforePosition], after[afterPosition])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 取列值：优先取修改后的行，修改后的行不包含该列时取修改前的行
+         *
+         * @param index          列下标
+         * @param before         before
+         * @param beforeIncluded beforeIncluded
+         * @param after          after
+         * @param afterIncluded  afterIncluded
+         * @return Object
+         */
+        private static Object value(int index, Serializable[] before, BitSet beforeIncluded,
+                                    Serializable[] after, BitSet afterIncluded) {
+            if (after != null) {
+                int position = position(afterIncluded, index);
+                if (position >= 0 && position < after.length) {
+                    return after[position];
+                }
+            }
+            if (before != null) {
+                int position = position(beforeIncluded, index);
+                if (position >= 0 && position < before.length) {
+                    return before[position];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 列下标在紧凑行数组中的位置，不包含该列时返回-1
+         *
+         * @param included included
+         * @param index    列下标
+         * @return int
+         */
+        private static int position(BitSet included, int index) {
+            if (included == null) {
+                return index;
+            }
+            if (!included.get(index)) {
+                return -1;
+            }
+            // 完整行镜像（binlog_row_image=FULL）时位置即下标
+            if (included.nextClearBit(0) > index) {
+                return index;
+            }
+            int position = 0;
+            for (int i = included.nextSetBit(0); i < index; i = included.nextSetBit(i + 1)) {
+                position++;
+            }
+            return position;
+        }
+
+        /**
+         * 期望值预处理：非整数的数值统一为 BigDecimal
+         *
+         * @param value value
+         * @return Object
+         */
+        private static Object normalize(Object value) {
+            if (value instanceof Number number && !isIntegral(number) && !(number instanceof BigDecimal)) {
+                return new BigDecimal(number.toString());
+            }
+            return value;
+        }
+
+        /**
+         * 值是否相等：数值按数值比较，byte[] 与字符串按UTF-8比较
+         *
+         * @param actual   actual
+         * @param expected expected
+         * @return boolean
+         */
+        private static boolean valueEquals(Object actual, Object expected) {
+            if (actual == null || expected == null) {
+                return actual == expected;
+            }
+            if (actual instanceof Number && expected instanceof Number) {
+                return compare(actual, expected) == 0;
+            }
+            if (actual instanceof byte[] bytes && expected instanceof String string) {
+                return Arrays.equals(bytes, string.getBytes(StandardCharsets.UTF_8));
+            }
+            return Objects.deepEquals(actual, expected);
+        }
+
+        /**
+         * 是否在 [min, max] 范围内
+         *
+         * @param value value
+         * @param min   min
+         * @param max   max
+         * @return boolean
+         */
+        private static boolean inRange(Object value, Object min, Object max) {
+            if (min != null) {
+                int result = compare(value, min);
+                if (result == INCOMPARABLE || result < 0) {
+                    return false;
+                }
+            }
+            if (max != null) {
+                int result = compare(value, max);
+                return result != INCOMPARABLE && result <= 0;
+            }
+            return true;
+        }
+
+        /**
+         * 比较大小，返回-1、0、1，类型不可比较时返回 INCOMPARABLE（不满足任何范围条件）
+         *
+         * @param actual   actual
+         * @param expected expected
+         * @return int
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static int compare(Object actual, Object expected) {
+            if (actual instanceof Number a && expected instanceof Number e) {
+                if (isIntegral(a) && isIntegral(e)) {
+                    return Long.compare(a.longValue(), e.longValue());
+                }
+                return toBigDecimal(a).compareTo(toBigDecimal(e));
+            }
+            if (actual instanceof byte[] bytes && expected instanceof String string) {
+                return Integer.signum(new String(bytes, StandardCharsets.UTF_8).compareTo(string));
+            }
+            if (actual instanceof Comparable comparable && actual.getClass() == expected.getClass()) {
+                return Integer.signum(comparable.compareTo(expected));
+            }
+            return INCOMPARABLE;
+        }
+
+        /**
+         * 列存在时设置下标
+         *
+         * @param columns columns
+         * @param index   index
+         */
+        private static void setIfPresent(BitSet columns, int index) {
+            if (index >= 0) {
+                columns.set(index);
+            }
+        }
+
+        /**
+         * 是否为整数类型
+         *
+         * @param number number
+         * @return boolean
+         */
+        private static boolean isIntegral(Number number) {
+            return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+        }
+
+        /**
+         * 转换为 BigDecimal
+         *
+         * @param number number
+         * @return BigDecimal
+         */
+        private static BigDecimal toBigDecimal(Number number) {
+            if (number instanceof BigDecimal bigDecimal) {
+                return bigDecimal;
+            }
+            return isIntegral(number) ? BigDecimal.valueOf(number.longValue()) : new BigDecimal(number.toString());
+        }
+    }
+
+}
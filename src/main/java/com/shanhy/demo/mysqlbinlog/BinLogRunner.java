@@ -1,13 +1,25 @@
 package com.shanhy.demo.mysqlbinlog;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * 乐游监听器
@@ -25,11 +37,16 @@ public class BinLogRunner implements CommandLineRunner, DisposableBean {
 
     private final BinLogProperties binLogProperties;
 
-    private MySQLBinLogHandler mysqlBinLogHandler;
-    private final SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener = new SaveBinlogFilenameAndPositionListener();
+    private final ObjectProvider<MeterRegistry> meterRegistry;
 
-    public BinLogRunner(BinLogProperties binLogProperties) {
+    private final List<MySQLBinLogHandler> mysqlBinLogHandlers = new CopyOnWriteArrayList<>();
+    private final List<BinLogCheckpointStore> checkpointStores = new CopyOnWriteArrayList<>();
+    // 多数据源共用的分发器（工作线程池）
+    private BinLogDispatcher sharedDispatcher;
+
+    public BinLogRunner(BinLogProperties binLogProperties, ObjectProvider<MeterRegistry> meterRegistry) {
         this.binLogProperties = binLogProperties;
+        this.meterRegistry = meterRegistry;
     }
 
     // 该变量用来观察执行顺序和记录累计处理次数
@@ -38,46 +55,276 @@ public class BinLogRunner implements CommandLineRunner, DisposableBean {
     @Override
     public void run(String... args) throws Exception {
 
-        // 初始化监听器
-        this.mysqlBinLogHandler = new MySQLBinLogHandler(binLogProperties);
+        // 初始化指标，没有 MeterRegistry 或者关闭指标时不输出
+        MeterRegistry registry = binLogProperties.isMetricsEnabled() ? meterRegistry.getIfAvailable() : null;
+        BinLogMetrics metrics = registry == null ? BinLogMetrics.noop() : new BinLogMetrics(registry);
+
+        // 离线回放，不连接复制，不更新checkpoint
+        if (binLogProperties.getReplay().isEnabled()) {
+            replay(metrics, createListener(binLogProperties, null));
+            return;
+        }
 
-        // 获取table集合
-        List<String> tableList = binLogProperties.getTableList();
-        if (tableList == null || tableList.isEmpty()) {
+        // 多数据源，每个数据源在独立的线程中复制
+        if (binLogProperties.getSources() != null && !binLogProperties.getSources().isEmpty()) {
+            runSources(metrics);
             return;
         }
+
+        // 初始化checkpoint存储
+        BinLogCheckpointStore checkpointStore = null;
+        if (binLogProperties.getCheckpoint().isEnabled()) {
+            checkpointStore = new BinLogCheckpointStore(binLogProperties.getCheckpoint());
+            checkpointStores.add(checkpointStore);
+            metrics.bindCheckpointStore(checkpointStore);
+        }
+        SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener = new SaveBinlogFilenameAndPositionListener(checkpointStore);
+
+        // 初始化监听器
+        MySQLBinLogHandler mysqlBinLogHandler = new MySQLBinLogHandler(binLogProperties, saveBinlogFilenameAndPositionListener, metrics);
+        mysqlBinLogHandlers.add(mysqlBinLogHandler);
+
         // 注册监听
-        tableList.forEach(table -> {
-            log.info("注册监听, tableName={}.{}", binLogProperties.getDatabaseName(), table);
-            try {
-                // 这里将所有表使用同一个处理器处理，实际项目中可能不同的表使用不同的处理
-                mysqlBinLogHandler.regListener(binLogProperties.getDatabaseName(), table, binLogItem -> {
-                    // 这里对最终封装好的BinLogItem对象进行处理
-                    // 如果你得数据并发量不是足够的大，在单线程能处理过来的情况下尽量不要选择多线程，
-                    // 否则你要充分考虑好多线程的执行顺序以及服务宕机后position不准确而导致重启后数据丢失问题，
-                    // 可以考虑将数据以Table为单元发送到MQ中处理，单个Table对应一个单线程处理程序防止执行顺序带来的数据问题。
-                    log.info("监听逻辑处理");
-                    // 代码略，这里进行监听逻辑的处理
-                    // log.info("BinLogItem={}", binLogItem);
-                    log.info("TableName={}", binLogItem.getDbTable());
-                    log.info("EventType={}", binLogItem.getEventType().name());
-                    log.info("{}. {} >>> {}", num.getAndIncrement(), binLogItem.getBefore().get("name"), binLogItem.getAfter().get("name"));
-
-                    // 在所有逻辑都处理完成后，更新存储position为nextPosition
-                    if(saveBinlogFilenameAndPositionListener != null)
-                        saveBinlogFilenameAndPositionListener.saveNextBinlogPosition(binLogItem.getNextPosition());
-                });
-            } catch (Exception e) {
-                log.error("BinLog监听异常：" + e);
-            }
-        });
+        if (!registerListeners(mysqlBinLogHandler, binLogProperties, createListener(binLogProperties, saveBinlogFilenameAndPositionListener))) {
+            return;
+        }
         // 多线程消费
         mysqlBinLogHandler.parse();
     }
 
+    /**
+     * 多数据源：每个数据源独立的复制连接、checkpoint和表结构缓存，共用分发工作线程池和指标（source标签区分），
+     * 每个数据源同时占用的工作线程数有上限
+     *
+     * @param metrics metrics
+     */
+    private void runSources(BinLogMetrics metrics) {
+        BinLogProperties.Dispatch dispatch = binLogProperties.getDispatch();
+        this.sharedDispatcher = new BinLogDispatcher(dispatch.getThreads(), dispatch.getQueueCapacity());
+        int defaultMaxWorkers = Math.max(1, dispatch.getThreads() / 2);
+        Set<String> names = new HashSet<>();
+        for (BinLogProperties.Source source : binLogProperties.getSources()) {
+            String name = source.getName();
+            if (name == null || name.isBlank() || !names.add(name)) {
+                throw new IllegalStateException("binlog.datasource.sources 的 name 未配置或者重复：" + name);
+            }
+            BinLogProperties properties = copySource(source);
+            BinLogMetrics sourceMetrics = metrics.forSource(name);
+            BinLogCheckpointStore checkpointStore = null;
+            if (properties.getCheckpoint().isEnabled()) {
+                checkpointStore = new BinLogCheckpointStore(properties.getCheckpoint());
+                checkpointStores.add(checkpointStore);
+                sourceMetrics.bindCheckpointStore(checkpointStore);
+            }
+            SaveBinlogFilenameAndPositionListener saveListener = new SaveBinlogFilenameAndPositionListener(checkpointStore);
+            MySQLBinLogHandler handler = new MySQLBinLogHandler(properties, saveListener, sourceMetrics,
+                    sharedDispatcher.newScope(source.getMaxWorkers() > 0 ? source.getMaxWorkers() : defaultMaxWorkers));
+            mysqlBinLogHandlers.add(handler);
+            if (!registerListeners(handler, properties, createListener(properties, saveListener))) {
+                log.warn("数据源{}没有监听的表", name);
+                continue;
+            }
+            new Thread(() -> {
+                try {
+                    handler.parse();
+                } catch (IOException e) {
+                    log.error("数据源{}复制失败", name, e);
+                }
+            }, "binlog-source-" + name).start();
+        }
+    }
+
+    /**
+     * 示例监听器
+     *
+     * @param properties                            数据源配置
+     * @param saveBinlogFilenameAndPositionListener 保存position，回放时为null
+     * @return BinLogListener
+     */
+    private BinLogListener createListener(BinLogProperties properties,
+                                          SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener) {
+        // 这里将所有表使用同一个处理器处理，实际项目中可能不同的表使用不同的处理
+        return binLogItem -> {
+            // 这里对最终封装好的BinLogItem对象进行处理
+            // 如果你得数据并发量不是足够的大，在单线程能处理过来的情况下尽量不要选择多线程，
+            // 否则你要充分考虑好多线程的执行顺序以及服务宕机后position不准确而导致重启后数据丢失问题，
+            // 可以考虑将数据以Table为单元发送到MQ中处理，单个Table对应一个单线程处理程序防止执行顺序带来的数据问题。
+            log.info("监听逻辑处理");
+            // 代码略，这里进行监听逻辑的处理
+            // log.info("BinLogItem={}", binLogItem);
+            log.info("TableName={}", binLogItem.getDbTable());
+            log.info("EventType={}", binLogItem.getEventType().name());
+            log.info("{}. {} >>> {}", num.getAndIncrement(), binLogItem.getBefore().get("name"), binLogItem.getAfter().get("name"));
+
+            // 在所有逻辑都处理完成后，更新存储position为nextPosition
+            // 事务模式下由处理器在事务提交后统一推进position，避免从事务中间恢复；
+            // 开启spool时由处理器在写入spool后推进position，监听器的进度保存在spool游标中；
+            // 使用水位时由处理器在所有监听器处理完成后按连续确认推进position
+            if(saveBinlogFilenameAndPositionListener != null
+                    && !properties.getSpool().isEnabled() && !MySQLBinLogHandler.usesWatermark(properties))
+                saveBinlogFilenameAndPositionListener.saveNextBinlogPosition(binLogItem.getNextPosition());
+        };
+    }
+
+    /**
+     * 注册 table-list 和 subscriptions 中的表的监听
+     *
+     * @param handler    handler
+     * @param properties properties
+     * @param listener   listener
+     * @return 是否有监听的表
+     */
+    private static boolean registerListeners(MySQLBinLogHandler handler, BinLogProperties properties, BinLogListener listener) {
+        // 获取table集合和订阅规则
+        List<String> tableList = properties.getTableList() == null ? List.of() : properties.getTableList();
+        List<String> subscriptions = properties.getSubscriptions() == null ? List.of() : properties.getSubscriptions();
+        tableList.forEach(table -> {
+            log.info("注册监听, tableName={}.{}", properties.getDatabaseName(), table);
+            handler.regListener(properties.getDatabaseName(), table, listener);
+        });
+        subscriptions.forEach(subscription -> {
+            log.info("注册监听, pattern={}", subscription);
+            handler.regListener(subscription, listener);
+        });
+        return !tableList.isEmpty() || !subscriptions.isEmpty();
+    }
+
+    /**
+     * 离线回放binlog文件，TABLES 模式下每个订阅使用独立的handler
+     *
+     * @param metrics  metrics
+     * @param listener listener
+     * @throws IOException IOException
+     */
+    private void replay(BinLogMetrics metrics, BinLogListener listener) throws IOException {
+        BinLogReplayer replayer = new BinLogReplayer(binLogProperties.getReplay());
+        long begin = System.currentTimeMillis();
+        if (binLogProperties.getReplay().getParallelism() == BinLogProperties.ReplayParallelism.TABLES) {
+            List<BinLogProperties> subscriptions = new ArrayList<>();
+            if (binLogProperties.getTableList() != null) {
+                binLogProperties.getTableList().forEach(table ->
+                        subscriptions.add(copySubscription(List.of(table), null)));
+            }
+            if (binLogProperties.getSubscriptions() != null) {
+                binLogProperties.getSubscriptions().forEach(pattern ->
+                        subscriptions.add(copySubscription(null, List.of(pattern))));
+            }
+            List<Supplier<MySQLBinLogHandler>> factories = new ArrayList<>();
+            subscriptions.forEach(properties -> factories.add(() -> {
+                MySQLBinLogHandler handler = new MySQLBinLogHandler(properties, null, metrics);
+                registerListeners(handler, properties, listener);
+                return handler;
+            }));
+            replayer.replay(factories);
+        } else {
+            BinLogProperties properties = copySubscription(binLogProperties.getTableList(), binLogProperties.getSubscriptions());
+            replayer.replay(() -> {
+                MySQLBinLogHandler handler = new MySQLBinLogHandler(properties, null, metrics);
+                registerListeners(handler, properties, listener);
+                return handler;
+            });
+        }
+        log.info("binlog回放完成，耗时{}ms", System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 复制配置，只保留指定的订阅，回放时不使用spool（多个handler不能共用spool目录）
+     *
+     * @param tableList     tableList
+     * @param subscriptions subscriptions
+     * @return BinLogProperties
+     */
+    private BinLogProperties copySubscription(List<String> tableList, List<String> subscriptions) {
+        BinLogProperties properties = copyProperties();
+        properties.setTableList(tableList);
+        properties.setSubscriptions(subscriptions);
+        properties.setSpool(new BinLogProperties.Spool());
+        return properties;
+    }
+
+    /**
+     * 复制 binlog.datasource 下的配置，嵌套的配置（dispatch、batch、checkpoint等）也复制，
+     * 每个数据源、每个回放的handler修改自己的配置不影响其它的
+     *
+     * @return BinLogProperties
+     */
+    private BinLogProperties copyProperties() {
+        BinLogProperties properties = new BinLogProperties();
+        BeanUtils.copyProperties(binLogProperties, properties);
+        properties.setDispatch(copy(binLogProperties.getDispatch(), new BinLogProperties.Dispatch()));
+        properties.setBatch(copy(binLogProperties.getBatch(), new BinLogProperties.Batch()));
+        properties.setTransaction(copy(binLogProperties.getTransaction(), new BinLogProperties.Transaction()));
+        properties.setCheckpoint(copy(binLogProperties.getCheckpoint(), new BinLogProperties.Checkpoint()));
+        properties.setReplay(copy(binLogProperties.getReplay(), new BinLogProperties.Replay()));
+        properties.setSpool(copy(binLogProperties.getSpool(), new BinLogProperties.Spool()));
+        properties.setSnapshot(copy(binLogProperties.getSnapshot(), new BinLogProperties.Snapshot()));
+        properties.setReconnect(copy(binLogProperties.getReconnect(), new BinLogProperties.Reconnect()));
+        return properties;
+    }
+
+    /**
+     * 复制属性到新对象
+     *
+     * @param source source
+     * @param target target
+     * @return target
+     */
+    private static <T> T copy(T source, T target) {
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+
+    /**
+     * 数据源的配置：未配置的项使用 binlog.datasource 下的配置，checkpoint文件和spool目录按数据源名称区分
+     *
+     * @param source source
+     * @return BinLogProperties
+     */
+    private BinLogProperties copySource(BinLogProperties.Source source) {
+        BinLogProperties properties = copyProperties();
+        properties.setSources(null);
+        Optional.ofNullable(source.getHost()).ifPresent(properties::setHost);
+        Optional.ofNullable(source.getPort()).ifPresent(properties::setPort);
+        Optional.ofNullable(source.getUsername()).ifPresent(properties::setUsername);
+        Optional.ofNullable(source.getPassword()).ifPresent(properties::setPassword);
+        Optional.ofNullable(source.getServerId()).ifPresent(properties::setServerId);
+        Optional.ofNullable(source.getDatabaseName()).ifPresent(properties::setDatabaseName);
+        Optional.ofNullable(source.getTableList()).ifPresent(properties::setTableList);
+        Optional.ofNullable(source.getSubscriptions()).ifPresent(properties::setSubscriptions);
+        BinLogProperties.Checkpoint checkpoint = properties.getCheckpoint();
+        checkpoint.setFile(source.getCheckpointFile() != null ? source.getCheckpointFile()
+                : appendToFileName(checkpoint.getFile(), "-" + source.getName()));
+        BinLogProperties.Spool spool = properties.getSpool();
+        spool.setDirectory(Path.of(spool.getDirectory(), source.getName()).toString());
+        return properties;
+    }
+
+    /**
+     * 在文件名（扩展名之前）追加后缀，如 ./binlog-checkpoint.dat -> ./binlog-checkpoint-shard0.dat
+     *
+     * @param file   file
+     * @param suffix suffix
+     * @return String
+     */
+    private static String appendToFileName(String file, String suffix) {
+        int dot = file.lastIndexOf('.');
+        if (dot <= Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\')) + 1) {
+            return file + suffix;
+        }
+        return file.substring(0, dot) + suffix + file.substring(dot);
+    }
+
     @Override
     public void destroy() throws Exception {
-        mysqlBinLogHandler.stop();
+        for (MySQLBinLogHandler mysqlBinLogHandler : mysqlBinLogHandlers) {
+            mysqlBinLogHandler.stop();
+        }
+        if (sharedDispatcher != null) {
+            sharedDispatcher.close(30, TimeUnit.SECONDS);
+        }
+        for (BinLogCheckpointStore checkpointStore : checkpointStores) {
+            checkpointStore.close();
+        }
     }
 }
 
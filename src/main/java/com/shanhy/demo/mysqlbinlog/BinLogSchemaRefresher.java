@@ -0,0 +1,335 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表结构刷新：收到DDL或者 TABLE_MAP 的列数与缓存不一致时，在后台线程中只重新加载受影响的表。
+ * 刷新期间该表的行事件先暂存，新表结构原子替换后再按顺序处理，其他表的处理不受影响，也不会按旧表结构解析。
+ * 数据库不可用时每秒重试加载；暂存的行事件达到上限后 park 阻塞binlog读取线程直到刷新完成（反压），不无限占用内存。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 16:10
+ */
+@Slf4j
+public class BinLogSchemaRefresher implements Closeable {
+
+    /**
+     * 加载失败后的重试间隔（毫秒）
+     */
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    /**
+     * 单张表默认最多暂存的行事件数
+     */
+    private static final int DEFAULT_MAX_PARKED = 10000;
+
+    /**
+     * binLogProperties
+     */
+    private final BinLogProperties binLogProperties;
+
+    /**
+     * 表结构缓存，与处理器共享，key为dbTable
+     */
+    private final Map<String, TableSchema> tableSchemaMap;
+
+    /**
+     * 正在刷新的表
+     */
+    private final Map<String, PendingTable> pendingTables = new ConcurrentHashMap<>();
+
+    /**
+     * 刷新后列数仍与 TABLE_MAP 不一致的表，避免对同一个无法匹配的结构反复刷新
+     */
+    private final Map<String, Integer> unresolvedLayouts = new ConcurrentHashMap<>();
+
+    /**
+     * 表结构替换后的回调
+     */
+    private final Runnable onRefreshed;
+
+    /**
+     * executor
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * 单张表最多暂存的行事件数
+     */
+    private final int maxParked;
+
+    /**
+     * 是否已关闭
+     */
+    private volatile boolean closed;
+
+    /**
+     * BinLogSchemaRefresher
+     *
+     * @param binLogProperties binLogProperties
+     * @param tableSchemaMap   tableSchemaMap
+     * @param onRefreshed      表结构替换后的回调，在刷新线程中执行
+     */
+    public BinLogSchemaRefresher(BinLogProperties binLogProperties, Map<String, TableSchema> tableSchemaMap, Runnable onRefreshed) {
+        this(binLogProperties, tableSchemaMap, onRefreshed, DEFAULT_MAX_PARKED);
+    }
+
+    /**
+     * BinLogSchemaRefresher
+     *
+     * @param binLogProperties binLogProperties
+     * @param tableSchemaMap   tableSchemaMap
+     * @param onRefreshed      表结构替换后的回调，在刷新线程中执行
+     * @param maxParked        单张表最多暂存的行事件数
+     */
+    BinLogSchemaRefresher(BinLogProperties binLogProperties, Map<String, TableSchema> tableSchemaMap, Runnable onRefreshed,
+                          int maxParked) {
+        this.maxParked = maxParked;
+        this.binLogProperties = binLogProperties;
+        this.tableSchemaMap = tableSchemaMap;
+        this.onRefreshed = onRefreshed;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "binlog-schema-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 请求刷新表结构，该表之后的行事件在刷新完成前会被暂存
+     *
+     * @param db                  db
+     * @param table               table
+     * @param expectedColumnCount TABLE_MAP 中的列数，未知时为-1
+     */
+    public void refresh(String db, String table, int expectedColumnCount) {
+        String dbTable = BinLogUtils.getDbTable(db, table);
+        if (expectedColumnCount < 0) {
+            unresolvedLayouts.remove(dbTable);
+        } else if (Integer.valueOf(expectedColumnCount).equals(unresolvedLayouts.get(dbTable))) {
+            return;
+        }
+        while (true) {
+            PendingTable created = new PendingTable(db, table);
+            PendingTable pending = pendingTables.putIfAbsent(dbTable, created);
+            if (pending == null) {
+                created.expectedColumnCount = expectedColumnCount;
+                log.info("表结构变化，刷新表结构：{}", dbTable);
+                schedule(() -> load(created), 0);
+                return;
+            }
+            synchronized (pending) {
+                if (!pending.resolved) {
+                    pending.expectedColumnCount = expectedColumnCount;
+                    // 加载过程中又有新的DDL，加载完成后需要再加载一次
+                    pending.reload = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 表是否正在刷新
+     *
+     * @param dbTable dbTable
+     * @return boolean
+     */
+    public boolean isPending(String dbTable) {
+        return !pendingTables.isEmpty() && pendingTables.containsKey(dbTable);
+    }
+
+    /**
+     * 暂存行事件的处理任务，刷新完成后按顺序执行。暂存已满时阻塞到刷新完成，之后由调用方直接处理
+     *
+     * @param dbTable dbTable
+     * @param task    task
+     * @return 是否已暂存，刷新已完成或者已关闭时返回false，调用方直接处理即可
+     */
+    public boolean park(String dbTable, Runnable task) {
+        while (!closed) {
+            PendingTable pending = pendingTables.get(dbTable);
+            if (pending == null) {
+                return false;
+            }
+            synchronized (pending) {
+                if (pending.resolved) {
+                    return false;
+                }
+                if (pending.parked.size() < maxParked) {
+                    pending.parked.add(task);
+                    return true;
+                }
+            }
+            try {
+                if (!pending.done.await(RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS)) {
+                    log.warn("暂存的行事件已达上限{}，等待表结构刷新：{}", maxParked, dbTable);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // 被中断时不再等待，仍然暂存以保证顺序
+                synchronized (pending) {
+                    if (pending.resolved) {
+                        return false;
+                    }
+                    pending.parked.add(task);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 等待表结构刷新完成
+     *
+     * @param dbTable dbTable
+     * @param timeout timeout
+     * @param unit    unit
+     * @return 是否在等待时间内完成
+     * @throws InterruptedException InterruptedException
+     */
+    public boolean await(String dbTable, long timeout, TimeUnit unit) throws InterruptedException {
+        PendingTable pending = pendingTables.get(dbTable);
+        return pending == null || pending.done.await(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        executor.shutdownNow();
+        // 释放等待刷新的线程
+        pendingTables.values().forEach(pending -> pending.done.countDown());
+    }
+
+    /**
+     * 在刷新线程中执行，已关闭时不再执行
+     *
+     * @param task        task
+     * @param delayMillis delayMillis
+     */
+    private void schedule(Runnable task, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("表结构刷新器已关闭：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 加载表结构并原子替换，然后执行暂存的任务
+     *
+     * @param pending pending
+     */
+    private void load(PendingTable pending) {
+        if (closed) {
+            return;
+        }
+        String dbTable = BinLogUtils.getDbTable(pending.db, pending.table);
+        Map<String, TableColumn> columns = BinLogUtils.getTableColumns(binLogProperties, pending.db, pending.table);
+        if (columns == null) {
+            schedule(() -> load(pending), RETRY_DELAY_MILLIS);
+            return;
+        }
+        synchronized (pending) {
+            if (pending.reload) {
+                pending.reload = false;
+                schedule(() -> load(pending), 0);
+                return;
+            }
+            if (columns.isEmpty()) {
+                tableSchemaMap.remove(dbTable);
+                log.info("表已不存在：{}", dbTable);
+            } else {
+                TableSchema schema = new TableSchema(dbTable, columns);
+                tableSchemaMap.put(dbTable, schema);
+                if (pending.expectedColumnCount >= 0 && pending.expectedColumnCount != schema.getColumnCount()) {
+                    unresolvedLayouts.put(dbTable, pending.expectedColumnCount);
+                    log.error("刷新后的表结构与binlog不一致，表：{}，binlog列数：{}，当前列数：{}", dbTable,
+                            pending.expectedColumnCount, schema.getColumnCount());
+                } else {
+                    log.info("表结构已刷新：{}，列数：{}", dbTable, schema.getColumnCount());
+                }
+            }
+            onRefreshed.run();
+            for (Runnable task : pending.parked) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("处理暂存的行事件异常，表：{}", dbTable, e);
+                }
+            }
+            pending.parked.clear();
+            pending.resolved = true;
+            pendingTables.remove(dbTable, pending);
+            pending.done.countDown();
+        }
+    }
+
+    /**
+     * 正在刷新的表
+     */
+    private static final class PendingTable {
+
+        /**
+         * db
+         */
+        private final String db;
+
+        /**
+         * table
+         */
+        private final String table;
+
+        /**
+         * 暂存的任务
+         */
+        private final List<Runnable> parked = new ArrayList<>();
+
+        /**
+         * 刷新完成
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * TABLE_MAP 中的列数
+         */
+        private int expectedColumnCount;
+
+        /**
+         * 是否需要重新加载
+         */
+        private boolean reload;
+
+        /**
+         * 是否已完成
+         */
+        private boolean resolved;
+
+        /**
+         * PendingTable
+         *
+         * @param db    db
+         * @param table table
+         */
+        PendingTable(String db, String table) {
+            this.db = db;
+            this.table = table;
+        }
+    }
+
+}
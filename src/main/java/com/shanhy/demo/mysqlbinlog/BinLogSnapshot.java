@@ -0,0 +1,660 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 初始快照：读取订阅表的当前数据，之后从快照对应的binlog位置开始复制，不丢失也不重复。
+ * <ol>
+ *     <li>先建立 threads 个读取连接，再 FLUSH TABLES WITH READ LOCK 阻止写入（等待锁不超过 lockWaitTimeoutSeconds），
+ *     SHOW MASTER STATUS 得到当前的binlog位置</li>
+ *     <li>加锁期间只在这些连接上开启 START TRANSACTION WITH CONSISTENT SNAPSHOT，所有连接看到的都是该位置的数据，随后释放锁</li>
+ *     <li>每张表按主键（keyset）切分为不超过 chunkSize 行的区间，区间在多个连接上并行读取；没有主键的表整表读取</li>
+ * </ol>
+ * 行数据转换为与 binlog 反序列化（DATE_AND_TIME_AS_LONG）一致的类型：整数为Integer/Long、DATE/DATETIME/TIMESTAMP/TIME为毫秒、
+ * ENUM为序号、SET为位图、BIT为BitSet；JSON为文本（binlog中为二进制JSON）。与binlog一样，年月日含0的日期为null，
+ * 超过24小时或者为负的TIME为带符号的毫秒数。需要 RELOAD 权限（FLUSH TABLES WITH READ LOCK）
+ *
+ * @author 单红宇
+ * @date 2026/10/18 11:00
+ */
+@Slf4j
+public class BinLogSnapshot {
+
+    /**
+     * 每次交给 sink 的最大行数
+     */
+    private static final int DELIVERY_ROWS = 1024;
+
+    /**
+     * binLogProperties
+     */
+    private final BinLogProperties binLogProperties;
+
+    /**
+     * 并行读取的连接数
+     */
+    private final int threads;
+
+    /**
+     * 每个区间的最大行数
+     */
+    private final int chunkSize;
+
+    /**
+     * 等待全局读锁的超时时间（秒）
+     */
+    private final int lockWaitTimeoutSeconds;
+
+    /**
+     * 已读取的行数
+     */
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * 已读取的区间数
+     */
+    private final AtomicLong chunks = new AtomicLong();
+
+    /**
+     * BinLogSnapshot
+     *
+     * @param binLogProperties binLogProperties
+     */
+    public BinLogSnapshot(BinLogProperties binLogProperties) {
+        this.binLogProperties = binLogProperties;
+        this.threads = Math.max(1, binLogProperties.getSnapshot().getThreads());
+        this.chunkSize = Math.max(1, binLogProperties.getSnapshot().getChunkSize());
+        this.lockWaitTimeoutSeconds = Math.max(1, binLogProperties.getSnapshot().getLockWaitTimeoutSeconds());
+    }
+
+    /**
+     * 执行快照
+     *
+     * @param dbTables 快照的表
+     * @param sink     接收行数据，在读取线程中并发调用
+     * @return 快照对应的binlog位置，从该位置开始复制
+     * @throws IOException IOException
+     */
+    public Position run(List<String> dbTables, Sink sink) throws IOException {
+        long begin = System.currentTimeMillis();
+        BlockingQueue<Connection> connections = new ArrayBlockingQueue<>(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "binlog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Position position = openSnapshots(connections);
+            log.info("快照位置：{}/{}，表{}张，连接{}个", position.binlogFilename(), position.position(), dbTables.size(), threads);
+            // 切分区间的任务边切分边提交读取任务，所有切分任务结束后再等待读取任务
+            ConcurrentLinkedQueue<Future<?>> reads = new ConcurrentLinkedQueue<>();
+            List<Future<?>> splits = new ArrayList<>();
+            for (String dbTable : dbTables) {
+                splits.add(executor.submit(() -> {
+                    TableSchema schema = loadSchema(dbTable);
+                    if (schema == null) {
+                        return null;
+                    }
+                    split(connections, schema, (lower, upper) ->
+                            reads.add(executor.submit(() -> read(connections, schema, lower, upper, sink))));
+                    return null;
+                }));
+            }
+            await(splits);
+            await(reads);
+            log.info("快照完成：{}行，{}个区间，耗时{}ms", rows.get(), chunks.get(), System.currentTimeMillis() - begin);
+            return position;
+        } catch (SQLException e) {
+            throw new IOException("快照失败", e);
+        } finally {
+            executor.shutdownNow();
+            connections.forEach(BinLogSnapshot::closeQuietly);
+        }
+    }
+
+    /**
+     * 建立读取连接，加全局读锁，记录binlog位置，在所有连接上开启一致性快照后释放锁。
+     * 建立连接不在加锁期间，持锁时间只包括查询位置和开启事务
+     *
+     * @param connections 开启快照的连接
+     * @return Position
+     * @throws SQLException SQLException
+     */
+    private Position openSnapshots(BlockingQueue<Connection> connections) throws SQLException {
+        for (int i = 0; i < threads; i++) {
+            Connection connection = BinLogUtils.getConnection(binLogProperties, null);
+            connections.add(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+            }
+        }
+        try (Connection lockConnection = BinLogUtils.getConnection(binLogProperties, null);
+             Statement lock = lockConnection.createStatement()) {
+            // 有长事务或者长查询时 FLUSH TABLES 会一直等待，期间阻塞所有写入
+            lock.execute("SET SESSION lock_wait_timeout = " + lockWaitTimeoutSeconds);
+            lock.execute("FLUSH TABLES WITH READ LOCK");
+            try {
+                Position position = masterStatus(lock);
+                for (Connection connection : connections) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                    }
+                }
+                return position;
+            } finally {
+                lock.execute("UNLOCK TABLES");
+            }
+        }
+    }
+
+    /**
+     * 当前的binlog位置，MySQL 8.4 起为 SHOW BINARY LOG STATUS
+     *
+     * @param statement statement
+     * @return Position
+     * @throws SQLException SQLException
+     */
+    private static Position masterStatus(Statement statement) throws SQLException {
+        try (ResultSet rs = showMasterStatus(statement)) {
+            if (!rs.next()) {
+                throw new SQLException("未开启binlog，无法获取当前位置");
+            }
+            String gtidSet = rs.getMetaData().getColumnCount() >= 5 ? rs.getString("Executed_Gtid_Set") : null;
+            return new Position(rs.getString("File"), rs.getLong("Position"), gtidSet == null ? null
+                    : gtidSet.replaceAll("\\s", ""));
+        }
+    }
+
+    /**
+     * 查询当前的binlog位置和已执行的GTID集合
+     *
+     * @param binLogProperties binLogProperties
+     * @return Position
+     * @throws IOException IOException
+     */
+    public static Position currentPosition(BinLogProperties binLogProperties) throws IOException {
+        try (Connection connection = BinLogUtils.getConnection(binLogProperties, null);
+             Statement statement = connection.createStatement()) {
+            return masterStatus(statement);
+        } catch (SQLException e) {
+            throw new IOException("查询binlog位置失败", e);
+        }
+    }
+
+    /**
+     * SHOW MASTER STATUS，不支持时使用 SHOW BINARY LOG STATUS
+     *
+     * @param statement statement
+     * @return ResultSet
+     * @throws SQLException SQLException
+     */
+    private static ResultSet showMasterStatus(Statement statement) throws SQLException {
+        try {
+            return statement.executeQuery("SHOW MASTER STATUS");
+        } catch (SQLException e) {
+            return statement.executeQuery("SHOW BINARY LOG STATUS");
+        }
+    }
+
+    /**
+     * 查询表结构，表不存在时返回null
+     *
+     * @param dbTable dbTable
+     * @return TableSchema
+     */
+    private TableSchema loadSchema(String dbTable) {
+        int index = dbTable.indexOf('.');
+        Map<String, TableColumn> columns = BinLogUtils.getTableColumns(binLogProperties, dbTable.substring(0, index),
+                dbTable.substring(index + 1));
+        if (columns == null || columns.isEmpty()) {
+            log.warn("快照跳过不存在的表：{}", dbTable);
+            return null;
+        }
+        return new TableSchema(dbTable, columns);
+    }
+
+    /**
+     * 按主键切分区间：每次从上一个区间的上界开始跳过 chunkSize - 1 行得到下一个上界，只扫描主键索引
+     *
+     * @param connections connections
+     * @param schema      schema
+     * @param chunk       区间 (lower, upper]，为null表示不限
+     * @throws Exception Exception
+     */
+    private void split(BlockingQueue<Connection> connections, TableSchema schema, ChunkConsumer chunk) throws Exception {
+        int[] primaryKeyIndexes = schema.getPrimaryKeyIndexes();
+        if (primaryKeyIndexes.length == 0) {
+            chunk.accept(null, null);
+            return;
+        }
+        String primaryKey = primaryKeyList(schema);
+        String first = "SELECT " + primaryKey + " FROM " + quote(schema.getDbTable()) + " ORDER BY " + primaryKey
+                + " LIMIT 1 OFFSET " + (chunkSize - 1);
+        String next = "SELECT " + primaryKey + " FROM " + quote(schema.getDbTable()) + " WHERE (" + primaryKey + ") > ("
+                + placeholders(primaryKeyIndexes.length) + ") ORDER BY " + primaryKey + " LIMIT 1 OFFSET " + (chunkSize - 1);
+        split(lower -> {
+            Connection connection = connections.take();
+            try (PreparedStatement ps = connection.prepareStatement(lower == null ? first : next)) {
+                bind(ps, 1, lower);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? primaryKeyValues(rs, primaryKeyIndexes.length) : null;
+                }
+            } finally {
+                connections.put(connection);
+            }
+        }, chunk);
+    }
+
+    /**
+     * 从不限的下界开始，每个区间的上界作为下一个区间的下界，直到没有上界：(null, k1], (k1, k2], ..., (kn, null]
+     *
+     * @param upperBound 下界之后的第 chunkSize 个主键，不足 chunkSize 行时为null
+     * @param chunk      chunk
+     * @throws Exception Exception
+     */
+    static void split(UpperBound upperBound, ChunkConsumer chunk) throws Exception {
+        Object[] lower = null;
+        while (true) {
+            Object[] upper = upperBound.next(lower);
+            chunk.accept(lower, upper);
+            if (upper == null) {
+                return;
+            }
+            lower = upper;
+        }
+    }
+
+    /**
+     * 读取区间 (lower, upper] 的行
+     *
+     * @param connections connections
+     * @param schema      schema
+     * @param lower       下界（不包含），为null表示不限
+     * @param upper       上界（包含），为null表示不限
+     * @param sink        sink
+     * @return null
+     * @throws Exception Exception
+     */
+    private Void read(BlockingQueue<Connection> connections, TableSchema schema, Object[] lower, Object[] upper,
+                      Sink sink) throws Exception {
+        String[] columnNames = schema.getColumnNames();
+        String[] dataTypes = new String[columnNames.length];
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columnNames.length; i++) {
+            TableColumn column = schema.getColumns().get(columnNames[i]);
+            dataTypes[i] = column.getDataType() == null ? "" : column.getDataType().toLowerCase(Locale.ROOT);
+            sql.append(i == 0 ? "" : ", ").append(quote(columnNames[i]));
+            // binlog中ENUM为序号、SET为位图
+            if ("enum".equals(dataTypes[i]) || "set".equals(dataTypes[i])) {
+                sql.append(" + 0");
+            }
+        }
+        sql.append(" FROM ").append(quote(schema.getDbTable())).append(chunkCondition(schema, lower != null, upper != null));
+        Connection connection = connections.take();
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            bind(ps, bind(ps, 1, lower), upper);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Serializable[]> batch = new ArrayList<>(DELIVERY_ROWS);
+                while (rs.next()) {
+                    Serializable[] row = new Serializable[columnNames.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = toBinlogValue(rs, i + 1, dataTypes[i]);
+                    }
+                    batch.add(row);
+                    if (batch.size() >= DELIVERY_ROWS) {
+                        sink.accept(schema, batch);
+                        rows.addAndGet(batch.size());
+                        batch = new ArrayList<>(DELIVERY_ROWS);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    sink.accept(schema, batch);
+                    rows.addAndGet(batch.size());
+                }
+            }
+        } finally {
+            connections.put(connection);
+        }
+        chunks.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 区间 (lower, upper] 的查询条件，依次绑定下界、上界的主键值
+     *
+     * @param schema schema
+     * @param lower  是否有下界
+     * @param upper  是否有上界
+     * @return String，没有主键或者不限时为空串
+     */
+    static String chunkCondition(TableSchema schema, boolean lower, boolean upper) {
+        int primaryKeyCount = schema.getPrimaryKeyIndexes().length;
+        if (primaryKeyCount == 0 || (!lower && !upper)) {
+            return "";
+        }
+        String primaryKey = primaryKeyList(schema);
+        String placeholders = placeholders(primaryKeyCount);
+        StringBuilder sql = new StringBuilder(" WHERE ");
+        if (lower) {
+            sql.append('(').append(primaryKey).append(") > (").append(placeholders).append(')');
+        }
+        if (upper) {
+            sql.append(lower ? " AND (" : "(").append(primaryKey).append(") <= (").append(placeholders).append(')');
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 转换为 binlog 反序列化得到的类型
+     *
+     * @param rs       rs
+     * @param column   column
+     * @param dataType dataType
+     * @return Serializable
+     * @throws SQLException SQLException
+     */
+    private static Serializable toBinlogValue(ResultSet rs, int column, String dataType) throws SQLException {
+        if (isTemporal(dataType)) {
+            return toBinlogTime(rs, column, dataType);
+        }
+        Object value = rs.getObject(column);
+        if (value == null) {
+            return null;
+        }
+        return switch (dataType) {
+            // 无符号整数与binlog一样按有符号截断
+            case "tinyint", "smallint", "mediumint", "int", "integer", "year" -> ((Number) toNumber(rs, column, value)).intValue();
+            case "enum" -> ((Number) value).intValue();
+            case "bigint", "set" -> ((Number) value).longValue();
+            case "decimal", "numeric" -> rs.getBigDecimal(column);
+            case "float" -> rs.getFloat(column);
+            case "double", "real" -> rs.getDouble(column);
+            case "bit" -> toBitSet(rs.getBytes(column));
+            case "char", "varchar", "tinytext", "text", "mediumtext", "longtext", "json" -> rs.getString(column);
+            case "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob", "geometry" -> rs.getBytes(column);
+            default -> value instanceof Serializable serializable ? serializable : value.toString();
+        };
+    }
+
+    /**
+     * DATE、DATETIME、TIMESTAMP、TIME
+     *
+     * @param dataType dataType
+     * @return boolean
+     */
+    private static boolean isTemporal(String dataType) {
+        return "date".equals(dataType) || "datetime".equals(dataType) || "timestamp".equals(dataType)
+                || "time".equals(dataType);
+    }
+
+    /**
+     * 时间类型按文本读取：零值日期按对象读取时驱动会抛出异常，超过24小时或者为负的TIME无法转换为 LocalTime
+     *
+     * @param rs       rs
+     * @param column   column
+     * @param dataType dataType
+     * @return 毫秒数，零值日期为null
+     * @throws SQLException SQLException
+     */
+    private static Long toBinlogTime(ResultSet rs, int column, String dataType) throws SQLException {
+        String text = rs.getString(column);
+        if (text == null) {
+            return null;
+        }
+        if ("time".equals(dataType)) {
+            return parseTime(text);
+        }
+        if (isZeroDate(text)) {
+            return null;
+        }
+        return switch (dataType) {
+            case "date" -> LocalDate.parse(text).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            case "datetime" -> LocalDateTime.parse(text.replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+            // TIMESTAMP的文本为会话时区的时间，按 Timestamp 读取
+            default -> rs.getTimestamp(column).getTime();
+        };
+    }
+
+    /**
+     * 年、月、日任一为0的日期（如 0000-00-00、2024-00-10），binlog反序列化为null
+     *
+     * @param text yyyy-MM-dd[ HH:mm:ss[.ffffff]]
+     * @return boolean
+     */
+    static boolean isZeroDate(String text) {
+        return text.length() < 10 || text.startsWith("0000") || text.startsWith("00", 5) || text.startsWith("00", 8);
+    }
+
+    /**
+     * TIME 的文本（[-]HHH:mm:ss[.ffffff]，范围 -838:59:59 ~ 838:59:59）转换为带符号的毫秒数
+     *
+     * @param text text
+     * @return long
+     */
+    static long parseTime(String text) {
+        boolean negative = text.startsWith("-");
+        String[] parts = text.substring(negative ? 1 : 0).split(":");
+        int dot = parts[2].indexOf('.');
+        long seconds = Long.parseLong(parts[0]) * 3600 + Long.parseLong(parts[1]) * 60
+                + Long.parseLong(dot < 0 ? parts[2] : parts[2].substring(0, dot));
+        long millis = seconds * 1000;
+        if (dot >= 0) {
+            String fraction = (parts[2].substring(dot + 1) + "00").substring(0, 3);
+            millis += Long.parseLong(fraction);
+        }
+        return negative ? -millis : millis;
+    }
+
+    /**
+     * YEAR 默认返回 Date，按数值读取
+     *
+     * @param rs     rs
+     * @param column column
+     * @param value  value
+     * @return Object
+     * @throws SQLException SQLException
+     */
+    private static Object toNumber(ResultSet rs, int column, Object value) throws SQLException {
+        return value instanceof Number ? value : rs.getLong(column);
+    }
+
+    /**
+     * BIT列：JDBC返回大端字节，binlog中为从低位开始的BitSet
+     *
+     * @param bytes bytes
+     * @return BitSet
+     */
+    private static BitSet toBitSet(byte[] bytes) {
+        byte[] littleEndian = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            littleEndian[i] = bytes[bytes.length - 1 - i];
+        }
+        return BitSet.valueOf(littleEndian);
+    }
+
+    /**
+     * 主键列，按列的顺序
+     *
+     * @param schema schema
+     * @return String
+     */
+    private static String primaryKeyList(TableSchema schema) {
+        StringBuilder columns = new StringBuilder();
+        for (int index : schema.getPrimaryKeyIndexes()) {
+            columns.append(columns.isEmpty() ? "" : ", ").append(quote(schema.getColumnName(index)));
+        }
+        return columns.toString();
+    }
+
+    /**
+     * 读取主键值
+     *
+     * @param rs    rs
+     * @param count count
+     * @return Object[]
+     * @throws SQLException SQLException
+     */
+    private static Object[] primaryKeyValues(ResultSet rs, int count) throws SQLException {
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = rs.getObject(i + 1);
+        }
+        return values;
+    }
+
+    /**
+     * 绑定参数
+     *
+     * @param ps     ps
+     * @param index  第一个参数的下标
+     * @param values 参数，为null时不绑定
+     * @return 下一个参数的下标
+     * @throws SQLException SQLException
+     */
+    private static int bind(PreparedStatement ps, int index, Object[] values) throws SQLException {
+        if (values != null) {
+            for (Object value : values) {
+                ps.setObject(index++, value);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * ?, ?, ...
+     *
+     * @param count count
+     * @return String
+     */
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * 标识符加反引号，库名.表名 分别处理
+     *
+     * @param identifier identifier
+     * @return String
+     */
+    private static String quote(String identifier) {
+        int index = identifier.indexOf('.');
+        if (index > 0 && !identifier.startsWith("`")) {
+            return quote(identifier.substring(0, index)) + "." + quote(identifier.substring(index + 1));
+        }
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    /**
+     * 等待任务完成
+     *
+     * @param futures futures
+     * @throws SQLException 任务失败时抛出
+     */
+    private static void await(Iterable<Future<?>> futures) throws SQLException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("快照被中断", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("快照读取失败", e.getCause());
+        }
+    }
+
+    /**
+     * 关闭连接（结束快照事务）
+     *
+     * @param connection connection
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("关闭快照连接失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 快照对应的binlog位置
+     *
+     * @param binlogFilename binlogFilename
+     * @param position       position
+     * @param gtidSet        该位置之前已执行的GTID集合，未开启GTID时为空
+     */
+    public record Position(String binlogFilename, long position, String gtidSet) {
+    }
+
+    /**
+     * 接收一批行数据，行按列下标（ordinalPosition - 1）存放
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * accept
+         *
+         * @param schema schema
+         * @param rows   rows
+         */
+        void accept(TableSchema schema, List<Serializable[]> rows);
+    }
+
+    /**
+     * 区间的上界
+     */
+    @FunctionalInterface
+    interface UpperBound {
+
+        /**
+         * next
+         *
+         * @param lower 下界（不包含），为null表示从第一行开始
+         * @return 上界（包含），为null表示到最后一行
+         * @throws Exception Exception
+         */
+        Object[] next(Object[] lower) throws Exception;
+    }
+
+    /**
+     * 区间
+     */
+    @FunctionalInterface
+    interface ChunkConsumer {
+
+        /**
+         * accept
+         *
+         * @param lower 下界（不包含），为null表示不限
+         * @param upper 上界（包含），为null表示不限
+         */
+        void accept(Object[] lower, Object[] upper);
+    }
+
+}
@@ -0,0 +1,821 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地spool：解码后的行变更按顺序追加到分段的本地日志，消费者通过各自的游标按自己的速度顺序读取，
+ * binlog读取线程只受磁盘写入速度影响，不再被慢的监听器阻塞。
+ * <p>
+ * 每个段是一个预分配的内存映射文件（文件名为段的起始偏移量），记录格式为 crc(4) + length(4) + 数据（{@link BinLogItemCodec} 编码的表名和行变更），CRC最后写入；
+ * 放不下的记录写入新段，旧段末尾写结束标记。偏移量在所有段之间全局递增。
+ * 游标的偏移量保存在 名称.cursor 文件中，提交后持久化，所有打开的游标都已提交越过的段会被删除（同时释放内存映射）。
+ * 追加时可以传入持久化回调，记录fsync之后才执行（fsyncPolicy=INTERVAL 时由定时任务fsync空闲时的最后一批记录），
+ * 调用方在回调中推进binlog的checkpoint，checkpoint不会越过还没有落盘的记录。
+ * 重启后从最后一个段中最后一条完整记录之后继续追加，游标从提交的偏移量继续读取
+ *
+ * @author 单红宇
+ * @date 2026/10/17 21:20
+ */
+@Slf4j
+public class BinLogSpool implements Closeable {
+
+    /**
+     * 记录头：crc(4) + length(4)
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * 段结束标记，写在length位置
+     */
+    private static final int END_OF_SEGMENT = -1;
+
+    /**
+     * 段文件后缀
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * 游标文件后缀
+     */
+    private static final String CURSOR_SUFFIX = ".cursor";
+
+    /**
+     * 游标名称
+     */
+    private static final Pattern CURSOR_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /**
+     * 释放内存映射的 Unsafe.invokeCleaner，不可用时为null，删除的段由GC释放
+     */
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    /**
+     * spool目录
+     */
+    private final Path directory;
+
+    /**
+     * 段大小（字节）
+     */
+    private final int segmentBytes;
+
+    /**
+     * fsync策略
+     */
+    private final BinLogCheckpointStore.FsyncPolicy fsyncPolicy;
+
+    /**
+     * fsync间隔（毫秒）
+     */
+    private final long fsyncIntervalMillis;
+
+    /**
+     * 段，key为段的起始偏移量
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * 打开的游标
+     */
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * 编码器，只在追加时使用
+     */
+    private final BinLogItemCodec.Encoder encoder = new BinLogItemCodec.Encoder();
+
+    /**
+     * 等待fsync的持久化回调，按偏移量顺序
+     */
+    private final Deque<Durable> awaitingSync = new ArrayDeque<>();
+
+    /**
+     * 定时fsync，仅 fsyncPolicy=INTERVAL 时不为null
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 当前写入的段
+     */
+    private Segment active;
+
+    /**
+     * 已fsync的偏移量，fsyncPolicy=NEVER 时写入即视为持久化
+     */
+    private long syncedOffset;
+
+    /**
+     * 已写入的偏移量，读取不会越过该位置
+     */
+    private volatile long writeOffset;
+
+    /**
+     * 上次fsync时间
+     */
+    private long lastFsyncMillis;
+
+    /**
+     * closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * BinLogSpool
+     *
+     * @param spool spool配置
+     */
+    public BinLogSpool(BinLogProperties.Spool spool) {
+        if (spool.getSegmentBytes() <= RECORD_HEADER_SIZE || spool.getSegmentBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("spool段大小无效：" + spool.getSegmentBytes());
+        }
+        this.directory = Path.of(spool.getDirectory()).toAbsolutePath();
+        this.segmentBytes = (int) spool.getSegmentBytes();
+        this.fsyncPolicy = spool.getFsyncPolicy();
+        this.fsyncIntervalMillis = spool.getFsyncIntervalMillis();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开spool失败：" + directory, e);
+        }
+        this.syncedOffset = writeOffset;
+        if (fsyncPolicy == BinLogCheckpointStore.FsyncPolicy.INTERVAL) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "binlog-spool-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, fsyncIntervalMillis);
+            this.scheduler.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+        log.info("spool已打开：{}，段{}个，写入偏移量{}", directory, segments.size(), writeOffset);
+    }
+
+    /**
+     * 追加同一张表的一组行变更
+     *
+     * @param dbTable dbTable
+     * @param items   items
+     * @return 记录之后的偏移量
+     */
+    public long append(String dbTable, List<BinLogItem> items) {
+        return append(dbTable, items, null);
+    }
+
+    /**
+     * 追加同一张表的一组行变更，记录fsync后执行持久化回调（可能在fsync定时任务的线程中执行）
+     *
+     * @param dbTable dbTable
+     * @param items   items
+     * @param durable 持久化回调，可以为null
+     * @return 记录之后的偏移量
+     */
+    public long append(String dbTable, List<BinLogItem> items, Runnable durable) {
+        long offset;
+        List<Runnable> synced;
+        synchronized (this) {
+            offset = appendRecord(dbTable, items);
+            if (durable != null) {
+                awaitingSync.addLast(new Durable(offset, durable));
+            }
+            synced = drainSynced();
+        }
+        synced.forEach(Runnable::run);
+        return offset;
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param dbTable dbTable
+     * @param items   items
+     * @return 记录之后的偏移量
+     */
+    private long appendRecord(String dbTable, List<BinLogItem> items) {
+        if (closed) {
+            throw new IllegalStateException("BinLogSpool is closed");
+        }
+        encode(dbTable, items);
+        int length = encoder.size();
+        int recordSize = RECORD_HEADER_SIZE + length;
+        int position = (int) (writeOffset - active.base);
+        if (position + recordSize > active.size) {
+            roll(recordSize);
+            position = 0;
+        }
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putInt(position + 4, length);
+        encoder.copyTo(buffer, position + RECORD_HEADER_SIZE);
+        // CRC最后写入，记录只写了一部分时校验不通过
+        buffer.putInt(position, crc(buffer, position + 4, 4 + length));
+        writeOffset = active.base + position + recordSize;
+        force(false);
+        notifyAll();
+        return writeOffset;
+    }
+
+    /**
+     * 打开游标，已有游标文件时从提交的偏移量继续，否则从当前写入位置开始
+     *
+     * @param name 游标名称，字母、数字、下划线和中划线
+     * @return Cursor
+     */
+    public synchronized Cursor openCursor(String name) {
+        if (!CURSOR_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("游标名称无效：" + name);
+        }
+        if (cursors.containsKey(name)) {
+            throw new IllegalStateException("游标已打开：" + name);
+        }
+        Cursor cursor = new Cursor(name, directory.resolve(name + CURSOR_SUFFIX));
+        cursors.put(name, cursor);
+        return cursor;
+    }
+
+    /**
+     * 已写入的偏移量
+     *
+     * @return long
+     */
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * 最慢的游标落后的字节数，没有游标时为0
+     *
+     * @return long
+     */
+    public long getBacklogBytes() {
+        long min = minCommittedOffset();
+        return min < 0 ? 0 : writeOffset - min;
+    }
+
+    /**
+     * 段数量
+     *
+     * @return int
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        List<Runnable> synced;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+            cursors.values().forEach(Cursor::persist);
+            sync();
+            synced = drainSynced();
+            notifyAll();
+        }
+        synced.forEach(Runnable::run);
+        log.info("spool已关闭：{}，写入偏移量{}", directory, writeOffset);
+    }
+
+    /**
+     * 打开已有的段，从最后一个段中找到最后一条完整记录
+     *
+     * @throws IOException IOException
+     */
+    private void recover() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        if (bases.isEmpty()) {
+            active = createSegment(0, segmentBytes);
+            writeOffset = 0;
+            return;
+        }
+        bases.sort(null);
+        for (long base : bases) {
+            Segment segment = openSegment(base);
+            segments.put(base, segment);
+            active = segment;
+        }
+        int position = 0;
+        MappedByteBuffer buffer = active.buffer;
+        while (position + RECORD_HEADER_SIZE <= active.size) {
+            int length = buffer.getInt(position + 4);
+            if (length == END_OF_SEGMENT) {
+                active = createSegment(active.base + active.size, segmentBytes);
+                position = 0;
+                break;
+            }
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > active.size
+                    || buffer.getInt(position) != crc(buffer, position + 4, 4 + length)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writeOffset = active.base + position;
+    }
+
+    /**
+     * 当前段写满，写入结束标记后切换到新段
+     *
+     * @param recordSize 下一条记录的大小
+     */
+    private void roll(int recordSize) {
+        int position = (int) (writeOffset - active.base);
+        if (position + RECORD_HEADER_SIZE <= active.size) {
+            active.buffer.putInt(position + 4, END_OF_SEGMENT);
+        }
+        force(true);
+        try {
+            active = createSegment(active.base + active.size, Math.max(segmentBytes, recordSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建spool段失败：" + directory, e);
+        }
+        writeOffset = active.base;
+    }
+
+    /**
+     * 按fsync策略fsync当前段
+     *
+     * @param sealed 段已写满
+     */
+    private void force(boolean sealed) {
+        long now = System.currentTimeMillis();
+        if (sealed || fsyncPolicy == BinLogCheckpointStore.FsyncPolicy.ALWAYS
+                || (fsyncPolicy == BinLogCheckpointStore.FsyncPolicy.INTERVAL && now - lastFsyncMillis >= fsyncIntervalMillis)) {
+            sync();
+        } else if (fsyncPolicy == BinLogCheckpointStore.FsyncPolicy.NEVER) {
+            // 不主动fsync时由操作系统回写，写入即视为持久化
+            syncedOffset = writeOffset;
+        }
+    }
+
+    /**
+     * fsync当前段，已写满的段在切换时已经fsync
+     */
+    private void sync() {
+        active.buffer.force();
+        lastFsyncMillis = System.currentTimeMillis();
+        syncedOffset = writeOffset;
+    }
+
+    /**
+     * 取出已经fsync的记录的持久化回调，在锁外执行
+     *
+     * @return List
+     */
+    private List<Runnable> drainSynced() {
+        if (awaitingSync.isEmpty() || awaitingSync.peekFirst().offset() > syncedOffset) {
+            return List.of();
+        }
+        List<Runnable> synced = new ArrayList<>();
+        while (!awaitingSync.isEmpty() && awaitingSync.peekFirst().offset() <= syncedOffset) {
+            synced.add(awaitingSync.pollFirst().callback());
+        }
+        return synced;
+    }
+
+    /**
+     * 定时fsync：空闲时最后写入的记录也会fsync并执行持久化回调
+     */
+    private void syncQuietly() {
+        try {
+            List<Runnable> synced;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (syncedOffset < writeOffset) {
+                    sync();
+                }
+                synced = drainSynced();
+            }
+            synced.forEach(Runnable::run);
+        } catch (Exception e) {
+            log.error("spool fsync失败", e);
+        }
+    }
+
+    /**
+     * 创建预分配的段
+     *
+     * @param base base
+     * @param size size
+     * @return Segment
+     * @throws IOException IOException
+     */
+    private Segment createSegment(long base, int size) throws IOException {
+        Path file = segmentFile(base);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(base, size, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segments.put(base, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * 打开已有的段
+     *
+     * @param base base
+     * @return Segment
+     * @throws IOException IOException
+     */
+    private Segment openSegment(long base) throws IOException {
+        Path file = segmentFile(base);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int size = (int) channel.size();
+            return new Segment(base, size, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    /**
+     * 段文件
+     *
+     * @param base base
+     * @return Path
+     */
+    private Path segmentFile(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 删除所有打开的游标都已越过的段，当前写入的段不删除
+     */
+    private void deleteConsumedSegments() {
+        long min = minCommittedOffset();
+        for (Segment segment : segments.values()) {
+            if (min < 0 || segment == active || segment.base + segment.size > min) {
+                return;
+            }
+            segments.remove(segment.base);
+            // 游标都已越过该段，不会再读取，释放内存映射
+            unmap(segment.buffer);
+            try {
+                Files.deleteIfExists(segment.file);
+                log.debug("删除spool段：{}", segment.file);
+            } catch (IOException e) {
+                log.warn("删除spool段失败：{}", segment.file, e);
+            }
+        }
+    }
+
+    /**
+     * 打开的游标中最小的已提交偏移量，没有游标时返回-1
+     *
+     * @return long
+     */
+    private long minCommittedOffset() {
+        long min = -1;
+        for (Cursor cursor : cursors.values()) {
+            long committed = cursor.committedOffset;
+            if (min < 0 || committed < min) {
+                min = committed;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 编码一条记录：表名 + 行变更块，结果在 encoder 中
+     *
+     * @param dbTable dbTable
+     * @param items   items
+     */
+    private void encode(String dbTable, List<BinLogItem> items) {
+        encoder.reset();
+        encoder.writeString(dbTable);
+        for (BinLogItem item : items) {
+            encoder.write(item);
+        }
+    }
+
+    /**
+     * 解码一条记录
+     *
+     * @param decoder    decoder
+     * @param offset     offset
+     * @param nextOffset nextOffset
+     * @param payload    payload
+     * @return Entry
+     */
+    private static Entry decode(BinLogItemCodec.Decoder decoder, long offset, long nextOffset, byte[] payload) {
+        try {
+            decoder.reset(payload, 0, payload.length);
+            String dbTable = decoder.readString();
+            List<BinLogItem> items = new ArrayList<>();
+            while (decoder.hasRemaining()) {
+                items.add(decoder.read());
+            }
+            return new Entry(offset, nextOffset, dbTable, items);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("spool解码失败，offset=" + offset, e);
+        }
+    }
+
+    /**
+     * 释放内存映射，不可用或失败时由GC释放
+     *
+     * @param buffer buffer
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("释放spool段的内存映射失败", e);
+        }
+    }
+
+    /**
+     * 查找 Unsafe.invokeCleaner(ByteBuffer)
+     *
+     * @return MethodHandle，不可用时为null
+     */
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("无法释放spool段的内存映射，删除的段由GC释放：{}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * 计算 buffer 中从 offset 开始 length 个字节的CRC
+     *
+     * @param buffer buffer
+     * @param offset offset
+     * @param length length
+     * @return int
+     */
+    private static int crc(MappedByteBuffer buffer, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.slice(offset, length));
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * 等待新的记录写入
+     *
+     * @param offset       读取位置
+     * @param deadlineNanos 截止时间
+     * @return 是否有新记录
+     * @throws InterruptedException InterruptedException
+     */
+    private synchronized boolean awaitAppend(long offset, long deadlineNanos) throws InterruptedException {
+        while (writeOffset <= offset && !closed) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return writeOffset > offset;
+    }
+
+    /**
+     * 一个段
+     *
+     * @param base   起始偏移量
+     * @param size   大小
+     * @param file   文件
+     * @param buffer 内存映射
+     */
+    private record Segment(long base, int size, Path file, MappedByteBuffer buffer) {
+    }
+
+    /**
+     * 持久化回调
+     *
+     * @param offset   记录之后的偏移量
+     * @param callback callback
+     */
+    private record Durable(long offset, Runnable callback) {
+    }
+
+    /**
+     * 一条记录
+     *
+     * @param offset     记录的偏移量
+     * @param nextOffset 下一条记录的偏移量，提交该值表示已处理完这条记录
+     * @param dbTable    dbTable
+     * @param items      同一张表的行变更
+     */
+    public record Entry(long offset, long nextOffset, String dbTable, List<BinLogItem> items) {
+    }
+
+    /**
+     * 游标：单个消费者独占使用，读取不会自动提交，处理完成后 commit 才持久化偏移量并允许删除已读的段
+     */
+    public final class Cursor implements Closeable {
+
+        /**
+         * name
+         */
+        private final String name;
+
+        /**
+         * 偏移量文件
+         */
+        private final MappedByteBuffer offsetBuffer;
+
+        /**
+         * 解码器，只在读取线程使用
+         */
+        private final BinLogItemCodec.Decoder decoder = new BinLogItemCodec.Decoder();
+
+        /**
+         * 下一次读取的偏移量
+         */
+        private volatile long readOffset;
+
+        /**
+         * 已提交的偏移量
+         */
+        private volatile long committedOffset;
+
+        /**
+         * Cursor
+         *
+         * @param name name
+         * @param file 偏移量文件
+         */
+        private Cursor(String name, Path file) {
+            this.name = name;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                boolean exists = channel.size() >= Long.BYTES;
+                this.offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+                long offset = exists ? offsetBuffer.getLong(0) : writeOffset;
+                long first = segments.firstKey();
+                if (offset < first) {
+                    log.warn("spool游标{}的偏移量{}所在的段已删除，从{}开始读取", name, offset, first);
+                    offset = first;
+                }
+                this.readOffset = offset;
+                this.committedOffset = offset;
+                persist();
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开spool游标失败：" + file, e);
+            }
+            log.info("spool游标{}已打开，偏移量{}", name, readOffset);
+        }
+
+        /**
+         * 读取下一条记录，没有新记录时最多等待指定时间
+         *
+         * @param timeout timeout
+         * @param unit    unit
+         * @return 记录，超时或者spool关闭时返回null
+         * @throws InterruptedException InterruptedException
+         */
+        public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (true) {
+                Entry entry = read();
+                if (entry != null) {
+                    return entry;
+                }
+                if (!awaitAppend(readOffset, deadline)) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * 提交偏移量：该位置之前的记录已处理完成
+         *
+         * @param offset 偏移量，通常为 Entry.nextOffset
+         */
+        public void commit(long offset) {
+            if (offset <= committedOffset) {
+                return;
+            }
+            Map.Entry<Long, Segment> previous = segments.floorEntry(committedOffset);
+            committedOffset = offset;
+            persist();
+            // 越过段边界时删除已消费的段
+            if (previous == null || offset >= previous.getKey() + previous.getValue().size) {
+                synchronized (BinLogSpool.this) {
+                    deleteConsumedSegments();
+                }
+            }
+        }
+
+        /**
+         * 下一次读取的偏移量
+         *
+         * @return long
+         */
+        public long getReadOffset() {
+            return readOffset;
+        }
+
+        /**
+         * 已提交的偏移量
+         *
+         * @return long
+         */
+        public long getCommittedOffset() {
+            return committedOffset;
+        }
+
+        /**
+         * 已读取完所有已写入的记录
+         *
+         * @return boolean
+         */
+        public boolean isCaughtUp() {
+            return readOffset >= writeOffset;
+        }
+
+        /**
+         * 关闭游标，偏移量保留在游标文件中，此后删除段时不再考虑该游标
+         */
+        @Override
+        public void close() {
+            persist();
+            cursors.remove(name, this);
+        }
+
+        /**
+         * 读取下一条已写入的记录，跳过段结束标记
+         *
+         * @return Entry
+         */
+        private Entry read() {
+            while (readOffset < writeOffset) {
+                Map.Entry<Long, Segment> floor = segments.floorEntry(readOffset);
+                if (floor == null) {
+                    readOffset = segments.firstKey();
+                    continue;
+                }
+                Segment segment = floor.getValue();
+                int position = (int) (readOffset - segment.base);
+                if (position + RECORD_HEADER_SIZE > segment.size
+                        || segment.buffer.getInt(position + 4) == END_OF_SEGMENT) {
+                    readOffset = segment.base + segment.size;
+                    continue;
+                }
+                int length = segment.buffer.getInt(position + 4);
+                byte[] payload = new byte[length];
+                segment.buffer.get(position + RECORD_HEADER_SIZE, payload);
+                long offset = readOffset;
+                readOffset = offset + RECORD_HEADER_SIZE + length;
+                return decode(decoder, offset, readOffset, payload);
+            }
+            return null;
+        }
+
+        /**
+         * 写入已提交的偏移量
+         */
+        private void persist() {
+            offsetBuffer.putLong(0, committedOffset);
+        }
+    }
+
+}
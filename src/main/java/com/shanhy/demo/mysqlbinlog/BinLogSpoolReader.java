@@ -0,0 +1,154 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * spool读取线程：从游标顺序读取记录交给投递函数（投递到分发器），投递函数在记录的所有分区任务执行完成后回调完成通知。
+ * 分区任务完成的顺序不确定，游标只提交到连续完成的最后一条记录，重启后从第一条未完成的记录重新投递
+ *
+ * @author 单红宇
+ * @date 2026/10/17 21:40
+ */
+@Slf4j
+public class BinLogSpoolReader {
+
+    /**
+     * 没有新记录时的等待时间（毫秒）
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * 游标
+     */
+    private final BinLogSpool.Cursor cursor;
+
+    /**
+     * 投递函数：记录和完成通知
+     */
+    private final BiConsumer<BinLogSpool.Entry, Runnable> delivery;
+
+    /**
+     * 已投递未提交的记录，按读取顺序
+     */
+    private final Deque<Pending> pending = new ArrayDeque<>();
+
+    /**
+     * 读取线程
+     */
+    private final Thread thread;
+
+    /**
+     * 读完已写入的记录后退出
+     */
+    private volatile boolean stopping;
+
+    /**
+     * BinLogSpoolReader
+     *
+     * @param cursor   游标
+     * @param delivery 投递函数
+     */
+    public BinLogSpoolReader(BinLogSpool.Cursor cursor, BiConsumer<BinLogSpool.Entry, Runnable> delivery) {
+        this.cursor = cursor;
+        this.delivery = delivery;
+        this.thread = new Thread(this::run, "binlog-spool-reader");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 启动读取线程
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 等待已写入的记录全部读取并投递后停止读取线程，调用前应停止追加
+     *
+     * @param timeout timeout
+     * @param unit    unit
+     * @throws InterruptedException InterruptedException
+     */
+    public void stop(long timeout, TimeUnit unit) throws InterruptedException {
+        stopping = true;
+        if (!thread.isAlive()) {
+            return;
+        }
+        thread.join(unit.toMillis(timeout));
+        if (thread.isAlive()) {
+            log.warn("spool读取线程未在规定时间内读完，游标偏移量：{}", cursor.getReadOffset());
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * 提交连续完成的记录，分发器关闭（所有任务执行完成）后调用
+     */
+    public void commitCompleted() {
+        synchronized (pending) {
+            while (!pending.isEmpty() && pending.peekFirst().done) {
+                cursor.commit(pending.pollFirst().nextOffset);
+            }
+        }
+    }
+
+    /**
+     * 读取循环
+     */
+    private void run() {
+        while (true) {
+            BinLogSpool.Entry entry;
+            try {
+                entry = cursor.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            commitCompleted();
+            if (entry == null) {
+                if (stopping && cursor.isCaughtUp()) {
+                    return;
+                }
+                continue;
+            }
+            Pending current = new Pending(entry.nextOffset());
+            synchronized (pending) {
+                pending.addLast(current);
+            }
+            try {
+                delivery.accept(entry, () -> current.done = true);
+            } catch (Exception e) {
+                // 投递失败的记录不再重试，避免阻塞后面的记录
+                log.error("spool记录投递失败，offset={}，table={}", entry.offset(), entry.dbTable(), e);
+                current.done = true;
+            }
+        }
+    }
+
+    /**
+     * 已投递未提交的记录
+     */
+    private static final class Pending {
+
+        /**
+         * 下一条记录的偏移量
+         */
+        private final long nextOffset;
+
+        /**
+         * 所有分区任务已完成
+         */
+        private volatile boolean done;
+
+        Pending(long nextOffset) {
+            this.nextOffset = nextOffset;
+        }
+    }
+
+}
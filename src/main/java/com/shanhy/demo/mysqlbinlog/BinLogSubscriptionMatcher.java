@@ -0,0 +1,129 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.LRUCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 订阅匹配：规则在创建时编译一次，精确库表走Set查找，通配符和正则逐条匹配。
+ * 匹配结果按tableId和dbTable缓存，每个 TABLE_MAP 事件只做一次缓存查找，与服务器上表的数量无关。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 17:45
+ */
+public class BinLogSubscriptionMatcher {
+
+    /**
+     * tableId缓存的最大数量
+     */
+    private static final int MAX_CACHED_TABLE_IDS = 10000;
+
+    /**
+     * 精确的库表，key为dbTable
+     */
+    private final Set<String> exactTables = new HashSet<>();
+
+    /**
+     * 通配符、正则规则
+     */
+    private final List<BinLogTablePattern> patterns = new ArrayList<>();
+
+    /**
+     * 按tableId缓存的匹配结果，只在binlog读取线程中访问
+     */
+    private final Map<Long, Boolean> tableIdDecisions = new LRUCache<>(100, 0.75f, MAX_CACHED_TABLE_IDS);
+
+    /**
+     * 按dbTable缓存的匹配结果
+     */
+    private final Map<String, Boolean> dbTableDecisions = new ConcurrentHashMap<>();
+
+    /**
+     * BinLogSubscriptionMatcher
+     *
+     * @param tablePatterns tablePatterns
+     */
+    public BinLogSubscriptionMatcher(Collection<BinLogTablePattern> tablePatterns) {
+        for (BinLogTablePattern pattern : tablePatterns) {
+            if (pattern.isExact()) {
+                exactTables.add(pattern.getText());
+            } else {
+                patterns.add(pattern);
+            }
+        }
+    }
+
+    /**
+     * 根据配置创建：databaseName + tableList 为精确订阅，subscriptions 为 库名.表名 规则
+     *
+     * @param binLogProperties binLogProperties
+     * @return BinLogSubscriptionMatcher
+     */
+    public static BinLogSubscriptionMatcher of(BinLogProperties binLogProperties) {
+        List<BinLogTablePattern> tablePatterns = new ArrayList<>();
+        if (binLogProperties.getTableList() != null) {
+            binLogProperties.getTableList().forEach(table ->
+                    tablePatterns.add(BinLogTablePattern.of(binLogProperties.getDatabaseName(), table)));
+        }
+        if (binLogProperties.getSubscriptions() != null) {
+            binLogProperties.getSubscriptions().forEach(pattern -> tablePatterns.add(BinLogTablePattern.parse(pattern)));
+        }
+        return new BinLogSubscriptionMatcher(tablePatterns);
+    }
+
+    /**
+     * TABLE_MAP 事件的表是否订阅，结果按tableId缓存
+     *
+     * @param tableId tableId
+     * @param db      db
+     * @param table   table
+     * @return boolean
+     */
+    public boolean matches(long tableId, String db, String table) {
+        Boolean decision = tableIdDecisions.get(tableId);
+        if (decision == null) {
+            decision = matches(db, table);
+            tableIdDecisions.put(tableId, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * 重连后同一个tableId可能对应其它表（如主从切换），清理按tableId缓存的匹配结果，按dbTable的缓存仍然有效
+     */
+    public void clearTableIds() {
+        tableIdDecisions.clear();
+    }
+
+    /**
+     * 表是否订阅，结果按dbTable缓存
+     *
+     * @param db    db
+     * @param table table
+     * @return boolean
+     */
+    public boolean matches(String db, String table) {
+        String dbTable = BinLogUtils.getDbTable(db, table);
+        if (exactTables.contains(dbTable)) {
+            return true;
+        }
+        if (patterns.isEmpty()) {
+            return false;
+        }
+        return dbTableDecisions.computeIfAbsent(dbTable, key -> {
+            for (BinLogTablePattern pattern : patterns) {
+                if (pattern.matches(db, table)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.Getter;
+
+import java.util.regex.Pattern;
+
+/**
+ * 库表匹配规则，格式为 库名.表名，库名和表名分别可以是精确名称（demo_class）或者通配符（orders_*，* 匹配任意个字符，? 匹配一个字符），
+ * 其他字符（包括 $ [ ] 等）都按字面量匹配，在第一个 . 处拆分库名和表名。
+ * 以 regex: 开头时库名和表名都是正则表达式（regex:orders_\d+.order_item_[0-9]+），在第一个不属于正则的 . 处拆分，
+ * 库名中需要匹配字面量 . 时写成 \.
+ *
+ * @author 单红宇
+ * @date 2026/10/17 17:30
+ */
+@Getter
+public final class BinLogTablePattern {
+
+    /**
+     * 正则规则的前缀
+     */
+    public static final String REGEX_PREFIX = "regex:";
+
+    /**
+     * 原始规则
+     */
+    private final String text;
+
+    /**
+     * 库名精确值，库名为通配符或正则时为null
+     */
+    private final String db;
+
+    /**
+     * 表名精确值，表名为通配符或正则时为null
+     */
+    private final String table;
+
+    /**
+     * 库名正则
+     */
+    private final Pattern dbPattern;
+
+    /**
+     * 表名正则
+     */
+    private final Pattern tablePattern;
+
+    /**
+     * BinLogTablePattern
+     *
+     * @param text  原始规则
+     * @param db    库名规则
+     * @param table 表名规则
+     * @param regex 库名和表名是否为正则
+     */
+    private BinLogTablePattern(String text, String db, String table, boolean regex) {
+        this.text = text;
+        this.db = !regex && isLiteral(db) ? db : null;
+        this.table = !regex && isLiteral(table) ? table : null;
+        this.dbPattern = this.db == null ? Pattern.compile(regex ? db : globToRegex(db)) : null;
+        this.tablePattern = this.table == null ? Pattern.compile(regex ? table : globToRegex(table)) : null;
+    }
+
+    /**
+     * 按库名规则和表名规则创建，规则为精确名称或者通配符
+     *
+     * @param db    库名规则
+     * @param table 表名规则
+     * @return BinLogTablePattern
+     */
+    public static BinLogTablePattern of(String db, String table) {
+        return new BinLogTablePattern(BinLogUtils.getDbTable(db, table), db, table, false);
+    }
+
+    /**
+     * 解析 库名.表名 或者 regex:库名正则.表名正则 格式的规则
+     *
+     * @param pattern pattern
+     * @return BinLogTablePattern
+     */
+    public static BinLogTablePattern parse(String pattern) {
+        boolean regex = pattern.startsWith(REGEX_PREFIX);
+        String body = regex ? pattern.substring(REGEX_PREFIX.length()) : pattern;
+        int index = regex ? indexOfRegexSeparator(body) : body.indexOf('.');
+        if (index <= 0 || index == body.length() - 1) {
+            throw new IllegalArgumentException("订阅规则格式应为 库名.表名：" + pattern);
+        }
+        return new BinLogTablePattern(pattern, body.substring(0, index), body.substring(index + 1), regex);
+    }
+
+    /**
+     * 是否为精确的库名和表名
+     *
+     * @return boolean
+     */
+    public boolean isExact() {
+        return db != null && table != null;
+    }
+
+    /**
+     * 是否匹配
+     *
+     * @param db    db
+     * @param table table
+     * @return boolean
+     */
+    public boolean matches(String db, String table) {
+        return (this.db != null ? this.db.equals(db) : dbPattern.matcher(db).matches())
+                && (this.table != null ? this.table.equals(table) : tablePattern.matcher(table).matches());
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * 正则规则中库名与表名之间的 . ：不在转义、字符类中，且后面不是量词
+     *
+     * @param pattern pattern
+     * @return int，没有时返回-1
+     */
+    private static int indexOfRegexSeparator(String pattern) {
+        boolean inClass = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '.' && !inClass) {
+                char next = i + 1 < pattern.length() ? pattern.charAt(i + 1) : 0;
+                if (next != '*' && next != '+' && next != '?' && next != '{') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 名称中是否没有通配符
+     *
+     * @param name name
+     * @return boolean
+     */
+    private static boolean isLiteral(String name) {
+        return name.indexOf('*') < 0 && name.indexOf('?') < 0;
+    }
+
+    /**
+     * 通配符转换为正则：* 为 .*，? 为 .，其余字符按字面量
+     *
+     * @param name name
+     * @return String
+     */
+    private static String globToRegex(String name) {
+        StringBuilder regex = new StringBuilder(name.length() + 8);
+        int start = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > start) {
+                    regex.append(Pattern.quote(name.substring(start, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < name.length()) {
+            regex.append(Pattern.quote(name.substring(start)));
+        }
+        return regex.toString();
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 事务信封：一个已提交事务内的全部行变更，以及事务的GTID、XID和提交时间。
+ * 行数较多的事务会溢写到磁盘，遍历时按顺序从磁盘读取，避免一次性加载到内存。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 14:32
+ */
+@Getter
+@ToString(exclude = "buffer")
+public class BinLogTransaction implements Iterable<BinLogItem> {
+
+    /**
+     * GTID，未开启GTID时为null
+     */
+    private final String gtid;
+
+    /**
+     * XID，非事务引擎（以QUERY COMMIT结束）时为0
+     */
+    private final long xid;
+
+    /**
+     * 提交时间（毫秒）
+     */
+    private final long commitTimestamp;
+
+    /**
+     * binlog文件名
+     */
+    private final String binlogFilename;
+
+    /**
+     * 事务开始的position
+     */
+    private final long position;
+
+    /**
+     * 事务提交事件之后的position，从这里重启不会重放或跳过该事务的任何一行
+     */
+    private final long nextPosition;
+
+    /**
+     * 行数
+     */
+    private final int size;
+
+    /**
+     * buffer
+     */
+    private final BinLogTransactionBuffer buffer;
+
+    /**
+     * BinLogTransaction
+     *
+     * @param gtid            gtid
+     * @param xid             xid
+     * @param commitTimestamp commitTimestamp
+     * @param binlogFilename  binlogFilename
+     * @param position        position
+     * @param nextPosition    nextPosition
+     * @param buffer          buffer
+     */
+    public BinLogTransaction(String gtid, long xid, long commitTimestamp, String binlogFilename, long position,
+                             long nextPosition, BinLogTransactionBuffer buffer) {
+        this.gtid = gtid;
+        this.xid = xid;
+        this.commitTimestamp = commitTimestamp;
+        this.binlogFilename = binlogFilename;
+        this.position = position;
+        this.nextPosition = nextPosition;
+        this.size = buffer.size();
+        this.buffer = buffer;
+    }
+
+    /**
+     * 按binlog顺序遍历事务内的行变更
+     *
+     * @return Iterator
+     */
+    @Override
+    public Iterator<BinLogItem> iterator() {
+        return buffer.iterator();
+    }
+
+    /**
+     * 事务内全部行变更，事务已溢写到磁盘时会全部读入内存
+     *
+     * @return List
+     */
+    public List<BinLogItem> getItems() {
+        List<BinLogItem> items = new ArrayList<>(size);
+        forEach(items::add);
+        return items;
+    }
+
+    /**
+     * 事务数据是否已溢写到磁盘
+     *
+     * @return boolean
+     */
+    public boolean isSpilled() {
+        return buffer.isSpilled();
+    }
+
+    /**
+     * 释放事务占用的内存和溢写文件
+     */
+    void release() {
+        buffer.release();
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 事务缓冲区：行数超过阈值后将已缓存和后续的行变更顺序写入临时文件，限制大事务的内存占用。
+ * 溢写文件由 BinLogItemCodec 编码的块组成，每块前是4字节的块长度
+ *
+ * @author 单红宇
+ * @date 2026/10/17 14:41
+ */
+@Slf4j
+public class BinLogTransactionBuffer {
+
+    /**
+     * 每块的行数
+     */
+    private static final int BLOCK_ITEMS = 1000;
+
+    /**
+     * 溢写阈值（行数），小于等于0表示不溢写
+     */
+    private final int spillThreshold;
+
+    /**
+     * 溢写目录
+     */
+    private final Path spillDirectory;
+
+    /**
+     * 内存中的行变更
+     */
+    private List<BinLogItem> items = new ArrayList<>();
+
+    /**
+     * 溢写文件
+     */
+    private Path spillFile;
+
+    /**
+     * 溢写输出流
+     */
+    private DataOutputStream spillOutput;
+
+    /**
+     * 当前块的编码器
+     */
+    private BinLogItemCodec.Encoder encoder;
+
+    /**
+     * 当前块的行数
+     */
+    private int blockItems;
+
+    /**
+     * 行数
+     */
+    private int size;
+
+    /**
+     * BinLogTransactionBuffer
+     *
+     * @param spillThreshold 溢写阈值（行数）
+     * @param spillDirectory 溢写目录
+     */
+    public BinLogTransactionBuffer(int spillThreshold, Path spillDirectory) {
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * 追加行变更
+     *
+     * @param binLogItems binLogItems
+     */
+    public void addAll(List<BinLogItem> binLogItems) {
+        try {
+            for (BinLogItem binLogItem : binLogItems) {
+                if (spillOutput != null) {
+                    write(binLogItem);
+                } else {
+                    items.add(binLogItem);
+                    if (spillThreshold > 0 && items.size() > spillThreshold) {
+                        spill();
+                    }
+                }
+                size++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("事务溢写失败：" + spillFile, e);
+        }
+    }
+
+    /**
+     * 行数
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否已溢写
+     *
+     * @return boolean
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * 结束写入，此后只能读取
+     */
+    public void complete() {
+        if (spillOutput != null) {
+            try {
+                writeBlock();
+                spillOutput.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("事务溢写失败：" + spillFile, e);
+            }
+            spillOutput = null;
+        }
+    }
+
+    /**
+     * 按写入顺序遍历
+     *
+     * @return Iterator
+     */
+    public Iterator<BinLogItem> iterator() {
+        if (spillFile == null) {
+            return items.iterator();
+        }
+        return new SpillFileIterator();
+    }
+
+    /**
+     * 释放内存和溢写文件
+     */
+    public void release() {
+        items = new ArrayList<>();
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                log.warn("关闭事务溢写文件失败：{}", spillFile, e);
+            }
+            spillOutput = null;
+        }
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("删除事务溢写文件失败：{}", spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * 将内存中的行变更写入溢写文件
+     *
+     * @throws IOException IOException
+     */
+    private void spill() throws IOException {
+        Files.createDirectories(spillDirectory);
+        spillFile = Files.createTempFile(spillDirectory, "binlog-tx-", ".spill");
+        spillOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile), 1 << 16));
+        encoder = new BinLogItemCodec.Encoder();
+        log.info("事务行数超过{}，溢写到磁盘：{}", spillThreshold, spillFile);
+        for (BinLogItem item : items) {
+            write(item);
+        }
+        items = new ArrayList<>();
+    }
+
+    /**
+     * 写入一条，凑满一块后写入文件
+     *
+     * @param binLogItem binLogItem
+     * @throws IOException IOException
+     */
+    private void write(BinLogItem binLogItem) throws IOException {
+        encoder.write(binLogItem);
+        if (++blockItems >= BLOCK_ITEMS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * 写入当前块
+     *
+     * @throws IOException IOException
+     */
+    private void writeBlock() throws IOException {
+        if (blockItems == 0) {
+            return;
+        }
+        spillOutput.writeInt(encoder.size());
+        spillOutput.write(encoder.toByteArray());
+        encoder.reset();
+        blockItems = 0;
+    }
+
+    /**
+     * 溢写文件迭代器
+     */
+    private final class SpillFileIterator implements Iterator<BinLogItem> {
+
+        /**
+         * 已读取条数
+         */
+        private int read;
+
+        /**
+         * input
+         */
+        private DataInputStream input;
+
+        /**
+         * 解码器，块之间共用表结构缓存
+         */
+        private final BinLogItemCodec.Decoder decoder = new BinLogItemCodec.Decoder();
+
+        /**
+         * 当前块
+         */
+        private byte[] block = new byte[0];
+
+        @Override
+        public boolean hasNext() {
+            if (read < size) {
+                return true;
+            }
+            closeInput();
+            return false;
+        }
+
+        @Override
+        public BinLogItem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (input == null) {
+                    input = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile), 1 << 16));
+                }
+                if (!decoder.hasRemaining()) {
+                    int length = input.readInt();
+                    if (block.length < length) {
+                        block = new byte[length];
+                    }
+                    input.readFully(block, 0, length);
+                    decoder.reset(block, 0, length);
+                }
+                read++;
+                return decoder.read();
+            } catch (IOException e) {
+                closeInput();
+                throw new UncheckedIOException("读取事务溢写文件失败：" + spillFile, e);
+            }
+        }
+
+        /**
+         * 关闭输入流
+         */
+        private void closeInput() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    log.debug("关闭事务溢写文件失败：{}", spillFile, e);
+                }
+                input = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.shanhy.demo.mysqlbinlog;
+
+/**
+ * 事务监听器，事务提交后一次性接收该事务内所有订阅表的变更
+ *
+ * @author 单红宇
+ * @date 2026/10/17 14:30
+ */
+@FunctionalInterface
+public interface BinLogTransactionListener {
+
+    /**
+     * onTransaction
+     *
+     * @param transaction transaction
+     */
+    void onTransaction(BinLogTransaction transaction);
+}
@@ -9,11 +9,16 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
 import static com.github.shyiko.mysql.binlog.event.EventType.isUpdate;
@@ -27,6 +32,31 @@ import static com.github.shyiko.mysql.binlog.event.EventType.isWrite;
 @Slf4j
 public class BinLogUtils {
 
+    /**
+     * 表相关的DDL语句
+     */
+    private static final Pattern DDL_PATTERN = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(ALTER|CREATE|DROP|RENAME|TRUNCATE)\\s+(?:TEMPORARY\\s+)?TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?(.*)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * 表名，可带库名和反引号
+     */
+    private static final Pattern TABLE_NAME_PATTERN = Pattern.compile(
+            "\\G\\s*(`[^`]+`|[\\w$]+)(?:\\s*\\.\\s*(`[^`]+`|[\\w$]+))?");
+
+    /**
+     * DROP/RENAME 语句中多个表名之间的分隔
+     */
+    private static final Pattern DDL_SEPARATOR_PATTERN = Pattern.compile("\\s*(?:,|\\s+TO\\s+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * ALTER TABLE ... RENAME [TO|AS] new_name
+     */
+    private static final Pattern ALTER_RENAME_PATTERN = Pattern.compile(
+            "\\bRENAME\\s+(?:TO\\s+|AS\\s+)?(?!(?:COLUMN|INDEX|KEY)\\b)(`[^`]+`|[\\w$]+)(?:\\s*\\.\\s*(`[^`]+`|[\\w$]+))?",
+            Pattern.CASE_INSENSITIVE);
+
     /**
      * BinLogUtils
      */
@@ -45,6 +75,24 @@ public class BinLogUtils {
         return db + "." + table;
     }
 
+    /**
+     * 创建到binlog数据源的JDBC连接
+     *
+     * @param binLogProperties binLogProperties
+     * @param database         默认数据库，为空时不指定
+     * @return Connection
+     * @throws SQLException SQLException
+     */
+    public static Connection getConnection(BinLogProperties binLogProperties, String database) throws SQLException {
+        try {
+            Class.forName(binLogProperties.getDriverClassName());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("driver not found: " + binLogProperties.getDriverClassName(), e);
+        }
+        return DriverManager.getConnection("jdbc:mysql://" + binLogProperties.getHost() + ":" + binLogProperties.getPort()
+                + "/" + (database == null ? "" : database), binLogProperties.getUsername(), binLogProperties.getPassword());
+    }
+
     /**
      * 获取columns集合
      *
@@ -57,45 +105,142 @@ public class BinLogUtils {
         if (tbNameList == null || tbNameList.isEmpty()) {
             return Collections.emptyMap();
         }
+        StringBuilder tbParamStr = new StringBuilder("(");
+        tbNameList.forEach(tbParam -> tbParamStr.append("?,"));
+        tbParamStr.replace(tbParamStr.length() - 1, tbParamStr.length(), ")");
+        String preSql = "SELECT TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, DATA_TYPE, ORDINAL_POSITION, COLUMN_KEY, COLUMN_TYPE, CHARACTER_SET_NAME " +
+                "FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = ? and TABLE_NAME in " + tbParamStr;
         try {
-            Class.forName(binLogProperties.getDriverClassName());
             // 保存当前注册的表的colum信息
-            Connection connection = DriverManager.getConnection("jdbc:mysql://" + binLogProperties.getHost() + ":" + binLogProperties.getPort() + "/INFORMATION_SCHEMA",
-                    binLogProperties.getUsername(), binLogProperties.getPassword());
-            StringBuilder tbParamStr = new StringBuilder("(");
-            tbNameList.forEach(tbParam -> tbParamStr.append("?,"));
-            tbParamStr.replace(tbParamStr.length() - 1, tbParamStr.length(), ")");
-            // 执行sql
-            String preSql = "SELECT TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, DATA_TYPE, ORDINAL_POSITION FROM INFORMATION_SCHEMA.COLUMNS " +
-                    "WHERE TABLE_SCHEMA = ? and TABLE_NAME in " + tbParamStr;
-            PreparedStatement ps = connection.prepareStatement(preSql);
-            ps.setString(1, dbName);
-            for (int i = 0; i < tbNameList.size(); i++) {
-                ps.setString(i + 2, tbNameList.get(i));
-            }
-            ResultSet rs = ps.executeQuery();
-            Map<String, Map<String, TableColumn>> resultMap = new ConcurrentHashMap<>();
-            while (rs.next()) {
-                String schema = rs.getString("TABLE_SCHEMA");
-                String tableName = rs.getString("TABLE_NAME");
-                String columnName = rs.getString("COLUMN_NAME");
-                int ordinalPosition = rs.getInt("ORDINAL_POSITION");
-                String dataType = rs.getString("DATA_TYPE");
-                if (columnName != null && ordinalPosition >= 1) { // 位置从1开始
-                    Map<String, TableColumn> tableColumnMap = resultMap.computeIfAbsent(BinLogUtils.getDbTable(schema, tableName),
-                            key -> new HashMap<>());
-                    tableColumnMap.put(columnName, new TableColumn(schema, tableName, ordinalPosition, columnName, dataType));
+            try (Connection connection = getConnection(binLogProperties, "INFORMATION_SCHEMA");
+                 PreparedStatement ps = connection.prepareStatement(preSql)) {
+                ps.setString(1, dbName);
+                for (int i = 0; i < tbNameList.size(); i++) {
+                    ps.setString(i + 2, tbNameList.get(i));
+                }
+                Map<String, Map<String, TableColumn>> resultMap = new ConcurrentHashMap<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String schema = rs.getString("TABLE_SCHEMA");
+                        String tableName = rs.getString("TABLE_NAME");
+                        String columnName = rs.getString("COLUMN_NAME");
+                        int ordinalPosition = rs.getInt("ORDINAL_POSITION");
+                        String dataType = rs.getString("DATA_TYPE");
+                        boolean primaryKey = "PRI".equals(rs.getString("COLUMN_KEY"));
+                        if (columnName != null && ordinalPosition >= 1) { // 位置从1开始
+                            Map<String, TableColumn> tableColumnMap = resultMap.computeIfAbsent(BinLogUtils.getDbTable(schema, tableName),
+                                    key -> new HashMap<>());
+                            TableColumn column = new TableColumn(schema, tableName, ordinalPosition, columnName, dataType, primaryKey);
+                            column.setColumnType(rs.getString("COLUMN_TYPE"));
+                            column.setCharset(rs.getString("CHARACTER_SET_NAME"));
+                            tableColumnMap.put(columnName, column);
+                        }
+                    }
                 }
+                return resultMap;
             }
-            ps.close();
-            rs.close();
-            return resultMap;
-        } catch (SQLException | ClassNotFoundException e) {
+        } catch (SQLException e) {
             log.error("load db conf error, schema={}, tables={} ", dbName, String.join(",", tbNameList.toArray(new String[0])), e);
         }
         return Collections.emptyMap();
     }
 
+    /**
+     * 获取单张表的columns，表不存在时返回空Map，查询失败时返回null
+     *
+     * @param binLogProperties binLogProperties
+     * @param db               db
+     * @param table            table
+     * @return Map
+     */
+    public static Map<String, TableColumn> getTableColumns(BinLogProperties binLogProperties, String db, String table) {
+        String sql = "SELECT COLUMN_NAME, DATA_TYPE, ORDINAL_POSITION, COLUMN_KEY, COLUMN_TYPE, CHARACTER_SET_NAME " +
+                "FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = ? and TABLE_NAME = ?";
+        try {
+            try (Connection connection = getConnection(binLogProperties, "INFORMATION_SCHEMA");
+                 PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, db);
+                ps.setString(2, table);
+                Map<String, TableColumn> tableColumnMap = new HashMap<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String columnName = rs.getString("COLUMN_NAME");
+                        int ordinalPosition = rs.getInt("ORDINAL_POSITION");
+                        if (columnName != null && ordinalPosition >= 1) { // 位置从1开始
+                            TableColumn column = new TableColumn(db, table, ordinalPosition, columnName,
+                                    rs.getString("DATA_TYPE"), "PRI".equals(rs.getString("COLUMN_KEY")));
+                            column.setColumnType(rs.getString("COLUMN_TYPE"));
+                            column.setCharset(rs.getString("CHARACTER_SET_NAME"));
+                            tableColumnMap.put(columnName, column);
+                        }
+                    }
+                }
+                return tableColumnMap;
+            }
+        } catch (SQLException e) {
+            log.error("load table conf error, schema={}, table={} ", db, table, e);
+        }
+        return null;
+    }
+
+    /**
+     * 解析DDL语句涉及的表（ALTER/CREATE/DROP/RENAME/TRUNCATE TABLE），返回dbTable集合，非DDL语句返回空集合
+     *
+     * @param defaultDb 执行语句时的默认数据库
+     * @param sql       sql
+     * @return List
+     */
+    public static List<String> getDdlTables(String defaultDb, String sql) {
+        if (sql == null) {
+            return Collections.emptyList();
+        }
+        Matcher matcher = DDL_PATTERN.matcher(sql);
+        if (!matcher.find()) {
+            return Collections.emptyList();
+        }
+        String action = matcher.group(1).toUpperCase();
+        String rest = matcher.group(2);
+        List<String> dbTables = new ArrayList<>();
+        Matcher nameMatcher = TABLE_NAME_PATTERN.matcher(rest);
+        boolean multiple = "DROP".equals(action) || "RENAME".equals(action);
+        while (nameMatcher.find()) {
+            String first = unquote(nameMatcher.group(1));
+            String second = nameMatcher.group(2) == null ? null : unquote(nameMatcher.group(2));
+            dbTables.add(second == null ? getDbTable(defaultDb, first) : getDbTable(first, second));
+            if (!multiple) {
+                // ALTER TABLE ... RENAME [TO|AS] new_name 会产生新表名
+                Matcher renameMatcher = ALTER_RENAME_PATTERN.matcher(rest);
+                if ("ALTER".equals(action) && renameMatcher.find()) {
+                    String renamedDb = renameMatcher.group(2) == null ? defaultDb : unquote(renameMatcher.group(1));
+                    String renamed = unquote(renameMatcher.group(2) == null ? renameMatcher.group(1) : renameMatcher.group(2));
+                    dbTables.add(getDbTable(renamedDb, renamed));
+                }
+                break;
+            }
+            // 表名之后只能是 ","、"TO" 或语句结束
+            int end = nameMatcher.end();
+            Matcher separator = DDL_SEPARATOR_PATTERN.matcher(rest).region(end, rest.length());
+            if (!separator.lookingAt()) {
+                break;
+            }
+            nameMatcher.region(separator.end(), rest.length());
+        }
+        return dbTables;
+    }
+
+    /**
+     * 去掉标识符两边的反引号
+     *
+     * @param identifier identifier
+     * @return String
+     */
+    private static String unquote(String identifier) {
+        return identifier.length() > 1 && identifier.startsWith("`") && identifier.endsWith("`")
+                ? identifier.substring(1, identifier.length() - 1) : identifier;
+    }
+
     /**
      * 根据DBTable获取table
      *
@@ -131,6 +276,26 @@ public class BinLogUtils {
         return Collections.emptyMap();
     }
 
+    /**
+     * 计算主键值的hash，表没有主键时返回0。
+     * 修改和删除按变更前的主键计算：修改了主键的行与该主键之前的变更在同一分区，保证按binlog顺序处理
+     *
+     * @param binLogItem binLogItem
+     * @return int
+     */
+    public static int getPrimaryKeyHash(BinLogItem binLogItem) {
+        Serializable[] row = binLogItem.getBeforeRow() != null ? binLogItem.getBeforeRow() : binLogItem.getAfterRow();
+        if (row == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int index : binLogItem.getSchema().getPrimaryKeyIndexes()) {
+            Serializable value = row[index];
+            hash = 31 * hash + (value instanceof byte[] bytes ? Arrays.hashCode(bytes) : Objects.hashCode(value));
+        }
+        return hash;
+    }
+
     /**
      * 获取操作类型
      *
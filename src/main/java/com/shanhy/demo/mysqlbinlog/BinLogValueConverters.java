@@ -0,0 +1,317 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.deserialization.json.JsonBinary;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 列值转换：binlog反序列化（DATE_AND_TIME_AS_LONG）得到的原始值转换为业务类型，
+ * 每张表按 TableColumn 的 dataType、columnType、charset 只生成一次转换器数组（TableSchema.getConverters()），按列下标取用，
+ * 监听器不需要在每一行上解析类型字符串：
+ * <ul>
+ *     <li>DATETIME → LocalDateTime（binlog中是按UTC计算的本地时间，没有时区），TIMESTAMP → Instant，DATE → LocalDate，
+ *     TIME → LocalTime（超出一天或为负时为 Duration）</li>
+ *     <li>DECIMAL → BigDecimal；无符号整数 → 不溢出的 Integer/Long/BigInteger</li>
+ *     <li>文本列的 byte[] → 按列字符集解码的 String，二进制串、BLOB 保持 byte[]；JSON → JSON文本</li>
+ *     <li>ENUM → 取值，SET → 逗号分隔的取值，BIT → Long</li>
+ * </ul>
+ * 缺少元数据（如 columnType、charset 为null）时按有符号整数、UTF-8 处理，不认识的类型和已经是目标类型的值原样返回
+ *
+ * @author 单红宇
+ * @date 2026/10/18 16:20
+ */
+public final class BinLogValueConverters {
+
+    /**
+     * 原样返回
+     */
+    public static final Converter IDENTITY = value -> value;
+
+    /**
+     * MySQL字符集名称 -> Java字符集，与Java名称不同的字符集
+     */
+    private static final Map<String, String> JAVA_CHARSETS = Map.ofEntries(
+            Map.entry("utf8mb4", "UTF-8"),
+            Map.entry("utf8mb3", "UTF-8"),
+            Map.entry("utf8", "UTF-8"),
+            Map.entry("latin1", "windows-1252"),
+            Map.entry("latin2", "ISO-8859-2"),
+            Map.entry("ascii", "US-ASCII"),
+            Map.entry("ucs2", "UTF-16BE"),
+            Map.entry("utf16", "UTF-16BE"),
+            Map.entry("utf16le", "UTF-16LE"),
+            Map.entry("utf32", "UTF-32"),
+            Map.entry("sjis", "Shift_JIS"),
+            Map.entry("cp932", "windows-31j"),
+            Map.entry("ujis", "EUC-JP"),
+            Map.entry("eucjpms", "EUC-JP"),
+            Map.entry("euckr", "EUC-KR"),
+            Map.entry("big5", "Big5"),
+            Map.entry("koi8r", "KOI8-R"),
+            Map.entry("koi8u", "KOI8-U"),
+            Map.entry("greek", "ISO-8859-7"),
+            Map.entry("hebrew", "ISO-8859-8"),
+            Map.entry("latin5", "ISO-8859-9"),
+            Map.entry("latin7", "ISO-8859-13"),
+            Map.entry("tis620", "TIS-620"));
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private BinLogValueConverters() {
+    }
+
+    /**
+     * 单列的转换器，输入不为null
+     */
+    @FunctionalInterface
+    public interface Converter {
+
+        /**
+         * 转换
+         *
+         * @param value 原始值
+         * @return Serializable
+         */
+        Serializable convert(Serializable value);
+
+    }
+
+    /**
+     * 按列下标生成表的转换器数组，没有列信息的下标为 IDENTITY
+     *
+     * @param schema schema
+     * @return Converter[]
+     */
+    public static Converter[] of(TableSchema schema) {
+        Converter[] converters = new Converter[schema.getColumnCount()];
+        Map<String, TableColumn> columns = schema.getColumns();
+        for (int i = 0; i < converters.length; i++) {
+            String columnName = schema.getColumnName(i);
+            TableColumn column = columnName == null ? null : columns.get(columnName);
+            converters[i] = column == null ? IDENTITY : of(column);
+        }
+        return converters;
+    }
+
+    /**
+     * 列的转换器
+     *
+     * @param column column
+     * @return Converter
+     */
+    public static Converter of(TableColumn column) {
+        String dataType = column.getDataType() == null ? "" : column.getDataType().toLowerCase(Locale.ROOT);
+        String columnType = column.getColumnType() == null ? "" : column.getColumnType().toLowerCase(Locale.ROOT);
+        boolean unsigned = columnType.contains("unsigned");
+        return switch (dataType) {
+            case "tinyint" -> unsigned ? unsignedInt(0xFF) : IDENTITY;
+            case "smallint" -> unsigned ? unsignedInt(0xFFFF) : IDENTITY;
+            case "mediumint" -> unsigned ? unsignedInt(0xFFFFFF) : IDENTITY;
+            case "int", "integer" -> unsigned
+                    ? value -> value instanceof Number number ? Integer.toUnsignedLong(number.intValue()) : value
+                    : IDENTITY;
+            case "bigint" -> unsigned ? BinLogValueConverters::unsignedLong : IDENTITY;
+            case "decimal", "numeric" -> BinLogValueConverters::toDecimal;
+            case "date" -> value -> value instanceof Number number
+                    ? LocalDate.ofEpochDay(Math.floorDiv(number.longValue(), MILLIS_PER_DAY)) : value;
+            case "datetime" -> value -> value instanceof Number number ? toLocalDateTime(number.longValue()) : value;
+            case "timestamp" -> value -> value instanceof Number number ? Instant.ofEpochMilli(number.longValue()) : value;
+            case "time" -> value -> value instanceof Number number ? toTime(number.longValue()) : value;
+            case "bit" -> value -> value instanceof BitSet bits ? toLong(bits) : value;
+            case "char", "varchar", "tinytext", "text", "mediumtext", "longtext" -> string(toCharset(column.getCharset()));
+            case "json" -> value -> value instanceof byte[] bytes ? parseJson(bytes) : value;
+            case "enum" -> enumValues(parseValues(column.getColumnType()));
+            case "set" -> setValues(parseValues(column.getColumnType()));
+            default -> IDENTITY;
+        };
+    }
+
+    /**
+     * 无符号的 tinyint/smallint/mediumint：binlog中按有符号截断，按位宽还原
+     *
+     * @param mask mask
+     * @return Converter
+     */
+    private static Converter unsignedInt(int mask) {
+        return value -> value instanceof Number number ? number.intValue() & mask : value;
+    }
+
+    /**
+     * 无符号 bigint：超过 Long.MAX_VALUE 的值在binlog中为负数，转换为 BigInteger
+     *
+     * @param value value
+     * @return Serializable
+     */
+    private static Serializable unsignedLong(Serializable value) {
+        if (value instanceof Long number && number < 0) {
+            return new BigInteger(Long.toUnsignedString(number));
+        }
+        return value;
+    }
+
+    private static Serializable toDecimal(Serializable value) {
+        if (value instanceof BigDecimal || !(value instanceof Number)) {
+            return value;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    private static Serializable toTime(long millis) {
+        if (millis >= 0 && millis < MILLIS_PER_DAY) {
+            return LocalTime.ofNanoOfDay(millis * 1_000_000);
+        }
+        return Duration.ofMillis(millis);
+    }
+
+    private static Serializable toLong(BitSet bits) {
+        long[] words = bits.toLongArray();
+        return words.length == 0 ? 0L : words[0];
+    }
+
+    private static Serializable parseJson(byte[] bytes) {
+        try {
+            return JsonBinary.parseAsString(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("解析JSON列失败", e);
+        }
+    }
+
+    /**
+     * 文本列：byte[] 按列字符集解码，已经是 String 时原样返回
+     *
+     * @param charset charset
+     * @return Converter
+     */
+    private static Converter string(Charset charset) {
+        return value -> value instanceof byte[] bytes ? new String(bytes, charset) : value;
+    }
+
+    /**
+     * ENUM：binlog中为取值的序号（从1开始），0表示非法值（空串）
+     *
+     * @param values values
+     * @return Converter
+     */
+    private static Converter enumValues(String[] values) {
+        if (values == null) {
+            return IDENTITY;
+        }
+        return value -> {
+            if (!(value instanceof Number number)) {
+                return value;
+            }
+            int index = number.intValue();
+            return index == 0 ? "" : index <= values.length ? values[index - 1] : value;
+        };
+    }
+
+    /**
+     * SET：binlog中为位图，第i位对应第i个取值
+     *
+     * @param values values
+     * @return Converter
+     */
+    private static Converter setValues(String[] values) {
+        if (values == null) {
+            return IDENTITY;
+        }
+        return value -> {
+            if (!(value instanceof Number number)) {
+                return value;
+            }
+            long bits = number.longValue();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < values.length && i < Long.SIZE; i++) {
+                if ((bits & (1L << i)) != 0) {
+                    if (!sb.isEmpty()) {
+                        sb.append(',');
+                    }
+                    sb.append(values[i]);
+                }
+            }
+            return sb.toString();
+        };
+    }
+
+    /**
+     * MySQL字符集对应的Java字符集，未知或者不支持时为UTF-8
+     *
+     * @param mysqlCharset mysqlCharset
+     * @return Charset
+     */
+    static Charset toCharset(String mysqlCharset) {
+        if (mysqlCharset == null) {
+            return StandardCharsets.UTF_8;
+        }
+        String name = JAVA_CHARSETS.getOrDefault(mysqlCharset.toLowerCase(Locale.ROOT), mysqlCharset);
+        try {
+            return Charset.isSupported(name) ? Charset.forName(name) : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * 解析 enum('a','b''c') / set(...) 中的取值，不是这种写法时返回null
+     *
+     * @param columnType columnType
+     * @return String[]
+     */
+    static String[] parseValues(String columnType) {
+        if (columnType == null) {
+            return null;
+        }
+        int start = columnType.indexOf('(');
+        int end = columnType.lastIndexOf(')');
+        if (start < 0 || end < start) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder current = null;
+        for (int i = start + 1; i < end; i++) {
+            char c = columnType.charAt(i);
+            if (current == null) {
+                if (c == '\'') {
+                    current = new StringBuilder();
+                }
+            } else if (c == '\'') {
+                if (i + 1 < end && columnType.charAt(i + 1) == '\'') {
+                    // '' 为转义的单引号
+                    current.append('\'');
+                    i++;
+                } else {
+                    values.add(current.toString());
+                    current = null;
+                }
+            } else if (c == '\\' && i + 1 < end) {
+                current.append(columnType.charAt(++i));
+            } else {
+                current.append(c);
+            }
+        }
+        return values.toArray(new String[0]);
+    }
+
+}
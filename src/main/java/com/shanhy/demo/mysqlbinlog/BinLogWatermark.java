@@ -0,0 +1,171 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * checkpoint水位：binlog读取线程按顺序登记每个事件的 binlogFilename/nextPosition，得到该事件的确认，
+ * 事件的所有监听器处理完成后确认。监听器并发或者异步执行时确认的顺序不确定，
+ * 水位只推进到连续确认的最后一个事件，再保存到checkpoint（包括该事件之前已完成事务的GTID集合），重启后从第一个未确认的事件重新开始
+ *
+ * @author 单红宇
+ * @date 2026/10/18 09:45
+ */
+public class BinLogWatermark {
+
+    /**
+     * 水位推进后保存checkpoint
+     */
+    private final Checkpoint checkpoint;
+
+    /**
+     * 已登记未推进的事件，按binlog顺序
+     */
+    private final Deque<Mark> pending = new ArrayDeque<>();
+
+    /**
+     * 水位所在的binlog文件
+     */
+    private volatile String binlogFilename;
+
+    /**
+     * 水位的position
+     */
+    private volatile long position;
+
+    /**
+     * BinLogWatermark
+     *
+     * @param checkpoint 保存 binlogFilename、nextPosition、GTID集合
+     */
+    public BinLogWatermark(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * 登记事件，需要按binlog顺序调用
+     *
+     * @param binlogFilename binlogFilename
+     * @param nextPosition   事件之后的position
+     * @return 确认，事件处理完成后调用一次
+     */
+    public Runnable track(String binlogFilename, long nextPosition) {
+        return track(binlogFilename, nextPosition, null);
+    }
+
+    /**
+     * 登记事件，需要按binlog顺序调用
+     *
+     * @param binlogFilename binlogFilename
+     * @param nextPosition   事件之后的position
+     * @param gtidSet        nextPosition之前已完成事务的GTID集合，为null时沿用之前保存的值
+     * @return 确认，事件处理完成后调用一次
+     */
+    public Runnable track(String binlogFilename, long nextPosition, String gtidSet) {
+        Mark mark = new Mark(binlogFilename, nextPosition, gtidSet);
+        synchronized (pending) {
+            pending.addLast(mark);
+        }
+        return () -> {
+            mark.done = true;
+            advance();
+        };
+    }
+
+    /**
+     * 水位推进到连续确认的最后一个事件
+     */
+    private void advance() {
+        synchronized (pending) {
+            Mark last = null;
+            String gtidSet = null;
+            while (!pending.isEmpty() && pending.peekFirst().done) {
+                last = pending.pollFirst();
+                gtidSet = last.gtidSet != null ? last.gtidSet : gtidSet;
+            }
+            if (last != null) {
+                this.binlogFilename = last.binlogFilename;
+                this.position = last.nextPosition;
+                checkpoint.save(last.binlogFilename, last.nextPosition, gtidSet);
+            }
+        }
+    }
+
+    /**
+     * 已登记未推进的事件数
+     *
+     * @return int
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 水位所在的binlog文件
+     *
+     * @return String
+     */
+    public String getBinlogFilename() {
+        return binlogFilename;
+    }
+
+    /**
+     * 水位的position
+     *
+     * @return long
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 已登记的事件
+     */
+    private static final class Mark {
+
+        /**
+         * binlogFilename
+         */
+        private final String binlogFilename;
+
+        /**
+         * 事件之后的position
+         */
+        private final long nextPosition;
+
+        /**
+         * nextPosition之前已完成事务的GTID集合，可以为null
+         */
+        private final String gtidSet;
+
+        /**
+         * 所有监听器已处理完成
+         */
+        private volatile boolean done;
+
+        Mark(String binlogFilename, long nextPosition, String gtidSet) {
+            this.binlogFilename = binlogFilename;
+            this.nextPosition = nextPosition;
+            this.gtidSet = gtidSet;
+        }
+    }
+
+    /**
+     * 保存checkpoint
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+
+        /**
+         * 保存
+         *
+         * @param binlogFilename binlogFilename
+         * @param nextPosition   nextPosition
+         * @param gtidSet        GTID集合，为null时沿用之前保存的值
+         */
+        void save(String binlogFilename, long nextPosition, String gtidSet);
+    }
+
+}
@@ -0,0 +1,330 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.LRUCache;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.DeleteRowsEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventHeaderV4Deserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.NullEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.UpdateRowsEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.WriteRowsEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+/**
+ * 按表过滤的行事件反序列化。
+ * 行事件的前6个字节是tableId，未订阅的表读取tableId后直接返回空的行数据，剩余字节由 EventDeserializer 跳过，
+ * 不再把整行解析成 Serializable[] 后再丢弃。同时统计跳过和解析的字节数。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 17:05
+ */
+public class FilteringRowsDeserializers {
+
+    /**
+     * 是否订阅了该tableId（此时 TABLE_MAP 事件已经处理完）
+     */
+    private final LongPredicate subscribed;
+
+    /**
+     * 跳过的字节数
+     */
+    private final LongAdder skippedBytes = new LongAdder();
+
+    /**
+     * 解析的字节数
+     */
+    private final LongAdder decodedBytes = new LongAdder();
+
+    /**
+     * 跳过的行事件数
+     */
+    private final LongAdder skippedEvents = new LongAdder();
+
+    /**
+     * 解析的行事件数
+     */
+    private final LongAdder decodedEvents = new LongAdder();
+
+    /**
+     * 解析行数据的耗时（纳秒）
+     */
+    private final LongAdder decodeNanos = new LongAdder();
+
+    /**
+     * FilteringRowsDeserializers
+     *
+     * @param subscribed 是否订阅了该tableId
+     */
+    public FilteringRowsDeserializers(LongPredicate subscribed) {
+        this.subscribed = subscribed;
+    }
+
+    /**
+     * 创建 EventDeserializer：其他事件沿用默认的反序列化，行事件替换为按表过滤的实现
+     *
+     * @return EventDeserializer
+     */
+    public EventDeserializer createEventDeserializer() {
+        // 行事件解析依赖 TABLE_MAP 缓存，与 EventDeserializer 共用同一个Map
+        Map<Long, TableMapEventData> tableMapEventByTableId = new LRUCache<>(100, 0.75f, 10000);
+        EventDeserializer defaults = new EventDeserializer();
+        // EventDeserializer 的构造方法只接受原始类型的 Map<EventType, EventDataDeserializer>
+        @SuppressWarnings("rawtypes")
+        Map<EventType, EventDataDeserializer> deserializers = new IdentityHashMap<>();
+        for (EventType eventType : EventType.values()) {
+            deserializers.put(eventType, defaults.getEventDataDeserializer(eventType));
+        }
+        deserializers.put(EventType.WRITE_ROWS, new Write(tableMapEventByTableId));
+        deserializers.put(EventType.EXT_WRITE_ROWS, new Write(tableMapEventByTableId).setMayContainExtraInformation(true));
+        deserializers.put(EventType.UPDATE_ROWS, new Update(tableMapEventByTableId));
+        deserializers.put(EventType.EXT_UPDATE_ROWS, new Update(tableMapEventByTableId).setMayContainExtraInformation(true));
+        deserializers.put(EventType.DELETE_ROWS, new Delete(tableMapEventByTableId));
+        deserializers.put(EventType.EXT_DELETE_ROWS, new Delete(tableMapEventByTableId).setMayContainExtraInformation(true));
+        return new EventDeserializer(new EventHeaderV4Deserializer(), new NullEventDataDeserializer(),
+                deserializers, tableMapEventByTableId);
+    }
+
+    /**
+     * 跳过的字节数
+     *
+     * @return long
+     */
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    /**
+     * 解析的字节数
+     *
+     * @return long
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    /**
+     * 跳过的行事件数
+     *
+     * @return long
+     */
+    public long getSkippedEvents() {
+        return skippedEvents.sum();
+    }
+
+    /**
+     * 解析的行事件数
+     *
+     * @return long
+     */
+    public long getDecodedEvents() {
+        return decodedEvents.sum();
+    }
+
+    /**
+     * 解析行数据的累计耗时（纳秒），不包含跳过的行事件
+     *
+     * @return long
+     */
+    public long getDecodeNanos() {
+        return decodeNanos.sum();
+    }
+
+    /**
+     * 读取tableId，判断是否需要解析并计数
+     *
+     * @param tableId tableId
+     * @param size    事件数据的字节数
+     * @return 是否需要解析
+     */
+    private boolean accept(long tableId, int size) {
+        if (subscribed.test(tableId)) {
+            decodedBytes.add(size);
+            decodedEvents.increment();
+            return true;
+        }
+        skippedBytes.add(size);
+        skippedEvents.increment();
+        return false;
+    }
+
+    /**
+     * 跳过flags和扩展信息，读取列数
+     *
+     * @param in                         in
+     * @param mayContainExtraInformation 是否为 v2 行事件
+     * @return 列数
+     * @throws IOException IOException
+     */
+    private static int readColumnCount(ByteArrayInputStream in, boolean mayContainExtraInformation) throws IOException {
+        in.skip(2);
+        if (mayContainExtraInformation) {
+            int extraInfoLength = in.readInteger(2);
+            in.skip(extraInfoLength - 2L);
+        }
+        return in.readPackedInteger();
+    }
+
+    /**
+     * WRITE_ROWS
+     */
+    private final class Write extends WriteRowsEventDataDeserializer {
+
+        /**
+         * mayContainExtraInformation
+         */
+        private boolean mayContainExtraInformation;
+
+        /**
+         * Write
+         *
+         * @param tableMapEventByTableId tableMapEventByTableId
+         */
+        Write(Map<Long, TableMapEventData> tableMapEventByTableId) {
+            super(tableMapEventByTableId);
+        }
+
+        @Override
+        public WriteRowsEventDataDeserializer setMayContainExtraInformation(boolean mayContainExtraInformation) {
+            this.mayContainExtraInformation = mayContainExtraInformation;
+            return super.setMayContainExtraInformation(mayContainExtraInformation);
+        }
+
+        @Override
+        public WriteRowsEventData deserialize(ByteArrayInputStream in) throws IOException {
+            long start = System.nanoTime();
+            int size = in.available();
+            WriteRowsEventData data = new WriteRowsEventData();
+            data.setTableId(in.readLong(6));
+            if (!accept(data.getTableId(), size)) {
+                data.setIncludedColumns(new BitSet());
+                data.setRows(Collections.emptyList());
+                return data;
+            }
+            data.setIncludedColumns(in.readBitSet(readColumnCount(in, mayContainExtraInformation), true));
+            List<Serializable[]> rows = new ArrayList<>();
+            while (in.available() > 0) {
+                rows.add(deserializeRow(data.getTableId(), data.getIncludedColumns(), in));
+            }
+            data.setRows(rows);
+            decodeNanos.add(System.nanoTime() - start);
+            return data;
+        }
+    }
+
+    /**
+     * UPDATE_ROWS
+     */
+    private final class Update extends UpdateRowsEventDataDeserializer {
+
+        /**
+         * mayContainExtraInformation
+         */
+        private boolean mayContainExtraInformation;
+
+        /**
+         * Update
+         *
+         * @param tableMapEventByTableId tableMapEventByTableId
+         */
+        Update(Map<Long, TableMapEventData> tableMapEventByTableId) {
+            super(tableMapEventByTableId);
+        }
+
+        @Override
+        public UpdateRowsEventDataDeserializer setMayContainExtraInformation(boolean mayContainExtraInformation) {
+            this.mayContainExtraInformation = mayContainExtraInformation;
+            return super.setMayContainExtraInformation(mayContainExtraInformation);
+        }
+
+        @Override
+        public UpdateRowsEventData deserialize(ByteArrayInputStream in) throws IOException {
+            long start = System.nanoTime();
+            int size = in.available();
+            UpdateRowsEventData data = new UpdateRowsEventData();
+            data.setTableId(in.readLong(6));
+            if (!accept(data.getTableId(), size)) {
+                data.setIncludedColumnsBeforeUpdate(new BitSet());
+                data.setIncludedColumns(new BitSet());
+                data.setRows(Collections.emptyList());
+                return data;
+            }
+            int columnCount = readColumnCount(in, mayContainExtraInformation);
+            data.setIncludedColumnsBeforeUpdate(in.readBitSet(columnCount, true));
+            data.setIncludedColumns(in.readBitSet(columnCount, true));
+            List<Map.Entry<Serializable[], Serializable[]>> rows = new ArrayList<>();
+            while (in.available() > 0) {
+                Serializable[] before = deserializeRow(data.getTableId(), data.getIncludedColumnsBeforeUpdate(), in);
+                Serializable[] after = deserializeRow(data.getTableId(), data.getIncludedColumns(), in);
+                rows.add(new AbstractMap.SimpleEntry<>(before, after));
+            }
+            data.setRows(rows);
+            decodeNanos.add(System.nanoTime() - start);
+            return data;
+        }
+    }
+
+    /**
+     * DELETE_ROWS
+     */
+    private final class Delete extends DeleteRowsEventDataDeserializer {
+
+        /**
+         * mayContainExtraInformation
+         */
+        private boolean mayContainExtraInformation;
+
+        /**
+         * Delete
+         *
+         * @param tableMapEventByTableId tableMapEventByTableId
+         */
+        Delete(Map<Long, TableMapEventData> tableMapEventByTableId) {
+            super(tableMapEventByTableId);
+        }
+
+        @Override
+        public DeleteRowsEventDataDeserializer setMayContainExtraInformation(boolean mayContainExtraInformation) {
+            this.mayContainExtraInformation = mayContainExtraInformation;
+            return super.setMayContainExtraInformation(mayContainExtraInformation);
+        }
+
+        @Override
+        public DeleteRowsEventData deserialize(ByteArrayInputStream in) throws IOException {
+            long start = System.nanoTime();
+            int size = in.available();
+            DeleteRowsEventData data = new DeleteRowsEventData();
+            data.setTableId(in.readLong(6));
+            if (!accept(data.getTableId(), size)) {
+                data.setIncludedColumns(new BitSet());
+                data.setRows(Collections.emptyList());
+                return data;
+            }
+            data.setIncludedColumns(in.readBitSet(readColumnCount(in, mayContainExtraInformation), true));
+            List<Serializable[]> rows = new ArrayList<>();
+            while (in.available() > 0) {
+                rows.add(deserializeRow(data.getTableId(), data.getIncludedColumns(), in));
+            }
+            data.setRows(rows);
+            decodeNanos.add(System.nanoTime() - start);
+            return data;
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.util.Arrays;
+
+/**
+ * long为key的开放寻址Map（线性探测），key不装箱，容量有上限，超过上限时淘汰最久未访问（get、put）的key。
+ * 每个槽位记录最近访问的序号，淘汰时扫描一遍槽位找到序号最小的key，只在元素数达到上限时发生；
+ * 删除的key不再参与淘汰，正在使用的key不会因为更早放入而被淘汰。
+ * 删除采用后移（backward shift），不留墓碑，探测链长度不随删除次数增长。非线程安全。
+ *
+ * @param <V> value类型
+ * @author 单红宇
+ * @date 2026/10/17 18:10
+ */
+public final class LongObjectMap<V> {
+
+    /**
+     * keys
+     */
+    private final long[] keys;
+
+    /**
+     * values，为null表示空槽
+     */
+    private final Object[] values;
+
+    /**
+     * 下标掩码
+     */
+    private final int mask;
+
+    /**
+     * 每个槽位最近访问的序号，用于淘汰
+     */
+    private final long[] accessOrder;
+
+    /**
+     * 最大元素数
+     */
+    private final int maxSize;
+
+    /**
+     * 访问序号
+     */
+    private long clock;
+
+    /**
+     * 元素数
+     */
+    private int size;
+
+    /**
+     * LongObjectMap
+     *
+     * @param maxSize 最大元素数
+     */
+    public LongObjectMap(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        // 负载因子不超过0.5
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.accessOrder = new long[capacity];
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取value，不存在时返回null
+     *
+     * @param key key
+     * @return V
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        accessOrder[index] = ++clock;
+        return (V) values[index];
+    }
+
+    /**
+     * 是否包含key
+     *
+     * @param key key
+     * @return boolean
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 放入value，元素数达到上限时先淘汰最久未访问的key
+     *
+     * @param key   key
+     * @param value value，不能为null
+     * @return 原来的value
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            V previous = (V) values[index];
+            values[index] = value;
+            accessOrder[index] = ++clock;
+            return previous;
+        }
+        if (size == maxSize) {
+            remove(keys[leastRecentlyUsed()]);
+        }
+        index = slot(key);
+        while (values[index] != null) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        accessOrder[index] = ++clock;
+        size++;
+        return null;
+    }
+
+    /**
+     * 删除key
+     *
+     * @param key key
+     * @return 原来的value
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V) values[index];
+        // 后移删除：把探测链上后面的元素移到空出的位置，保证查找不会提前遇到空槽
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                accessOrder[gap] = accessOrder[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * 元素数
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * 最久未访问的元素所在的下标，Map不为空时调用
+     *
+     * @return int
+     */
+    private int leastRecentlyUsed() {
+        int eldest = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && (eldest < 0 || accessOrder[i] < accessOrder[eldest])) {
+                eldest = i;
+            }
+        }
+        return eldest;
+    }
+
+    /**
+     * 查找key所在的下标，不存在时返回-1
+     *
+     * @param key key
+     * @return int
+     */
+    private int indexOf(long key) {
+        int index = slot(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * key的初始槽位
+     *
+     * @param key key
+     * @return int
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
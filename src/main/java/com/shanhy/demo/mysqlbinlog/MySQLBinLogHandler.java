@@ -1,22 +1,46 @@
 package com.shanhy.demo.mysqlbinlog;
 
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.GtidSet;
 import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
 import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.PreviousGtidSetEventData;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
 import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
 import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.github.shyiko.mysql.binlog.event.EventType.isDelete;
 import static com.github.shyiko.mysql.binlog.event.EventType.isUpdate;
@@ -31,6 +55,27 @@ import static com.github.shyiko.mysql.binlog.event.EventType.isWrite;
 @Slf4j
 public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
 
+    /**
+     * 事务监听器所在的分区，事务信封按提交顺序串行投递
+     */
+    private static final String TRANSACTION_PARTITION = "__transaction__";
+
+    /**
+     * 投递事务时每次投递给表监听器的最大行数：表监听器按表的连续行分片接收事务，不保证整体投递，
+     * 需要整个事务一次投递时使用 BinLogTransactionListener
+     */
+    private static final int TRANSACTION_DELIVERY_CHUNK = 1024;
+
+    /**
+     * 按tableId缓存的分发计划最大数量，与 EventDeserializer 的 TABLE_MAP 缓存一致
+     */
+    private static final int MAX_TABLE_ID_PLANS = 10000;
+
+    /**
+     * 投递到分发器的spool游标名称
+     */
+    private static final String SPOOL_DISPATCH_CURSOR = "dispatch";
+
     /**
      * parseClient
      */
@@ -47,21 +92,174 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
     private final BinLogProperties binLogProperties;
 
     /**
-     * 存放每张数据表对应的listener
+     * 注册的listener，按库表规则匹配
+     */
+    private final List<ListenerRegistration> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每张数据表的分发计划，key为dbTable
+     */
+    private final Map<String, BinLogDispatchPlan> tablePlans = new ConcurrentHashMap<>();
+
+    /**
+     * spool中记录的分发计划，按记录编码时的表结构生成，key为dbTable，只在spool读取线程中访问
+     */
+    private final Map<String, BinLogDispatchPlan> spoolPlans = new HashMap<>();
+
+    /**
+     * 订阅表的分发计划，key为tableId，只在binlog读取线程中访问
+     */
+    private final LongObjectMap<BinLogDispatchPlan> tableIdPlans = new LongObjectMap<>(MAX_TABLE_ID_PLANS);
+
+    /**
+     * 每张订阅表当前的tableId，tableId变化（DDL等）后删除旧tableId的计划，只在binlog读取线程中访问
+     */
+    private final Map<String, Long> planTableIds = new HashMap<>();
+
+    /**
+     * 分发计划版本号，注册监听器、DDL、表结构刷新后递增，旧版本的计划在下次使用时重新生成
+     */
+    private final AtomicLong planVersion = new AtomicLong();
+
+    /**
+     * 监听表的表结构，key为dbTable，DDL后由 schemaRefresher 原子替换
+     */
+    private final Map<String, TableSchema> tableSchemaMap = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅匹配
+     */
+    private final BinLogSubscriptionMatcher subscriptionMatcher;
+
+    /**
+     * 表结构刷新
+     */
+    private final BinLogSchemaRefresher schemaRefresher;
+
+    /**
+     * TABLE_MAP 元数据表结构来源
+     */
+    private final TableMapSchemaSource tableMapSchemaSource = new TableMapSchemaSource();
+
+    /**
+     * 行事件反序列化，未订阅表的行数据不解析
+     */
+    private final FilteringRowsDeserializers rowsDeserializers;
+
+    /**
+     * 事件分发器，监听器在分发器的工作线程中执行，不阻塞binlog读取线程
+     */
+    private final BinLogDispatcher dispatcher;
+
+    /**
+     * 批量监听器攒批
+     */
+    private final BinLogBatcher batcher;
+
+    /**
+     * 指标
+     */
+    private final BinLogMetrics metrics;
+
+    /**
+     * 本地spool，未开启时为null
+     */
+    private final BinLogSpool spool;
+
+    /**
+     * spool读取线程，从spool读取后投递到分发器，未开启spool时为null
+     */
+    private final BinLogSpoolReader spoolReader;
+
+    /**
+     * checkpoint水位，开启spool或者 usesWatermark 时不为null
+     */
+    private final BinLogWatermark watermark;
+
+    /**
+     * 事务监听器
+     */
+    private final List<BinLogTransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前事务的缓冲区，不在事务中时为null
+     */
+    private BinLogTransactionBuffer transactionBuffer;
+
+    /**
+     * 当前事务的GTID
+     */
+    private String transactionGtid;
+
+    /**
+     * 当前事务的原始提交时间（微秒），来自GTID事件，MySQL 8.0以下为0
+     */
+    private long transactionCommitMicros;
+
+    /**
+     * 当前事务开始的position
+     */
+    private long transactionPosition;
+
+    /**
+     * 已读取完成的事务的GTID集合，未开启 checkpoint.gtid 或者还不知道起点时为null，只在binlog读取线程中访问
+     */
+    private GtidSet gtidSet;
+
+    /**
+     * gtidSet 的字符串形式，gtidSet 变化后重新生成
+     */
+    private String gtidSetString;
+
+    /**
+     * 正在读取的事务的GTID，开启 checkpoint.gtid 时记录
+     */
+    private String pendingGtid;
+
+    /**
+     * 最后一个完整事务之后的文件名，重连时从这里继续
+     */
+    private String resumeFilename;
+
+    /**
+     * 最后一个完整事务之后的position
+     */
+    private long resumePosition;
+
+    /**
+     * resumePosition 之后已读取的行事件数
+     */
+    private int rowsEventsSinceResume;
+
+    /**
+     * 重连后需要跳过的行事件数：断开前已经投递的、未完成事务中的行事件
      */
-    private final MultiValueMap<String, BinLogListener> listeners;
+    private int skipRowsEvents;
 
     /**
-     * listenerTableColumnMap
+     * 本次 connect 是否连接成功过
      */
-    private Map<String, Map<String, TableColumn>> listenerTableColumnMap;
+    private volatile boolean connected;
 
     /**
-     * TABLE_MAP 事件：当某个表的行事件（如 WRITE_ROWS, UPDATE_ROWS, DELETE_ROWS）被记录到 binlog 中时，
-     * MySQL 会首先生成一个 TABLE_MAP 事件。这些事件描述了 tableId 和对应表的元数据（如表名、数据库名、列类型等）。
-     * 因为 TABLE_MAP 事件和后续的 增删改事件是两次不同的事件，当我们需要再后面事件中获取到对应的表信息时，需要在先收到的 TABLE_MAP 事件中提前将表的Id和表信息关联起来
+     * 最近一次收到事件的时间
      */
-    private final Map<Long, String> tableIdMapping;
+    private volatile long lastEventMillis;
+
+    /**
+     * 是否已停止
+     */
+    private volatile boolean stopped;
+
+    /**
+     * 停止信号，中断重连前的等待
+     */
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    /**
+     * 心跳超时检查，未开启重连或者心跳时为null
+     */
+    private ScheduledExecutorService watchdog;
 
     /**
      * 监听器初始化
@@ -69,16 +267,85 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
      * @param binLogProperties binLogProperties
      */
     public MySQLBinLogHandler(BinLogProperties binLogProperties, SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener) {
+        this(binLogProperties, saveBinlogFilenameAndPositionListener, BinLogMetrics.noop());
+    }
+
+    /**
+     * 监听器初始化
+     *
+     * @param binLogProperties                      binLogProperties
+     * @param saveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener
+     * @param metrics                               指标
+     */
+    public MySQLBinLogHandler(BinLogProperties binLogProperties,
+                              SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener,
+                              BinLogMetrics metrics) {
+        this(binLogProperties, saveBinlogFilenameAndPositionListener, metrics, null);
+    }
+
+    /**
+     * 监听器初始化，多数据源时共用工作线程池
+     *
+     * @param binLogProperties                      binLogProperties
+     * @param saveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener
+     * @param metrics                               指标
+     * @param dispatcher                            分发器（{@link BinLogDispatcher#newScope(int)}），为null时按 dispatch 配置创建
+     */
+    public MySQLBinLogHandler(BinLogProperties binLogProperties,
+                              SaveBinlogFilenameAndPositionListener saveBinlogFilenameAndPositionListener,
+                              BinLogMetrics metrics, BinLogDispatcher dispatcher) {
         this.binLogProperties = binLogProperties;
         this.saveBinlogFilenameAndPositionListener = saveBinlogFilenameAndPositionListener;
+        this.metrics = metrics;
+        this.rowsDeserializers = new FilteringRowsDeserializers(tableIdPlans::containsKey);
         this.parseClient = getBinaryLogClient(binLogProperties);
-        this.listeners = new LinkedMultiValueMap<>();
-        this.tableIdMapping = new ConcurrentHashMap<>();
+        BinLogProperties.Dispatch dispatch = binLogProperties.getDispatch();
+        this.dispatcher = dispatcher != null ? dispatcher
+                : new BinLogDispatcher(dispatch.getThreads(), dispatch.getQueueCapacity());
+        this.batcher = new BinLogBatcher(this.dispatcher, binLogProperties.getBatch());
+        metrics.bindReplicationLag();
+        metrics.bindDispatcher(this.dispatcher);
+        metrics.bindDeserializers(rowsDeserializers);
+        if (binLogProperties.getSpool().isEnabled()) {
+            this.spool = new BinLogSpool(binLogProperties.getSpool());
+            this.spoolReader = new BinLogSpoolReader(spool.openCursor(SPOOL_DISPATCH_CURSOR), (entry, completion) ->
+                    dispatchBinLogItems(getSpoolDispatchPlan(entry), entry.items(), completion));
+            metrics.bindSpool(spool);
+        } else {
+            this.spool = null;
+            this.spoolReader = null;
+        }
+        // 开启spool时行变更fsync到spool后确认水位，checkpoint不会越过还没有落盘的行变更
+        if (saveBinlogFilenameAndPositionListener != null && (spool != null || usesWatermark(binLogProperties))) {
+            this.watermark = new BinLogWatermark(binLogProperties.getTransaction().isEnabled()
+                    ? saveBinlogFilenameAndPositionListener::commitBinlogFilenameAndNextPosition
+                    : saveBinlogFilenameAndPositionListener::saveBinlogFilenameAndNextPosition);
+            metrics.bindWatermark(watermark);
+        } else {
+            this.watermark = null;
+        }
+        this.subscriptionMatcher = BinLogSubscriptionMatcher.of(binLogProperties);
+        this.schemaRefresher = new BinLogSchemaRefresher(binLogProperties, tableSchemaMap, planVersion::incrementAndGet);
         this.initBinlogFilenameAndPosition();
-        this.initTableColumns();
+        if (binLogProperties.getSchemaSource() == BinLogProperties.SchemaSource.JDBC) {
+            this.initTableColumns();
+        }
         log.info("初始化配置完成：{}", binLogProperties);
     }
 
+    /**
+     * 是否由水位保存position（开启spool时总是使用）：开启 checkpoint.watermark、checkpoint.gtid、事务模式，或者监听器在工作线程中执行时。
+     * 工作线程中各行乱序完成，监听器自己保存的position会与读取线程保存的 ROTATE 文件名交错，所以只有同步处理时才允许关闭水位；
+     * GTID集合只随水位保存，监听器自己保存position时GTID集合与position不对应
+     *
+     * @param properties properties
+     * @return boolean
+     */
+    static boolean usesWatermark(BinLogProperties properties) {
+        return properties.getCheckpoint().isWatermark() || properties.getCheckpoint().isGtid()
+                || properties.getTransaction().isEnabled() || properties.getDispatch().getThreads() > 0;
+    }
+
     /**
      * initBinlogFilenameAndPosition
      */
@@ -87,7 +354,46 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
             String[] arr = this.saveBinlogFilenameAndPositionListener.getBinlogNextPositionString().split("/");
             this.parseClient.setBinlogFilename(arr[0]);
             this.parseClient.setBinlogPosition(Long.parseLong(arr[1]));
+            String savedGtidSet = this.saveBinlogFilenameAndPositionListener.getGtidSet();
+            if (binLogProperties.getCheckpoint().isGtid()) {
+                if (savedGtidSet != null) {
+                    // 按GTID集合续传，主从切换后文件名和position不再有效
+                    startFromGtidSet(savedGtidSet);
+                } else {
+                    log.warn("checkpoint中没有GTID集合，按 {} 续传，读到下一个binlog文件的 PREVIOUS_GTIDS 后开始保存GTID集合",
+                            this.saveBinlogFilenameAndPositionListener.getBinlogNextPositionString());
+                }
+            }
+        }
+    }
+
+    /**
+     * 从GTID集合开始复制，并以它作为已完成事务的GTID集合
+     *
+     * @param gtids gtids
+     */
+    private void startFromGtidSet(String gtids) {
+        this.gtidSet = new GtidSet(gtids == null ? "" : gtids);
+        this.gtidSetString = null;
+        this.parseClient.setGtidSet(currentGtidSet());
+        if (saveBinlogFilenameAndPositionListener != null && watermark == null) {
+            saveBinlogFilenameAndPositionListener.setGtidSet(currentGtidSet());
+        }
+    }
+
+    /**
+     * 已读取完成的事务的GTID集合，未开启 checkpoint.gtid 时为null
+     *
+     * @return String
+     */
+    private String currentGtidSet() {
+        if (gtidSet == null) {
+            return null;
+        }
+        if (gtidSetString == null) {
+            gtidSetString = gtidSet.toString();
         }
+        return gtidSetString;
     }
 
     /**
@@ -103,7 +409,8 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
      * 初始化TableColumns
      */
     public void initTableColumns() {
-        this.listenerTableColumnMap = BinLogUtils.getTableColumns(binLogProperties);
+        BinLogUtils.getTableColumns(binLogProperties).forEach((dbTable, columnMap) ->
+                tableSchemaMap.put(dbTable, new TableSchema(dbTable, columnMap)));
     }
 
     /**
@@ -115,14 +422,34 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
     private BinaryLogClient getBinaryLogClient(BinLogProperties binLogProperties) {
         BinaryLogClient client = new BinaryLogClient(binLogProperties.getHost(), binLogProperties.getPort(),
                 binLogProperties.getUsername(), binLogProperties.getPassword());
-        EventDeserializer eventDeserializer = new EventDeserializer();
+        if (binLogProperties.getServerId() > 0) {
+            client.setServerId(binLogProperties.getServerId());
+        }
+        BinLogProperties.Reconnect reconnect = binLogProperties.getReconnect();
+        if (reconnect.isEnabled()) {
+            // 由 parse() 重连，从最后一个完整事务之后继续
+            client.setKeepAlive(false);
+            if (reconnect.getHeartbeatIntervalMillis() > 0) {
+                client.setHeartbeatInterval(reconnect.getHeartbeatIntervalMillis());
+            }
+        }
+        client.setEventDeserializer(createEventDeserializer());
+        return client;
+    }
+
+    /**
+     * 创建事件反序列化器，未订阅表的行数据不解析。实时复制和离线回放（每个文件一个）使用相同的配置
+     *
+     * @return EventDeserializer
+     */
+    public EventDeserializer createEventDeserializer() {
+        EventDeserializer eventDeserializer = rowsDeserializers.createEventDeserializer();
         //序列化设置，按需配置
         eventDeserializer.setCompatibilityMode(
 //                EventDeserializer.CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY,
                 EventDeserializer.CompatibilityMode.DATE_AND_TIME_AS_LONG
         );
-        client.setEventDeserializer(eventDeserializer);
-        return client;
+        return eventDeserializer;
     }
 
     /**
@@ -130,108 +457,1253 @@ public class MySQLBinLogHandler implements BinaryLogClient.EventListener {
      */
     @Override
     public void onEvent(Event event) {
+        lastEventMillis = System.currentTimeMillis();
+        metrics.recordLag(event.getHeader());
         EventType eventType = event.getHeader().getEventType();
         if (eventType == EventType.TABLE_MAP) {
-            TableMapEventData tableData = event.getData();
-            String db = tableData.getDatabase();
-            String table = tableData.getTable();
-            String dbTable = BinLogUtils.getDbTable(db, table);
-            if (listenerTableColumnMap.containsKey(dbTable)) {
-                tableIdMapping.put(tableData.getTableId(), dbTable);
-            }
+            onTableMapEvent(event.getData());
+        } else if (eventType == EventType.ROTATE) {
+            onRotateEvent(event);
         } else if (isUpdate(eventType)) {
-            onUpdateEvent(event, eventType);
+            if (!skipRowsEvent()) {
+                onUpdateEvent(event, eventType);
+            }
         } else if (isWrite(eventType) || isDelete(eventType)) {
-            onInsertOrDeleteEvent(event, eventType);
+            if (!skipRowsEvent()) {
+                onInsertOrDeleteEvent(event, eventType);
+            }
+        } else {
+            boolean endOfTransaction = isEndOfTransaction(event, eventType);
+            if (binLogProperties.getCheckpoint().isGtid()) {
+                onGtidEvent(event, eventType, endOfTransaction);
+            }
+            if (eventType == EventType.QUERY) {
+                onDdlEvent(event);
+            }
+            if (binLogProperties.getTransaction().isEnabled()) {
+                onTransactionEvent(event, eventType);
+            }
+            if (endOfTransaction) {
+                onEndOfTransaction(event);
+            }
         }
     }
 
     /**
-     * 新增或者删除事件处理
+     * XID、COMMIT 以及DDL等 BEGIN 之外的 QUERY 事件结束一个事务
      *
      * @param event     event
      * @param eventType eventType
+     * @return boolean
      */
-    private void onInsertOrDeleteEvent(Event event, EventType eventType) {
-        List<Serializable[]> rows;
-        long tableId;
-        if (isWrite(eventType)) {
-            WriteRowsEventData data = event.getData();
-            rows = data.getRows();
-            tableId = data.getTableId();
-        } else {
-            DeleteRowsEventData data = event.getData();
-            tableId = data.getTableId();
-            rows = data.getRows();
+    private static boolean isEndOfTransaction(Event event, EventType eventType) {
+        if (eventType == EventType.XID) {
+            return true;
         }
-        String dbTableName = tableIdMapping.get(tableId);
-        if (dbTableName != null) {
-            for (Serializable[] row : rows) {
-                this.processBinLogItem(BinLogItem.itemFromInsertOrDeleted(dbTableName, row,
-                        listenerTableColumnMap.get(dbTableName), event, eventType));
+        if (eventType != EventType.QUERY) {
+            return false;
+        }
+        QueryEventData queryEventData = (QueryEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+        return !"BEGIN".equalsIgnoreCase(queryEventData.getSql());
+    }
+
+    /**
+     * 维护已读取完成的事务的GTID集合：事务结束时加入它的GTID，在事务模式提交、水位登记之前执行
+     *
+     * @param event            event
+     * @param eventType        eventType
+     * @param endOfTransaction 是否结束一个事务
+     */
+    private void onGtidEvent(Event event, EventType eventType, boolean endOfTransaction) {
+        if (eventType == EventType.GTID) {
+            GtidEventData gtidEventData = (GtidEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+            this.pendingGtid = gtidEventData.getMySqlGtid().toString();
+        } else if (eventType == EventType.PREVIOUS_GTIDS && gtidSet == null
+                && EventDeserializer.EventDataWrapper.internal(event.getData()) instanceof PreviousGtidSetEventData data) {
+            // checkpoint中没有GTID集合时，以binlog文件开头的 PREVIOUS_GTIDS 作为起点
+            startFromGtidSet(data.getGtidSet());
+        } else if (endOfTransaction && pendingGtid != null) {
+            if (gtidSet != null) {
+                gtidSet.add(pendingGtid);
+                gtidSetString = null;
+                if (saveBinlogFilenameAndPositionListener != null && watermark == null) {
+                    saveBinlogFilenameAndPositionListener.setGtidSet(currentGtidSet());
+                }
             }
+            this.pendingGtid = null;
         }
     }
 
     /**
-     * 修改数据事件处理
+     * 事务结束：记录重连的位置；开启水位且不在事务模式时登记，之前的行事件都处理完成后checkpoint推进到事务之后
      *
-     * @param event     event
-     * @param eventType eventType
+     * @param event event
      */
-    private void onUpdateEvent(Event event, EventType eventType) {
-        UpdateRowsEventData data = event.getData();
-        String dbTableName = tableIdMapping.get(data.getTableId());
-        if (dbTableName != null) {
-            for (Map.Entry<Serializable[], Serializable[]> row : data.getRows()) {
-                this.processBinLogItem(BinLogItem.itemFromUpdate(dbTableName, row,
-                        listenerTableColumnMap.get(dbTableName), event, eventType));
+    private void onEndOfTransaction(Event event) {
+        EventHeaderV4 header = event.getHeader();
+        this.resumeFilename = parseClient.getBinlogFilename();
+        this.resumePosition = header.getNextPosition();
+        this.rowsEventsSinceResume = 0;
+        this.skipRowsEvents = 0;
+        if (watermark != null && !binLogProperties.getTransaction().isEnabled()) {
+            watermark.track(resumeFilename, resumePosition, currentGtidSet()).run();
+        }
+    }
+
+    /**
+     * 重连后跳过断开前已经投递的行事件
+     *
+     * @return 是否跳过
+     */
+    private boolean skipRowsEvent() {
+        rowsEventsSinceResume++;
+        if (skipRowsEvents > 0) {
+            skipRowsEvents--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * ROTATE 事件处理：开启水位时新文件的position也要等之前的事件都处理完成后才保存
+     *
+     * @param event event
+     */
+    private void onRotateEvent(Event event) {
+        RotateEventData rotateEventData = (RotateEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+        if (rowsEventsSinceResume == 0 && transactionBuffer == null) {
+            this.resumeFilename = rotateEventData.getBinlogFilename();
+            this.resumePosition = rotateEventData.getBinlogPosition();
+        }
+        if (watermark != null) {
+            watermark.track(rotateEventData.getBinlogFilename(), rotateEventData.getBinlogPosition()).run();
+        }
+    }
+
+    /**
+     * TABLE_MAP 事件处理：TABLE_MAP 事件描述了 tableId 和对应表的元数据（如表名、数据库名、列类型等），
+     * 在同一个表的行事件之前出现，这里按 tableId 准备好分发计划，后续行事件只做一次 tableId 查找。
+     * 计划有效时不做任何字符串处理
+     *
+     * @param tableData tableData
+     */
+    private void onTableMapEvent(TableMapEventData tableData) {
+        long tableId = tableData.getTableId();
+        BinLogDispatchPlan plan = tableIdPlans.get(tableId);
+        if (plan != null && plan.getVersion() == planVersion.get() && plan.getSchema() != null
+                && plan.getSchema().getColumnCount() == tableData.getColumnTypes().length) {
+            return;
+        }
+        String db = tableData.getDatabase();
+        String table = tableData.getTable();
+        if (plan == null && !subscriptionMatcher.matches(tableId, db, table)) {
+            return;
+        }
+        String dbTable = BinLogUtils.getDbTable(db, table);
+        TableSchema schema = binLogProperties.getSchemaSource() == BinLogProperties.SchemaSource.TABLE_MAP
+                ? tableMapSchemaSource.getSchema(tableData) : null;
+        if (schema != null) {
+            if (tableSchemaMap.get(dbTable) != schema) {
+                tableSchemaMap.put(dbTable, schema);
+            }
+        } else {
+            // 没有列元数据时使用数据库中的表结构，缓存的表结构与binlog中的列数不一致（如服务停止期间执行过DDL）时刷新
+            schema = tableSchemaMap.get(dbTable);
+            int columnCount = tableData.getColumnTypes().length;
+            if (schema == null || schema.getColumnCount() != columnCount) {
+                schemaRefresher.refresh(db, table, columnCount);
             }
         }
+        tableIdPlans.put(tableId, getDispatchPlan(dbTable));
+        Long previousTableId = planTableIds.put(dbTable, tableId);
+        if (previousTableId != null && previousTableId != tableId) {
+            tableIdPlans.remove(previousTableId);
+        }
     }
 
     /**
-     * 处理封装后的BinLogItem数据
+     * 获取行事件对应的分发计划，未订阅时返回null
      *
-     * @param binLogItem binLogItem
+     * @param tableId tableId
+     * @return BinLogDispatchPlan
      */
-    public void processBinLogItem(BinLogItem binLogItem) {
-        String dbTable = binLogItem.getDbTable();
-        listeners.get(dbTable).forEach(binLogListener -> binLogListener.onEvent(binLogItem));
+    private BinLogDispatchPlan getDispatchPlan(long tableId) {
+        BinLogDispatchPlan plan = tableIdPlans.get(tableId);
+        if (plan != null && plan.getVersion() != planVersion.get()) {
+            plan = getDispatchPlan(plan.getDbTable());
+            tableIdPlans.put(tableId, plan);
+        }
+        return plan;
     }
 
     /**
-     * 注册监听
+     * 获取表的分发计划，版本号或者表结构变化时重新生成
      *
-     * @param db       数据库
-     * @param table    操作表
-     * @param listener 监听器
+     * @param dbTable dbTable
+     * @return BinLogDispatchPlan
      */
-    public void regListener(String db, String table, BinLogListener listener) {
-        // 保存当前注册的listener
-        listeners.add(BinLogUtils.getDbTable(db, table), listener);
+    private BinLogDispatchPlan getDispatchPlan(String dbTable) {
+        return getDispatchPlan(dbTable, tableSchemaMap.get(dbTable), tablePlans);
     }
 
     /**
-     * 理论上单线程独立处理，为每一个表独立一个线程处理
+     * 获取spool记录的分发计划：行过滤、列投影的列下标按记录编码时的表结构计算，
+     * 追加之后执行过DDL时与当前的表结构不同
      *
-     * @throws IOException IOException
+     * @param entry entry
+     * @return BinLogDispatchPlan
      */
-    public void parse() throws IOException {
-        parseClient.registerEventListener(this);
-        if(this.saveBinlogFilenameAndPositionListener != null) {
-            parseClient.registerEventListener(this.saveBinlogFilenameAndPositionListener);
+    private BinLogDispatchPlan getSpoolDispatchPlan(BinLogSpool.Entry entry) {
+        TableSchema schema = entry.items().isEmpty() ? null : entry.items().get(0).getSchema();
+        if (schema == null) {
+            return getDispatchPlan(entry.dbTable());
         }
-        parseClient.connect();
+        return getDispatchPlan(entry.dbTable(), schema, spoolPlans);
     }
 
     /**
-     * 停止服务
+     * 按表结构获取分发计划，版本号或者表结构变化时重新生成
+     *
+     * @param dbTable dbTable
+     * @param schema  表结构
+     * @param plans   计划缓存，key为dbTable
+     * @return BinLogDispatchPlan
      */
-    public void stop() throws IOException {
-        if (parseClient != null && parseClient.isConnected()) {
-            parseClient.disconnect();
+    private BinLogDispatchPlan getDispatchPlan(String dbTable, TableSchema schema, Map<String, BinLogDispatchPlan> plans) {
+        long version = planVersion.get();
+        BinLogDispatchPlan plan = plans.get(dbTable);
+        if (plan == null || plan.getVersion() != version || plan.getSchema() != schema) {
+            BinLogProperties.Dispatch dispatch = binLogProperties.getDispatch();
+            int primaryKeyPartitions = dispatch.getPartitionMode() == BinLogProperties.PartitionMode.PRIMARY_KEY
+                    ? dispatch.getPrimaryKeyPartitions() : 0;
+            List<ListenerRegistration> registrations = resolveListeners(dbTable);
+            BinLogListener[] tableListeners = new BinLogListener[registrations.size()];
+            BinLogRowFilter[] rowFilters = new BinLogRowFilter[registrations.size()];
+            List<Collection<String>> columns = new ArrayList<>(registrations.size());
+            for (int i = 0; i < tableListeners.length; i++) {
+                tableListeners[i] = registrations.get(i).listener();
+                rowFilters[i] = registrations.get(i).filter();
+                columns.add(registrations.get(i).columns());
+            }
+            plan = new BinLogDispatchPlan(dbTable, schema, tableListeners, rowFilters, columns, primaryKeyPartitions,
+                    version);
+            plans.put(dbTable, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 获取数据表匹配到的listener
+     *
+     * @param dbTable dbTable
+     * @return List
+     */
+    private List<ListenerRegistration> resolveListeners(String dbTable) {
+        int index = dbTable.indexOf('.');
+        String db = dbTable.substring(0, index);
+        String table = dbTable.substring(index + 1);
+        List<ListenerRegistration> registrations = new ArrayList<>();
+        for (ListenerRegistration registration : listeners) {
+            if (registration.pattern().matches(db, table)) {
+                registrations.add(registration);
+            }
+        }
+        return registrations;
+    }
+
+    /**
+     * DDL事件处理：订阅的表结构发生变化时，只在后台刷新该表的表结构
+     *
+     * @param event event
+     */
+    private void onDdlEvent(Event event) {
+        QueryEventData queryEventData = (QueryEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+        for (String dbTable : BinLogUtils.getDdlTables(queryEventData.getDatabase(), queryEventData.getSql())) {
+            int index = dbTable.indexOf('.');
+            String db = dbTable.substring(0, index);
+            String table = dbTable.substring(index + 1);
+            // 表结构来自 TABLE_MAP 元数据时，下一个 TABLE_MAP 事件会带上新的表结构，不需要查询数据库
+            if (subscriptionMatcher.matches(db, table)) {
+                planVersion.incrementAndGet();
+                if (!tableMapSchemaSource.invalidate(dbTable)) {
+                    schemaRefresher.refresh(db, table, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 事务边界事件处理：GTID、QUERY(BEGIN/COMMIT/ROLLBACK)、XID
+     *
+     * @param event     event
+     * @param eventType eventType
+     */
+    private void onTransactionEvent(Event event, EventType eventType) {
+        if (eventType == EventType.GTID) {
+            GtidEventData gtidEventData = (GtidEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+            this.transactionGtid = gtidEventData.getMySqlGtid().toString();
+            this.transactionCommitMicros = gtidEventData.getOriginalCommitTimestamp();
+        } else if (eventType == EventType.QUERY) {
+            QueryEventData queryEventData = (QueryEventData) EventDeserializer.EventDataWrapper.internal(event.getData());
+            String sql = queryEventData.getSql();
+            if ("BEGIN".equalsIgnoreCase(sql)) {
+                beginTransaction(event);
+            } else if ("COMMIT".equalsIgnoreCase(sql)) {
+                // 非事务引擎没有XID事件，以 QUERY(COMMIT) 结束
+                commitTransaction(event, 0L);
+            } else if ("ROLLBACK".equalsIgnoreCase(sql)) {
+                discardTransaction();
+            }
+        } else if (eventType == EventType.XID) {
+            XidEventData xidEventData = event.getData();
+            commitTransaction(event, xidEventData.getXid());
         }
     }
 
+    /**
+     * 开始事务
+     *
+     * @param event event
+     */
+    private void beginTransaction(Event event) {
+        discardTransaction();
+        BinLogProperties.Transaction transaction = binLogProperties.getTransaction();
+        this.transactionBuffer = new BinLogTransactionBuffer(transaction.getSpillThreshold(), Path.of(transaction.getSpillDirectory()));
+        this.transactionPosition = event.getHeader() instanceof EventHeaderV4 header ? header.getPosition() : 0L;
+    }
+
+    /**
+     * 提交事务：整体投递事务信封，投递后才推进position
+     *
+     * @param event event
+     * @param xid   xid
+     */
+    private void commitTransaction(Event event, long xid) {
+        BinLogTransactionBuffer buffer = this.transactionBuffer;
+        if (buffer == null) {
+            return;
+        }
+        this.transactionBuffer = null;
+        buffer.complete();
+        EventHeaderV4 header = event.getHeader();
+        long commitTimestamp = transactionCommitMicros > 0 ? transactionCommitMicros / 1000 : header.getTimestamp();
+        BinLogTransaction transaction = new BinLogTransaction(transactionGtid, xid, commitTimestamp,
+                parseClient.getBinlogFilename(), transactionPosition, header.getNextPosition(), buffer);
+        this.transactionGtid = null;
+        this.transactionCommitMicros = 0L;
+        // 开启水位时在事务的所有监听器处理完成后推进position
+        Runnable completion = watermark == null ? null
+                : watermark.track(transaction.getBinlogFilename(), transaction.getNextPosition(), currentGtidSet());
+        if (transaction.getSize() > 0) {
+            deliverTransaction(transaction, completion);
+        } else {
+            transaction.release();
+            if (completion != null) {
+                completion.run();
+            }
+        }
+    }
+
+    /**
+     * 丢弃未提交的事务
+     */
+    private void discardTransaction() {
+        if (transactionBuffer != null) {
+            transactionBuffer.release();
+            transactionBuffer = null;
+        }
+    }
+
+    /**
+     * 投递事务：按表顺序投递给表监听器，再将事务信封投递给事务监听器
+     *
+     * @param transaction transaction
+     * @param completion  表监听器和事务监听器都处理完成后的回调，可以为null
+     */
+    private void deliverTransaction(BinLogTransaction transaction, Runnable completion) {
+        Acks acks = completion == null ? null : new Acks(completion);
+        String runTable = null;
+        List<BinLogItem> run = new ArrayList<>();
+        for (BinLogItem item : transaction) {
+            if (!item.getDbTable().equals(runTable) || run.size() >= TRANSACTION_DELIVERY_CHUNK) {
+                if (!run.isEmpty()) {
+                    deliverBinLogItems(getDispatchPlan(runTable), run, Acks.retain(acks));
+                    run = new ArrayList<>();
+                }
+                runTable = item.getDbTable();
+            }
+            run.add(item);
+        }
+        if (!run.isEmpty()) {
+            deliverBinLogItems(getDispatchPlan(runTable), run, Acks.retain(acks));
+        }
+        if (transactionListeners.isEmpty()) {
+            transaction.release();
+        } else {
+            Runnable done = Acks.retain(acks);
+            dispatcher.dispatch(TRANSACTION_PARTITION, () -> {
+                try {
+                    transactionListeners.forEach(listener -> listener.onTransaction(transaction));
+                } finally {
+                    transaction.release();
+                    if (done != null) {
+                        done.run();
+                    }
+                }
+            });
+        }
+        if (acks != null) {
+            acks.release();
+        }
+    }
+
+    /**
+     * 新增或者删除事件处理
+     *
+     * @param event     event
+     * @param eventType eventType
+     */
+    private void onInsertOrDeleteEvent(Event event, EventType eventType) {
+        List<Serializable[]> rows;
+        long tableId;
+        BitSet includedColumns;
+        if (isWrite(eventType)) {
+            WriteRowsEventData data = event.getData();
+            rows = data.getRows();
+            tableId = data.getTableId();
+            includedColumns = data.getIncludedColumns();
+        } else {
+            DeleteRowsEventData data = event.getData();
+            tableId = data.getTableId();
+            rows = data.getRows();
+            includedColumns = data.getIncludedColumns();
+        }
+        BinLogDispatchPlan plan = getDispatchPlan(tableId);
+        if (plan == null) {
+            return;
+        }
+        String dbTableName = plan.getDbTable();
+        metrics.recordRows(dbTableName, eventType, rows.size());
+        Runnable completion = trackRowsEvent(event);
+        if (!parkIfSchemaPending(dbTableName, () -> {
+            BinLogDispatchPlan refreshed = getDispatchPlan(dbTableName);
+            deliverBinLogItems(refreshed, toItems(refreshed, rows, includedColumns, event, eventType), completion);
+        })) {
+            this.processBinLogItems(plan, toItems(plan, rows, includedColumns, event, eventType), completion);
+        }
+    }
+
+    /**
+     * 新增或者删除事件的行数据封装
+     *
+     * @param plan            plan
+     * @param rows            rows
+     * @param includedColumns includedColumns
+     * @param event           event
+     * @param eventType       eventType
+     * @return List
+     */
+    private List<BinLogItem> toItems(BinLogDispatchPlan plan, List<Serializable[]> rows,
+                                     BitSet includedColumns, Event event, EventType eventType) {
+        String dbTableName = plan.getDbTable();
+        TableSchema schema = plan.getSchema();
+        boolean prefilter = transactionListeners.isEmpty();
+        // 事务监听器需要完整的行，此时不投影
+        BitSet projection = prefilter ? plan.getProjection() : null;
+        boolean write = isWrite(eventType);
+        List<BinLogItem> items = new ArrayList<>(rows.size());
+        int filtered = 0;
+        for (Serializable[] row : rows) {
+            // 没有监听器需要的行不创建 BinLogItem
+            if (prefilter && !(write ? plan.accepts(eventType, null, null, row, includedColumns)
+                    : plan.accepts(eventType, row, includedColumns, null, null))) {
+                filtered++;
+                continue;
+            }
+            BinLogItem item = BinLogItem.itemFromInsertOrDeleted(dbTableName, row, includedColumns, projection, schema,
+                    event, eventType);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        warnIfDropped(dbTableName, rows.size() - filtered, items.size());
+        return items;
+    }
+
+    /**
+     * 修改数据事件处理
+     *
+     * @param event     event
+     * @param eventType eventType
+     */
+    private void onUpdateEvent(Event event, EventType eventType) {
+        UpdateRowsEventData data = event.getData();
+        BinLogDispatchPlan plan = getDispatchPlan(data.getTableId());
+        if (plan == null) {
+            return;
+        }
+        String dbTableName = plan.getDbTable();
+        metrics.recordRows(dbTableName, eventType, data.getRows().size());
+        Runnable completion = trackRowsEvent(event);
+        if (!parkIfSchemaPending(dbTableName, () -> {
+            BinLogDispatchPlan refreshed = getDispatchPlan(dbTableName);
+            deliverBinLogItems(refreshed, toItems(refreshed, data, event, eventType), completion);
+        })) {
+            this.processBinLogItems(plan, toItems(plan, data, event, eventType), completion);
+        }
+    }
+
+    /**
+     * 修改事件的行数据封装
+     *
+     * @param plan      plan
+     * @param data      data
+     * @param event     event
+     * @param eventType eventType
+     * @return List
+     */
+    private List<BinLogItem> toItems(BinLogDispatchPlan plan, UpdateRowsEventData data, Event event, EventType eventType) {
+        String dbTableName = plan.getDbTable();
+        TableSchema schema = plan.getSchema();
+        boolean prefilter = transactionListeners.isEmpty();
+        BitSet projection = prefilter ? plan.getProjection() : null;
+        List<BinLogItem> items = new ArrayList<>(data.getRows().size());
+        int filtered = 0;
+        for (Map.Entry<Serializable[], Serializable[]> row : data.getRows()) {
+            // 没有监听器需要的行不创建 BinLogItem
+            if (prefilter && !plan.accepts(eventType, row.getKey(), data.getIncludedColumnsBeforeUpdate(),
+                    row.getValue(), data.getIncludedColumns())) {
+                filtered++;
+                continue;
+            }
+            BinLogItem item = BinLogItem.itemFromUpdate(dbTableName, row, data.getIncludedColumnsBeforeUpdate(),
+                    data.getIncludedColumns(), projection, schema, event, eventType);
+            if (item != null) {
+                if (binLogProperties.isUpdateDeltaOnly()) {
+                    item.retainChangedColumns();
+                }
+                items.add(item);
+            }
+        }
+        warnIfDropped(dbTableName, data.getRows().size() - filtered, items.size());
+        return items;
+    }
+
+    /**
+     * 开启水位且不在事务中时登记行事件，返回的确认在所有监听器处理完成后执行；事务中的行事件在提交时整体登记
+     *
+     * @param event event
+     * @return Runnable，不需要确认时为null
+     */
+    private Runnable trackRowsEvent(Event event) {
+        if (watermark == null || transactionBuffer != null) {
+            return null;
+        }
+        EventHeaderV4 header = event.getHeader();
+        return watermark.track(parseClient.getBinlogFilename(), header.getNextPosition(), currentGtidSet());
+    }
+
+    /**
+     * 表结构正在刷新时暂存行事件，刷新完成后在刷新线程中按新的表结构处理；
+     * 事务模式下行事件需要进入当前事务，因此等待刷新完成后继续处理
+     *
+     * @param dbTableName dbTableName
+     * @param task        task
+     * @return 是否已暂存
+     */
+    private boolean parkIfSchemaPending(String dbTableName, Runnable task) {
+        if (!schemaRefresher.isPending(dbTableName)) {
+            return false;
+        }
+        if (binLogProperties.getTransaction().isEnabled()) {
+            try {
+                if (!schemaRefresher.await(dbTableName, 30, TimeUnit.SECONDS)) {
+                    log.warn("等待表结构刷新超时：{}", dbTableName);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+        return schemaRefresher.park(dbTableName, task);
+    }
+
+    /**
+     * 行数据与表结构不一致时丢弃并告警
+     *
+     * @param dbTableName dbTableName
+     * @param rowCount    rowCount
+     * @param itemCount   itemCount
+     */
+    private void warnIfDropped(String dbTableName, int rowCount, int itemCount) {
+        if (itemCount < rowCount) {
+            log.warn("行数据与表结构不一致，丢弃{}行，表：{}", rowCount - itemCount, dbTableName);
+        }
+    }
+
+    /**
+     * 处理封装后的BinLogItem数据
+     *
+     * @param binLogItem binLogItem
+     */
+    public void processBinLogItem(BinLogItem binLogItem) {
+        if (binLogItem == null) {
+            return;
+        }
+        processBinLogItems(binLogItem.getDbTable(), List.of(binLogItem));
+    }
+
+    /**
+     * 处理同一个行事件封装后的BinLogItem数据，按分区拆分后投递，批量监听器按分区整批接收
+     *
+     * @param dbTable     dbTable
+     * @param binLogItems binLogItems
+     */
+    public void processBinLogItems(String dbTable, List<BinLogItem> binLogItems) {
+        processBinLogItems(getDispatchPlan(dbTable), binLogItems, null);
+    }
+
+    /**
+     * 处理同一个行事件封装后的BinLogItem数据
+     *
+     * @param plan        plan
+     * @param binLogItems binLogItems
+     * @param completion  所有监听器处理完成后的回调，可以为null
+     */
+    private void processBinLogItems(BinLogDispatchPlan plan, List<BinLogItem> binLogItems, Runnable completion) {
+        if (transactionBuffer != null) {
+            // 事务模式下先缓存，提交时整体投递
+            transactionBuffer.addAll(binLogItems);
+            return;
+        }
+        deliverBinLogItems(plan, binLogItems, completion);
+    }
+
+    /**
+     * 投递给表监听器，开启spool时追加到spool，由spool读取线程投递，fsync到spool后即确认
+     *
+     * @param plan        plan
+     * @param binLogItems binLogItems
+     * @param completion  所有监听器处理完成（开启spool时为fsync到spool）后的回调，可以为null
+     */
+    private void deliverBinLogItems(BinLogDispatchPlan plan, List<BinLogItem> binLogItems, Runnable completion) {
+        if (spool == null) {
+            dispatchBinLogItems(plan, binLogItems, completion);
+            return;
+        }
+        if (binLogItems.isEmpty() || plan.getListeners().length == 0) {
+            if (completion != null) {
+                completion.run();
+            }
+            return;
+        }
+        spool.append(plan.getDbTable(), binLogItems, completion);
+    }
+
+    /**
+     * 按分区拆分后投递到分发器
+     *
+     * @param plan        plan
+     * @param binLogItems binLogItems
+     * @param completion  所有分区任务执行完成后的回调，可以为null
+     */
+    private void dispatchBinLogItems(BinLogDispatchPlan plan, List<BinLogItem> binLogItems, Runnable completion) {
+        if (binLogItems.isEmpty() || plan.getListeners().length == 0) {
+            if (completion != null) {
+                completion.run();
+            }
+            return;
+        }
+        if (plan.isTablePartitioned()) {
+            dispatchToListeners(plan.getDbTable(), plan, binLogItems, completion);
+            return;
+        }
+        Map<Object, List<BinLogItem>> partitionItems = new LinkedHashMap<>();
+        for (BinLogItem binLogItem : binLogItems) {
+            partitionItems.computeIfAbsent(plan.getPartitionKey(binLogItem), key -> new ArrayList<>()).add(binLogItem);
+        }
+        Runnable done = completion == null ? null : countDown(partitionItems.size(), completion);
+        partitionItems.forEach((partitionKey, items) -> dispatchToListeners(partitionKey, plan, items, done));
+    }
+
+    /**
+     * 执行count次后回调一次
+     *
+     * @param count    count
+     * @param callback callback
+     * @return Runnable
+     */
+    private static Runnable countDown(int count, Runnable callback) {
+        AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                callback.run();
+            }
+        };
+    }
+
+    /**
+     * 投递到分区
+     *
+     * @param partitionKey partitionKey
+     * @param plan         plan
+     * @param items        items
+     * @param done         所有监听器处理完成（包括监听器异常、攒批的批量监听器和异步监听器）后的回调，可以为null
+     */
+    private void dispatchToListeners(Object partitionKey, BinLogDispatchPlan plan, List<BinLogItem> items, Runnable done) {
+        dispatcher.dispatch(partitionKey, () -> invokeListeners(partitionKey, plan, items, done));
+    }
+
+    /**
+     * 在分区任务中依次回调逐行监听器、批量监听器和异步监听器，有过滤条件的监听器只接收满足条件的行，
+     * 声明了列的监听器只能看到这些列。攒批的批量监听器和异步监听器完成后才记录端到端耗时
+     *
+     * @param partitionKey partitionKey
+     * @param plan         plan
+     * @param items        items
+     * @param done         所有监听器处理完成后的回调，可以为null
+     */
+    private void invokeListeners(Object partitionKey, BinLogDispatchPlan plan, List<BinLogItem> items, Runnable done) {
+        Long timestamp = items.isEmpty() ? null : items.get(0).getTimestamp();
+        Acks acks = new Acks(() -> {
+            metrics.recordDelivery(plan.getDbTable(), timestamp);
+            if (done != null) {
+                done.run();
+            }
+        });
+        try {
+            BinLogListener[] tableListeners = plan.getListeners();
+            BinLogRowFilter.Compiled[] filters = plan.getFilters();
+            BitSet[] columnMasks = plan.getColumnMasks();
+            for (int i = 0; i < tableListeners.length; i++) {
+                List<BinLogItem> listenerItems = filters[i] == null ? items : filterItems(filters[i], items);
+                if (listenerItems.isEmpty()) {
+                    continue;
+                }
+                if (columnMasks[i] != null) {
+                    listenerItems = projectItems(columnMasks[i], listenerItems);
+                }
+                if (tableListeners[i] instanceof BinLogBatchListener batchListener) {
+                    batcher.add(partitionKey, batchListener, listenerItems, Acks.retain(acks));
+                } else if (tableListeners[i] instanceof BinLogAsyncListener asyncListener) {
+                    for (BinLogItem item : listenerItems) {
+                        invokeAsync(asyncListener, item, acks);
+                    }
+                } else {
+                    listenerItems.forEach(tableListeners[i]::onEvent);
+                }
+            }
+        } finally {
+            acks.release();
+        }
+    }
+
+    /**
+     * 回调异步监听器，完成后释放确认；异步处理失败与同步监听器异常一样只记录日志
+     *
+     * @param listener listener
+     * @param item     item
+     * @param acks     acks，可以为null
+     */
+    private static void invokeAsync(BinLogAsyncListener listener, BinLogItem item, Acks acks) {
+        CompletionStage<?> stage = listener.onEventAsync(item);
+        if (stage == null) {
+            return;
+        }
+        Runnable ack = Acks.retain(acks);
+        stage.whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("BinLog异步监听器处理异常，table={}", item.getDbTable(), e);
+            }
+            if (ack != null) {
+                ack.run();
+            }
+        });
+    }
+
+    /**
+     * 转换为只包含指定列的视图，都已经是该投影时返回原列表
+     *
+     * @param columns columns
+     * @param items   items
+     * @return List
+     */
+    private static List<BinLogItem> projectItems(BitSet columns, List<BinLogItem> items) {
+        List<BinLogItem> result = null;
+        for (int i = 0; i < items.size(); i++) {
+            BinLogItem item = items.get(i);
+            BinLogItem projected = item.project(columns);
+            if (result == null && projected != item) {
+                result = new ArrayList<>(items.subList(0, i));
+            }
+            if (result != null) {
+                result.add(projected);
+            }
+        }
+        return result == null ? items : result;
+    }
+
+    /**
+     * 按过滤条件筛选，全部满足时返回原列表
+     *
+     * @param filter filter
+     * @param items  items
+     * @return List
+     */
+    private static List<BinLogItem> filterItems(BinLogRowFilter.Compiled filter, List<BinLogItem> items) {
+        List<BinLogItem> result = null;
+        for (int i = 0; i < items.size(); i++) {
+            boolean accepted = filter.test(items.get(i));
+            if (result == null && !accepted) {
+                result = new ArrayList<>(items.subList(0, i));
+            } else if (result != null && accepted) {
+                result.add(items.get(i));
+            }
+        }
+        return result == null ? items : result;
+    }
+
+    /**
+     * 注册监听，listener 为 BinLogBatchListener 时按批回调
+     * db、table 可以是精确名称、通配符（orders_*）或者正则（order_item_[0-9]+），见 BinLogTablePattern
+     *
+     * @param db       数据库
+     * @param table    操作表
+     * @param listener 监听器
+     */
+    public void regListener(String db, String table, BinLogListener listener) {
+        regListener(db, table, null, listener);
+    }
+
+    /**
+     * 注册带行过滤条件的监听，不满足条件的行不会回调该监听器
+     *
+     * @param db       数据库
+     * @param table    操作表
+     * @param filter   行过滤条件，为null时不过滤
+     * @param listener 监听器
+     */
+    public void regListener(String db, String table, BinLogRowFilter filter, BinLogListener listener) {
+        regListener(db, table, filter, null, listener);
+    }
+
+    /**
+     * 注册只接收部分列的监听，BinLogItem 中只保留所有监听器需要的列，该监听器只能看到自己声明的列和主键列
+     *
+     * @param db       数据库
+     * @param table    操作表
+     * @param filter   行过滤条件，为null时不过滤
+     * @param columns  需要的列，为null时需要全部列
+     * @param listener 监听器
+     */
+    public void regListener(String db, String table, BinLogRowFilter filter, Collection<String> columns,
+                            BinLogListener listener) {
+        // 保存当前注册的listener
+        listeners.add(new ListenerRegistration(BinLogTablePattern.of(db, table), metrics.timed(listener), filter,
+                copyColumns(columns)));
+        planVersion.incrementAndGet();
+    }
+
+    /**
+     * 按 库名.表名 规则注册监听，如 orders_*.order_item_*、regex:orders_\d+.order_item_[0-9]+
+     *
+     * @param dbTablePattern 库表规则
+     * @param listener       监听器
+     */
+    public void regListener(String dbTablePattern, BinLogListener listener) {
+        regListener(dbTablePattern, (BinLogRowFilter) null, listener);
+    }
+
+    /**
+     * 按 库名.表名 规则注册带行过滤条件的监听
+     *
+     * @param dbTablePattern 库表规则
+     * @param filter         行过滤条件，为null时不过滤
+     * @param listener       监听器
+     */
+    public void regListener(String dbTablePattern, BinLogRowFilter filter, BinLogListener listener) {
+        regListener(dbTablePattern, filter, null, listener);
+    }
+
+    /**
+     * 按 库名.表名 规则注册只接收部分列的监听
+     *
+     * @param dbTablePattern 库表规则
+     * @param filter         行过滤条件，为null时不过滤
+     * @param columns        需要的列，为null时需要全部列
+     * @param listener       监听器
+     */
+    public void regListener(String dbTablePattern, BinLogRowFilter filter, Collection<String> columns,
+                            BinLogListener listener) {
+        listeners.add(new ListenerRegistration(BinLogTablePattern.parse(dbTablePattern), metrics.timed(listener), filter,
+                copyColumns(columns)));
+        planVersion.incrementAndGet();
+    }
+
+    /**
+     * 复制监听的列
+     *
+     * @param columns columns
+     * @return Collection
+     */
+    private static Collection<String> copyColumns(Collection<String> columns) {
+        return columns == null ? null : List.copyOf(columns);
+    }
+
+    /**
+     * 打开spool游标，独立的消费者按自己的速度读取行变更，处理完成后提交偏移量；所有打开的游标都越过的段才会被删除
+     *
+     * @param name 游标名称，重启后用相同的名称从提交的偏移量继续
+     * @return BinLogSpool.Cursor
+     */
+    public BinLogSpool.Cursor openSpoolCursor(String name) {
+        if (spool == null) {
+            throw new IllegalStateException("spool未开启：binlog.datasource.spool.enabled");
+        }
+        return spool.openCursor(name);
+    }
+
+    /**
+     * 注册事务监听，需要开启事务模式（binlog.datasource.transaction.enabled）
+     *
+     * @param listener 监听器
+     */
+    public void regTransactionListener(BinLogTransactionListener listener) {
+        transactionListeners.add(metrics.timedTransaction(listener));
+    }
+
+    /**
+     * 理论上单线程独立处理，为每一个表独立一个线程处理
+     *
+     * @throws IOException IOException
+     */
+    public void parse() throws IOException {
+        if (spoolReader != null) {
+            // 注册监听器之后才开始读取spool，重启时spool中未投递的记录需要交给监听器
+            spoolReader.start();
+        }
+        snapshotIfNeeded();
+        if (binLogProperties.getCheckpoint().isGtid() && parseClient.getBinlogFilename() == null) {
+            // 没有checkpoint时从当前位置开始，同时取得对应的GTID集合
+            BinLogSnapshot.Position position = BinLogSnapshot.currentPosition(binLogProperties);
+            parseClient.setBinlogFilename(position.binlogFilename());
+            parseClient.setBinlogPosition(position.position());
+            startFromGtidSet(position.gtidSet());
+        }
+        this.resumeFilename = parseClient.getBinlogFilename();
+        this.resumePosition = parseClient.getBinlogPosition();
+        parseClient.registerEventListener(this);
+        // 开启水位时ROTATE也经过水位保存，见 onRotateEvent
+        if(this.saveBinlogFilenameAndPositionListener != null && watermark == null) {
+            parseClient.registerEventListener(this.saveBinlogFilenameAndPositionListener);
+        }
+        if (!binLogProperties.getReconnect().isEnabled()) {
+            parseClient.connect();
+            return;
+        }
+        connectWithReconnect();
+    }
+
+    /**
+     * 连接并在断开后重连，直到 stop()：每次重连前按退避时间等待（[退避时间/2, 退避时间] 之间随机，避免多个客户端同时重连），
+     * 连接成功过一次后退避时间恢复为初始值。第一次连接失败（地址、账号错误或者服务不可用）时直接抛出，不在启动线程上无限重试
+     *
+     * @throws IOException IOException
+     */
+    private void connectWithReconnect() throws IOException {
+        BinLogProperties.Reconnect reconnect = binLogProperties.getReconnect();
+        parseClient.registerLifecycleListener(new BinaryLogClient.AbstractLifecycleListener() {
+            @Override
+            public void onConnect(BinaryLogClient client) {
+                connected = true;
+                lastEventMillis = System.currentTimeMillis();
+            }
+        });
+        startWatchdog(reconnect.getHeartbeatIntervalMillis());
+        long backoff = Math.max(1L, reconnect.getInitialBackoffMillis());
+        boolean everConnected = false;
+        while (!stopped) {
+            connected = false;
+            try {
+                // 阻塞直到连接断开
+                parseClient.connect();
+            } catch (IOException e) {
+                if (!everConnected && !connected) {
+                    stopWatchdog();
+                    throw e;
+                }
+                log.warn("binlog连接失败：{}", e.getMessage());
+            }
+            if (stopped) {
+                break;
+            }
+            if (!everConnected && !connected) {
+                stopWatchdog();
+                throw new IOException("binlog连接失败：" + binLogProperties.getHost() + ":" + binLogProperties.getPort());
+            }
+            everConnected = true;
+            if (connected) {
+                backoff = Math.max(1L, reconnect.getInitialBackoffMillis());
+            }
+            long wait = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            log.warn("binlog连接已断开，{}ms后从 {}/{} 重连", wait, resumeFilename, resumePosition);
+            try {
+                if (stopSignal.await(wait, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待重连时被中断", e);
+            }
+            backoff = Math.min(backoff * 2, Math.max(backoff, reconnect.getMaxBackoffMillis()));
+            prepareReconnect();
+        }
+    }
+
+    /**
+     * 停止心跳检测
+     */
+    private void stopWatchdog() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * 超过3个心跳间隔没有收到任何事件（包括心跳）时断开连接，由 connectWithReconnect 重连
+     *
+     * @param heartbeatIntervalMillis heartbeatIntervalMillis
+     */
+    private void startWatchdog(long heartbeatIntervalMillis) {
+        if (heartbeatIntervalMillis <= 0) {
+            return;
+        }
+        long timeout = heartbeatIntervalMillis * 3;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "binlog-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(() -> {
+            if (connected && parseClient.isConnected() && System.currentTimeMillis() - lastEventMillis > timeout) {
+                log.warn("{}ms没有收到binlog事件，断开连接后重连", timeout);
+                try {
+                    parseClient.disconnect();
+                } catch (IOException e) {
+                    log.warn("断开binlog连接失败", e);
+                }
+            }
+        }, heartbeatIntervalMillis, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重连前回到最后一个完整事务之后：丢弃未完成的事务，跳过断开前已投递的行事件；
+     * table id 在新连接上重新由 TABLE_MAP 建立，已加载的表结构、分发队列和批次保留
+     */
+    private void prepareReconnect() {
+        discardTransaction();
+        this.transactionGtid = null;
+        this.transactionCommitMicros = 0L;
+        this.pendingGtid = null;
+        // 事务模式下未完成的事务整体丢弃，重连后重新读取
+        this.skipRowsEvents = binLogProperties.getTransaction().isEnabled() ? 0 : rowsEventsSinceResume;
+        this.rowsEventsSinceResume = 0;
+        if (resumeFilename != null) {
+            parseClient.setBinlogFilename(resumeFilename);
+            parseClient.setBinlogPosition(resumePosition);
+        }
+        if (gtidSet != null) {
+            parseClient.setGtidSet(currentGtidSet());
+        }
+        subscriptionMatcher.clearTableIds();
+        tableMapSchemaSource.clear();
+        tableIdPlans.clear();
+        planTableIds.clear();
+    }
+
+    /**
+     * 开启快照且没有checkpoint时，先把订阅表的当前数据作为新增事件投递给监听器，
+     * 所有监听器处理完成后保存快照位置，随后从该位置开始复制
+     *
+     * @throws IOException IOException
+     */
+    private void snapshotIfNeeded() throws IOException {
+        if (!binLogProperties.getSnapshot().isEnabled() || parseClient.getBinlogFilename() != null) {
+            return;
+        }
+        List<String> dbTables = snapshotTables();
+        if (dbTables.isEmpty()) {
+            log.warn("没有注册了监听器的订阅表，跳过快照");
+            return;
+        }
+        EventHeaderV4 header = new EventHeaderV4();
+        header.setTimestamp(System.currentTimeMillis());
+        header.setEventType(EventType.EXT_WRITE_ROWS);
+        Event event = new Event(header, null);
+        // 同步执行监听器或者写入spool时，快照的读取线程依次投递，保持监听器单线程执行
+        Object serial = binLogProperties.getDispatch().getThreads() <= 0 || spool != null ? new Object() : null;
+        CountDownLatch delivered = new CountDownLatch(1);
+        Acks acks = new Acks(delivered::countDown);
+        BinLogSnapshot.Position position = new BinLogSnapshot(binLogProperties).run(dbTables, (schema, rows) -> {
+            String dbTable = schema.getDbTable();
+            tableSchemaMap.putIfAbsent(dbTable, schema);
+            BinLogDispatchPlan plan = getDispatchPlan(dbTable);
+            metrics.recordRows(dbTable, EventType.EXT_WRITE_ROWS, rows.size());
+            List<BinLogItem> items = toItems(plan, rows, null, event, EventType.EXT_WRITE_ROWS);
+            if (serial == null) {
+                deliverSnapshotItems(plan, items, Acks.retain(acks));
+                return;
+            }
+            synchronized (serial) {
+                deliverSnapshotItems(plan, items, Acks.retain(acks));
+            }
+        });
+        acks.release();
+        try {
+            delivered.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待快照投递完成时被中断", e);
+        }
+        parseClient.setBinlogFilename(position.binlogFilename());
+        parseClient.setBinlogPosition(position.position());
+        if (binLogProperties.getCheckpoint().isGtid()) {
+            startFromGtidSet(position.gtidSet());
+        }
+        if (saveBinlogFilenameAndPositionListener != null) {
+            saveBinlogFilenameAndPositionListener.commitBinlogFilenameAndNextPosition(position.binlogFilename(),
+                    position.position(), currentGtidSet());
+        }
+    }
+
+    /**
+     * 快照的表：订阅规则匹配、且注册了监听器的表
+     *
+     * @return List
+     * @throws IOException IOException
+     */
+    private List<String> snapshotTables() throws IOException {
+        List<String> dbTables = new ArrayList<>();
+        try (Connection connection = BinLogUtils.getConnection(binLogProperties, "INFORMATION_SCHEMA");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT TABLE_SCHEMA, TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                     + "WHERE TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA NOT IN "
+                     + "('mysql', 'information_schema', 'performance_schema', 'sys')")) {
+            while (rs.next()) {
+                String db = rs.getString(1);
+                String table = rs.getString(2);
+                String dbTable = BinLogUtils.getDbTable(db, table);
+                if (subscriptionMatcher.matches(db, table) && !resolveListeners(dbTable).isEmpty()) {
+                    dbTables.add(dbTable);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("查询快照的表失败", e);
+        }
+        return dbTables;
+    }
+
+    /**
+     * 投递快照的行：开启spool时fsync到spool后确认，否则投递到分发器，所有监听器处理完成后确认
+     *
+     * @param plan       plan
+     * @param items      items
+     * @param completion completion
+     */
+    private void deliverSnapshotItems(BinLogDispatchPlan plan, List<BinLogItem> items, Runnable completion) {
+        if (spool == null) {
+            dispatchBinLogItems(plan, items, completion);
+            return;
+        }
+        if (!items.isEmpty() && plan.getListeners().length > 0) {
+            spool.append(plan.getDbTable(), items, completion);
+        } else {
+            completion.run();
+        }
+    }
+
+    /**
+     * 停止服务
+     */
+    public void stop() throws IOException {
+        this.stopped = true;
+        stopSignal.countDown();
+        stopWatchdog();
+        if (parseClient != null && parseClient.isConnected()) {
+            parseClient.disconnect();
+        }
+        log.info("行事件解析{}个（{}字节），跳过未订阅表的行事件{}个（{}字节）", rowsDeserializers.getDecodedEvents(),
+                rowsDeserializers.getDecodedBytes(), rowsDeserializers.getSkippedEvents(), rowsDeserializers.getSkippedBytes());
+        schemaRefresher.close();
+        try {
+            if (spoolReader != null) {
+                // 先把spool中已写入的记录投递到分发器
+                spoolReader.stop(30, TimeUnit.SECONDS);
+            }
+            batcher.flushAll();
+            dispatcher.close(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (spool != null) {
+            spoolReader.commitCompleted();
+            spool.close();
+        }
+    }
+
+    /**
+     * 完成计数：创建者和每个未完成的部分各持有一个确认，全部释放后回调一次
+     */
+    private static final class Acks {
+
+        /**
+         * 未释放的确认数
+         */
+        private final AtomicInteger remaining = new AtomicInteger(1);
+
+        /**
+         * callback
+         */
+        private final Runnable callback;
+
+        Acks(Runnable callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * 增加一个确认
+         *
+         * @param acks acks，可以为null
+         * @return 释放该确认的回调，acks为null时返回null
+         */
+        static Runnable retain(Acks acks) {
+            if (acks == null) {
+                return null;
+            }
+            acks.remaining.incrementAndGet();
+            return acks::release;
+        }
+
+        /**
+         * 释放一个确认
+         */
+        void release() {
+            if (remaining.decrementAndGet() == 0) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * listener注册信息
+     *
+     * @param pattern  库表规则
+     * @param listener 监听器
+     * @param filter   行过滤条件
+     * @param columns  需要的列
+     */
+    private record ListenerRegistration(BinLogTablePattern pattern, BinLogListener listener, BinLogRowFilter filter,
+                                        Collection<String> columns) {
+    }
+
 }
@@ -0,0 +1,148 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 基于行数组的只读Map视图，不复制数据，通过 TableSchema 的列名索引按下标取值
+ *
+ * @author 单红宇
+ * @date 2026/10/17 11:20
+ */
+public class RowMap extends AbstractMap<String, Serializable> {
+
+    /**
+     * schema
+     */
+    private final TableSchema schema;
+
+    /**
+     * row
+     */
+    private final Serializable[] row;
+
+    /**
+     * 可见列下标，为null时所有列可见
+     */
+    private final BitSet mask;
+
+    /**
+     * RowMap
+     *
+     * @param schema schema
+     * @param row    row
+     */
+    public RowMap(TableSchema schema, Serializable[] row) {
+        this(schema, row, null);
+    }
+
+    /**
+     * RowMap
+     *
+     * @param schema schema
+     * @param row    row
+     * @param mask   可见列下标，为null时所有列可见
+     */
+    public RowMap(TableSchema schema, Serializable[] row, BitSet mask) {
+        this.schema = schema;
+        this.row = row;
+        this.mask = mask;
+    }
+
+    @Override
+    public Serializable get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : row[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        if (mask == null) {
+            return schema.getColumns().size();
+        }
+        int size = 0;
+        for (int index = mask.nextSetBit(0); index >= 0 && index < schema.getColumnCount(); index = mask.nextSetBit(index + 1)) {
+            if (schema.getColumnName(index) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 可见列的下标，不存在或不可见时返回-1
+     *
+     * @param key key
+     * @return int
+     */
+    private int indexOf(Object key) {
+        int index = key instanceof String columnName ? schema.indexOf(columnName) : -1;
+        return index < 0 || (mask != null && !mask.get(index)) ? -1 : index;
+    }
+
+    @Override
+    public Set<Entry<String, Serializable>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Serializable>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return RowMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * 按下标顺序遍历
+     */
+    private final class EntryIterator implements Iterator<Entry<String, Serializable>> {
+
+        /**
+         * 下一个有效下标
+         */
+        private int next = advance(0);
+
+        /**
+         * 跳过没有列名的下标
+         *
+         * @param from from
+         * @return int
+         */
+        private int advance(int from) {
+            int index = from;
+            while (index < schema.getColumnCount() && (schema.getColumnName(index) == null || (mask != null && !mask.get(index)))) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < schema.getColumnCount();
+        }
+
+        @Override
+        public Entry<String, Serializable> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = next;
+            next = advance(index + 1);
+            return new SimpleImmutableEntry<>(schema.getColumnName(index), row[index]);
+        }
+    }
+
+}
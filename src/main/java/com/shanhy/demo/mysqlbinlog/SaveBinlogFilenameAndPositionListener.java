@@ -12,12 +12,39 @@ import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
  * 所以每次事件均需要记录当前的position位置。重新建立client端时，使用记录的position位置初始化BinaryLogClient。
  * 单实例可以使用记录到本地文件的方式存储，如果需要考虑多实例分布式问题则需要考虑存储到redis等共享存储中。
  * 注意：因为事件属于高频操作，所以建议使用redis或者MQ这种写入速度较快的存储方式。
+ * 单实例默认使用 BinLogCheckpointStore 存储到本地内存映射文件，高频更新在内存中合并后按间隔或事务提交写入。
  *
  * @author 单红宇
  * @date 2024/5/23 14:37
  */
 public class SaveBinlogFilenameAndPositionListener implements BinaryLogClient.EventListener {
 
+    /**
+     * checkpoint存储，为null时不做持久化
+     */
+    private final BinLogCheckpointStore checkpointStore;
+
+    /**
+     * 已读取完成的事务的GTID集合，开启 checkpoint.gtid 时由处理器在每个事务结束后更新，随之后保存的position一起保存
+     */
+    private volatile String gtidSet;
+
+    /**
+     * SaveBinlogFilenameAndPositionListener
+     */
+    public SaveBinlogFilenameAndPositionListener() {
+        this(null);
+    }
+
+    /**
+     * SaveBinlogFilenameAndPositionListener
+     *
+     * @param checkpointStore checkpointStore
+     */
+    public SaveBinlogFilenameAndPositionListener(BinLogCheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
     @Override
     public void onEvent(Event event) {
         EventHeader eventHeader = event.getHeader();
@@ -35,7 +62,43 @@ public class SaveBinlogFilenameAndPositionListener implements BinaryLogClient.Ev
      * @param nextPosition   nextPosition
      */
     public void saveBinlogFilenameAndNextPosition(String binlogFilename, long nextPosition) {
-        // no implementation
+        saveBinlogFilenameAndNextPosition(binlogFilename, nextPosition, gtidSet);
+    }
+
+    /**
+     * 保存文件名、下一个position和GTID集合
+     *
+     * @param binlogFilename binlogFilename
+     * @param nextPosition   nextPosition
+     * @param gtidSet        nextPosition之前已完成事务的GTID集合，为null时沿用之前保存的值
+     */
+    public void saveBinlogFilenameAndNextPosition(String binlogFilename, long nextPosition, String gtidSet) {
+        if (checkpointStore != null) {
+            checkpointStore.update(binlogFilename, nextPosition, gtidSet);
+        }
+    }
+
+    /**
+     * 事务提交后保存文件名和下一个position
+     *
+     * @param binlogFilename binlogFilename
+     * @param nextPosition   nextPosition
+     */
+    public void commitBinlogFilenameAndNextPosition(String binlogFilename, long nextPosition) {
+        commitBinlogFilenameAndNextPosition(binlogFilename, nextPosition, gtidSet);
+    }
+
+    /**
+     * 事务提交后保存文件名、下一个position和GTID集合
+     *
+     * @param binlogFilename binlogFilename
+     * @param nextPosition   nextPosition
+     * @param gtidSet        GTID集合，为null时沿用之前保存的值
+     */
+    public void commitBinlogFilenameAndNextPosition(String binlogFilename, long nextPosition, String gtidSet) {
+        if (checkpointStore != null) {
+            checkpointStore.commit(binlogFilename, nextPosition, gtidSet);
+        }
     }
 
     /**
@@ -44,7 +107,27 @@ public class SaveBinlogFilenameAndPositionListener implements BinaryLogClient.Ev
      * @param nextPosition nextPosition
      */
     public void saveNextBinlogPosition(long nextPosition) {
-        // no implementation
+        if (checkpointStore != null) {
+            checkpointStore.update(null, nextPosition, gtidSet);
+        }
+    }
+
+    /**
+     * 更新已读取完成的事务的GTID集合
+     *
+     * @param gtidSet gtidSet
+     */
+    public void setGtidSet(String gtidSet) {
+        this.gtidSet = gtidSet;
+    }
+
+    /**
+     * 读取保存的GTID集合，没有时返回null
+     *
+     * @return String
+     */
+    public String getGtidSet() {
+        return checkpointStore == null ? null : checkpointStore.loadGtidSet();
     }
 
     /**
@@ -54,7 +137,7 @@ public class SaveBinlogFilenameAndPositionListener implements BinaryLogClient.Ev
      */
     public String getBinlogNextPositionString() {
         // 从持久化存储处读取binlogFileName和nextPosition，以 binlogFilename/nextPosition 这样的格式返回（示例：mysql-bin.000557/270069874）
-        return null;
+        return checkpointStore == null ? null : checkpointStore.load();
     }
 
 }
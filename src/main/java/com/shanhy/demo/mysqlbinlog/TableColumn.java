@@ -39,6 +39,18 @@ public class TableColumn implements Serializable {
      * tableName
      */
     private String tableName; // 表
+    /**
+     * primaryKey
+     */
+    private boolean primaryKey; // 是否主键
+    /**
+     * columnType，INFORMATION_SCHEMA.COLUMNS.COLUMN_TYPE 的写法，如 int unsigned、enum('a','b')，未知时为null
+     */
+    private String columnType; // 完整类型
+    /**
+     * charset，字符列的MySQL字符集，如 utf8mb4、gbk，非字符列、二进制列或未知时为null
+     */
+    private String charset; // 字符集
 
     /**
      * TableColumn
@@ -57,5 +69,20 @@ public class TableColumn implements Serializable {
         this.ordinalPosition = ordinalPosition;
     }
 
+    /**
+     * TableColumn
+     *
+     * @param schema          schema
+     * @param tableName       tableName
+     * @param ordinalPosition ordinalPosition
+     * @param columnName      columnName
+     * @param dataType        dataType
+     * @param primaryKey      primaryKey
+     */
+    public TableColumn(String schema, String tableName, int ordinalPosition, String columnName, String dataType, boolean primaryKey) {
+        this(schema, tableName, ordinalPosition, columnName, dataType);
+        this.primaryKey = primaryKey;
+    }
+
 }
 
@@ -0,0 +1,290 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+import com.mysql.cj.CharsetMapping;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 TABLE_MAP 事件列元数据的表结构来源。
+ * MySQL 8.0 开启 binlog_row_metadata=FULL 后，TABLE_MAP 事件中带有列名、列类型和主键，不需要查询 INFORMATION_SCHEMA；
+ * 同一个 tableId 的表结构不会变化，按 tableId 缓存，每个行事件前的 TABLE_MAP 只做一次查找。
+ * 元数据中的无符号标记、字符集、ENUM/SET 的取值写入 TableColumn 的 columnType 和 charset，供 BinLogValueConverters 使用。
+ *
+ * @author 单红宇
+ * @date 2026/10/17 16:40
+ */
+public class TableMapSchemaSource {
+
+    /**
+     * 表结构缓存，key为tableId
+     */
+    private final Map<Long, TableSchema> schemaByTableId = new ConcurrentHashMap<>();
+
+    /**
+     * 表当前的tableId，key为dbTable，tableId变化后清理旧的缓存
+     */
+    private final Map<String, Long> tableIdByDbTable = new ConcurrentHashMap<>();
+
+    /**
+     * 获取 TABLE_MAP 事件对应的表结构，元数据中没有列名时返回null
+     *
+     * @param tableData tableData
+     * @return TableSchema
+     */
+    public TableSchema getSchema(TableMapEventData tableData) {
+        TableSchema schema = schemaByTableId.get(tableData.getTableId());
+        if (schema != null) {
+            return schema;
+        }
+        schema = buildSchema(tableData);
+        if (schema != null) {
+            Long previous = tableIdByDbTable.put(schema.getDbTable(), tableData.getTableId());
+            if (previous != null) {
+                schemaByTableId.remove(previous);
+            }
+            schemaByTableId.put(tableData.getTableId(), schema);
+        }
+        return schema;
+    }
+
+    /**
+     * 表结构变化（DDL）后清理该表的缓存，DDL后MySQL通常会分配新的tableId，这里避免复用旧tableId时读到旧结构
+     *
+     * @param dbTable dbTable
+     * @return 该表的表结构是否来自 TABLE_MAP 元数据
+     */
+    public boolean invalidate(String dbTable) {
+        Long tableId = tableIdByDbTable.remove(dbTable);
+        return tableId != null && schemaByTableId.remove(tableId) != null;
+    }
+
+    /**
+     * 重连后同一个tableId可能对应其它表（如主从切换），清理所有按tableId的缓存
+     */
+    public void clear() {
+        schemaByTableId.clear();
+        tableIdByDbTable.clear();
+    }
+
+    /**
+     * 根据 TABLE_MAP 元数据构建表结构
+     *
+     * @param tableData tableData
+     * @return TableSchema
+     */
+    private static TableSchema buildSchema(TableMapEventData tableData) {
+        TableMapEventMetadata metadata = tableData.getEventMetadata();
+        byte[] columnTypes = tableData.getColumnTypes();
+        if (metadata == null || metadata.getColumnNames() == null || metadata.getColumnNames().size() != columnTypes.length) {
+            return null;
+        }
+        Set<Integer> primaryKeys = new HashSet<>();
+        if (metadata.getSimplePrimaryKeys() != null) {
+            primaryKeys.addAll(metadata.getSimplePrimaryKeys());
+        }
+        if (metadata.getPrimaryKeysWithPrefix() != null) {
+            primaryKeys.addAll(metadata.getPrimaryKeysWithPrefix().keySet());
+        }
+        String db = tableData.getDatabase();
+        String table = tableData.getTable();
+        List<String> columnNames = metadata.getColumnNames();
+        int[] columnMetadata = tableData.getColumnMetadata();
+        BitSet signedness = metadata.getSignedness();
+        Map<String, TableColumn> columns = new HashMap<>(columnTypes.length * 2);
+        // 无符号标记只针对数值列、字符集只针对字符列、取值只针对ENUM/SET列，按各自的序号排列
+        int numericIndex = 0;
+        int characterIndex = 0;
+        int enumIndex = 0;
+        int setIndex = 0;
+        for (int i = 0; i < columnTypes.length; i++) {
+            int meta = columnMetadata == null ? 0 : columnMetadata[i];
+            ColumnType realType = getRealType(columnTypes[i] & 0xFF, meta);
+            String dataType = getDataType(columnTypes[i] & 0xFF, meta);
+            String columnType = null;
+            String charset = null;
+            if (isNumeric(realType)) {
+                if (signedness != null && signedness.get(numericIndex)) {
+                    columnType = dataType + " unsigned";
+                }
+                numericIndex++;
+            } else if (isCharacter(realType)) {
+                Integer collation = getCollation(metadata, characterIndex++);
+                if (collation != null) {
+                    boolean binary = collation == CharsetMapping.MYSQL_COLLATION_INDEX_binary;
+                    charset = binary ? null : CharsetMapping.getStaticMysqlCharsetNameForCollationIndex(collation);
+                    dataType = getCharacterDataType(dataType, binary);
+                }
+            } else if (realType == ColumnType.ENUM) {
+                columnType = getEnumType(dataType, metadata.getEnumStrValues(), enumIndex++);
+            } else if (realType == ColumnType.SET) {
+                columnType = getEnumType(dataType, metadata.getSetStrValues(), setIndex++);
+            }
+            TableColumn column = new TableColumn(db, table, i + 1, columnNames.get(i), dataType, primaryKeys.contains(i));
+            column.setColumnType(columnType);
+            column.setCharset(charset);
+            columns.put(columnNames.get(i), column);
+        }
+        return new TableSchema(BinLogUtils.getDbTable(db, table), columns);
+    }
+
+    /**
+     * 第 characterIndex 个字符列的collation：先取默认字符集及其例外，没有时取逐列字符集，元数据中都没有时返回null
+     *
+     * @param metadata       metadata
+     * @param characterIndex characterIndex
+     * @return Integer
+     */
+    private static Integer getCollation(TableMapEventMetadata metadata, int characterIndex) {
+        TableMapEventMetadata.DefaultCharset defaultCharset = metadata.getDefaultCharset();
+        if (defaultCharset != null) {
+            Map<Integer, Integer> collations = defaultCharset.getCharsetCollations();
+            Integer collation = collations == null ? null : collations.get(characterIndex);
+            return collation != null ? collation : defaultCharset.getDefaultCharsetCollation();
+        }
+        List<Integer> columnCharsets = metadata.getColumnCharsets();
+        return columnCharsets == null || characterIndex >= columnCharsets.size() ? null : columnCharsets.get(characterIndex);
+    }
+
+    /**
+     * 按字符集区分二进制串与文本，与 INFORMATION_SCHEMA.COLUMNS.DATA_TYPE 一致
+     *
+     * @param dataType dataType
+     * @param binary   是否二进制字符集
+     * @return String
+     */
+    private static String getCharacterDataType(String dataType, boolean binary) {
+        return switch (dataType) {
+            case "char" -> binary ? "binary" : "char";
+            case "varchar" -> binary ? "varbinary" : "varchar";
+            case "tinyblob" -> binary ? "tinyblob" : "tinytext";
+            case "blob" -> binary ? "blob" : "text";
+            case "mediumblob" -> binary ? "mediumblob" : "mediumtext";
+            case "longblob" -> binary ? "longblob" : "longtext";
+            default -> dataType;
+        };
+    }
+
+    /**
+     * ENUM/SET 的完整类型，如 enum('a','b')，元数据中没有取值时返回null
+     *
+     * @param dataType  enum 或 set
+     * @param strValues 所有ENUM（或SET）列的取值
+     * @param index     本列在ENUM（或SET）列中的序号
+     * @return String
+     */
+    private static String getEnumType(String dataType, List<String[]> strValues, int index) {
+        if (strValues == null || index >= strValues.size()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(dataType).append('(');
+        String[] values = strValues.get(index);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('\'').append(values[i].replace("\\", "\\\\").replace("'", "''")).append('\'');
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 带无符号标记的数值列
+     *
+     * @param columnType columnType
+     * @return boolean
+     */
+    private static boolean isNumeric(ColumnType columnType) {
+        return columnType != null && switch (columnType) {
+            case TINY, SHORT, INT24, LONG, LONGLONG, FLOAT, DOUBLE, DECIMAL, NEWDECIMAL -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 带字符集的列（文本、二进制串）
+     *
+     * @param columnType columnType
+     * @return boolean
+     */
+    private static boolean isCharacter(ColumnType columnType) {
+        return columnType != null && switch (columnType) {
+            case STRING, VARCHAR, VAR_STRING, BLOB, TINY_BLOB, MEDIUM_BLOB, LONG_BLOB -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 列的真实类型：ENUM、SET 在binlog中记录为 STRING，真实类型在元数据高位字节
+     *
+     * @param typeCode typeCode
+     * @param meta     列元数据
+     * @return ColumnType
+     */
+    private static ColumnType getRealType(int typeCode, int meta) {
+        ColumnType columnType = ColumnType.byCode(typeCode);
+        if (columnType == ColumnType.STRING && meta >> 8 != 0) {
+            ColumnType realType = ColumnType.byCode(meta >> 8);
+            if (realType == ColumnType.ENUM || realType == ColumnType.SET) {
+                return realType;
+            }
+        }
+        return columnType;
+    }
+
+    /**
+     * binlog列类型转换为 INFORMATION_SCHEMA.COLUMNS.DATA_TYPE 的写法。
+     * text 类型在binlog中与 blob 相同，这里统一为 blob，元数据中有字符集时由 getCharacterDataType 区分
+     *
+     * @param typeCode typeCode
+     * @param meta     列元数据
+     * @return String
+     */
+    static String getDataType(int typeCode, int meta) {
+        ColumnType columnType = getRealType(typeCode, meta);
+        if (columnType == null) {
+            return "unknown";
+        }
+        return switch (columnType) {
+            case TINY -> "tinyint";
+            case SHORT -> "smallint";
+            case INT24 -> "mediumint";
+            case LONG -> "int";
+            case LONGLONG -> "bigint";
+            case FLOAT -> "float";
+            case DOUBLE -> "double";
+            case DECIMAL, NEWDECIMAL -> "decimal";
+            case DATE, NEWDATE -> "date";
+            case TIME, TIME_V2 -> "time";
+            case DATETIME, DATETIME_V2 -> "datetime";
+            case TIMESTAMP, TIMESTAMP_V2 -> "timestamp";
+            case YEAR -> "year";
+            case BIT -> "bit";
+            case VARCHAR, VAR_STRING -> "varchar";
+            case STRING -> "char";
+            case ENUM -> "enum";
+            case SET -> "set";
+            case TINY_BLOB -> "tinyblob";
+            case MEDIUM_BLOB -> "mediumblob";
+            case LONG_BLOB -> "longblob";
+            case BLOB -> switch (meta) {
+                case 1 -> "tinyblob";
+                case 3 -> "mediumblob";
+                case 4 -> "longblob";
+                default -> "blob";
+            };
+            case JSON -> "json";
+            case GEOMETRY -> "geometry";
+            default -> columnType.name().toLowerCase();
+        };
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 表结构：列名与列下标（ordinalPosition - 1）的预计算索引，同一张表的所有行共享一个实例
+ *
+ * @author 单红宇
+ * @date 2026/10/17 11:05
+ */
+@Getter
+public class TableSchema implements Serializable {
+
+    /**
+     * serialVersionUID
+     */
+    @Serial
+    private static final long serialVersionUID = -3805128734926457027L;
+
+    /**
+     * dbTable
+     */
+    private final String dbTable;
+
+    /**
+     * 列信息，key为列名
+     */
+    private final Map<String, TableColumn> columns;
+
+    /**
+     * 按下标排列的列名
+     */
+    private final String[] columnNames;
+
+    /**
+     * 主键列下标
+     */
+    private final int[] primaryKeyIndexes;
+
+    /**
+     * 列名 -> 下标
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> indexes;
+
+    /**
+     * 按列下标排列的值转换器，第一次使用时生成
+     */
+    @Getter(AccessLevel.NONE)
+    private transient volatile BinLogValueConverters.Converter[] converters;
+
+    /**
+     * TableSchema
+     *
+     * @param dbTable   dbTable
+     * @param columnMap columnMap
+     */
+    public TableSchema(String dbTable, Map<String, TableColumn> columnMap) {
+        this.dbTable = dbTable;
+        this.columns = Collections.unmodifiableMap(columnMap);
+        int columnCount = 0;
+        int primaryKeyCount = 0;
+        for (TableColumn column : columnMap.values()) {
+            columnCount = Math.max(columnCount, column.getOrdinalPosition());
+            if (column.isPrimaryKey()) {
+                primaryKeyCount++;
+            }
+        }
+        this.columnNames = new String[columnCount];
+        this.primaryKeyIndexes = new int[primaryKeyCount];
+        this.indexes = new HashMap<>(columnMap.size() * 2);
+        for (TableColumn column : columnMap.values()) {
+            int index = column.getOrdinalPosition() - 1;
+            this.columnNames[index] = column.getColumnName();
+            this.indexes.put(column.getColumnName(), index);
+        }
+        int i = 0;
+        for (int index = 0; index < columnCount; index++) {
+            TableColumn column = columnNames[index] == null ? null : columnMap.get(columnNames[index]);
+            if (column != null && column.isPrimaryKey()) {
+                this.primaryKeyIndexes[i++] = index;
+            }
+        }
+    }
+
+    /**
+     * 列数
+     *
+     * @return int
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * 获取列名对应的下标，不存在时返回-1
+     *
+     * @param columnName columnName
+     * @return int
+     */
+    public int indexOf(String columnName) {
+        Integer index = indexes.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 获取下标对应的列名
+     *
+     * @param index index
+     * @return String
+     */
+    public String getColumnName(int index) {
+        return columnNames[index];
+    }
+
+    /**
+     * 按列下标排列的值转换器，同一个表结构只生成一次
+     *
+     * @return Converter[]
+     */
+    public BinLogValueConverters.Converter[] getConverters() {
+        BinLogValueConverters.Converter[] result = converters;
+        if (result == null) {
+            // 并发时可能重复生成，结果相同
+            result = BinLogValueConverters.of(this);
+            converters = result;
+        }
+        return result;
+    }
+
+}
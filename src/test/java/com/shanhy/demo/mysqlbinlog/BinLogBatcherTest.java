@@ -0,0 +1,98 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * BinLogBatcher 按最大条数拆分批次
+ *
+ * @author 单红宇
+ * @date 2026/10/19 10:10
+ */
+class BinLogBatcherTest {
+
+    private final BinLogDispatcher dispatcher = new BinLogDispatcher(1, 16);
+
+    @AfterEach
+    void close() throws InterruptedException {
+        dispatcher.close(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void splitsLargeRowsEventAtMaxSize() {
+        List<Integer> sizes = new ArrayList<>();
+        AtomicInteger acked = new AtomicInteger();
+        BinLogBatcher batcher = new BinLogBatcher(dispatcher, batch(100));
+        batcher.add("p", items -> sizes.add(items.size()), items(250), acked::incrementAndGet);
+        assertEquals(List.of(100, 100), sizes);
+        // 最后50条还在缓冲区中，确认跟随最后一条数据
+        assertEquals(0, acked.get());
+        batcher.add("p", items -> sizes.add(items.size()), items(50), acked::incrementAndGet);
+        assertEquals(List.of(100, 100), sizes);
+    }
+
+    @Test
+    void acknowledgesWithTheBatchHoldingTheLastItem() {
+        List<Integer> sizes = new ArrayList<>();
+        List<Integer> ackedAt = new ArrayList<>();
+        BinLogBatchListener listener = items -> sizes.add(items.size());
+        BinLogBatcher batcher = new BinLogBatcher(dispatcher, batch(100));
+        batcher.add("p", listener, items(30), () -> ackedAt.add(sizes.size()));
+        batcher.add("p", listener, items(170), () -> ackedAt.add(sizes.size()));
+        assertEquals(List.of(100, 100), sizes);
+        // 第一次的30条在第一批中，第二次的最后一条在第二批中
+        assertEquals(List.of(1, 2), ackedAt);
+    }
+
+    @Test
+    void deliversAndAcknowledgesEveryBatchWhenListenerThrows() {
+        List<Integer> sizes = new ArrayList<>();
+        List<Integer> ackedAt = new ArrayList<>();
+        BinLogBatchListener listener = items -> {
+            sizes.add(items.size());
+            if (sizes.size() == 1) {
+                throw new IllegalStateException("first batch");
+            }
+        };
+        BinLogBatcher batcher = new BinLogBatcher(dispatcher, batch(100));
+        batcher.add("p", listener, items(30), () -> ackedAt.add(sizes.size()));
+        // 170条凑满两批，第一批监听器异常，第二批仍然回调
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> batcher.add("p", listener, items(170), () -> ackedAt.add(sizes.size())));
+        assertEquals("first batch", e.getMessage());
+        assertEquals(List.of(100, 100), sizes);
+        assertEquals(List.of(1, 2), ackedAt);
+    }
+
+    @Test
+    void deliversEachRowsEventWithoutWindow() {
+        List<Integer> sizes = new ArrayList<>();
+        BinLogBatcher batcher = new BinLogBatcher(dispatcher, batch(0));
+        batcher.add("p", items -> sizes.add(items.size()), items(250), null);
+        assertEquals(List.of(250), sizes);
+    }
+
+    private static BinLogProperties.Batch batch(int maxSize) {
+        BinLogProperties.Batch batch = new BinLogProperties.Batch();
+        batch.setMaxSize(maxSize);
+        return batch;
+    }
+
+    private static List<BinLogItem> items(int count) {
+        List<BinLogItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, null));
+        }
+        return items;
+    }
+
+}
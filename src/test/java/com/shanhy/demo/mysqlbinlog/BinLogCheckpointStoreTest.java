@@ -0,0 +1,141 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogCheckpointStore 的position只前进不后退，文件名和position一起更新
+ *
+ * @author 单红宇
+ * @date 2026/10/19 11:00
+ */
+class BinLogCheckpointStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ignoresOlderPositionInSameFile() throws Exception {
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint())) {
+            store.update("mysql-bin.000001", 1000);
+            store.update(null, 500);
+            store.update("mysql-bin.000001", 800);
+            store.flush();
+            assertEquals("mysql-bin.000001/1000", store.load());
+        }
+    }
+
+    @Test
+    void rotateReplacesFilenameAndPosition() throws Exception {
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint())) {
+            store.update("mysql-bin.000001", 1000);
+            store.update("mysql-bin.000002", 4);
+            store.update(null, 120);
+            store.flush();
+            assertEquals("mysql-bin.000002/120", store.load());
+        }
+    }
+
+    @Test
+    void reopensLatestRecord() throws Exception {
+        BinLogProperties.Checkpoint checkpoint = checkpoint();
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            store.update("mysql-bin.000001", 1000, "uuid:1-5");
+            store.flush();
+            store.update("mysql-bin.000001", 2000, "uuid:1-9");
+        }
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            assertEquals("mysql-bin.000001/2000", store.load());
+            assertEquals("uuid:1-9", store.loadGtidSet());
+        }
+    }
+
+    @Test
+    void growsSlotForLongGtidSet() throws Exception {
+        BinLogProperties.Checkpoint checkpoint = checkpoint();
+        String longGtidSet = gtidSet(200);
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            store.update("mysql-bin.000001", 1000, "uuid:1-5");
+            store.flush();
+            store.update("mysql-bin.000001", 1500, "uuid:1-6");
+            store.flush();
+            store.update("mysql-bin.000001", 2000, longGtidSet);
+            store.flush();
+            assertEquals("mysql-bin.000001/2000", store.load());
+            assertEquals(longGtidSet, store.loadGtidSet());
+            store.update("mysql-bin.000001", 3000, "uuid:1-9");
+            store.flush();
+        }
+        assertTrue(Files.size(directory.resolve("checkpoint.dat")) > 2L * BinLogCheckpointStore.SLOT_SIZE);
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            assertEquals("mysql-bin.000001/3000", store.load());
+            assertEquals("uuid:1-9", store.loadGtidSet());
+            store.update("mysql-bin.000001", 4000, longGtidSet);
+            store.flush();
+        }
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            assertEquals("mysql-bin.000001/4000", store.load());
+            assertEquals(longGtidSet, store.loadGtidSet());
+        }
+    }
+
+    @Test
+    void reopensAfterGrowingPast64KiB() throws Exception {
+        BinLogProperties.Checkpoint checkpoint = checkpoint();
+        // 最长的GTID集合，记录超过65536字节，记录槽扩大到131072
+        String longestGtidSet = "x".repeat(0xFFFF);
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            store.update("mysql-bin.000001", 1000, "uuid:1-5");
+            store.flush();
+            store.update("mysql-bin.000001", 2000, longestGtidSet);
+            store.flush();
+        }
+        assertEquals(2L * 131072, Files.size(directory.resolve("checkpoint.dat")));
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            assertEquals("mysql-bin.000001/2000", store.load());
+            assertEquals(longestGtidSet, store.loadGtidSet());
+            store.update("mysql-bin.000001", 3000, "uuid:1-9");
+            store.flush();
+        }
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint)) {
+            assertEquals("mysql-bin.000001/3000", store.load());
+            assertEquals("uuid:1-9", store.loadGtidSet());
+        }
+    }
+
+    @Test
+    void rejectsUnwritableGtidSetOnUpdate() throws Exception {
+        try (BinLogCheckpointStore store = new BinLogCheckpointStore(checkpoint())) {
+            store.update("mysql-bin.000001", 1000, "uuid:1-5");
+            assertThrows(IllegalArgumentException.class, () -> store.update("mysql-bin.000001", 2000, gtidSet(2000)));
+            store.flush();
+            assertEquals("mysql-bin.000001/1000", store.load());
+        }
+    }
+
+    /**
+     * count个server uuid的GTID集合
+     */
+    private static String gtidSet(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(sb.isEmpty() ? "" : ",").append(String.format("3e11fa47-71ca-11e1-9e33-%012d:1-%d", i, i + 100));
+        }
+        return sb.toString();
+    }
+
+    private BinLogProperties.Checkpoint checkpoint() {
+        BinLogProperties.Checkpoint checkpoint = new BinLogProperties.Checkpoint();
+        checkpoint.setFile(directory.resolve("checkpoint.dat").toString());
+        checkpoint.setFlushIntervalMillis(60_000);
+        return checkpoint;
+    }
+
+}
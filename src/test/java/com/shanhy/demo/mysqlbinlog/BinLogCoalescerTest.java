@@ -0,0 +1,165 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.bits;
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.row;
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.schema;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogCoalescer 按 表 + 主键 合并同一行的多次变更，合并结果的变化列和可见列与逐条处理一致
+ *
+ * @author 单红宇
+ * @date 2026/10/19 14:00
+ */
+class BinLogCoalescerTest {
+
+    private static final TableSchema SCHEMA = schema("db.t", 1, "id bigint", "name varchar", "note varchar");
+
+    @Test
+    void insertThenUpdateIsInsertWithAllColumns() {
+        BinLogItem insert = insert(1L, "a", "x");
+        BinLogItem update = deltaOnly(update(row(1L, "a", "x"), row(1L, "b", "x"), 1));
+        update.setPosition(200L);
+
+        BinLogItem merged = single(insert, update);
+        assertEquals(EventType.EXT_WRITE_ROWS, merged.getEventType());
+        assertArrayEquals(row(1L, "b", "x"), merged.getAfterRow());
+        assertNull(merged.getColumnMask());
+        assertEquals(Map.of("id", 1L, "name", "b", "note", "x"), merged.getAfter());
+        assertEquals(200L, merged.getPosition());
+    }
+
+    @Test
+    void updateThenUpdateKeepsBothChangedColumnsVisible() {
+        BinLogItem first = deltaOnly(update(row(1L, "a", "x"), row(1L, "b", "x"), 1));
+        BinLogItem second = deltaOnly(update(row(1L, "b", "x"), row(1L, "b", "y"), 2));
+
+        BinLogItem merged = single(first, second);
+        assertEquals(EventType.EXT_UPDATE_ROWS, merged.getEventType());
+        assertArrayEquals(row(1L, "a", "x"), merged.getBeforeRow());
+        assertArrayEquals(row(1L, "b", "y"), merged.getAfterRow());
+        assertTrue(merged.isChanged("name"));
+        assertTrue(merged.isChanged("note"));
+        assertEquals(Map.of("id", 1L, "name", "b", "note", "y"), merged.getAfter());
+    }
+
+    @Test
+    void updateThenRevertDropsChangedColumn() {
+        BinLogItem first = update(row(1L, "a", "x"), row(1L, "b", "x"), 1);
+        BinLogItem second = update(row(1L, "b", "x"), row(1L, "a", "x"), 1);
+
+        BinLogItem merged = single(first, second);
+        assertFalse(merged.isChanged("name"));
+        assertTrue(merged.getChangedColumns().isEmpty());
+    }
+
+    @Test
+    void insertThenDeleteCancels() {
+        BinLogItem other = insert(2L, "c", "z");
+        List<BinLogItem> result = BinLogCoalescer.coalesce(List.of(insert(1L, "a", "x"), other, delete(1L, "a", "x")));
+        assertEquals(List.of(other), result);
+    }
+
+    @Test
+    void updateThenDeleteIsDeleteWithFirstBeforeImage() {
+        BinLogItem merged = single(update(row(1L, "a", "x"), row(1L, "b", "x"), 1), delete(1L, "b", "x"));
+        assertEquals(EventType.EXT_DELETE_ROWS, merged.getEventType());
+        assertArrayEquals(row(1L, "a", "x"), merged.getBeforeRow());
+        assertNull(merged.getAfterRow());
+    }
+
+    @Test
+    void deleteThenInsertIsUpdate() {
+        BinLogItem merged = single(delete(1L, "a", "x"), insert(1L, "a", "y"));
+        assertEquals(EventType.EXT_UPDATE_ROWS, merged.getEventType());
+        assertArrayEquals(row(1L, "a", "x"), merged.getBeforeRow());
+        assertArrayEquals(row(1L, "a", "y"), merged.getAfterRow());
+        assertFalse(merged.isChanged("name"));
+        assertTrue(merged.isChanged("note"));
+    }
+
+    @Test
+    void duplicateInsertRestartsMerge() {
+        BinLogItem first = insert(1L, "a", "x");
+        BinLogItem second = insert(1L, "b", "x");
+        List<BinLogItem> items = List.of(first, second);
+        assertSame(items, BinLogCoalescer.coalesce(items));
+    }
+
+    @Test
+    void primaryKeyChangeIsNotMerged() {
+        BinLogItem insert = insert(1L, "a", "x");
+        BinLogItem move = update(row(1L, "a", "x"), row(2L, "a", "x"), 0);
+        BinLogItem update = update(row(2L, "a", "x"), row(2L, "b", "x"), 1);
+        BinLogItem after = update(row(2L, "b", "x"), row(2L, "c", "x"), 1);
+
+        List<BinLogItem> result = BinLogCoalescer.coalesce(List.of(insert, move, update, after));
+        assertEquals(3, result.size());
+        assertSame(insert, result.get(0));
+        assertSame(move, result.get(1));
+        // 修改主键之后的变更从新主键重新开始合并
+        assertArrayEquals(row(2L, "a", "x"), result.get(2).getBeforeRow());
+        assertArrayEquals(row(2L, "c", "x"), result.get(2).getAfterRow());
+    }
+
+    @Test
+    void keepsListenerProjection() {
+        BitSet projection = bits(0, 1);
+        BinLogItem insert = insert(1L, "a", "x").project(projection);
+        BinLogItem update = update(row(1L, "a", "x"), row(1L, "b", "y"), 1, 2).project(projection);
+
+        BinLogItem merged = single(insert, update);
+        assertEquals(Map.of("id", 1L, "name", "b"), merged.getAfter());
+    }
+
+    private static BinLogItem single(BinLogItem... items) {
+        List<BinLogItem> result = BinLogCoalescer.coalesce(List.of(items));
+        assertEquals(1, result.size());
+        return result.get(0);
+    }
+
+    private static BinLogItem insert(Serializable... values) {
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, SCHEMA);
+        item.setPosition(100L);
+        item.setAfterRow(values);
+        return item;
+    }
+
+    private static BinLogItem delete(Serializable... values) {
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_DELETE_ROWS, SCHEMA);
+        item.setPosition(300L);
+        item.setBeforeRow(values);
+        return item;
+    }
+
+    private static BinLogItem update(Serializable[] before, Serializable[] after, int... changed) {
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_UPDATE_ROWS, SCHEMA);
+        item.setPosition(200L);
+        item.setBeforeRow(before);
+        item.setAfterRow(after);
+        item.setChangedColumns(bits(changed));
+        return item;
+    }
+
+    /**
+     * 与 updateDeltaOnly 一样只保留变化的列和主键
+     */
+    private static BinLogItem deltaOnly(BinLogItem item) {
+        item.retainChangedColumns();
+        return item;
+    }
+
+}
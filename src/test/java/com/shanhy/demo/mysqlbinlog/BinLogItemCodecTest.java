@@ -0,0 +1,184 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.bits;
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.schema;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogItemCodec 编码后解码得到相同的行变更和表结构
+ *
+ * @author 单红宇
+ * @date 2026/10/19 13:20
+ */
+class BinLogItemCodecTest {
+
+    @Test
+    void roundTripsAllValueTypes() {
+        Serializable[] row = {
+                Long.MIN_VALUE, Integer.MAX_VALUE, (short) -7, (byte) 3, "文本", new byte[]{0, 1, -1},
+                new BigDecimal("12345.678"), new BigDecimal("123456789012345678901234567890.12"), 1.5d, 2.5f,
+                Boolean.TRUE, Boolean.FALSE, bits(0, 9), new BigInteger("18446744073709551615"),
+                timestamp(), new java.sql.Date(86_400_000L), new java.sql.Time(3_600_000L), new java.util.Date(42L),
+                LocalDate.of(2026, 10, 19), null
+        };
+        TableSchema schema = schema("db.all", row.length);
+        BinLogItem item = new BinLogItem("db.all", EventType.EXT_WRITE_ROWS, schema);
+        item.setAfterRow(row);
+
+        BinLogItem decoded = BinLogItemCodec.decode(BinLogItemCodec.encode(List.of(item))).get(0);
+        Serializable[] after = decoded.getAfterRow();
+        assertEquals(row.length, after.length);
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] instanceof byte[] bytes) {
+                assertArrayEquals(bytes, (byte[]) after[i]);
+            } else {
+                assertEquals(row[i], after[i], "column " + i);
+                assertEquals(row[i] == null ? null : row[i].getClass(), after[i] == null ? null : after[i].getClass());
+            }
+        }
+        assertNull(decoded.getBeforeRow());
+    }
+
+    @Test
+    void roundTripsItemFields() {
+        TableSchema schema = schema("db.t", 2);
+        BinLogItem item = new BinLogItem("db.t_alias", EventType.EXT_UPDATE_ROWS, schema);
+        item.setTimestamp(1_700_000_000_000L);
+        item.setServerId(7L);
+        item.setPosition(1000L);
+        item.setNextPosition(1200L);
+        item.setBeforeRow(new Serializable[]{1L, "a"});
+        item.setAfterRow(new Serializable[]{1L, "b"});
+        item.setChangedColumns(bits(1));
+        item.setColumnMask(bits(0, 1));
+        BinLogItem heartbeat = new BinLogItem("db.t", EventType.QUERY, schema);
+
+        List<BinLogItem> decoded = BinLogItemCodec.decode(BinLogItemCodec.encode(List.of(item, heartbeat)));
+        BinLogItem first = decoded.get(0);
+        assertEquals("db.t_alias", first.getDbTable());
+        assertEquals(EventType.EXT_UPDATE_ROWS, first.getEventType());
+        assertEquals(1_700_000_000_000L, first.getTimestamp());
+        assertEquals(7L, first.getServerId());
+        assertEquals(1000L, first.getPosition());
+        assertEquals(1200L, first.getNextPosition());
+        assertArrayEquals(item.getBeforeRow(), first.getBeforeRow());
+        assertArrayEquals(item.getAfterRow(), first.getAfterRow());
+        assertEquals(bits(1), first.getChangedColumns());
+        assertEquals(bits(0, 1), first.getColumnMask());
+        BinLogItem second = decoded.get(1);
+        assertEquals(EventType.QUERY, second.getEventType());
+        assertNull(second.getTimestamp());
+        assertNull(second.getPosition());
+        assertNull(second.getAfterRow());
+    }
+
+    @Test
+    void preservesColumnMetadata() {
+        Map<String, TableColumn> columns = new LinkedHashMap<>();
+        columns.put("id", new TableColumn("db", "t", 1, "id", "bigint", true));
+        TableColumn name = new TableColumn("db", "t", 2, "name", "varchar");
+        name.setColumnType("varchar(32)");
+        name.setCharset("latin1");
+        columns.put("name", name);
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, new TableSchema("db.t", columns));
+        item.setAfterRow(new Serializable[]{1L, "x"});
+
+        TableSchema decoded = BinLogItemCodec.decode(BinLogItemCodec.encode(List.of(item))).get(0).getSchema();
+        assertArrayEquals(new int[]{0}, decoded.getPrimaryKeyIndexes());
+        TableColumn decodedName = decoded.getColumns().get("name");
+        assertEquals("varchar", decodedName.getDataType());
+        assertEquals("varchar(32)", decodedName.getColumnType());
+        assertEquals("latin1", decodedName.getCharset());
+        assertFalse(decodedName.isPrimaryKey());
+        assertTrue(decoded.getColumns().get("id").isPrimaryKey());
+    }
+
+    @Test
+    void decoderReusesSchemaAcrossBlocks() {
+        TableSchema schema = schema("db.t", 2);
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema);
+        item.setAfterRow(new Serializable[]{1L, "a"});
+        BinLogItemCodec.Encoder encoder = new BinLogItemCodec.Encoder();
+        encoder.write(item);
+        encoder.write(item);
+        byte[] first = encoder.toByteArray();
+        encoder.reset();
+        encoder.write(item);
+        byte[] second = encoder.toByteArray();
+
+        BinLogItemCodec.Decoder decoder = new BinLogItemCodec.Decoder();
+        decoder.reset(first, 0, first.length);
+        TableSchema a = decoder.read().getSchema();
+        assertSame(a, decoder.read().getSchema());
+        assertFalse(decoder.hasRemaining());
+        decoder.reset(second, 0, second.length);
+        assertSame(a, decoder.read().getSchema());
+        assertNotSame(schema, a);
+
+        // 列定义变化后生成新的表结构
+        BinLogItem changed = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema("db.t", 3));
+        changed.setAfterRow(new Serializable[]{1L, "a", "b"});
+        byte[] third = BinLogItemCodec.encode(List.of(changed));
+        decoder.reset(third, 0, third.length);
+        TableSchema b = decoder.read().getSchema();
+        assertNotSame(a, b);
+        assertEquals(3, b.getColumnCount());
+    }
+
+    @Test
+    void roundTripsJdkValueTypesThroughSerialization() {
+        Serializable[] row = {Duration.ofMillis(-1500), Instant.ofEpochSecond(1, 5), LocalDateTime.of(2026, 10, 19, 8, 0),
+                LocalTime.of(23, 59), DayOfWeek.MONDAY, 'x'};
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema("db.t", row.length));
+        item.setAfterRow(row);
+        assertArrayEquals(row, BinLogItemCodec.decode(BinLogItemCodec.encode(List.of(item))).get(0).getAfterRow());
+    }
+
+    @Test
+    void rejectsOtherSerializableTypes() throws Exception {
+        BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema("db.t", 1));
+        item.setAfterRow(new Serializable[]{new ArrayList<>(List.of("a"))});
+        assertThrows(IllegalArgumentException.class, () -> BinLogItemCodec.encode(List.of(item)));
+
+        // 其它进程写入的任意类在解码时被拒绝，不会被实例化
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new ArrayList<>(List.of("a")));
+        }
+        assertThrows(UncheckedIOException.class, () -> BinLogItemCodec.Decoder.javaDeserialize(bytes.toByteArray()));
+    }
+
+    private static java.sql.Timestamp timestamp() {
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(1_700_000_000_123L);
+        timestamp.setNanos(123_456_789);
+        return timestamp;
+    }
+
+}
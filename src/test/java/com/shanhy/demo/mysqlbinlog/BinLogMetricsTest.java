@@ -0,0 +1,89 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogMetrics 的复制延迟和监听器标签
+ *
+ * @author 单红宇
+ * @date 2026/10/19 12:20
+ */
+class BinLogMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final BinLogMetrics metrics = new BinLogMetrics(registry);
+
+    @Test
+    void heartbeatResetsLag() {
+        metrics.bindReplicationLag();
+        metrics.recordLag(header(EventType.EXT_WRITE_ROWS, System.currentTimeMillis() - 5000));
+        assertTrue(lag() >= 5000);
+        metrics.recordLag(header(EventType.ROTATE, 0));
+        assertTrue(lag() >= 5000);
+        metrics.recordLag(header(EventType.HEARTBEAT, 0));
+        assertEquals(0, lag());
+    }
+
+    @Test
+    void tagsEachLambdaSeparately() {
+        BinLogListener first = item -> {
+        };
+        BinLogListener second = item -> {
+        };
+        metrics.timed(first);
+        metrics.timed(second);
+        metrics.timed(first);
+        metrics.timedTransaction(transaction -> {
+        });
+        Set<String> names = registry.find("binlog.listener.latency").timers().stream()
+                .map(timer -> timer.getId().getTag("listener"))
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("BinLogMetricsTest$lambda-1", "BinLogMetricsTest$lambda-2", "BinLogMetricsTest$lambda-3"),
+                names);
+    }
+
+    @Test
+    void recordsListenerLatency() {
+        BinLogListener listener = metrics.timed(item -> {
+        });
+        listener.onEvent(new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, null));
+        List<Timer> timers = List.copyOf(registry.find("binlog.listener.latency").timers());
+        assertEquals(1, timers.size());
+        assertEquals(1, timers.get(0).count());
+    }
+
+    @Test
+    void registersLagOnlyForSources() {
+        metrics.forSource("shard0").bindReplicationLag();
+        metrics.forSource("shard1").bindReplicationLag();
+        Set<String> sources = registry.find("binlog.replication.lag").gauges().stream()
+                .map(gauge -> gauge.getId().getTag("source"))
+                .collect(Collectors.toSet());
+        // 根对象不注册没有 source 标签的指标
+        assertEquals(Set.of("shard0", "shard1"), sources);
+    }
+
+    private double lag() {
+        return registry.get("binlog.replication.lag").gauge().value();
+    }
+
+    private static EventHeaderV4 header(EventType eventType, long timestamp) {
+        EventHeaderV4 header = new EventHeaderV4();
+        header.setEventType(eventType);
+        header.setTimestamp(timestamp);
+        return header;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.bits;
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.row;
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.schema;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogRowFilter 编译后在原始行数组上的判断
+ *
+ * @author 单红宇
+ * @date 2026/10/19 12:00
+ */
+class BinLogRowFilterTest {
+
+    private static final TableSchema SCHEMA = schema("db.orders", 1, "id bigint", "status varchar", "amount decimal");
+
+    @Test
+    void eqUsesAfterImageAndBeforeImageForDeletes() {
+        BinLogRowFilter.Compiled filter = BinLogRowFilter.create().eq("status", "PAID").compile(SCHEMA);
+        assertTrue(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "PAID", 10), null));
+        assertTrue(filter.test(EventType.EXT_UPDATE_ROWS, row(1L, "NEW", 10), null, row(1L, "PAID", 10), null));
+        assertFalse(filter.test(EventType.EXT_UPDATE_ROWS, row(1L, "PAID", 10), null, row(1L, "NEW", 10), null));
+        assertTrue(filter.test(EventType.EXT_DELETE_ROWS, row(1L, "PAID", 10), null, null, null));
+        // binlog中的文本列为 byte[]
+        assertTrue(filter.test(EventType.EXT_WRITE_ROWS, null, null,
+                row(1L, "PAID".getBytes(StandardCharsets.UTF_8), 10), null));
+    }
+
+    @Test
+    void eqNullAndNumbers() {
+        assertTrue(BinLogRowFilter.create().eq("status", null).compile(SCHEMA)
+                .test(EventType.EXT_WRITE_ROWS, null, null, row(1L, null, 10), null));
+        BinLogRowFilter.Compiled id = BinLogRowFilter.create().eq("id", 7).compile(SCHEMA);
+        assertTrue(id.test(EventType.EXT_WRITE_ROWS, null, null, row(7L, "A", 10), null));
+        assertFalse(id.test(EventType.EXT_WRITE_ROWS, null, null, row(8L, "A", 10), null));
+        assertTrue(BinLogRowFilter.create().eq("amount", 10.5).compile(SCHEMA)
+                .test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", new BigDecimal("10.50")), null));
+    }
+
+    @Test
+    void rangeIsInclusiveAndRejectsNull() {
+        BinLogRowFilter.Compiled filter = BinLogRowFilter.create().range("amount", 10, 20).compile(SCHEMA);
+        assertTrue(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", new BigDecimal("10")), null));
+        assertTrue(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", new BigDecimal("20.00")), null));
+        assertFalse(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", new BigDecimal("20.01")), null));
+        assertFalse(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", null), null));
+        assertFalse(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", "15"), null));
+        BinLogRowFilter.Compiled open = BinLogRowFilter.create().range("id", 100, null).compile(SCHEMA);
+        assertTrue(open.test(EventType.EXT_WRITE_ROWS, null, null, row(Long.MAX_VALUE, "A", 1), null));
+        assertFalse(open.test(EventType.EXT_WRITE_ROWS, null, null, row(99L, "A", 1), null));
+    }
+
+    @Test
+    void changedOnlyConstrainsUpdates() {
+        BinLogRowFilter.Compiled filter = BinLogRowFilter.create().changed("amount").compile(SCHEMA);
+        assertTrue(filter.test(EventType.EXT_UPDATE_ROWS, row(1L, "A", 1), null, row(1L, "A", 2), null));
+        assertFalse(filter.test(EventType.EXT_UPDATE_ROWS, row(1L, "A", 1), null, row(1L, "B", 1), null));
+        assertTrue(filter.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", 1), null));
+        assertTrue(filter.test(EventType.EXT_DELETE_ROWS, row(1L, "A", 1), null, null, null));
+        BinLogRowFilter.Compiled any = BinLogRowFilter.create().changed("status", "amount").compile(SCHEMA);
+        assertTrue(any.test(EventType.EXT_UPDATE_ROWS, row(1L, "A", 1), null, row(1L, "B", 1), null));
+    }
+
+    @Test
+    void readsCompactRowsByIncludedColumns() {
+        // binlog_row_image=MINIMAL：修改前只有主键，修改后只有变化的列
+        BitSet beforeIncluded = bits(0);
+        BitSet afterIncluded = bits(2);
+        Serializable[] before = {1L};
+        Serializable[] after = {new BigDecimal("5")};
+        assertTrue(BinLogRowFilter.create().changed("amount").range("amount", 1, 9).eq("id", 1).compile(SCHEMA)
+                .test(EventType.EXT_UPDATE_ROWS, before, beforeIncluded, after, afterIncluded));
+        // 修改后不包含的列视为未变化
+        assertFalse(BinLogRowFilter.create().changed("status").compile(SCHEMA)
+                .test(EventType.EXT_UPDATE_ROWS, before, beforeIncluded, after, afterIncluded));
+        assertFalse(BinLogRowFilter.create().eq("status", "A").compile(SCHEMA)
+                .test(EventType.EXT_UPDATE_ROWS, before, beforeIncluded, after, afterIncluded));
+    }
+
+    @Test
+    void eventTypesAndMissingColumns() {
+        BinLogRowFilter.Compiled updates = BinLogRowFilter.create().eventTypes(EventType.UPDATE_ROWS).compile(SCHEMA);
+        assertTrue(updates.test(EventType.EXT_UPDATE_ROWS, row(1L, "A", 1), null, row(1L, "A", 1), null));
+        assertFalse(updates.test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", 1), null));
+        assertFalse(updates.test(EventType.DELETE_ROWS, row(1L, "A", 1), null, null, null));
+
+        BinLogRowFilter missing = BinLogRowFilter.create().eq("unknown", 1);
+        assertFalse(missing.compile(SCHEMA).test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", 1), null));
+        assertFalse(missing.compile(null).test(EventType.EXT_WRITE_ROWS, null, null, row(1L, "A", 1), null));
+    }
+
+    @Test
+    void columnIndexesAndItemTest() {
+        BinLogRowFilter.Compiled filter = BinLogRowFilter.create().eq("status", "A").changed("amount").compile(SCHEMA);
+        assertEquals(bits(1, 2), filter.getColumnIndexes());
+        BinLogItem item = new BinLogItem("db.orders", EventType.EXT_UPDATE_ROWS, SCHEMA);
+        item.setBeforeRow(row(1L, "A", 1));
+        item.setAfterRow(row(1L, "A", 2));
+        assertTrue(filter.test(item));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.shanhy.demo.mysqlbinlog.BinLogTestFixtures.schema;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogSnapshot 的主键区间 (lower, upper] 首尾相接、不重叠，时间类型与binlog反序列化一致
+ *
+ * @author 单红宇
+ * @date 2026/10/19 14:30
+ */
+class BinLogSnapshotTest {
+
+    @Test
+    void chunksCoverEveryKeyExactlyOnce() throws Exception {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; key <= 25; key++) {
+            keys.add(key * 10);
+        }
+        int chunkSize = 10;
+        List<Object[][]> chunks = new ArrayList<>();
+        // 与切分SQL一致：下界之后的第 chunkSize 个主键
+        BinLogSnapshot.split(lower -> {
+            List<Long> after = keys.stream().filter(key -> lower == null || key > (Long) lower[0]).toList();
+            return after.size() >= chunkSize ? new Object[]{after.get(chunkSize - 1)} : null;
+        }, (lower, upper) -> chunks.add(new Object[][]{lower, upper}));
+
+        assertEquals(3, chunks.size());
+        assertNull(chunks.get(0)[0]);
+        assertEquals(100L, chunks.get(0)[1][0]);
+        assertEquals(100L, chunks.get(1)[0][0]);
+        assertEquals(200L, chunks.get(1)[1][0]);
+        assertEquals(200L, chunks.get(2)[0][0]);
+        assertNull(chunks.get(2)[1]);
+
+        // 按 (lower, upper] 读取的行拼起来正好是所有主键
+        List<Long> read = new ArrayList<>();
+        for (Object[][] chunk : chunks) {
+            keys.stream()
+                    .filter(key -> chunk[0] == null || key > (Long) chunk[0][0])
+                    .filter(key -> chunk[1] == null || key <= (Long) chunk[1][0])
+                    .forEach(read::add);
+        }
+        assertEquals(keys, read);
+    }
+
+    @Test
+    void emptyTableIsOneUnboundedChunk() throws Exception {
+        List<Object[][]> chunks = new ArrayList<>();
+        BinLogSnapshot.split(lower -> null, (lower, upper) -> chunks.add(new Object[][]{lower, upper}));
+        assertEquals(1, chunks.size());
+        assertNull(chunks.get(0)[0]);
+        assertNull(chunks.get(0)[1]);
+    }
+
+    @Test
+    void chunkConditionExcludesLowerAndIncludesUpper() {
+        TableSchema schema = schema("db.t", 2, "a bigint", "b varchar", "c varchar");
+        assertEquals(" WHERE (`a`, `b`) > (?, ?) AND (`a`, `b`) <= (?, ?)",
+                BinLogSnapshot.chunkCondition(schema, true, true));
+        assertEquals(" WHERE (`a`, `b`) <= (?, ?)", BinLogSnapshot.chunkCondition(schema, false, true));
+        assertEquals(" WHERE (`a`, `b`) > (?, ?)", BinLogSnapshot.chunkCondition(schema, true, false));
+        assertEquals("", BinLogSnapshot.chunkCondition(schema, false, false));
+    }
+
+    @Test
+    void convertsTimeBeyondOneDayAndNegative() {
+        assertEquals(3_723_000L, BinLogSnapshot.parseTime("01:02:03"));
+        assertEquals(90_000_500L, BinLogSnapshot.parseTime("25:00:00.5"));
+        assertEquals(-(838 * 3600 + 59 * 60 + 59) * 1000L, BinLogSnapshot.parseTime("-838:59:59"));
+        assertEquals(-1_234L, BinLogSnapshot.parseTime("-00:00:01.234567"));
+    }
+
+    @Test
+    void detectsZeroDates() {
+        assertTrue(BinLogSnapshot.isZeroDate("0000-00-00"));
+        assertTrue(BinLogSnapshot.isZeroDate("0000-00-00 00:00:00"));
+        assertTrue(BinLogSnapshot.isZeroDate("2024-00-10"));
+        assertTrue(BinLogSnapshot.isZeroDate("2024-03-00 12:00:00"));
+        assertFalse(BinLogSnapshot.isZeroDate("2024-03-10 00:00:00"));
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogSpool 的持久化回调、读取和段删除
+ *
+ * @author 单红宇
+ * @date 2026/10/19 13:00
+ */
+class BinLogSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void runsDurableCallbackAfterIntervalFsync() throws Exception {
+        BinLogProperties.Spool config = config(BinLogCheckpointStore.FsyncPolicy.INTERVAL, 64 * 1024);
+        config.setFsyncIntervalMillis(50);
+        try (BinLogSpool spool = new BinLogSpool(config)) {
+            CountDownLatch durable = new CountDownLatch(2);
+            spool.append("db.t", items(0, 3), durable::countDown);
+            spool.append("db.t", items(3, 3), durable::countDown);
+            // 没有后续写入时由定时任务fsync
+            assertTrue(durable.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void runsDurableCallbackImmediatelyWithAlways() {
+        AtomicInteger durable = new AtomicInteger();
+        try (BinLogSpool spool = new BinLogSpool(config(BinLogCheckpointStore.FsyncPolicy.ALWAYS, 64 * 1024))) {
+            spool.append("db.t", items(0, 1), durable::incrementAndGet);
+            assertEquals(1, durable.get());
+        }
+    }
+
+    @Test
+    void readsInOrderAndDeletesConsumedSegments() throws Exception {
+        try (BinLogSpool spool = new BinLogSpool(config(BinLogCheckpointStore.FsyncPolicy.NEVER, 4096))) {
+            BinLogSpool.Cursor cursor = spool.openCursor("test");
+            for (int i = 0; i < 100; i++) {
+                spool.append("db.t", items(i * 10, 10));
+            }
+            assertTrue(spool.getSegmentCount() > 1);
+            long position = 0;
+            while (!cursor.isCaughtUp()) {
+                BinLogSpool.Entry entry = cursor.poll(1, TimeUnit.SECONDS);
+                assertNotNull(entry);
+                assertEquals("db.t", entry.dbTable());
+                for (BinLogItem item : entry.items()) {
+                    assertEquals(position, item.getPosition());
+                    assertArrayEquals(new Serializable[]{position, "name-" + position}, item.getAfterRow());
+                    position++;
+                }
+                cursor.commit(entry.nextOffset());
+            }
+            assertEquals(1000, position);
+            assertEquals(1, spool.getSegmentCount());
+            try (var files = Files.list(directory)) {
+                assertEquals(1, files.filter(file -> file.toString().endsWith(".seg")).count());
+            }
+        }
+    }
+
+    private BinLogProperties.Spool config(BinLogCheckpointStore.FsyncPolicy fsyncPolicy, long segmentBytes) {
+        BinLogProperties.Spool spool = new BinLogProperties.Spool();
+        spool.setDirectory(directory.toString());
+        spool.setSegmentBytes(segmentBytes);
+        spool.setFsyncPolicy(fsyncPolicy);
+        return spool;
+    }
+
+    private static List<BinLogItem> items(int from, int count) {
+        Map<String, TableColumn> columns = new LinkedHashMap<>();
+        columns.put("id", new TableColumn("db", "t", 1, "id", "bigint", true));
+        columns.put("name", new TableColumn("db", "t", 2, "name", "varchar"));
+        TableSchema schema = new TableSchema("db.t", columns);
+        List<BinLogItem> items = new ArrayList<>(count);
+        for (long i = from; i < from + count; i++) {
+            BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema);
+            item.setPosition(i);
+            item.setAfterRow(new Serializable[]{i, "name-" + i});
+            items.add(item);
+        }
+        return items;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogTablePattern 的精确名称、通配符和正则规则
+ *
+ * @author 单红宇
+ * @date 2026/10/19 11:20
+ */
+class BinLogTablePatternTest {
+
+    @Test
+    void parsesWildcardTable() {
+        BinLogTablePattern pattern = BinLogTablePattern.parse("test_demo.*");
+        assertEquals("test_demo", pattern.getDb());
+        assertNull(pattern.getTable());
+        assertTrue(pattern.matches("test_demo", "demo_class"));
+        assertFalse(pattern.matches("test_demo2", "demo_class"));
+    }
+
+    @Test
+    void treatsRegexCharactersAsLiterals() {
+        BinLogTablePattern pattern = BinLogTablePattern.of("db", "t$1");
+        assertTrue(pattern.isExact());
+        assertTrue(pattern.matches("db", "t$1"));
+        assertTrue(BinLogTablePattern.parse("db.t[1]").matches("db", "t[1]"));
+        assertFalse(BinLogTablePattern.parse("db.t[1]").matches("db", "t1"));
+    }
+
+    @Test
+    void matchesWildcards() {
+        BinLogTablePattern pattern = BinLogTablePattern.parse("orders_*.order_item_?");
+        assertTrue(pattern.matches("orders_01", "order_item_3"));
+        assertFalse(pattern.matches("orders_01", "order_item_33"));
+        assertFalse(pattern.matches("orders01", "order_item_3"));
+        assertTrue(BinLogTablePattern.parse("*.*").matches("a", "b"));
+        assertTrue(BinLogTablePattern.of("db", "t$*").matches("db", "t$_log"));
+    }
+
+    @Test
+    void parsesRegexPrefix() {
+        BinLogTablePattern pattern = BinLogTablePattern.parse("regex:orders_\\d+.order_item_[0-9]+");
+        assertTrue(pattern.matches("orders_12", "order_item_7"));
+        assertFalse(pattern.matches("orders_x", "order_item_7"));
+        assertTrue(BinLogTablePattern.parse("regex:test_demo..*").matches("test_demo", "anything"));
+        BinLogTablePattern dotted = BinLogTablePattern.parse("regex:a\\.b.t");
+        assertTrue(dotted.matches("a.b", "t"));
+        assertEquals("regex:a\\.b.t", dotted.toString());
+    }
+
+    @Test
+    void rejectsMissingSeparator() {
+        assertThrows(IllegalArgumentException.class, () -> BinLogTablePattern.parse("test_demo"));
+        assertThrows(IllegalArgumentException.class, () -> BinLogTablePattern.parse("test_demo."));
+        assertThrows(IllegalArgumentException.class, () -> BinLogTablePattern.parse(".t"));
+    }
+
+}
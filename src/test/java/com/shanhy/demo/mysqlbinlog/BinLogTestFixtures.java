@@ -0,0 +1,64 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单元测试共用的行、列集合和表结构构造方法
+ *
+ * @author 单红宇
+ * @date 2026/10/19 18:30
+ */
+final class BinLogTestFixtures {
+
+    private BinLogTestFixtures() {
+    }
+
+    static Serializable[] row(Serializable... values) {
+        return values;
+    }
+
+    static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    /**
+     * 按顺序构造表结构
+     *
+     * @param dbTable     库名.表名
+     * @param primaryKeys 前几列是主键
+     * @param columns     列定义，格式为 "列名 类型"
+     * @return TableSchema
+     */
+    static TableSchema schema(String dbTable, int primaryKeys, String... columns) {
+        String[] names = dbTable.split("\\.", 2);
+        Map<String, TableColumn> columnMap = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            String[] column = columns[i].split(" ", 2);
+            columnMap.put(column[0], new TableColumn(names[0], names[1], i + 1, column[0], column[1], i < primaryKeys));
+        }
+        return new TableSchema(dbTable, columnMap);
+    }
+
+    /**
+     * 构造 c1..cN 的 varchar 列，c1 是主键
+     *
+     * @param dbTable     库名.表名
+     * @param columnCount 列数
+     * @return TableSchema
+     */
+    static TableSchema schema(String dbTable, int columnCount) {
+        String[] columns = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = "c" + (i + 1) + " varchar";
+        }
+        return schema(dbTable, 1, columns);
+    }
+
+}
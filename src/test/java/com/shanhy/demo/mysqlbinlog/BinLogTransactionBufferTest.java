@@ -0,0 +1,78 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogTransactionBuffer 溢写到磁盘后按写入顺序读回
+ *
+ * @author 单红宇
+ * @date 2026/10/19 10:40
+ */
+class BinLogTransactionBufferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spillsAndReadsBackInOrder() {
+        Map<String, TableColumn> columns = new LinkedHashMap<>();
+        columns.put("id", new TableColumn("db", "t", 1, "id", "bigint", true));
+        columns.put("name", new TableColumn("db", "t", 2, "name", "varchar"));
+        TableSchema schema = new TableSchema("db.t", columns);
+        List<BinLogItem> items = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            BinLogItem item = new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, schema);
+            item.setPosition((long) i);
+            item.setAfterRow(new Serializable[]{(long) i, "name-" + i});
+            items.add(item);
+        }
+        BinLogTransactionBuffer buffer = new BinLogTransactionBuffer(10, directory);
+        buffer.addAll(items.subList(0, 5));
+        buffer.addAll(items.subList(5, items.size()));
+        buffer.complete();
+        assertTrue(buffer.isSpilled());
+        assertEquals(items.size(), buffer.size());
+
+        Iterator<BinLogItem> iterator = buffer.iterator();
+        for (BinLogItem expected : items) {
+            assertTrue(iterator.hasNext());
+            BinLogItem actual = iterator.next();
+            assertEquals(expected.getPosition(), actual.getPosition());
+            assertEquals(EventType.EXT_WRITE_ROWS, actual.getEventType());
+            assertArrayEquals(expected.getAfterRow(), actual.getAfterRow());
+            assertEquals("name", actual.getSchema().getColumnName(1));
+        }
+        assertFalse(iterator.hasNext());
+
+        buffer.release();
+        assertEquals(0, directory.toFile().list().length);
+    }
+
+    @Test
+    void keepsSmallTransactionsInMemory() throws Exception {
+        BinLogTransactionBuffer buffer = new BinLogTransactionBuffer(10, directory);
+        buffer.addAll(List.of(new BinLogItem("db.t", EventType.EXT_WRITE_ROWS, null)));
+        buffer.complete();
+        assertFalse(buffer.isSpilled());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+}
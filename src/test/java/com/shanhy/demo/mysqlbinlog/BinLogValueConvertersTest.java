@@ -0,0 +1,147 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * BinLogValueConverters 按列类型转换binlog中的原始值，以及 enum/set 取值的解析
+ *
+ * @author 单红宇
+ * @date 2026/10/19 15:10
+ */
+class BinLogValueConvertersTest {
+
+    @Test
+    void restoresUnsignedIntegers() {
+        assertEquals(255, convert("tinyint", "tinyint(3) unsigned", (byte) -1));
+        assertEquals(65535, convert("smallint", "smallint unsigned", -1));
+        assertEquals(16777215, convert("mediumint", "mediumint unsigned", -1));
+        assertEquals(4294967295L, convert("int", "int unsigned", -1));
+        assertEquals(new BigInteger("18446744073709551615"), convert("bigint", "bigint unsigned", -1L));
+        assertEquals(42L, convert("bigint", "bigint unsigned", 42L));
+        // 有符号和缺少 columnType 时原样返回
+        assertEquals(-1, convert("int", "int", -1));
+        assertEquals(-1, convert("int", null, -1));
+    }
+
+    @Test
+    void convertsDateAndTime() {
+        long millis = LocalDateTime.of(2026, 10, 19, 8, 30, 15, 123_000_000)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        assertEquals(LocalDateTime.of(2026, 10, 19, 8, 30, 15, 123_000_000), convert("datetime", null, millis));
+        assertEquals(Instant.ofEpochMilli(millis), convert("timestamp", null, millis));
+        assertEquals(LocalDate.of(2026, 10, 19), convert("date", null, millis - (8 * 3600 + 30 * 60 + 15) * 1000L - 123));
+        assertEquals(LocalDate.of(1969, 12, 31), convert("date", null, -86_400_000L));
+        assertEquals(LocalTime.of(1, 2, 3), convert("time", null, 3_723_000L));
+        assertEquals(Duration.ofHours(25), convert("time", null, 90_000_000L));
+        assertEquals(Duration.ofSeconds(-1), convert("time", null, -1000L));
+        // 已经是目标类型时原样返回
+        LocalDate date = LocalDate.of(2026, 1, 1);
+        assertSame(date, convert("date", null, date));
+    }
+
+    @Test
+    void convertsDecimalBitAndJson() {
+        assertEquals(new BigDecimal("12.50"), convert("decimal", "decimal(10,2)", new BigDecimal("12.50")));
+        assertEquals(new BigDecimal("7"), convert("decimal", null, 7L));
+        BitSet bits = new BitSet();
+        bits.set(0);
+        bits.set(3);
+        assertEquals(9L, convert("bit", "bit(4)", bits));
+        assertEquals(0L, convert("bit", "bit(4)", new BitSet()));
+        // 二进制JSON中的字符串：类型0x0c + 长度 + UTF-8
+        assertEquals("\"hi\"", convert("json", null, new byte[]{0x0c, 2, 'h', 'i'}));
+    }
+
+    @Test
+    void decodesTextByColumnCharset() {
+        byte[] gbk = "中文".getBytes(Charset.forName("GBK"));
+        assertEquals("中文", convert(column("varchar", "varchar(10)", "gbk"), gbk));
+        assertEquals("中文", convert(column("text", null, null), "中文".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("é", convert(column("char", null, "latin1"), new byte[]{(byte) 0xE9}));
+        assertEquals("已解码", convert(column("varchar", null, "utf8mb4"), "已解码"));
+        // 二进制串保持 byte[]
+        byte[] binary = {1, 2};
+        assertSame(binary, convert("varbinary", null, binary));
+    }
+
+    @Test
+    void mapsEnumAndSetValues() {
+        assertEquals("b", convert("enum", "enum('a','b','c')", 2));
+        assertEquals("", convert("enum", "enum('a','b','c')", 0));
+        assertEquals(9, convert("enum", "enum('a','b','c')", 9));
+        assertEquals("a,c", convert("set", "set('a','b','c')", 5L));
+        assertEquals("", convert("set", "set('a','b','c')", 0L));
+        assertEquals(3, convert("enum", null, 3));
+    }
+
+    @Test
+    void parsesQuotedValues() {
+        assertArrayEquals(new String[]{"a", "b"}, BinLogValueConverters.parseValues("enum('a','b')"));
+        assertArrayEquals(new String[]{"it's", "x,y", "(p)"},
+                BinLogValueConverters.parseValues("enum('it''s','x,y','(p)')"));
+        assertArrayEquals(new String[]{"a'b", "c\\d"}, BinLogValueConverters.parseValues("set('a\\'b','c\\\\d')"));
+        assertArrayEquals(new String[]{""}, BinLogValueConverters.parseValues("enum('')"));
+        assertNull(BinLogValueConverters.parseValues("varchar"));
+        assertNull(BinLogValueConverters.parseValues(null));
+    }
+
+    @Test
+    void buildsConvertersByColumnIndex() {
+        Map<String, TableColumn> columns = new LinkedHashMap<>();
+        columns.put("id", column(1, "id", "bigint", "bigint unsigned", null));
+        columns.put("name", column(2, "name", "varchar", "varchar(10)", "utf8mb4"));
+        BinLogValueConverters.Converter[] converters = BinLogValueConverters.of(new TableSchema("db.t", columns));
+        assertEquals(2, converters.length);
+        assertEquals(new BigInteger("18446744073709551615"), converters[0].convert(-1L));
+        assertEquals("n", converters[1].convert(new byte[]{'n'}));
+    }
+
+    @Test
+    void fallsBackToUtf8ForUnknownCharset() {
+        assertEquals(StandardCharsets.UTF_8, BinLogValueConverters.toCharset(null));
+        assertEquals(StandardCharsets.UTF_8, BinLogValueConverters.toCharset("utf8mb4"));
+        assertEquals(StandardCharsets.UTF_8, BinLogValueConverters.toCharset("no-such-charset"));
+        assertEquals("windows-1252", BinLogValueConverters.toCharset("LATIN1").name());
+    }
+
+    private static Serializable convert(String dataType, String columnType, Serializable value) {
+        return convert(column(dataType, columnType, null), value);
+    }
+
+    private static Serializable convert(TableColumn column, Serializable value) {
+        return BinLogValueConverters.of(column).convert(value);
+    }
+
+    private static TableColumn column(String dataType, String columnType, String charset) {
+        return column(1, "c", dataType, columnType, charset);
+    }
+
+    private static TableColumn column(int ordinalPosition, String name, String dataType, String columnType,
+                                      String charset) {
+        TableColumn column = new TableColumn("db", "t", ordinalPosition, name, dataType);
+        column.setColumnType(columnType);
+        column.setCharset(charset);
+        return column;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BinLogWatermark 只推进到连续确认的最后一个事件，并带上其间最后一个GTID集合
+ *
+ * @author 单红宇
+ * @date 2026/10/19 13:40
+ */
+class BinLogWatermarkTest {
+
+    private final List<String> saved = new ArrayList<>();
+
+    private final BinLogWatermark watermark = new BinLogWatermark(
+            (binlogFilename, nextPosition, gtidSet) -> saved.add(binlogFilename + "/" + nextPosition + "/" + gtidSet));
+
+    @Test
+    void advancesOnlyOverContiguousAcks() {
+        Runnable first = watermark.track("mysql-bin.000001", 100);
+        Runnable second = watermark.track("mysql-bin.000001", 200);
+        Runnable third = watermark.track("mysql-bin.000001", 300);
+        assertEquals(3, watermark.getPendingCount());
+
+        third.run();
+        second.run();
+        // 第一个事件未确认，水位不动
+        assertTrue(saved.isEmpty());
+        assertNull(watermark.getBinlogFilename());
+        assertEquals(3, watermark.getPendingCount());
+
+        first.run();
+        assertEquals(List.of("mysql-bin.000001/300/null"), saved);
+        assertEquals("mysql-bin.000001", watermark.getBinlogFilename());
+        assertEquals(300, watermark.getPosition());
+        assertEquals(0, watermark.getPendingCount());
+    }
+
+    @Test
+    void carriesLastGtidSetOfAdvancedMarks() {
+        Runnable first = watermark.track("mysql-bin.000001", 100, "uuid:1-5");
+        Runnable second = watermark.track("mysql-bin.000001", 200);
+        Runnable third = watermark.track("mysql-bin.000002", 4, "uuid:1-6");
+        Runnable fourth = watermark.track("mysql-bin.000002", 120);
+
+        second.run();
+        first.run();
+        // 第二个事件没有GTID集合，沿用第一个事件的
+        assertEquals(List.of("mysql-bin.000001/200/uuid:1-5"), saved);
+
+        fourth.run();
+        third.run();
+        assertEquals("mysql-bin.000002/120/uuid:1-6", saved.get(1));
+        assertEquals("mysql-bin.000002", watermark.getBinlogFilename());
+    }
+
+    @Test
+    void savesOncePerAdvance() {
+        Runnable first = watermark.track("mysql-bin.000001", 100);
+        Runnable second = watermark.track("mysql-bin.000001", 200);
+        first.run();
+        second.run();
+        assertEquals(List.of("mysql-bin.000001/100/null", "mysql-bin.000001/200/null"), saved);
+    }
+
+}
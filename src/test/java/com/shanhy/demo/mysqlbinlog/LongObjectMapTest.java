@@ -0,0 +1,73 @@
+package com.shanhy.demo.mysqlbinlog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LongObjectMap 的查找、后移删除和按最久未访问淘汰
+ *
+ * @author 单红宇
+ * @date 2026/10/19 11:40
+ */
+class LongObjectMapTest {
+
+    @Test
+    void removedKeysDoNotEvictLiveKeys() {
+        LongObjectMap<String> map = new LongObjectMap<>(3);
+        map.put(1, "a");
+        map.put(2, "b");
+        map.remove(2);
+        map.put(3, "c");
+        map.remove(3);
+        map.put(4, "d");
+        assertTrue(map.containsKey(1));
+        assertTrue(map.containsKey(4));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LongObjectMap<String> map = new LongObjectMap<>(3);
+        map.put(1, "a");
+        map.put(2, "b");
+        map.put(3, "c");
+        assertEquals("a", map.get(1));
+        map.put(4, "d");
+        assertFalse(map.containsKey(2));
+        assertTrue(map.containsKey(1));
+        map.put(3, "c2");
+        map.put(5, "e");
+        assertFalse(map.containsKey(1));
+        assertEquals("c2", map.get(3));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        LongObjectMap<Long> map = new LongObjectMap<>(1000);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(800);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+    }
+
+}
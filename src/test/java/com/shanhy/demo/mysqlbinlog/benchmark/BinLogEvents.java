@@ -0,0 +1,215 @@
+package com.shanhy.demo.mysqlbinlog.benchmark;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+import com.shanhy.demo.mysqlbinlog.BinLogUtils;
+import com.shanhy.demo.mysqlbinlog.TableColumn;
+import com.shanhy.demo.mysqlbinlog.TableSchema;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试用的合成binlog事件，列类型按 bigint、varchar、int、decimal 循环，第一列为主键
+ *
+ * @author 单红宇
+ * @date 2026/10/17 19:40
+ */
+public final class BinLogEvents {
+
+    /**
+     * 列类型
+     */
+    private static final ColumnType[] COLUMN_TYPES = {
+            ColumnType.LONGLONG, ColumnType.VARCHAR, ColumnType.LONG, ColumnType.NEWDECIMAL
+    };
+
+    private BinLogEvents() {
+    }
+
+    /**
+     * 带完整列元数据（binlog_row_metadata=FULL）的 TABLE_MAP 事件
+     *
+     * @param tableId tableId
+     * @param db      db
+     * @param table   table
+     * @param columns 列数
+     * @return Event
+     */
+    public static Event tableMap(long tableId, String db, String table, int columns) {
+        TableMapEventData data = new TableMapEventData();
+        data.setTableId(tableId);
+        data.setDatabase(db);
+        data.setTable(table);
+        byte[] columnTypes = new byte[columns];
+        int[] columnMetadata = new int[columns];
+        List<String> columnNames = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            ColumnType columnType = COLUMN_TYPES[i % COLUMN_TYPES.length];
+            columnTypes[i] = (byte) columnType.getCode();
+            columnMetadata[i] = columnType == ColumnType.VARCHAR ? 255 : 0;
+            columnNames.add(columnName(i));
+        }
+        data.setColumnTypes(columnTypes);
+        data.setColumnMetadata(columnMetadata);
+        data.setColumnNullability(new BitSet(columns));
+        TableMapEventMetadata metadata = new TableMapEventMetadata();
+        metadata.setColumnNames(columnNames);
+        metadata.setSimplePrimaryKeys(List.of(0));
+        data.setEventMetadata(metadata);
+        return event(EventType.TABLE_MAP, data);
+    }
+
+    /**
+     * 与 {@link #tableMap} 一致的表结构
+     *
+     * @param db      db
+     * @param table   table
+     * @param columns 列数
+     * @return TableSchema
+     */
+    public static TableSchema schema(String db, String table, int columns) {
+        Map<String, TableColumn> columnMap = new LinkedHashMap<>();
+        for (int i = 0; i < columns; i++) {
+            String dataType = switch (COLUMN_TYPES[i % COLUMN_TYPES.length]) {
+                case LONGLONG -> "bigint";
+                case VARCHAR -> "varchar";
+                case LONG -> "int";
+                default -> "decimal";
+            };
+            columnMap.put(columnName(i), new TableColumn(db, table, i + 1, columnName(i), dataType, i == 0));
+        }
+        return new TableSchema(BinLogUtils.getDbTable(db, table), columnMap);
+    }
+
+    /**
+     * 行数据
+     *
+     * @param columns 列数
+     * @param id      主键
+     * @param version 不同的version生成不同的非主键列值
+     * @return Serializable[]
+     */
+    public static Serializable[] row(int columns, long id, int version) {
+        Serializable[] row = new Serializable[columns];
+        row[0] = id;
+        for (int i = 1; i < columns; i++) {
+            row[i] = switch (COLUMN_TYPES[i % COLUMN_TYPES.length]) {
+                case LONGLONG -> id * 31 + i + version;
+                case VARCHAR -> "value-" + i + "-" + version;
+                case LONG -> i + version;
+                default -> BigDecimal.valueOf(i * 100L + version, 2);
+            };
+        }
+        return row;
+    }
+
+    /**
+     * 新增事件
+     *
+     * @param tableId tableId
+     * @param columns 列数
+     * @param rows    行数
+     * @return Event
+     */
+    public static Event writeRows(long tableId, int columns, int rows) {
+        WriteRowsEventData data = new WriteRowsEventData();
+        data.setTableId(tableId);
+        data.setIncludedColumns(allColumns(columns));
+        List<Serializable[]> rowList = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            rowList.add(row(columns, i, 0));
+        }
+        data.setRows(rowList);
+        return event(EventType.EXT_WRITE_ROWS, data);
+    }
+
+    /**
+     * 修改事件，每行一半的非主键列发生变化
+     *
+     * @param tableId tableId
+     * @param columns 列数
+     * @param rows    行数
+     * @return Event
+     */
+    public static Event updateRows(long tableId, int columns, int rows) {
+        UpdateRowsEventData data = new UpdateRowsEventData();
+        data.setTableId(tableId);
+        data.setIncludedColumnsBeforeUpdate(allColumns(columns));
+        data.setIncludedColumns(allColumns(columns));
+        List<Map.Entry<Serializable[], Serializable[]>> rowList = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            rowList.add(updateRow(columns, i));
+        }
+        data.setRows(rowList);
+        return event(EventType.EXT_UPDATE_ROWS, data);
+    }
+
+    /**
+     * 修改的一行，奇数列发生变化
+     *
+     * @param columns 列数
+     * @param id      主键
+     * @return Map.Entry
+     */
+    public static Map.Entry<Serializable[], Serializable[]> updateRow(int columns, long id) {
+        Serializable[] before = row(columns, id, 0);
+        Serializable[] after = row(columns, id, 1);
+        for (int i = 0; i < columns; i += 2) {
+            after[i] = before[i];
+        }
+        return new AbstractMap.SimpleEntry<>(before, after);
+    }
+
+    /**
+     * 全部列
+     *
+     * @param columns 列数
+     * @return BitSet
+     */
+    public static BitSet allColumns(int columns) {
+        BitSet bitSet = new BitSet(columns);
+        bitSet.set(0, columns);
+        return bitSet;
+    }
+
+    /**
+     * 事件
+     *
+     * @param eventType eventType
+     * @param data      data
+     * @return Event
+     */
+    public static Event event(EventType eventType, EventData data) {
+        EventHeaderV4 header = new EventHeaderV4();
+        header.setEventType(eventType);
+        header.setTimestamp(System.currentTimeMillis());
+        header.setServerId(1);
+        header.setNextPosition(4);
+        return new Event(header, data);
+    }
+
+    /**
+     * 列名
+     *
+     * @param index index
+     * @return String
+     */
+    private static String columnName(int index) {
+        return index == 0 ? "id" : "c" + index;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.shanhy.demo.mysqlbinlog.benchmark;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.shanhy.demo.mysqlbinlog.BinLogBatchListener;
+import com.shanhy.demo.mysqlbinlog.BinLogProperties;
+import com.shanhy.demo.mysqlbinlog.MySQLBinLogHandler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MySQLBinLogHandler.onEvent 到监听器回调的基准测试：TABLE_MAP + 行事件，结果按行计算（ops = 行数）。
+ * dispatchThreads 为0时监听器在调用线程中执行，测量完整链路；大于0时测量读取线程的入队吞吐量
+ *
+ * @author 单红宇
+ * @date 2026/10/17 20:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinLogHandlerBenchmark {
+
+    /**
+     * tableId
+     */
+    private static final long TABLE_ID = 100;
+
+    /**
+     * 列数
+     */
+    @Param({"8", "64"})
+    public int columns;
+
+    /**
+     * 每个行事件的行数
+     */
+    @Param({"1", "100"})
+    public int rows;
+
+    /**
+     * 监听器数量
+     */
+    @Param({"1", "4"})
+    public int listeners;
+
+    /**
+     * 监听器类型：row 逐行监听器，batch 批量监听器
+     */
+    @Param({"row", "batch"})
+    public String listenerType;
+
+    /**
+     * 分发线程数
+     */
+    @Param({"0"})
+    public int dispatchThreads;
+
+    /**
+     * handler
+     */
+    private MySQLBinLogHandler handler;
+
+    /**
+     * TABLE_MAP
+     */
+    private Event tableMap;
+
+    /**
+     * 新增事件
+     */
+    private Event writeRows;
+
+    /**
+     * 修改事件
+     */
+    private Event updateRows;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        BinLogProperties properties = new BinLogProperties();
+        properties.setDatabaseName("bench");
+        properties.setTableList(List.of("t"));
+        properties.getDispatch().setThreads(dispatchThreads);
+        properties.getCheckpoint().setEnabled(false);
+        handler = new MySQLBinLogHandler(properties);
+        for (int i = 0; i < listeners; i++) {
+            if ("batch".equals(listenerType)) {
+                handler.regListener("bench", "t", (BinLogBatchListener) blackhole::consume);
+            } else {
+                handler.regListener("bench", "t", item -> blackhole.consume(item.getAfter().get("c1")));
+            }
+        }
+        tableMap = BinLogEvents.tableMap(TABLE_ID, "bench", "t", columns);
+        writeRows = BinLogEvents.writeRows(TABLE_ID, columns, rows);
+        updateRows = BinLogEvents.updateRows(TABLE_ID, columns, rows);
+        handler.onEvent(tableMap);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        handler.stop();
+    }
+
+    @Benchmark
+    public void insert(RowCounter counter) {
+        handler.onEvent(tableMap);
+        handler.onEvent(writeRows);
+        counter.rows += rows;
+    }
+
+    @Benchmark
+    public void update(RowCounter counter) {
+        handler.onEvent(tableMap);
+        handler.onEvent(updateRows);
+        counter.rows += rows;
+    }
+
+    /**
+     * 按行输出吞吐量
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RowCounter {
+
+        /**
+         * 处理的行数
+         */
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+}
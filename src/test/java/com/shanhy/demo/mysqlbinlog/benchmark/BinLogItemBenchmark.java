@@ -0,0 +1,112 @@
+package com.shanhy.demo.mysqlbinlog.benchmark;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.shanhy.demo.mysqlbinlog.BinLogItem;
+import com.shanhy.demo.mysqlbinlog.TableSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BinLogItem 行数据封装的基准测试
+ *
+ * @author 单红宇
+ * @date 2026/10/17 19:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinLogItemBenchmark {
+
+    /**
+     * 列数
+     */
+    @Param({"8", "64"})
+    public int columns;
+
+    /**
+     * schema
+     */
+    private TableSchema schema;
+
+    /**
+     * event
+     */
+    private Event event;
+
+    /**
+     * 新增的行
+     */
+    private Serializable[] row;
+
+    /**
+     * 修改的行
+     */
+    private Map.Entry<Serializable[], Serializable[]> updateRow;
+
+    /**
+     * 只包含一半列的镜像（binlog_row_image=MINIMAL）
+     */
+    private BitSet halfColumns;
+
+    /**
+     * 只包含一半列的行
+     */
+    private Serializable[] halfRow;
+
+    @Setup
+    public void setUp() {
+        schema = BinLogEvents.schema("bench", "t", columns);
+        event = BinLogEvents.event(EventType.EXT_WRITE_ROWS, null);
+        row = BinLogEvents.row(columns, 1, 0);
+        updateRow = BinLogEvents.updateRow(columns, 1);
+        halfColumns = new BitSet(columns);
+        for (int i = 0; i < columns; i += 2) {
+            halfColumns.set(i);
+        }
+        halfRow = new Serializable[halfColumns.cardinality()];
+        for (int i = 0, j = 0; i < columns; i += 2) {
+            halfRow[j++] = row[i];
+        }
+    }
+
+    @Benchmark
+    public BinLogItem insert() {
+        return BinLogItem.itemFromInsertOrDeleted("bench.t", row, null, schema, event, EventType.EXT_WRITE_ROWS);
+    }
+
+    @Benchmark
+    public BinLogItem insertPartialImage() {
+        return BinLogItem.itemFromInsertOrDeleted("bench.t", halfRow, halfColumns, schema, event, EventType.EXT_WRITE_ROWS);
+    }
+
+    @Benchmark
+    public BinLogItem update() {
+        return BinLogItem.itemFromUpdate("bench.t", updateRow, null, null, schema, event, EventType.EXT_UPDATE_ROWS);
+    }
+
+    @Benchmark
+    public Serializable updateAndRead() {
+        BinLogItem item = BinLogItem.itemFromUpdate("bench.t", updateRow, null, null, schema, event,
+                EventType.EXT_UPDATE_ROWS);
+        return item.getAfter().get("c1");
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.shanhy.demo.mysqlbinlog.benchmark;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.shanhy.demo.mysqlbinlog.BinLogItem;
+import com.shanhy.demo.mysqlbinlog.BinLogItemCodec;
+import com.shanhy.demo.mysqlbinlog.TableSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BinLogItemCodec 与Java序列化的对比：编码/解码一组行变更（新增和修改各一半），启动时输出两者的字节数
+ *
+ * @author 单红宇
+ * @date 2026/10/18 09:10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinLogItemCodecBenchmark {
+
+    /**
+     * 列数
+     */
+    @Param({"8", "64"})
+    public int columns;
+
+    /**
+     * 每组行数
+     */
+    @Param({"1", "100"})
+    public int items;
+
+    /**
+     * 行变更
+     */
+    private List<BinLogItem> itemList;
+
+    /**
+     * Java序列化的结果
+     */
+    private byte[] javaBytes;
+
+    /**
+     * 编码的结果
+     */
+    private byte[] codecBytes;
+
+    /**
+     * 复用的编码器
+     */
+    private final BinLogItemCodec.Encoder encoder = new BinLogItemCodec.Encoder();
+
+    /**
+     * 复用的解码器
+     */
+    private final BinLogItemCodec.Decoder decoder = new BinLogItemCodec.Decoder();
+
+    @Setup
+    public void setUp() throws IOException {
+        TableSchema schema = BinLogEvents.schema("bench", "t", columns);
+        Event insert = BinLogEvents.event(EventType.EXT_WRITE_ROWS, null);
+        Event update = BinLogEvents.event(EventType.EXT_UPDATE_ROWS, null);
+        itemList = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            itemList.add(i % 2 == 0
+                    ? BinLogItem.itemFromInsertOrDeleted("bench.t", BinLogEvents.row(columns, i, 0), schema, insert,
+                    EventType.EXT_WRITE_ROWS)
+                    : BinLogItem.itemFromUpdate("bench.t", BinLogEvents.updateRow(columns, i), schema, update,
+                    EventType.EXT_UPDATE_ROWS));
+        }
+        javaBytes = javaSerialize();
+        codecBytes = codecEncode();
+        System.out.printf("%ncolumns=%d, items=%d：Java序列化 %d 字节，BinLogItemCodec %d 字节（%.1f%%）%n", columns, items,
+                javaBytes.length, codecBytes.length, codecBytes.length * 100.0 / javaBytes.length);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeInt(itemList.size());
+            for (BinLogItem item : itemList) {
+                output.writeObject(item);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<BinLogItem> javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(javaBytes))) {
+            int size = input.readInt();
+            List<BinLogItem> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add((BinLogItem) input.readObject());
+            }
+            return result;
+        }
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        encoder.reset();
+        for (BinLogItem item : itemList) {
+            encoder.write(item);
+        }
+        return encoder.toByteArray();
+    }
+
+    @Benchmark
+    public List<BinLogItem> codecDecode() {
+        decoder.reset(codecBytes, 0, codecBytes.length);
+        List<BinLogItem> result = new ArrayList<>(items);
+        while (decoder.hasRemaining()) {
+            result.add(decoder.read());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.shanhy.demo.mysqlbinlog.loadtest;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 按MySQL 8.0的binlog格式（v4，无校验和）编码事件，维护文件内的position。
+ * 列类型：id bigint主键、sent_at_us bigint（发送时间，微秒）、其余列按 varchar(64)、int、bigint 循环
+ *
+ * @author 单红宇
+ * @date 2026/10/17 20:40
+ */
+public class BinLogEventEncoder {
+
+    /**
+     * 事件头长度
+     */
+    private static final int HEADER_LENGTH = 19;
+
+    /**
+     * varchar列的最大长度
+     */
+    private static final int VARCHAR_LENGTH = 64;
+
+    /**
+     * serverId
+     */
+    private final long serverId;
+
+    /**
+     * 下一个事件的position
+     */
+    private long position = 4;
+
+    /**
+     * BinLogEventEncoder
+     *
+     * @param serverId serverId
+     */
+    public BinLogEventEncoder(long serverId) {
+        this.serverId = serverId;
+    }
+
+    /**
+     * 复制开始时的 ROTATE 事件（时间戳和position为0）
+     *
+     * @param filename filename
+     * @return byte[]
+     */
+    public byte[] rotate(String filename) {
+        Buffer body = new Buffer();
+        body.int8(4);
+        body.bytes(filename.getBytes(StandardCharsets.UTF_8));
+        return event(EventType.ROTATE, 0, body, true);
+    }
+
+    /**
+     * FORMAT_DESCRIPTION 事件
+     *
+     * @return byte[]
+     */
+    public byte[] formatDescription() {
+        Buffer body = new Buffer();
+        body.int2(4);
+        byte[] version = new byte[50];
+        byte[] serverVersion = "8.0.36-fake".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(serverVersion, 0, version, 0, serverVersion.length);
+        body.bytes(version);
+        body.int4(0);
+        body.int1(HEADER_LENGTH);
+        body.bytes(new byte[40]);
+        // 校验和算法：0（NONE），后面是4字节校验和占位
+        body.int1(0);
+        body.int4(0);
+        return event(EventType.FORMAT_DESCRIPTION, System.currentTimeMillis(), body, false);
+    }
+
+    /**
+     * 事务开始的 QUERY 事件
+     *
+     * @param timestamp timestamp
+     * @return byte[]
+     */
+    public byte[] begin(long timestamp) {
+        Buffer body = new Buffer();
+        body.int4(1);
+        body.int4(0);
+        body.int1(0);
+        body.int2(0);
+        body.int2(0);
+        body.int1(0);
+        body.bytes("BEGIN".getBytes(StandardCharsets.US_ASCII));
+        return event(EventType.QUERY, timestamp, body, false);
+    }
+
+    /**
+     * 事务提交的 XID 事件
+     *
+     * @param timestamp timestamp
+     * @param xid       xid
+     * @return byte[]
+     */
+    public byte[] xid(long timestamp, long xid) {
+        Buffer body = new Buffer();
+        body.int8(xid);
+        return event(EventType.XID, timestamp, body, false);
+    }
+
+    /**
+     * 带列名和主键元数据（binlog_row_metadata=FULL）的 TABLE_MAP 事件
+     *
+     * @param timestamp timestamp
+     * @param tableId   tableId
+     * @param db        db
+     * @param table     table
+     * @param columns   列数，至少2列
+     * @return byte[]
+     */
+    public byte[] tableMap(long timestamp, long tableId, String db, String table, int columns) {
+        Buffer body = new Buffer();
+        body.int6(tableId);
+        body.int2(1);
+        byte[] dbBytes = db.getBytes(StandardCharsets.UTF_8);
+        body.int1(dbBytes.length);
+        body.bytes(dbBytes);
+        body.int1(0);
+        byte[] tableBytes = table.getBytes(StandardCharsets.UTF_8);
+        body.int1(tableBytes.length);
+        body.bytes(tableBytes);
+        body.int1(0);
+        body.packed(columns);
+        Buffer metadata = new Buffer();
+        for (int i = 0; i < columns; i++) {
+            ColumnType columnType = columnType(i);
+            body.int1(columnType.getCode());
+            if (columnType == ColumnType.VARCHAR) {
+                metadata.int2(VARCHAR_LENGTH);
+            }
+        }
+        body.packed(metadata.size());
+        body.bytes(metadata.toByteArray());
+        body.bytes(new byte[(columns + 7) / 8]);
+        // 可选元数据：列名（4）、主键（8）
+        Buffer names = new Buffer();
+        for (int i = 0; i < columns; i++) {
+            byte[] name = columnName(i).getBytes(StandardCharsets.UTF_8);
+            names.packed(name.length);
+            names.bytes(name);
+        }
+        body.int1(4);
+        body.packed(names.size());
+        body.bytes(names.toByteArray());
+        body.int1(8);
+        body.packed(1);
+        body.packed(0);
+        return event(EventType.TABLE_MAP, timestamp, body, false);
+    }
+
+    /**
+     * 新增事件
+     *
+     * @param timestamp timestamp
+     * @param tableId   tableId
+     * @param columns   列数
+     * @param firstId   第一行的主键
+     * @param rows      行数
+     * @param sentAtUs  发送时间（微秒）
+     * @return byte[]
+     */
+    public byte[] writeRows(long timestamp, long tableId, int columns, long firstId, int rows, long sentAtUs) {
+        Buffer body = new Buffer();
+        body.int6(tableId);
+        body.int2(0);
+        body.int2(2);
+        body.packed(columns);
+        body.bytes(allColumns(columns));
+        for (int r = 0; r < rows; r++) {
+            body.bytes(new byte[(columns + 7) / 8]);
+            long id = firstId + r;
+            body.int8(id);
+            body.int8(sentAtUs);
+            for (int i = 2; i < columns; i++) {
+                switch (columnType(i)) {
+                    case VARCHAR -> {
+                        byte[] value = ("v" + id + "-" + i).getBytes(StandardCharsets.UTF_8);
+                        body.int1(value.length);
+                        body.bytes(value);
+                    }
+                    case LONG -> body.int4((int) (id + i));
+                    default -> body.int8(id * 31 + i);
+                }
+            }
+        }
+        return event(EventType.EXT_WRITE_ROWS, timestamp, body, false);
+    }
+
+    /**
+     * 列类型
+     *
+     * @param index index
+     * @return ColumnType
+     */
+    static ColumnType columnType(int index) {
+        if (index < 2) {
+            return ColumnType.LONGLONG;
+        }
+        return switch (index % 3) {
+            case 0 -> ColumnType.VARCHAR;
+            case 1 -> ColumnType.LONG;
+            default -> ColumnType.LONGLONG;
+        };
+    }
+
+    /**
+     * 列名
+     *
+     * @param index index
+     * @return String
+     */
+    static String columnName(int index) {
+        return switch (index) {
+            case 0 -> "id";
+            case 1 -> "sent_at_us";
+            default -> "c" + index;
+        };
+    }
+
+    /**
+     * 全部列的位图
+     *
+     * @param columns columns
+     * @return byte[]
+     */
+    private static byte[] allColumns(int columns) {
+        byte[] bitmap = new byte[(columns + 7) / 8];
+        for (int i = 0; i < columns; i++) {
+            bitmap[i >> 3] |= (byte) (1 << (i & 7));
+        }
+        return bitmap;
+    }
+
+    /**
+     * 加上事件头
+     *
+     * @param eventType eventType
+     * @param timestamp 时间戳（毫秒）
+     * @param body      body
+     * @param artificial 是否为复制开始时的伪事件（不占用position）
+     * @return byte[]
+     */
+    private byte[] event(EventType eventType, long timestamp, Buffer body, boolean artificial) {
+        int length = HEADER_LENGTH + body.size();
+        Buffer event = new Buffer();
+        event.int4(timestamp / 1000);
+        event.int1(eventTypeCode(eventType));
+        event.int4(serverId);
+        event.int4(length);
+        event.int4(artificial ? 0 : position + length);
+        event.int2(artificial ? 0x20 : 0);
+        event.bytes(body.toByteArray());
+        if (!artificial) {
+            position += length;
+        }
+        return event.toByteArray();
+    }
+
+    /**
+     * 事件类型编码
+     *
+     * @param eventType eventType
+     * @return int
+     */
+    private static int eventTypeCode(EventType eventType) {
+        return switch (eventType) {
+            case QUERY -> 2;
+            case ROTATE -> 4;
+            case FORMAT_DESCRIPTION -> 15;
+            case XID -> 16;
+            case TABLE_MAP -> 19;
+            case EXT_WRITE_ROWS -> 30;
+            default -> throw new IllegalArgumentException("unsupported event type: " + eventType);
+        };
+    }
+
+    /**
+     * 小端字节缓冲
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+
+        void int1(int value) {
+            write(value);
+        }
+
+        void int2(int value) {
+            write(value);
+            write(value >>> 8);
+        }
+
+        void int4(long value) {
+            for (int i = 0; i < 4; i++) {
+                write((int) (value >>> (8 * i)));
+            }
+        }
+
+        void int6(long value) {
+            for (int i = 0; i < 6; i++) {
+                write((int) (value >>> (8 * i)));
+            }
+        }
+
+        void int8(long value) {
+            for (int i = 0; i < 8; i++) {
+                write((int) (value >>> (8 * i)));
+            }
+        }
+
+        void packed(long value) {
+            if (value < 251) {
+                int1((int) value);
+            } else if (value < 1 << 16) {
+                int1(0xFC);
+                int2((int) value);
+            } else {
+                int1(0xFD);
+                for (int i = 0; i < 3; i++) {
+                    write((int) (value >>> (8 * i)));
+                }
+            }
+        }
+
+        void bytes(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.shanhy.demo.mysqlbinlog.loadtest;
+
+import com.shanhy.demo.mysqlbinlog.BinLogMetrics;
+import com.shanhy.demo.mysqlbinlog.BinLogProperties;
+import com.shanhy.demo.mysqlbinlog.MySQLBinLogHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 端到端压测：MySQLBinLogHandler 连接本地的 {@link FakeBinLogServer}，经过网络读取、反序列化、分发到监听器，
+ * 输出持续的事件/行吞吐量和每秒的延迟曲线（从服务端发送到监听器收到，p50/p99/max）
+ *
+ * @author 单红宇
+ * @date 2026/10/17 21:00
+ */
+@Slf4j
+class BinLogPipelineLoadTest {
+
+    /**
+     * 等待全部行到达的超时时间
+     */
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    /**
+     * 不限速：服务端尽快推送，测量持续吞吐量
+     */
+    @Test
+    void sustainedThroughput() throws Exception {
+        FakeBinLogServer.Workload workload = new FakeBinLogServer.Workload();
+        workload.setTransactions(20_000);
+        workload.setTables(4);
+        workload.setColumns(16);
+        workload.setRowsPerEvent(10);
+        workload.setEventsPerTransaction(2);
+        run(workload);
+    }
+
+    /**
+     * 固定速率：服务端按每秒2000个事务推送，观察延迟曲线
+     */
+    @Test
+    void lagAtFixedRate() throws Exception {
+        FakeBinLogServer.Workload workload = new FakeBinLogServer.Workload();
+        workload.setTransactionsPerSecond(2_000);
+        workload.setTransactions(6_000);
+        workload.setTables(2);
+        workload.setColumns(32);
+        workload.setRowsPerEvent(5);
+        run(workload);
+    }
+
+    /**
+     * 启动服务端和handler，等待全部行到达后输出报告
+     *
+     * @param workload workload
+     * @throws Exception Exception
+     */
+    private void run(FakeBinLogServer.Workload workload) throws Exception {
+        long expectedRows = workload.getTransactions() * workload.getEventsPerTransaction() * workload.getRowsPerEvent();
+        LagCurve lagCurve = new LagCurve();
+        try (FakeBinLogServer server = new FakeBinLogServer(0, workload)) {
+            BinLogProperties properties = new BinLogProperties();
+            properties.setHost("127.0.0.1");
+            properties.setPort(server.getPort());
+            properties.setUsername("root");
+            properties.setPassword("root");
+            properties.setDatabaseName(FakeBinLogServer.DATABASE);
+            List<String> tables = new ArrayList<>();
+            for (int i = 0; i < workload.getTables(); i++) {
+                tables.add(FakeBinLogServer.tableName(i));
+            }
+            properties.setTableList(tables);
+            properties.getCheckpoint().setEnabled(false);
+            MySQLBinLogHandler handler = new MySQLBinLogHandler(properties, null,
+                    new BinLogMetrics(new SimpleMeterRegistry()));
+            tables.forEach(table -> handler.regListener(FakeBinLogServer.DATABASE, table,
+                    item -> lagCurve.record((Long) item.getAfter().get("sent_at_us"))));
+            Thread client = new Thread(() -> {
+                try {
+                    handler.parse();
+                } catch (IOException e) {
+                    log.error("连接假binlog服务端失败", e);
+                }
+            }, "load-test-client");
+            client.start();
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (lagCurve.getRows() < expectedRows && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            handler.stop();
+            client.join(TimeUnit.SECONDS.toMillis(10));
+            lagCurve.report(workload, server.getSentRowsEvents());
+        }
+        assertEquals(expectedRows, lagCurve.getRows());
+    }
+
+    /**
+     * 当前时间（微秒）
+     *
+     * @return long
+     */
+    private static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+
+    /**
+     * 按收到的时间每秒一个桶记录延迟
+     */
+    private static final class LagCurve {
+
+        /**
+         * 第一行到达的时间（微秒）
+         */
+        private volatile long startMicros;
+
+        /**
+         * 收到的行数
+         */
+        private final AtomicLong rows = new AtomicLong();
+
+        /**
+         * 每秒的延迟（微秒）
+         */
+        private final Map<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+        /**
+         * 记录一行
+         *
+         * @param sentAtUs 服务端的发送时间（微秒）
+         */
+        void record(long sentAtUs) {
+            long now = nowMicros();
+            if (startMicros == 0) {
+                synchronized (this) {
+                    if (startMicros == 0) {
+                        startMicros = now;
+                    }
+                }
+            }
+            buckets.computeIfAbsent((now - startMicros) / 1_000_000, second -> new Bucket()).add(now - sentAtUs);
+            rows.incrementAndGet();
+        }
+
+        long getRows() {
+            return rows.get();
+        }
+
+        /**
+         * 输出吞吐量和延迟曲线
+         *
+         * @param workload    workload
+         * @param rowsEvents  服务端发送的行事件数
+         */
+        void report(FakeBinLogServer.Workload workload, long rowsEvents) {
+            long elapsedMicros = Math.max(1, buckets.values().stream().mapToLong(Bucket::getLastMicros).max().orElse(0) - startMicros);
+            double seconds = elapsedMicros / 1_000_000.0;
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%n负载：%s%n", workload));
+            report.append(String.format("行事件 %d 个，行 %d 行，耗时 %.2fs，%.0f 事件/秒，%.0f 行/秒%n",
+                    rowsEvents, rows.get(), seconds, rowsEvents / seconds, rows.get() / seconds));
+            report.append(String.format("%6s %10s %10s %10s %10s%n", "秒", "行数", "p50(ms)", "p99(ms)", "max(ms)"));
+            buckets.forEach((second, bucket) -> {
+                long[] lags = bucket.sorted();
+                report.append(String.format("%6d %10d %10.2f %10.2f %10.2f%n", second, lags.length,
+                        percentile(lags, 0.5) / 1000.0, percentile(lags, 0.99) / 1000.0, lags[lags.length - 1] / 1000.0));
+            });
+            log.info(report.toString());
+        }
+
+        /**
+         * 百分位
+         *
+         * @param sorted 排好序的值
+         * @param p      p
+         * @return long
+         */
+        private static long percentile(long[] sorted, double p) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    /**
+     * 一秒内的延迟
+     */
+    private static final class Bucket {
+
+        private long[] lags = new long[1024];
+
+        private int size;
+
+        /**
+         * 桶内最后一行到达的时间（微秒）
+         */
+        private long lastMicros;
+
+        synchronized void add(long lag) {
+            if (size == lags.length) {
+                lags = Arrays.copyOf(lags, size * 2);
+            }
+            lags[size++] = lag;
+            lastMicros = nowMicros();
+        }
+
+        synchronized long getLastMicros() {
+            return lastMicros;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(lags, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+}
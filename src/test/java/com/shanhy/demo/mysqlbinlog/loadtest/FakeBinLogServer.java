@@ -0,0 +1,584 @@
+package com.shanhy.demo.mysqlbinlog.loadtest;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本地的假MySQL复制服务端，用于端到端压测：实现握手、认证（直接通过）、BinaryLogClient 连接时执行的查询和 COM_BINLOG_DUMP，
+ * 按配置的速率、表宽度和事务大小推送合成的 TABLE_MAP 和行事件。BinLogRunner / MySQLBinLogHandler 不需要修改，
+ * 把 binlog.datasource.host/port 指向它即可（schema-source 需为 TABLE_MAP）。
+ * <p>
+ * 每个事务为 BEGIN、eventsPerTransaction 个（TABLE_MAP + WRITE_ROWS）和 XID，所有行的 sent_at_us 列为发送时间（微秒），
+ * 监听器用它计算整条链路的延迟。每个连接都从头推送，不使用客户端请求的position
+ *
+ * @author 单红宇
+ * @date 2026/10/17 20:50
+ */
+@Slf4j
+public class FakeBinLogServer implements Closeable {
+
+    /**
+     * 库名
+     */
+    public static final String DATABASE = "loadtest";
+
+    /**
+     * binlog文件名
+     */
+    private static final String BINLOG_FILENAME = "fake-bin.000001";
+
+    /**
+     * serverId
+     */
+    private static final long SERVER_ID = 1;
+
+    /**
+     * 第一个表的tableId
+     */
+    private static final long TABLE_ID_BASE = 100;
+
+    private static final int COM_QUIT = 0x01;
+
+    private static final int COM_QUERY = 0x03;
+
+    private static final int COM_BINLOG_DUMP = 0x12;
+
+    /**
+     * 负载配置
+     */
+    private final Workload workload;
+
+    /**
+     * serverSocket
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * 当前连接
+     */
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+    /**
+     * 已发送的事务数
+     */
+    private final AtomicLong sentTransactions = new AtomicLong();
+
+    /**
+     * 已发送的行事件数
+     */
+    private final AtomicLong sentRowsEvents = new AtomicLong();
+
+    /**
+     * 已发送的行数
+     */
+    private final AtomicLong sentRows = new AtomicLong();
+
+    /**
+     * 是否已关闭
+     */
+    private volatile boolean closed;
+
+    /**
+     * FakeBinLogServer
+     *
+     * @param port     端口，0表示随机端口
+     * @param workload 负载配置
+     * @throws IOException IOException
+     */
+    public FakeBinLogServer(int port, Workload workload) throws IOException {
+        if (workload.getColumns() < 2) {
+            throw new IllegalArgumentException("列数至少为2（id、sent_at_us）");
+        }
+        this.workload = workload;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptLoop, "fake-binlog-server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("假binlog服务端已启动，端口{}，负载{}", getPort(), workload);
+    }
+
+    /**
+     * 启动一个独立运行的服务端，供 BinLogRunner 连接：
+     * 参数依次为端口、每秒事务数（0不限速）、表数量、列数、每个行事件的行数、每个事务的行事件数
+     *
+     * @param args args
+     * @throws Exception Exception
+     */
+    public static void main(String[] args) throws Exception {
+        Workload workload = new Workload();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 3307;
+        if (args.length > 1) {
+            workload.setTransactionsPerSecond(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            workload.setTables(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            workload.setColumns(Integer.parseInt(args[3]));
+        }
+        if (args.length > 4) {
+            workload.setRowsPerEvent(Integer.parseInt(args[4]));
+        }
+        if (args.length > 5) {
+            workload.setEventsPerTransaction(Integer.parseInt(args[5]));
+        }
+        try (FakeBinLogServer server = new FakeBinLogServer(port, workload)) {
+            long lastRows = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(1000);
+                long rows = server.getSentRows();
+                log.info("已发送事务{}个，行{}行，{}行/秒", server.getSentTransactions(), rows, rows - lastRows);
+                lastRows = rows;
+            }
+        }
+    }
+
+    /**
+     * 端口
+     *
+     * @return int
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 已发送的事务数
+     *
+     * @return long
+     */
+    public long getSentTransactions() {
+        return sentTransactions.get();
+    }
+
+    /**
+     * 已发送的行事件数
+     *
+     * @return long
+     */
+    public long getSentRowsEvents() {
+        return sentRowsEvents.get();
+    }
+
+    /**
+     * 已发送的行数
+     *
+     * @return long
+     */
+    public long getSentRows() {
+        return sentRows.get();
+    }
+
+    /**
+     * 负载配置
+     *
+     * @return Workload
+     */
+    public Workload getWorkload() {
+        return workload;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    /**
+     * 接受连接，每个连接一个线程
+     */
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "fake-binlog-connection-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("接受连接失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一个连接
+     *
+     * @param socket socket
+     */
+    private void serve(Socket socket) {
+        try (socket; Connection connection = new Connection(socket)) {
+            connection.write(greeting());
+            connection.flush();
+            connection.read();
+            connection.write(ok());
+            connection.flush();
+            for (byte[] packet; (packet = connection.read()) != null; ) {
+                int command = packet[0] & 0xFF;
+                if (command == COM_QUIT) {
+                    return;
+                }
+                connection.resetSequence();
+                if (command == COM_BINLOG_DUMP) {
+                    stream(connection);
+                    return;
+                }
+                if (command == COM_QUERY) {
+                    query(connection, new String(packet, 1, packet.length - 1, StandardCharsets.UTF_8));
+                } else {
+                    connection.write(ok());
+                }
+                connection.flush();
+            }
+        } catch (SocketException | EOFException e) {
+            log.debug("连接已断开：{}", e.getMessage());
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("处理连接失败", e);
+            }
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * 应答 BinaryLogClient 连接时执行的查询，其它语句（如 set）返回OK
+     *
+     * @param connection connection
+     * @param sql        sql
+     * @throws IOException IOException
+     */
+    private void query(Connection connection, String sql) throws IOException {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        if (lower.contains("show master status") || lower.contains("show binary log status")) {
+            resultSet(connection, List.of("File", "Position", "Binlog_Do_DB", "Binlog_Ignore_DB", "Executed_Gtid_Set"),
+                    List.of(BINLOG_FILENAME, "4", "", "", ""));
+        } else if (lower.contains("binlog_checksum")) {
+            resultSet(connection, List.of("Variable_name", "Value"), List.of("binlog_checksum", "NONE"));
+        } else if (lower.contains("@@server_id")) {
+            resultSet(connection, List.of("@@server_id"), List.of(String.valueOf(SERVER_ID)));
+        } else {
+            connection.write(ok());
+        }
+    }
+
+    /**
+     * 推送binlog事件，推送完配置的事务数后保持连接，直到客户端断开
+     *
+     * @param connection connection
+     * @throws IOException IOException
+     */
+    private void stream(Connection connection) throws IOException {
+        BinLogEventEncoder encoder = new BinLogEventEncoder(SERVER_ID);
+        connection.writeEvent(encoder.rotate(BINLOG_FILENAME));
+        connection.writeEvent(encoder.formatDescription());
+        connection.flush();
+        long interval = workload.getTransactionsPerSecond() > 0 ? 1_000_000_000L / workload.getTransactionsPerSecond() : 0;
+        long next = System.nanoTime();
+        long id = 1;
+        for (long tx = 0; !closed && (workload.getTransactions() <= 0 || tx < workload.getTransactions()); tx++) {
+            if (interval > 0) {
+                next += interval;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    connection.flush();
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            Instant now = Instant.now();
+            long timestamp = now.toEpochMilli();
+            long sentAtUs = now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+            connection.writeEvent(encoder.begin(timestamp));
+            for (int e = 0; e < workload.getEventsPerTransaction(); e++) {
+                int table = (int) ((tx * workload.getEventsPerTransaction() + e) % workload.getTables());
+                long tableId = TABLE_ID_BASE + table;
+                connection.writeEvent(encoder.tableMap(timestamp, tableId, DATABASE, tableName(table), workload.getColumns()));
+                connection.writeEvent(encoder.writeRows(timestamp, tableId, workload.getColumns(), id,
+                        workload.getRowsPerEvent(), sentAtUs));
+                id += workload.getRowsPerEvent();
+            }
+            connection.writeEvent(encoder.xid(timestamp, tx + 1));
+            sentRowsEvents.addAndGet(workload.getEventsPerTransaction());
+            sentRows.addAndGet((long) workload.getEventsPerTransaction() * workload.getRowsPerEvent());
+            sentTransactions.incrementAndGet();
+        }
+        connection.flush();
+        log.info("已推送全部{}个事务", sentTransactions.get());
+        connection.awaitClose();
+    }
+
+    /**
+     * 表名
+     *
+     * @param index index
+     * @return String
+     */
+    public static String tableName(int index) {
+        return "t" + index;
+    }
+
+    /**
+     * 初始握手包，认证插件为 mysql_native_password
+     *
+     * @return byte[]
+     */
+    private static byte[] greeting() {
+        BinLogEventEncoder.Buffer buffer = new BinLogEventEncoder.Buffer();
+        buffer.int1(10);
+        buffer.bytes("8.0.36-fake".getBytes(StandardCharsets.US_ASCII));
+        buffer.int1(0);
+        buffer.int4(1);
+        buffer.bytes("12345678".getBytes(StandardCharsets.US_ASCII));
+        buffer.int1(0);
+        // CLIENT_PROTOCOL_41 | CLIENT_SECURE_CONNECTION 等低16位，高16位 CLIENT_PLUGIN_AUTH
+        buffer.int2(0xF7FF);
+        buffer.int1(0x21);
+        buffer.int2(0x0002);
+        buffer.int2(0x0008);
+        buffer.int1(21);
+        buffer.bytes(new byte[10]);
+        buffer.bytes("123456789012".getBytes(StandardCharsets.US_ASCII));
+        buffer.int1(0);
+        buffer.bytes("mysql_native_password".getBytes(StandardCharsets.US_ASCII));
+        buffer.int1(0);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * OK包
+     *
+     * @return byte[]
+     */
+    private static byte[] ok() {
+        return new byte[]{0x00, 0x00, 0x00, 0x02, 0x00, 0x00, 0x00};
+    }
+
+    /**
+     * EOF包
+     *
+     * @return byte[]
+     */
+    private static byte[] eof() {
+        return new byte[]{(byte) 0xFE, 0x00, 0x00, 0x02, 0x00};
+    }
+
+    /**
+     * 只有一行的结果集，所有列都是字符串
+     *
+     * @param connection connection
+     * @param columns    列名
+     * @param row        行
+     * @throws IOException IOException
+     */
+    private static void resultSet(Connection connection, List<String> columns, List<String> row) throws IOException {
+        BinLogEventEncoder.Buffer count = new BinLogEventEncoder.Buffer();
+        count.packed(columns.size());
+        connection.write(count.toByteArray());
+        for (String column : columns) {
+            BinLogEventEncoder.Buffer definition = new BinLogEventEncoder.Buffer();
+            lengthEncoded(definition, "def");
+            lengthEncoded(definition, "");
+            lengthEncoded(definition, "");
+            lengthEncoded(definition, "");
+            lengthEncoded(definition, column);
+            lengthEncoded(definition, column);
+            definition.int1(0x0C);
+            definition.int2(0x21);
+            definition.int4(255);
+            // MYSQL_TYPE_VAR_STRING
+            definition.int1(0xFD);
+            definition.int2(0);
+            definition.int1(0);
+            definition.int2(0);
+            connection.write(definition.toByteArray());
+        }
+        connection.write(eof());
+        BinLogEventEncoder.Buffer values = new BinLogEventEncoder.Buffer();
+        row.forEach(value -> lengthEncoded(values, value));
+        connection.write(values.toByteArray());
+        connection.write(eof());
+    }
+
+    /**
+     * 长度编码的字符串
+     *
+     * @param buffer buffer
+     * @param value  value
+     */
+    private static void lengthEncoded(BinLogEventEncoder.Buffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.packed(bytes.length);
+        buffer.bytes(bytes);
+    }
+
+    /**
+     * 负载配置
+     */
+    @Data
+    public static class Workload {
+
+        /**
+         * 每秒事务数，0表示不限速
+         */
+        private int transactionsPerSecond;
+
+        /**
+         * 总事务数，0表示不限
+         */
+        private long transactions;
+
+        /**
+         * 表数量，事务中的行事件按表轮流写入
+         */
+        private int tables = 1;
+
+        /**
+         * 表的列数（表宽度），至少为2
+         */
+        private int columns = 8;
+
+        /**
+         * 每个行事件的行数
+         */
+        private int rowsPerEvent = 10;
+
+        /**
+         * 每个事务的行事件数（事务大小）
+         */
+        private int eventsPerTransaction = 1;
+    }
+
+    /**
+     * 一个客户端连接，按MySQL协议收发包（3字节长度 + 1字节序号）
+     */
+    private static final class Connection implements Closeable {
+
+        /**
+         * 输出缓冲区大小
+         */
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        /**
+         * 包序号
+         */
+        private int sequence;
+
+        Connection(Socket socket) throws IOException {
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        }
+
+        /**
+         * 读取一个包
+         *
+         * @return 包内容，连接关闭时返回null
+         * @throws IOException IOException
+         */
+        byte[] read() throws IOException {
+            int b0 = in.read();
+            if (b0 < 0) {
+                return null;
+            }
+            byte[] header = in.readNBytes(3);
+            if (header.length < 3) {
+                throw new EOFException();
+            }
+            int length = b0 | (header[0] & 0xFF) << 8 | (header[1] & 0xFF) << 16;
+            sequence = (header[2] & 0xFF) + 1;
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) {
+                throw new EOFException();
+            }
+            return payload;
+        }
+
+        /**
+         * 新命令从序号1开始应答
+         */
+        void resetSequence() {
+            sequence = 1;
+        }
+
+        /**
+         * 写一个包
+         *
+         * @param payload payload
+         * @throws IOException IOException
+         */
+        void write(byte[] payload) throws IOException {
+            out.write(payload.length);
+            out.write(payload.length >>> 8);
+            out.write(payload.length >>> 16);
+            out.write(sequence);
+            sequence = (sequence + 1) & 0xFF;
+            out.write(payload);
+        }
+
+        /**
+         * 写一个binlog事件包（0x00 + 事件）
+         *
+         * @param event event
+         * @throws IOException IOException
+         */
+        void writeEvent(byte[] event) throws IOException {
+            int length = event.length + 1;
+            out.write(length);
+            out.write(length >>> 8);
+            out.write(length >>> 16);
+            out.write(sequence);
+            sequence = (sequence + 1) & 0xFF;
+            out.write(0);
+            out.write(event);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 等待客户端断开
+         *
+         * @throws IOException IOException
+         */
+        void awaitClose() throws IOException {
+            while (in.read() >= 0) {
+                // 复制连接上客户端不再发送数据
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+}